@@ -12,8 +12,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
 
+import model.creation.SystemSupportedImageManager;
+import model.creation.VDecodedImageCache;
 import model.image.VFocusableLayerImageImpl;
 import model.image.VLayeredImageImpl;
+import model.image.VMemoryBudget;
 import model.misc.ObjectsExtension;
 import view.VPaletteView;
 
@@ -30,6 +33,13 @@ import view.VPaletteView;
  * Each argument corresponds to one of the three ways that Vido can be used when expressed with this
  * application object: interactively as a GUI, interactively as text, and automatically by reading
  * a file containing a script</p>
+ *
+ * <p>Any of the above may be preceded by {@code -memory} + {@code size} (e.g. {@code -memory 512m})
+ * to limit how much layer pixel data is kept in memory before layers are spilled to disk. See
+ * {@link VMemoryBudget}. Likewise, {@code -cache} + {@code size} limits how much pixel data is
+ * kept of recently loaded files, so that loading them again does not decode them again. See
+ * {@link VDecodedImageCache}. Finally, {@code -pnglevel} + {@code level} (from 0 to 9) sets the
+ * compression level png files are saved with. See {@link SystemSupportedImageManager}</p>
  */
 public class VApplicationImpl implements VApplication {
   private final Map<String, ScannerToController> commandMap;
@@ -102,10 +112,18 @@ public class VApplicationImpl implements VApplication {
    * </ul>
    * </p>
    *
+   * <p>The mode may be preceded by the {@code -memory} option followed by a size such as
+   * {@code 512m} or {@code 2g}, which sets the limit of the global {@link VMemoryBudget}, and
+   * by the {@code -cache} option followed by a size, which sets the limit of the global
+   * {@link VDecodedImageCache}, and by the {@code -pnglevel} option followed by a number from
+   * 0 to 9, which sets the compression level png files are saved with</p>
+   *
    * @param args command line arguments passed to the program on launch
    * @return a new controller that has the appropriate capabilities based on the arguments provided
    * @throws IllegalArgumentException if the arguments are null or if the arguments do not contain a
-   *                                  file that exists on disk that can be loaded with commands
+   *                                  file that exists on disk that can be loaded with commands; or
+   *                                  if a memory or cache size or png compression level given
+   *                                  is invalid
    */
   private VController controllerFor(String[] args)
       throws IllegalArgumentException, FileNotFoundException {
@@ -124,6 +142,27 @@ public class VApplicationImpl implements VApplication {
     // is at least one string supplied after the first if check
     String argumentKey = scanner.next();
 
+    while (argumentKey.equals("-memory") || argumentKey.equals("-cache")
+        || argumentKey.equals("-pnglevel")) {
+      if (argumentKey.equals("-pnglevel")) {
+        try {
+          SystemSupportedImageManager.setDefaultPngLevel(Integer.parseInt(
+              readNextString(scanner)));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("The png compression level must be a number");
+        }
+      } else {
+        long size = VMemoryBudget.parseSize(readNextString(scanner));
+
+        if (argumentKey.equals("-memory")) {
+          VMemoryBudget.global().setLimit(size);
+        } else {
+          VDecodedImageCache.global().setLimit(size);
+        }
+      }
+      argumentKey = readNextString(scanner);
+    }
+
     if (!commandMap.containsKey(argumentKey)) {
       throw new IllegalArgumentException("Unrecognized command line argument");
     }
@@ -6,44 +6,107 @@ import model.creation.ImageExtractionException;
 import model.creation.VImageManagers;
 import model.creation.VImageProvider;
 import model.creation.VLayeredImageProvider;
-import model.creation.VLayeredImageDiskProvider;
+import model.creation.VProjectFileManager;
 
 import model.image.VFocusableLayeredImage;
 import model.image.VImage;
+import model.image.VImagePyramid;
 import model.image.VLayer;
 import model.image.VLayeredImage;
 import model.image.VLayerImpl;
+import model.image.VPackedImages;
 import model.misc.Constants;
 import model.misc.ObjectsExtension;
 import model.persistence.ImageSavingException;
 import model.persistence.VImageSaver;
 import model.persistence.VLayeredImageDiskSaver;
 import model.persistence.VLayeredImageSaver;
+import model.processing.VCompositeContentOperation;
 import model.processing.VImageContentOperation;
 import model.processing.VMosaicFilter;
+import model.processing.VProgress;
 import view.VIView;
 import view.VIViewListener;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
+import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 /**
  * A controller for the GUI variant of a Vido Controller.
+ *
+ * <p>The model is never touched on the event dispatch thread. Dialogs and file choosers are
+ * shown on the event dispatch thread as usual, but the work that follows from them, such as
+ * loading, saving and changing layers, is handed to a single background thread that alone
+ * reads and changes the model. Once that work is done, the layers and their names are
+ * published back to the view on the event dispatch thread. The view shows the progress of
+ * background work while it runs.
+ *
+ * <p>Operations chosen from the GUI are previewed first: the operation is applied to a
+ * screen-sized copy of the layer taken from the layer's pyramid, and the result is shown
+ * straight away. The operation is then applied to the full-resolution layer on a second
+ * background thread, reporting its progress as it goes, and the layer is replaced once it
+ * finishes. If another operation is chosen for the same layer in the meantime, the background
+ * work is cancelled and restarted with both operations. Operations still running can also be
+ * cancelled from the view.</p>
  */
 public class VGUIController implements VController, VIViewListener {
 
   private static final VLayer baseLayer = new VLayerImpl(100, 100);
 
+  // The number of times the view is updated with the progress of a task
+  private static final int PROGRESS_REPORTS = 100;
+
   private VFocusableLayeredImage model;
   private VIView view;
 
+  // Reads and changes the model. The model is only accessed on this thread
+  private final ExecutorService modelWorker;
+
+  // Applies operations to full-resolution layers
+  private final ExecutorService worker;
+
+  // The operations waiting to replace each layer, keyed by the layer they
+  // were applied to. Only accessed on the model's thread
+  private final Map<VLayer, PendingOperation> pendingOperations;
+
+  // Screen-sized previews decoded straight from the files of layers loaded from disk,
+  // shown in place of the layers so that the layers are only decoded in full once an
+  // operation needs their pixels. Only accessed on the model's thread
+  private final Map<VLayer, VImage> loadPreviews;
+
+  // The number of layers in the model as of the last time it was published
+  // to the view, for checks made before showing a dialog
+  private volatile int layerCount;
+
+  // The background tasks in progress, in the order they began. The view shows the
+  // progress of the most recent. Only accessed on the event dispatch thread
+  private final Set<BackgroundProgress> activeProgress;
+
   /**
    * Constructs a VGUIController with a view and a model.
    * @param view the graphic view for Vido
@@ -56,6 +119,20 @@ public class VGUIController implements VController, VIViewListener {
     ObjectsExtension.requireNonnull(view, model);
     this.model = model;
     this.view = view;
+    this.pendingOperations = new IdentityHashMap<>();
+    this.loadPreviews = new IdentityHashMap<>();
+    this.activeProgress = new LinkedHashSet<>();
+    this.layerCount = model.numLayers();
+    this.modelWorker = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vido-model");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.worker = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vido-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 
   @Override
@@ -92,20 +169,6 @@ public class VGUIController implements VController, VIViewListener {
     return new VLayerImpl(new VLayerImpl(thisWidth, thisHeight));
   }
 
-  /**
-   * Gets the index of the topmost visible layer in an image.
-   * @return the index of the topmost visible layer
-   */
-  private int getTopMostVisibleIndex() {
-    for (int i = 0; i < model.numLayers(); i += 1) {
-      if (model.getLayer(i).isVisible()) {
-        return i;
-      }
-    }
-
-    return -1;
-  }
-
   /**
    * Gets the names of the layers in the image in an array.
    * @return the names of the layers as an array of strings
@@ -120,12 +183,173 @@ public class VGUIController implements VController, VIViewListener {
 
     return names;
   }
-  
+
+  /**
+   * Carries out work that reads or changes the model on the model's thread. The view shows
+   * that the work is in progress until it is done, and the layers of the model are then
+   * published to the view.
+   *
+   * @param task      a short description of the work, shown while it is in progress
+   * @param withNames whether the names of the layers should be published as well
+   * @param action    the work to carry out
+   */
+  private void inBackground(String task, boolean withNames, Runnable action) {
+    BackgroundProgress progress = new BackgroundProgress(task, false);
+    progress.report(-1);
+
+    modelWorker.execute(this.reported(task, withNames, progress, action));
+  }
+
+  /**
+   * Carries out work that reads the model on the model's thread once every operation
+   * applied before it has replaced its layer, so that work such as saving sees the results
+   * the view shows as previews rather than the layers beneath them. The view shows that the
+   * work is in progress while it waits.
+   *
+   * @param task   a short description of the work, shown while it is in progress
+   * @param action the work to carry out
+   */
+  private void afterPendingOperations(String task, Runnable action) {
+    BackgroundProgress progress = new BackgroundProgress(task, false);
+    progress.report(-1);
+    Runnable work = this.reported(task, false, progress, action);
+
+    // Operations run one at a time in the order they were applied, and each hands its
+    // result to the model's thread as it finishes, so work queued behind them runs after
+    // every result has replaced its layer. The operations are only submitted on the
+    // model's thread, which is why the work is first queued there
+    modelWorker.execute(() -> {
+      if (pendingOperations.isEmpty()) {
+        work.run();
+      } else {
+        worker.execute(() -> modelWorker.execute(work));
+      }
+    });
+  }
+
+  /**
+   * Wraps work on the model's thread so that its failures are reported, and the layers of
+   * the model are published to the view and its progress finished once it is done.
+   *
+   * @param task      a short description of the work, used when reporting a failure
+   * @param withNames whether the names of the layers should be published as well
+   * @param progress  the progress shown for the work
+   * @param action    the work to carry out
+   * @return the wrapped work
+   */
+  private Runnable reported(String task, boolean withNames, BackgroundProgress progress,
+      Runnable action) {
+    return () -> {
+      try {
+        action.run();
+      } catch (RuntimeException | OutOfMemoryError e) {
+        this.showMessage(task + " could not be completed.",
+                "Error", JOptionPane.ERROR_MESSAGE);
+      } finally {
+        this.publish(withNames);
+        progress.finish();
+      }
+    };
+  }
+
+  /**
+   * Shows a message dialog on the event dispatch thread.
+   *
+   * @param message the message to show
+   * @param title   the title of the dialog
+   * @param type    the kind of message, as understood by {@link JOptionPane}
+   */
+  private void showMessage(String message, String title, int type) {
+    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message, title, type));
+  }
+
+  /**
+   * Publishes the current and top-most visible layers, and optionally the names of the
+   * layers, to the view. Layers whose operations are still running are shown as their
+   * previews. Called only on the model's thread.
+   *
+   * @param withNames whether the names of the layers should be published as well
+   */
+  private void publish(boolean withNames) {
+    int count = model.numLayers();
+    this.layerCount = count;
+
+    // Previews of layers which have since been replaced or removed are no longer needed
+    Set<VLayer> layers = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < count; i += 1) {
+      layers.add(model.getLayer(i));
+    }
+    loadPreviews.keySet().retainAll(layers);
+
+    if (count == 0) {
+      SwingUtilities.invokeLater(() -> {
+        view.renderAsCurrentLayer(baseLayer);
+        view.clearLayerNames();
+        view.renderAsTopMostVisibleLayer(baseLayer);
+      });
+      return;
+    }
+
+    String[] names = this.getNames();
+    int focusIndex = model.getFocusLayerIndex();
+    VLayer current = model.getFocusLayer().orElseThrow();
+    VLayer topMost = this.getTopMostVisible();
+    PendingOperation currentPending = pendingOperations.get(current);
+    PendingOperation topMostPending = pendingOperations.get(topMost);
+    VImage currentPreview = currentPending == null ? loadPreviews.get(current)
+        : currentPending.preview;
+    VImage topMostPreview = topMostPending == null ? loadPreviews.get(topMost)
+        : topMostPending.preview;
+
+    // A layer shown as its preview is not rendered itself, which would decode it
+    VLayer currentShown = currentPreview == null ? this.prepareForView(current) : current;
+    VLayer topMostShown = topMostPreview == null ? this.prepareForView(topMost) : topMost;
+
+    SwingUtilities.invokeLater(() -> {
+      if (withNames) {
+        view.renderLayerNames(names, focusIndex);
+      }
+
+      if (currentPreview != null) {
+        view.renderPreviewAsCurrentLayer(current, currentPreview);
+      } else {
+        view.renderAsCurrentLayer(currentShown);
+      }
+
+      if (topMostPreview != null) {
+        view.renderPreviewAsTopMostVisibleLayer(topMost, topMostPreview);
+      } else {
+        view.renderAsTopMostVisibleLayer(topMostShown);
+      }
+    });
+  }
+
+  /**
+   * Decodes a layer about to be shown and builds the level of its pyramid closest to the
+   * size of the screen, so that the view draws from pixels already in memory rather than
+   * reading a lazily loaded or spilled layer on the event dispatch thread. Called only on
+   * the model's thread.
+   *
+   * @param layer the layer to show
+   * @return the layer, or a blank layer if its pixels could not be read
+   */
+  private VLayer prepareForView(VLayer layer) {
+    try {
+      VPackedImages.readPixels(layer);
+      VImagePyramid pyramid = layer.getPyramid();
+      pyramid.getLevel(this.proxyLevelFor(pyramid));
+      return layer;
+    } catch (IllegalArgumentException | IllegalStateException | OutOfMemoryError e) {
+      this.showMessage("Layer " + layer.getName() + " could not be read.",
+              "Error", JOptionPane.ERROR_MESSAGE);
+      return baseLayer;
+    }
+  }
+
   @Override
   public void saveProject() {
 
     final JFileChooser fchooser = new JFileChooser(".");
-    boolean found = false;
     File f;
 
     int retvalue = fchooser.showSaveDialog(null);
@@ -139,31 +363,45 @@ public class VGUIController implements VController, VIViewListener {
 
       JFrame window = new JFrame();
       String name = JOptionPane.showInputDialog(window,
-              "Enter the format for the files (jpg, png, ppm)");
+              "Enter the format for the files (jpg, png, ppm, qoi), or vido to save the "
+                  + "project as a single file");
 
-      if (!name.equals("jpg") && !name.equals("png") && !name.equals("ppm")) {
+      if (name == null) {
+        return;
+      }
+
+      if (!name.equals("jpg") && !name.equals("png") && !name.equals("ppm")
+          && !name.equals("qoi") && !name.equals("vido")) {
 
 
         JOptionPane.showMessageDialog(null,
-                "File must be a jpg, png, or ppm",
+                "File must be a jpg, png, ppm, qoi, or vido",
                 "Saving Error",
                 JOptionPane.ERROR_MESSAGE);
 
       } else {
 
-        VLayeredImageSaver saver = new VLayeredImageDiskSaver(
-                name, Path.of(f.toString()).toAbsolutePath());
+        VLayeredImageSaver saver;
 
-        try {
-          saver.saveImage(model);
-        } catch (ImageSavingException e) {
+        if (name.equals("vido")) {
+          String projectFile = f.toString().endsWith(".vido") ? f.toString()
+              : f.toString() + ".vido";
+          saver = new VProjectFileManager(Path.of(projectFile).toAbsolutePath());
+        } else {
+          saver = new VLayeredImageDiskSaver(name, Path.of(f.toString()).toAbsolutePath());
+        }
 
-          JOptionPane.showMessageDialog(null,
-                  "Image failed to save.",
-                  "Saving Error",
-                  JOptionPane.ERROR_MESSAGE);
+        this.afterPendingOperations("Saving project", () -> {
+          try {
+            saver.saveImage(model);
+          } catch (ImageSavingException e) {
 
-        }
+            this.showMessage("Image failed to save.",
+                    "Saving Error",
+                    JOptionPane.ERROR_MESSAGE);
+
+          }
+        });
       }
     } else {
 
@@ -178,7 +416,7 @@ public class VGUIController implements VController, VIViewListener {
   @Override
   public void saveLayer() {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers to save.",
               "Saving Error",
@@ -187,7 +425,6 @@ public class VGUIController implements VController, VIViewListener {
     }
 
     final JFileChooser fchooser = new JFileChooser(".");
-    boolean found = false;
     File f;
 
     int retvalue = fchooser.showSaveDialog(null);
@@ -201,29 +438,28 @@ public class VGUIController implements VController, VIViewListener {
       VImageSaver saver = VImageManagers.diskSaverFor(
                       Path.of(f.toString()).toAbsolutePath());
 
-      try {
-        VLayer layer = model.getFocusLayer().orElseThrow();
-        saver.saveImage(layer);
-      } catch (IllegalArgumentException e) {
-        JOptionPane.showMessageDialog(null,
-                "Layer could not be found.",
-                "Saving Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (ImageSavingException e) {
+      this.afterPendingOperations("Saving layer", () -> {
+        try {
+          VLayer layer = model.getFocusLayer().orElseThrow();
+          saver.saveImage(layer);
+        } catch (IllegalArgumentException e) {
+          this.showMessage("Layer could not be found.",
+                  "Saving Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (ImageSavingException e) {
 
-        JOptionPane.showMessageDialog(null,
-                "Image failed to save.",
-                "Saving Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (NoSuchElementException e) {
+          this.showMessage("Image failed to save.",
+                  "Saving Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (NoSuchElementException e) {
 
-        JOptionPane.showMessageDialog(null,
-                "Could not find layer.",
-                "Saving Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
+          this.showMessage("Could not find layer.",
+                  "Saving Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+      });
 
     } else {
 
@@ -238,7 +474,7 @@ public class VGUIController implements VController, VIViewListener {
   @Override
   public void saveTopMostVisibleLayer() {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers to save.",
               "Saving Error",
@@ -247,7 +483,6 @@ public class VGUIController implements VController, VIViewListener {
     }
 
     final JFileChooser fchooser = new JFileChooser(".");
-    boolean found = false;
     File f;
 
     int retvalue = fchooser.showSaveDialog(null);
@@ -261,22 +496,22 @@ public class VGUIController implements VController, VIViewListener {
       VImageSaver saver = VImageManagers.diskSaverFor(
               Path.of(f.toString()).toAbsolutePath());
 
-      try {
-        VLayer layer = this.getTopMostVisible();
-        saver.saveImage(layer);
-      } catch (IllegalArgumentException e) {
-        JOptionPane.showMessageDialog(null,
-                "Layer could not be found.",
-                "Saving Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (ImageSavingException e) {
+      this.afterPendingOperations("Saving layer", () -> {
+        try {
+          VLayer layer = this.getTopMostVisible();
+          saver.saveImage(layer);
+        } catch (IllegalArgumentException e) {
+          this.showMessage("Layer could not be found.",
+                  "Saving Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (ImageSavingException e) {
 
-        JOptionPane.showMessageDialog(null,
-                "Image failed to save.",
-                "Saving Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
+          this.showMessage("Image failed to save.",
+                  "Saving Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+      });
 
     } else {
 
@@ -305,22 +540,26 @@ public class VGUIController implements VController, VIViewListener {
       return;
     }
 
-    if (model.getHeight() == -1 || model.getWidth() == -1) {
-      model.createNewLayer(name, model.getFocusLayerIndex() + 1,
-              new VLayerImpl(100, 100));
-    } else {
-      model.createNewLayer(name, model.getFocusLayerIndex() + 1,
-              new VLayerImpl(model.getWidth(), model.getHeight()));
-    }
-    view.renderLayerNames(this.getNames(), model.getFocusLayerIndex());
-    view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-    view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
+    this.inBackground("Adding layer", true, () -> {
+      try {
+        if (model.getHeight() == -1 || model.getWidth() == -1) {
+          model.createNewLayer(name, model.getFocusLayerIndex() + 1,
+                  new VLayerImpl(100, 100));
+        } else {
+          model.createNewLayer(name, model.getFocusLayerIndex() + 1,
+                  new VLayerImpl(model.getWidth(), model.getHeight()));
+        }
+      } catch (IllegalArgumentException e) {
+        this.showMessage("A layer with that name cannot be added.",
+                "Failed Name Input", JOptionPane.WARNING_MESSAGE);
+      }
+    });
   }
 
   @Override
   public void loadImage() {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers to load into.",
               "Loading Error",
@@ -329,7 +568,6 @@ public class VGUIController implements VController, VIViewListener {
     }
 
     final JFileChooser fchooser = new JFileChooser(".");
-    boolean found = false;
     File f;
 
     int retvalue = fchooser.showOpenDialog(null);
@@ -341,35 +579,42 @@ public class VGUIController implements VController, VIViewListener {
     if (retvalue == JFileChooser.APPROVE_OPTION) {
       f = fchooser.getSelectedFile();
 
-      VImageProvider provider =
-              VImageManagers.diskProviderFor(
-                      Path.of(f.toString()).toAbsolutePath());
+      Path path = Path.of(f.toString()).toAbsolutePath();
 
-      try {
-        VImage loaded = provider.extractImage();
-        int workingLayer = model.getFocusLayerIndex();
-        model.replace(workingLayer, loaded);
-        view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-        view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-      }
-      catch (IllegalArgumentException e) {
-        JOptionPane.showMessageDialog(null,
-                "Image failed to load.",
-                "Loading Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (ImageExtractionException e) {
-        JOptionPane.showMessageDialog(null,
-                "Image failed to load.",
-                "Loading Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (NoSuchElementException e) {
-        JOptionPane.showMessageDialog(null,
-                "Layer was  not found.",
-                "Loading Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
+      this.inBackground("Loading image", false, () -> {
+        try {
+          VImageProvider provider = VImageManagers.diskProviderFor(path);
+          VImage loaded = VImageManagers.lazyDiskImageFor(path);
+          int level = this.proxyLevelFor(new VImagePyramid(loaded));
+          int workingLayer = model.getFocusLayerIndex();
+
+          if (level == 0) {
+            model.replace(workingLayer, provider.extractImage());
+          } else {
+            // Only every few pixels of the file are decoded for now, which is as many
+            // as the level of the pyramid the layer would be previewed from has
+            VImage preview = provider.extractImage(
+                    new Rectangle(0, 0, loaded.getWidth(), loaded.getHeight()), 1 << level);
+            model.replace(workingLayer, loaded);
+            loadPreviews.put(model.getLayer(workingLayer), preview);
+          }
+        }
+        catch (IllegalArgumentException e) {
+          this.showMessage("Image failed to load.",
+                  "Loading Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (ImageExtractionException e) {
+          this.showMessage("Image failed to load.",
+                  "Loading Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (NoSuchElementException e) {
+          this.showMessage("Layer was  not found.",
+                  "Loading Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+      });
     } else {
       JOptionPane.showMessageDialog(null,
               "Image failed to load.",
@@ -383,7 +628,7 @@ public class VGUIController implements VController, VIViewListener {
   public void loadProject() {
 
     final JFileChooser fchooser = new JFileChooser(".");
-    fchooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+    fchooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
 
     File f;
 
@@ -397,44 +642,49 @@ public class VGUIController implements VController, VIViewListener {
       f = fchooser.getSelectedFile();
 
 
-      VLayeredImageProvider loader =
-              new VLayeredImageDiskProvider(
-                      Path.of(f.toString()));
+      VLayeredImageProvider loader;
 
       try {
-        VLayeredImage loaded = loader.extractLayeredImage();
-
-        for (int i = 0; i < loaded.numLayers(); i += 1) {
-          VLayer layer = loaded.getLayer(i);
-          model.createNewLayer(layer.getName(), i, layer);
-        }
-
-        model.setFocusLayer(0);
-        model.setName(loaded.getName());
-
-        view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-        view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-        view.renderLayerNames(this.getNames(), model.getFocusLayerIndex());
-      }
-      catch (IllegalArgumentException e) {
-        JOptionPane.showMessageDialog(null,
-                "At least one file in the project is incompatible with "
-                        + "the current project.",
-                "Loading Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (ImageExtractionException e) {
-        JOptionPane.showMessageDialog(null,
-                "Project failed to load.",
-                "Loading Error",
-                JOptionPane.ERROR_MESSAGE);
-      }
-      catch (NoSuchElementException e) {
+        // Only the layers that are shown need to be decoded, so
+        // each layer is decoded the first time it is used
+        loader = VImageManagers.layeredProviderFor(Path.of(f.toString()), true);
+      } catch (IllegalArgumentException e) {
         JOptionPane.showMessageDialog(null,
-                "Layer could not be found.",
+                "Projects are directories or vido files.",
                 "Loading Error",
                 JOptionPane.ERROR_MESSAGE);
+        return;
       }
+
+      this.inBackground("Loading project", true, () -> {
+        try {
+          VLayeredImage loaded = loader.extractLayeredImage();
+
+          for (int i = 0; i < loaded.numLayers(); i += 1) {
+            VLayer layer = loaded.getLayer(i);
+            model.createNewLayer(layer.getName(), i, layer);
+          }
+
+          model.setFocusLayer(0);
+          model.setName(loaded.getName());
+        }
+        catch (IllegalArgumentException e) {
+          this.showMessage("At least one file in the project is incompatible with "
+                          + "the current project.",
+                  "Loading Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (ImageExtractionException e) {
+          this.showMessage("Project failed to load.",
+                  "Loading Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+        catch (NoSuchElementException e) {
+          this.showMessage("Layer could not be found.",
+                  "Loading Error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+      });
     } else {
 
       JOptionPane.showMessageDialog(null,
@@ -447,7 +697,7 @@ public class VGUIController implements VController, VIViewListener {
   @Override
   public void addFromCopy() {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers to copy from.",
               "Layer Error",
@@ -459,6 +709,10 @@ public class VGUIController implements VController, VIViewListener {
     String name = JOptionPane.showInputDialog(window,
             "Enter the name of the new layer:");
 
+    if (name == null) {
+      return;
+    }
+
     if (name.equals("")) {
       JOptionPane.showMessageDialog(
               window,"Name cannot be empty.",
@@ -469,31 +723,35 @@ public class VGUIController implements VController, VIViewListener {
     String positionString = JOptionPane.showInputDialog(window,
             "Enter the position of the new layer:");
 
-    if (name == null || positionString == null) {
+    if (positionString == null) {
       return;
     }
 
+    int position;
+
     try {
-      int position = Integer.parseInt(positionString) - 1;
-      model.createNewLayer(name, position,
-              model.getFocusLayer().orElseThrow());
-      view.renderLayerNames(this.getNames(), model.getFocusLayerIndex());
-      view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
+      position = Integer.parseInt(positionString) - 1;
     } catch (NumberFormatException e) {
       JOptionPane.showMessageDialog(
               window,"Input must be an integer.",
               "Failed Position Input",JOptionPane.WARNING_MESSAGE);
-    } catch (IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(
-              window,"Input must be greater than 0, and no more than one greater than "
-                      + "the number of layers in the project",
-              "Failed Position Input",JOptionPane.WARNING_MESSAGE);
-    } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window,"No layers available to copy.",
-              "Failed Position Input",JOptionPane.WARNING_MESSAGE);
+      return;
     }
 
+    this.inBackground("Copying layer", true, () -> {
+      try {
+        model.createNewLayer(name, position,
+                model.getFocusLayer().orElseThrow());
+      } catch (IllegalArgumentException e) {
+        this.showMessage("Input must be greater than 0, and no more than one greater than "
+                        + "the number of layers in the project",
+                "Failed Position Input",JOptionPane.WARNING_MESSAGE);
+      } catch (NoSuchElementException e) {
+        this.showMessage("No layers available to copy.",
+                "Failed Position Input",JOptionPane.WARNING_MESSAGE);
+      }
+    });
+
   }
 
   @Override
@@ -501,7 +759,7 @@ public class VGUIController implements VController, VIViewListener {
 
     JFrame window = new JFrame();
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(
               window,"Cannot remove a layer from an empty project.",
               "Failed Removal",JOptionPane.WARNING_MESSAGE);
@@ -512,61 +770,36 @@ public class VGUIController implements VController, VIViewListener {
             "Are you sure you would like to remove the current layer?");
 
     if (goodToGo == 0) {
-      try {
-        model.removeLayer(model.getFocusLayerIndex());
-      } catch (IllegalArgumentException e) {
-        JOptionPane.showMessageDialog(
-                window,"Failed to find selected layer.",
-                "Removal error",JOptionPane.WARNING_MESSAGE);
-      }
-
-      if (model.numLayers() == 0) {
-
-        view.renderAsCurrentLayer(baseLayer);
-        view.clearLayerNames();
-        view.renderAsTopMostVisibleLayer(baseLayer);
-
-      } else {
-        view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-        view.renderLayerNames(this.getNames(), model.getFocusLayerIndex());
-        view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-      }
+      this.inBackground("Removing layer", true, () -> {
+        try {
+          model.removeLayer(model.getFocusLayerIndex());
+        } catch (IllegalArgumentException e) {
+          this.showMessage("Failed to find selected layer.",
+                  "Removal error",JOptionPane.WARNING_MESSAGE);
+        }
+      });
     }
   }
 
 
   @Override
   public void setCurrentVisibleOn() {
-    JFrame window = new JFrame();
-
-    if (model.numLayers() == 0) {
-      JOptionPane.showMessageDialog(null,
-              "No layers available.",
-              "Edit Error",
-              JOptionPane.ERROR_MESSAGE);
-      return;
-    }
-    try {
-      model.setVisible(true, model.getFocusLayerIndex());
-      view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-      view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-    } catch (IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(
-              window, "No focus layer available.",
-              "Removal error", JOptionPane.WARNING_MESSAGE);
-    } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window, "No focus layer available.",
-              "Removal error", JOptionPane.WARNING_MESSAGE);
-    }
+    this.setCurrentVisible(true);
   }
 
   @Override
   public void setCurrentVisibleOff() {
+    this.setCurrentVisible(false);
+  }
 
-    JFrame window = new JFrame();
+  /**
+   * Sets the visibility of the current layer.
+   *
+   * @param visible whether the current layer should be visible
+   */
+  private void setCurrentVisible(boolean visible) {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers available.",
               "Edit Error",
@@ -574,25 +807,20 @@ public class VGUIController implements VController, VIViewListener {
       return;
     }
 
-    try {
-      model.setVisible(false, model.getFocusLayerIndex());
-      view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-      view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-    } catch (IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(
-              window,"No focus layer available.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window,"No focus layer available.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    }
+    this.inBackground("Changing visibility", false, () -> {
+      try {
+        model.setVisible(visible, model.getFocusLayerIndex());
+      } catch (IllegalArgumentException | NoSuchElementException e) {
+        this.showMessage("No focus layer available.",
+                "Editing error", JOptionPane.WARNING_MESSAGE);
+      }
+    });
   }
 
   @Override
   public void changeName() {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers available to rename.",
               "Edit Error",
@@ -608,53 +836,41 @@ public class VGUIController implements VController, VIViewListener {
       return;
     }
 
-    try {
-      model.rename(name, model.getFocusLayerIndex());
-      view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-    } catch (IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(
-              window,"No focus layer available.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window,"No focus layer available.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    }
+    this.inBackground("Renaming layer", true, () -> {
+      try {
+        model.rename(name, model.getFocusLayerIndex());
+      } catch (IllegalArgumentException | NoSuchElementException e) {
+        this.showMessage("No focus layer available.",
+                "Editing error",JOptionPane.WARNING_MESSAGE);
+      }
+    });
   }
 
   @Override
   public void layerWithIndexSelected(int index) {
 
-    JFrame window = new JFrame();
-
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers available to select.",
               "Selection Error",
               JOptionPane.ERROR_MESSAGE);
       return;
     }
-    try {
-      model.setFocusLayer(index);
-      view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-      view.renderLayerNames(this.getNames(), model.getFocusLayerIndex());
-    } catch (IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(
-              window,"No focus layer available.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window,"No focus layer available.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    }
+
+    this.inBackground("Selecting layer", true, () -> {
+      try {
+        model.setFocusLayer(index);
+      } catch (IllegalArgumentException | NoSuchElementException e) {
+        this.showMessage("No focus layer available.",
+                "Editing error",JOptionPane.WARNING_MESSAGE);
+      }
+    });
   }
 
   @Override
   public void applyOperation(VImageContentOperation op) {
 
-    JFrame window = new JFrame();
-
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers available to modify.",
               "Edit Error",
@@ -662,26 +878,13 @@ public class VGUIController implements VController, VIViewListener {
       return;
     }
 
-    try {
-      model.apply(op, model.getFocusLayerIndex());
-
-      view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-      view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-    } catch (IllegalArgumentException e) {
-      JOptionPane.showMessageDialog(
-              window,"Could not find layer.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window,"Could not find layer.",
-              "Editing error",JOptionPane.WARNING_MESSAGE);
-    }
+    modelWorker.execute(() -> this.applyWithPreview(op, level -> op));
   }
 
   @Override
   public void applyMosaic() {
 
-    if (model.numLayers() == 0) {
+    if (layerCount == 0) {
       JOptionPane.showMessageDialog(null,
               "No layers available to modify.",
               "Edit Error",
@@ -699,12 +902,12 @@ public class VGUIController implements VController, VIViewListener {
 
     try {
       int seedNum = Integer.parseInt(seed);
+      VImageContentOperation mosaic = new VMosaicFilter(seedNum, Constants.MOSAIC_RANDOM_SEED);
 
-      model.apply(new VMosaicFilter(seedNum, Constants.MOSAIC_RANDOM_SEED),
-              model.getFocusLayerIndex());
-
-      view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-      view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
+      // Each level of the pyramid has a quarter as many pixels as the one
+      // before it, so the preview needs a quarter as many seeds
+      modelWorker.execute(() -> this.applyWithPreview(mosaic, level -> new VMosaicFilter(
+              Math.max(1, seedNum >> (2 * level)), Constants.MOSAIC_RANDOM_SEED)));
     } catch (NumberFormatException e) {
 
       JOptionPane.showMessageDialog(
@@ -718,19 +921,335 @@ public class VGUIController implements VController, VIViewListener {
               window,"Input must be greater than 0.",
               "Failed Mosaic Input",
               JOptionPane.WARNING_MESSAGE);
+    }
+  }
+
+  @Override
+  public void cancelOperations() {
+    modelWorker.execute(() -> {
+      for (PendingOperation pending : pendingOperations.values()) {
+        pending.cancel();
+      }
+
+      pendingOperations.clear();
+      this.publish(false);
+    });
+  }
+
+  /**
+   * Applies an operation to the current layer, showing a preview of the result computed
+   * from a screen-sized copy of the layer while the full-resolution result is computed in
+   * the background. Called only on the model's thread.
+   *
+   * @param operation the operation to apply to the full-resolution layer
+   * @param proxy     produces the operation to apply to the copy of the layer at a given
+   *                  level of its pyramid
+   */
+  private void applyWithPreview(VImageContentOperation operation,
+      IntFunction<VImageContentOperation> proxy) {
+    VLayer layer;
+
+    try {
+      layer = model.getFocusLayer().orElseThrow();
     } catch (NoSuchElementException e) {
-      JOptionPane.showMessageDialog(
-              window,"Could not find focus layer.",
-              "Failed Mosaic Input",
-              JOptionPane.WARNING_MESSAGE);
+      this.showMessage("Could not find layer.",
+              "Editing error",JOptionPane.WARNING_MESSAGE);
+      return;
+    }
+
+    // Operations chosen while earlier ones are still running
+    // are combined with them and restarted
+    PendingOperation previous = pendingOperations.remove(layer);
+    List<VImageContentOperation> operations = new ArrayList<>();
+    VImage previewSource = null;
+
+    if (previous != null) {
+      previous.cancel();
+      operations.addAll(previous.operations);
+      previewSource = previous.preview;
+    }
+    operations.add(operation);
+
+    VImagePyramid pyramid = layer.getPyramid();
+    int level = this.proxyLevelFor(pyramid);
+    VImage preview = null;
+    VImage loadPreview = loadPreviews.get(layer);
+
+    // A layer loaded from disk is previewed from the pixels decoded when it was loaded,
+    // leaving the layer itself to be decoded by the full-resolution operation
+    if (previewSource == null && loadPreview != null && level > 0
+        && loadPreview.getWidth() == pyramid.widthOf(level)
+        && loadPreview.getHeight() == pyramid.heightOf(level)) {
+      previewSource = loadPreview;
+    }
+
+    if (level > 0) {
+      try {
+        if (previewSource == null) {
+          previewSource = pyramid.getLevel(level);
+        }
+        preview = proxy.apply(level).operateOn(previewSource);
+        this.renderPreview(layer, preview);
+      } catch (IllegalArgumentException e) {
+        // The full-resolution result is still computed below
+        preview = null;
+      }
+    }
+
+    BackgroundProgress progress = new BackgroundProgress("Applying operation", true);
+    PendingOperation pending = new PendingOperation(operations, preview, progress);
+    VImageContentOperation combined = new VCompositeContentOperation(
+            operations.toArray(new VImageContentOperation[0]));
+
+    progress.report(0);
+    pending.task = worker.submit(() -> {
+      try {
+        VImage result = combined.operateOn(layer, progress);
+        modelWorker.execute(() -> this.finishOperation(layer, pending, result));
+      } catch (CancellationException e) {
+        // The operations were superseded or cancelled from the view
+      } catch (RuntimeException | OutOfMemoryError e) {
+        // Includes layers loaded lazily which can no longer be decoded or
+        // read back from disk, so the preview never stays on screen
+        modelWorker.execute(() -> this.failOperation(layer, pending));
+      } finally {
+        progress.finish();
+      }
+    });
+    pendingOperations.put(layer, pending);
+  }
+
+  /**
+   * Replaces a layer with the full-resolution result of the operations applied to it,
+   * provided that the operations have not been superseded and the layer is still part of
+   * the image. Called only on the model's thread.
+   *
+   * @param layer   the layer the operations were applied to
+   * @param pending the operations that were applied
+   * @param result  the result of the operations
+   */
+  private void finishOperation(VLayer layer, PendingOperation pending, VImage result) {
+    if (pendingOperations.get(layer) != pending) {
+      return;
+    }
+    pendingOperations.remove(layer);
+
+    // The layer may have been moved, replaced or removed since the operation began
+    for (int i = 0; i < model.numLayers(); i += 1) {
+      if (model.getLayer(i) == layer) {
+        try {
+          model.replace(i, result);
+        } catch (IllegalArgumentException e) {
+          this.showMessage("Could not modify the layer.",
+                  "Editing error", JOptionPane.WARNING_MESSAGE);
+        }
+        break;
+      }
+    }
+
+    this.publish(false);
+  }
+
+  /**
+   * Reports that the operations applied to a layer could not be completed and shows the
+   * layer as it was. Called only on the model's thread.
+   *
+   * @param layer   the layer the operations were applied to
+   * @param pending the operations that failed
+   */
+  private void failOperation(VLayer layer, PendingOperation pending) {
+    if (pendingOperations.get(layer) != pending) {
+      return;
+    }
+    pendingOperations.remove(layer);
+
+    this.showMessage("Could not modify the layer.",
+            "Editing error", JOptionPane.WARNING_MESSAGE);
+    this.publish(false);
+  }
+
+  /**
+   * Shows a preview of the given layer wherever the layer is displayed. Called only on the
+   * model's thread.
+   *
+   * @param layer   the layer being previewed
+   * @param preview the approximate contents of the layer
+   */
+  private void renderPreview(VLayer layer, VImage preview) {
+    boolean topMost = this.getTopMostVisible() == layer;
+
+    SwingUtilities.invokeLater(() -> {
+      view.renderPreviewAsCurrentLayer(layer, preview);
+
+      if (topMost) {
+        view.renderPreviewAsTopMostVisibleLayer(layer, preview);
+      }
+    });
+  }
+
+  /**
+   * Chooses the level of a layer's pyramid whose size is closest to, but no smaller than,
+   * the size of the screen.
+   *
+   * @param pyramid the pyramid of the layer to preview
+   * @return the level to compute previews from, or 0 if the layer is no larger than the screen
+   */
+  private int proxyLevelFor(VImagePyramid pyramid) {
+    if (GraphicsEnvironment.isHeadless()) {
+      return 0;
+    }
+
+    Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+    double scale = Math.min(1, Math.min((double) screen.width / pyramid.widthOf(0),
+            (double) screen.height / pyramid.heightOf(0)));
+    return pyramid.levelFor(scale);
+  }
+
+  /**
+   * The operations applied to a layer whose full-resolution result is still being computed.
+   */
+  private static final class PendingOperation {
+    private final List<VImageContentOperation> operations;
+    private final VImage preview;
+    private final BackgroundProgress progress;
+    private Future<?> task;
+
+    /**
+     * Construct a new record of pending operations.
+     *
+     * @param operations the operations to apply, in order
+     * @param preview    the preview shown for the operations, or {@code null} if none was
+     * @param progress   the progress of the operations
+     */
+    PendingOperation(List<VImageContentOperation> operations, VImage preview,
+        BackgroundProgress progress) {
+      this.operations = operations;
+      this.preview = preview;
+      this.progress = progress;
+    }
+
+    /**
+     * Stops the operations, whether or not they have begun.
+     */
+    void cancel() {
+      this.progress.cancel();
+      this.task.cancel(false);
+
+      // A task cancelled before it begins never reports that it has finished
+      this.progress.finish();
     }
   }
 
+  /**
+   * The progress of a task carried out in the background, which relays the progress reported
+   * to it to the view on the event dispatch thread. Reports are coalesced so that the view is
+   * only updated a limited number of times per task.
+   */
+  private final class BackgroundProgress implements VProgress {
+    private final String task;
+    private final boolean cancellable;
+    private final AtomicInteger lastStep;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    // The last fraction shown. Only accessed on the event dispatch thread
+    private double fraction;
+
+    /**
+     * Construct a new record of the progress of a task.
+     *
+     * @param task        a short description of the task
+     * @param cancellable whether the user may cancel the task
+     */
+    BackgroundProgress(String task, boolean cancellable) {
+      this.task = task;
+      this.cancellable = cancellable;
+      this.lastStep = new AtomicInteger(Integer.MIN_VALUE);
+    }
+
+    @Override
+    public void report(double fraction) {
+      int step = fraction < 0 ? -1 : (int) (fraction * PROGRESS_REPORTS);
+
+      // Only relay reports which move the progress bar forward
+      if (lastStep.getAndAccumulate(step, Math::max) >= step) {
+        return;
+      }
+
+      SwingUtilities.invokeLater(() -> {
+        // Reports made as the task finishes must not show it again
+        if (this.finished) {
+          return;
+        }
+
+        this.fraction = fraction;
+        activeProgress.add(this);
+        this.renderIfLatest();
+      });
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return this.cancelled;
+    }
+
+    /**
+     * Asks the task to stop.
+     */
+    void cancel() {
+      this.cancelled = true;
+    }
+
+    /**
+     * Stops showing the progress of this task, showing the progress of the most recent task
+     * still in progress instead, if there is one.
+     */
+    void finish() {
+      this.finished = true;
+
+      SwingUtilities.invokeLater(() -> {
+        if (!activeProgress.remove(this)) {
+          return;
+        }
+
+        if (activeProgress.isEmpty()) {
+          view.clearProgress();
+        } else {
+          latestProgress().renderIfLatest();
+        }
+      });
+    }
+
+    /**
+     * Shows the progress of this task if it is the most recent task in progress. Called only
+     * on the event dispatch thread.
+     */
+    private void renderIfLatest() {
+      if (latestProgress() == this) {
+        view.renderProgress(this.task, this.fraction, this.cancellable);
+      }
+    }
+  }
+
+  /**
+   * Finds the most recent task in progress. Called only on the event dispatch thread.
+   *
+   * @return the progress of the task that began last, or {@code null} if there is none
+   */
+  private BackgroundProgress latestProgress() {
+    BackgroundProgress latest = null;
+
+    for (BackgroundProgress progress : activeProgress) {
+      latest = progress;
+    }
+
+    return latest;
+  }
+
   @Override
   public void executeScript() {
 
     final JFileChooser fchooser = new JFileChooser(".");
-    boolean found = false;
     File f;
 
     int retvalue = fchooser.showOpenDialog(null);
@@ -742,34 +1261,29 @@ public class VGUIController implements VController, VIViewListener {
     if (retvalue == JFileChooser.APPROVE_OPTION) {
       f = fchooser.getSelectedFile();
 
+      this.inBackground("Running script", true, () -> {
+        try {
+          VController terminalControl = new VTerminalController(
+                  new FileReader(f), this.model);
+          terminalControl.run();
 
-      try {
-        VController terminalControl = new VTerminalController(
-                new FileReader(f), this.model);
-        terminalControl.run();
-        view.renderLayerNames(this.getNames(), model.getFocusLayerIndex());
-        view.renderAsTopMostVisibleLayer(this.getTopMostVisible());
-        view.renderAsCurrentLayer(model.getFocusLayer().orElseThrow());
-
-      } catch (FileNotFoundException e) {
-        JOptionPane.showMessageDialog(null,
-                "Could not find script file",
-                "Script error",
-                JOptionPane.ERROR_MESSAGE);
+        } catch (FileNotFoundException e) {
+          this.showMessage("Could not find script file",
+                  "Script error",
+                  JOptionPane.ERROR_MESSAGE);
 
-      } catch (NoSuchElementException e) {
-        JOptionPane.showMessageDialog(null,
-                "Script contains invalid commands, some or all of the "
-                        + "commands could not be executed.",
-                "Script error",
-                JOptionPane.ERROR_MESSAGE);
-      } catch (IllegalArgumentException e) {
-        JOptionPane.showMessageDialog(null,
-                "Script contains invalid commands, some or all of the "
-                        + "commands could not be executed.",
-                "Script error",
-                JOptionPane.ERROR_MESSAGE);
-      }
+        } catch (NoSuchElementException e) {
+          this.showMessage("Script contains invalid commands, some or all of the "
+                          + "commands could not be executed.",
+                  "Script error",
+                  JOptionPane.ERROR_MESSAGE);
+        } catch (IllegalArgumentException e) {
+          this.showMessage("Script contains invalid commands, some or all of the "
+                          + "commands could not be executed.",
+                  "Script error",
+                  JOptionPane.ERROR_MESSAGE);
+        }
+      });
     } else {
 
       JOptionPane.showMessageDialog(null,
@@ -5,13 +5,16 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
 import model.creation.ImageExtractionException;
+import model.creation.PPMEncoding;
+import model.creation.PPMImageManager;
 import model.creation.VImageManagers;
 import model.creation.VImageProvider;
-import model.creation.VLayeredImageDiskProvider;
 import model.creation.VLayeredImageProvider;
+import model.creation.VProjectFileManager;
 import model.image.VFocusableLayerImageImpl;
 import model.image.VFocusableLayeredImage;
 import model.image.VImage;
@@ -19,13 +22,27 @@ import model.image.VImageImpl;
 import model.image.VLayer;
 import model.image.VLayeredImage;
 import model.image.VLayeredImageImpl;
+import model.image.VOrientation;
+import model.image.pixel.VPixelCoordinate;
+import model.misc.FileUtils;
 import model.misc.ObjectsExtension;
 import model.persistence.ImageSavingException;
 import model.persistence.VImageSaver;
 import model.persistence.VLayeredImageDiskSaver;
 import model.persistence.VLayeredImageSaver;
+import model.processing.VAffineTransform;
+import model.processing.VAffineWarp;
+import model.processing.VCompositeContentOperation;
+import model.processing.VCropOperation;
 import model.processing.VImageContentOperation;
 import model.processing.VImageFilters;
+import model.processing.VInterpolation;
+import model.processing.VOrientationOperation;
+import model.processing.VProgress;
+import model.processing.VRegionContentOperation;
+import model.processing.VResizeFilter;
+import model.processing.VResizeOperation;
+import model.processing.VStreamingPipeline;
 import view.VTextView;
 import view.VTextualView;
 
@@ -111,6 +128,14 @@ public class VTerminalController implements VController {
     commandMap.put("save", this::parseSaveImage);
     commandMap.put("saveall", this::parseSaveAll);
     commandMap.put("apply", this::parseApply);
+    commandMap.put("stream", this::parseStream);
+    commandMap.put("applyproj", this::parseApplyProject);
+    commandMap.put("crop", this::parseCrop);
+    commandMap.put("flip", this::parseFlip);
+    commandMap.put("rotate", this::parseRotate);
+    commandMap.put("transpose", this::parseTranspose);
+    commandMap.put("transform", this::parseTransform);
+    commandMap.put("resize", this::parseResize);
     commandMap.put("workon", this::parseSetCurrent);
     commandMap.put("visibility", this::parseSetVisibilty);
   }
@@ -260,13 +285,21 @@ public class VTerminalController implements VController {
         List.of("load", "loadproj", "save", "saveall", "workon",
             "create", "remove", "apply", "grayscale",
             "sepia", "blur", "sharpen", "copy",
-            "visibility", "on", "off"));
+            "visibility", "on", "off", "crop",
+            "flip", "rotate", "transpose", "transform",
+            "scale", "shear", "nearest", "bilinear", "bicubic", "resize",
+            "area", "lanczos3", "ascii", "binary", "raw", "lazy", "stream",
+            "applyproj"));
     return keyWords.contains(layerName);
   }
 
   /**
    * Creates a parsing action for applying an operation to a layer.
    *
+   * <p>The operation name may optionally be followed on the same line by a region
+   * given as x, y, width and height, in which case the operation is only applied
+   * within that region of the layer</p>
+   *
    * @param scanner the scanner supplying the commands
    * @return a parsing action for applying the selected operation
    * @throws IllegalArgumentException if the scanner is null
@@ -278,6 +311,7 @@ public class VTerminalController implements VController {
     }
     String opType = scanner.next();
     VImageContentOperation op;
+
     switch (opType) {
       case "sepia":
         op = VImageFilters.sepiaColorFilter();
@@ -294,9 +328,29 @@ public class VTerminalController implements VController {
       default:
         return invalidInputAction();
     }
+
+    Scanner line = this.restOfLine(scanner);
+
+    if (line.hasNext()) {
+      try {
+        int x = readNextInt(line);
+        int y = readNextInt(line);
+        int width = readNextInt(line);
+        int height = readNextInt(line);
+        op = new VRegionContentOperation(op, new VPixelCoordinate(y, x), width, height);
+      } catch (IllegalArgumentException e) {
+        return errorAction("Error: Invalid region for " + opType);
+      }
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
+    }
+
+    VImageContentOperation finalOp = op;
     return (image, view) -> {
       try {
-        image.apply(op, image.getFocusLayerIndex());
+        image.apply(finalOp, image.getFocusLayerIndex());
         view.renderMessage("Applied " + opType + ".");
       } catch (IllegalArgumentException e) {
         view.renderMessage("Error: Could not modify this layer");
@@ -304,6 +358,388 @@ public class VTerminalController implements VController {
     };
   }
 
+  /**
+   * Creates a parsing action for streaming a ppm file through a sequence of filters into
+   * another ppm file, without loading the image into a layer.
+   *
+   * <p>The names of the input and output files may be followed on the same line by the
+   * encoding of the output file and then by the names of the filters to apply, in order. The
+   * image is processed a few rows at a time, so images too large to be loaded can still be
+   * filtered</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for streaming the image through the filters
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseStream(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+
+    try {
+      String sourceName = readNextString(scanner);
+      String destinationName = readNextString(scanner);
+      Path sourcePath = Path.of(sourceName).toAbsolutePath();
+
+      // The result is an ASCII file unless asked otherwise, as with save
+      Scanner line = this.restOfLine(scanner);
+      PPMEncoding encoding = PPMEncoding.ASCII;
+
+      if (line.hasNext("ascii|binary")) {
+        encoding = PPMEncoding.valueOf(line.next().toUpperCase(Locale.ROOT));
+      }
+
+      PPMImageManager destination = new PPMImageManager(
+          Path.of(destinationName).toAbsolutePath(), encoding);
+      VStreamingPipeline pipeline = new VStreamingPipeline(this.readFilters(line));
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
+
+      return (image, view) -> {
+        try {
+          view.renderMessage("Streaming " + sourceName + " to " + destinationName);
+          destination.saveStreamed(sourcePath, pipeline, VProgress.none());
+          view.renderMessage("Streaming complete");
+        } catch (ImageExtractionException e) {
+          view.renderMessage("Error: Failed to read image \"" + sourceName + "\". "
+              + e.getMessage());
+        } catch (ImageSavingException e) {
+          view.renderMessage("Error: Failed to save image with name " + destinationName);
+        }
+      };
+    } catch (IllegalArgumentException exception) {
+      return errorAction("Error: " + exception.getMessage());
+    }
+  }
+
+  /**
+   * Creates a parsing action for applying a sequence of filters to every layer of a saved
+   * project and saving the result as a directory, without loading the project.
+   *
+   * <p>The project, which is either a directory or a single project file, is followed on the
+   * same line by the directory to save to, the format of its files (which may be followed by
+   * the encoding of ppm files as with saveall) and the names of the filters to apply, in
+   * order. The layers are processed one at a time, so projects too large to be loaded can
+   * still be filtered, and the current project is not changed</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for filtering the layers of the project
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseApplyProject(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+
+    try {
+      String projectName = readNextString(scanner);
+      String destinationName = readNextString(scanner);
+      Path projectPath = Path.of(projectName).toAbsolutePath();
+
+      Scanner line = this.restOfLine(scanner);
+      VLayeredImageDiskSaver saver = this.directorySaver(line,
+          Path.of(destinationName).toAbsolutePath());
+      VImageContentOperation operation = new VCompositeContentOperation(
+          this.readFilters(line));
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
+
+      // Layers are only decoded once their turn comes to be processed
+      VLayeredImageProvider loader = VImageManagers.layeredProviderFor(projectPath, true);
+
+      return (image, view) -> {
+        try {
+          view.renderMessage("Applying filters to " + projectName);
+          saver.saveImage(loader.extractLayeredImage(), operation, VProgress.none());
+          view.renderMessage("Saved filtered project to " + destinationName);
+        } catch (ImageExtractionException e) {
+          view.renderMessage("Error: Failed to extract image from " + projectPath.toString());
+        } catch (ImageSavingException e) {
+          view.renderMessage("Error: Failed to save filtered project. " + e.getMessage());
+        }
+      };
+    } catch (IllegalArgumentException exception) {
+      return errorAction("Error: " + exception.getMessage());
+    }
+  }
+
+  /**
+   * Reads the names of any number of filters that follow a command.
+   *
+   * <p>The filters are read up to the first word that does not name one, so the scanner must
+   * only hold the rest of the line of the command (see {@link #restOfLine(Scanner)}). Reading
+   * from the scanner of all commands would wait for another line of input after the last
+   * filter, or read the filters of the next command</p>
+   *
+   * @param scanner a scanner over the rest of the line of the command
+   * @return the filters named, in order
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VImageContentOperation[] readFilters(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    List<VImageContentOperation> operations = new ArrayList<>();
+
+    while (scanner.hasNext("sepia|grayscale|blur|sharpen")) {
+      switch (scanner.next()) {
+        case "sepia":
+          operations.add(VImageFilters.sepiaColorFilter());
+          break;
+        case "grayscale":
+          operations.add(VImageFilters.grayscaleColorFilter());
+          break;
+        case "blur":
+          operations.add(VImageFilters.blurFilter());
+          break;
+        default:
+          operations.add(VImageFilters.sharpenFilter());
+          break;
+      }
+    }
+    return operations.toArray(new VImageContentOperation[0]);
+  }
+
+  /**
+   * Creates a parsing action for cropping the current layer to a region given as
+   * x, y, width and height.
+   *
+   * <p>As with any operation that changes the size of a layer, the crop only succeeds
+   * if the current layer is the only layer in the image</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for cropping the current layer
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseCrop(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    VImageContentOperation op;
+
+    try {
+      int x = readNextInt(scanner);
+      int y = readNextInt(scanner);
+      int width = readNextInt(scanner);
+      int height = readNextInt(scanner);
+      op = new VCropOperation(new VPixelCoordinate(y, x), width, height);
+    } catch (IllegalArgumentException e) {
+      return invalidInputAction();
+    }
+
+    return (image, view) -> {
+      try {
+        image.apply(op, image.getFocusLayerIndex());
+        view.renderMessage("Cropped layer.");
+      } catch (IllegalArgumentException e) {
+        view.renderMessage("Error: Could not crop this layer");
+      }
+    };
+  }
+
+  /**
+   * Creates a parsing action for flipping the current layer either
+   * horizontally or vertically.
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for flipping the current layer
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseFlip(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    if (!scanner.hasNext()) {
+      return invalidInputAction();
+    }
+
+    String direction = scanner.next();
+    switch (direction) {
+      case "horizontal":
+        return orientAction(VOrientation.FLIP_HORIZONTAL, "Flipped layer horizontally.");
+      case "vertical":
+        return orientAction(VOrientation.FLIP_VERTICAL, "Flipped layer vertically.");
+      default:
+        return invalidInputAction();
+    }
+  }
+
+  /**
+   * Creates a parsing action for rotating the current layer clockwise
+   * by 90, 180 or 270 degrees.
+   *
+   * <p>Rotating by 90 or 270 degrees swaps the width and height of the layer, so
+   * it only succeeds if the current layer is the only layer in the image</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for rotating the current layer
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseRotate(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    if (!scanner.hasNext()) {
+      return invalidInputAction();
+    }
+
+    String degrees = scanner.next();
+    switch (degrees) {
+      case "90":
+        return orientAction(VOrientation.ROTATE_90, "Rotated layer by 90 degrees.");
+      case "180":
+        return orientAction(VOrientation.ROTATE_180, "Rotated layer by 180 degrees.");
+      case "270":
+        return orientAction(VOrientation.ROTATE_270, "Rotated layer by 270 degrees.");
+      default:
+        return invalidInputAction();
+    }
+  }
+
+  /**
+   * Creates a parsing action for transposing the current layer.
+   *
+   * <p>Transposing swaps the width and height of the layer, so it only
+   * succeeds if the current layer is the only layer in the image</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for transposing the current layer
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseTranspose(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    return orientAction(VOrientation.TRANSPOSE, "Transposed layer.");
+  }
+
+  /**
+   * Produces an action which orients the current layer in the given way.
+   *
+   * @param orientation how the current layer should be oriented
+   * @param message     the message displayed if the layer was oriented
+   * @return a parsing action for orienting the current layer
+   */
+  private static VParseAction orientAction(VOrientation orientation, String message) {
+    VImageContentOperation op = new VOrientationOperation(orientation);
+
+    return (image, view) -> {
+      try {
+        image.apply(op, image.getFocusLayerIndex());
+        view.renderMessage(message);
+      } catch (IllegalArgumentException e) {
+        view.renderMessage("Error: Could not orient this layer");
+      }
+    };
+  }
+
+  /**
+   * Creates a parsing action for rotating by an arbitrary angle, scaling or shearing
+   * every layer in the image.
+   *
+   * <p>The transform is one of {@code rotate degrees}, {@code scale factor},
+   * {@code scale factorX factorY} or {@code shear amountX amountY}, optionally followed by
+   * the interpolation {@code nearest}, {@code bilinear} (the default) or {@code bicubic}, all
+   * on the same line. Since transforms usually change the size of the layers, they are
+   * applied to all layers together</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for transforming the image
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseTransform(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    if (!scanner.hasNext()) {
+      return invalidInputAction();
+    }
+
+    String kind = scanner.next();
+    Scanner line = this.restOfLine(scanner);
+    VAffineTransform transform;
+
+    try {
+      switch (kind) {
+        case "rotate":
+          transform = VAffineTransform.rotation(readNextDouble(line));
+          break;
+        case "scale":
+          double scaleX = readNextDouble(line);
+          double scaleY = line.hasNextDouble() ? readNextDouble(line) : scaleX;
+          transform = VAffineTransform.scale(scaleX, scaleY);
+          break;
+        case "shear":
+          double shearX = readNextDouble(line);
+          double shearY = readNextDouble(line);
+          transform = VAffineTransform.shear(shearX, shearY);
+          break;
+        default:
+          return invalidInputAction();
+      }
+    } catch (IllegalArgumentException e) {
+      return invalidInputAction();
+    }
+
+    VInterpolation interpolation = VInterpolation.BILINEAR;
+    if (line.hasNext("nearest|bilinear|bicubic")) {
+      interpolation = VInterpolation.valueOf(line.next().toUpperCase(Locale.ROOT));
+    }
+
+    if (line.hasNext()) {
+      return invalidInputAction();
+    }
+
+    VImageContentOperation op;
+    try {
+      op = new VAffineWarp(transform, interpolation);
+    } catch (IllegalArgumentException e) {
+      return errorAction("Error: Cannot " + kind + " by those amounts");
+    }
+
+    return (image, view) -> {
+      try {
+        image.applyToAll(op);
+        view.renderMessage("Transformed image.");
+      } catch (IllegalArgumentException e) {
+        view.renderMessage("Error: Could not transform this image");
+      }
+    };
+  }
+
+  /**
+   * Creates a parsing action for resizing every layer in the image to a given width
+   * and height.
+   *
+   * <p>The size may optionally be followed on the same line by the filter {@code area},
+   * {@code bilinear}, {@code bicubic} or {@code lanczos3}. Without a filter, directions that
+   * shrink are area-averaged and directions that grow are interpolated bicubically</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a parsing action for resizing the image
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private VParseAction parseResize(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    VImageContentOperation op;
+
+    try {
+      int width = readNextInt(scanner);
+      int height = readNextInt(scanner);
+      Scanner line = this.restOfLine(scanner);
+
+      if (line.hasNext("area|bilinear|bicubic|lanczos3")) {
+        VResizeFilter filter = VResizeFilter.valueOf(line.next().toUpperCase(Locale.ROOT));
+        op = new VResizeOperation(width, height, filter);
+      } else {
+        op = new VResizeOperation(width, height);
+      }
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
+    } catch (IllegalArgumentException e) {
+      return invalidInputAction();
+    }
+
+    return (image, view) -> {
+      try {
+        image.applyToAll(op);
+        view.renderMessage("Resized image.");
+      } catch (IllegalArgumentException e) {
+        view.renderMessage("Error: Could not resize this image");
+      }
+    };
+  }
+
   /**
    * Creates a parsing action for copying a layer.
    *
@@ -399,8 +835,21 @@ public class VTerminalController implements VController {
       String projectName = readNextString(scanner);
       Path projectPath = Path.of(projectName).toAbsolutePath();
 
-      // Get the correct image saver for the given file path
-      VLayeredImageProvider loader = new VLayeredImageDiskProvider(projectPath);
+      // Layers are decoded as they are loaded unless asked to be decoded when first used
+      Scanner line = this.restOfLine(scanner);
+      boolean lazy = false;
+
+      if (line.hasNext("lazy")) {
+        line.next();
+        lazy = true;
+      }
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
+
+      // Get the correct image provider for the given file path
+      VLayeredImageProvider loader = VImageManagers.layeredProviderFor(projectPath, lazy);
 
       return (image, view) -> {
         try {
@@ -485,17 +934,30 @@ public class VTerminalController implements VController {
       String fileName = readNextString(scanner);
       Path filePath = Path.of(fileName).toAbsolutePath();
 
-      // Get the correct image saver for the given file path
-      VImageSaver saver = VImageManagers.diskSaverFor(filePath);
+      // Get the correct image saver for the given file path, where
+      // ppm files may be followed by the encoding to save them with
+      Scanner line = this.restOfLine(scanner);
+      VImageSaver saver;
+
+      if (line.hasNext("ascii|binary")) {
+        PPMEncoding encoding = PPMEncoding.valueOf(line.next().toUpperCase(Locale.ROOT));
+        saver = VImageManagers.diskSaverFor(filePath, encoding);
+      } else {
+        saver = VImageManagers.diskSaverFor(filePath);
+      }
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
 
       return (image, view) -> {
         try {
           VLayer layer = image.getFocusLayer()
-              .orElseThrow(() -> new IllegalArgumentException("No layer to save"));
+              .orElseThrow(() -> new IllegalArgumentException("No layer is in focus"));
           view.renderMessage("Saving layer \"" + layer.getName() + "\"");
           saver.saveImage(layer);
         } catch (IllegalArgumentException e) {
-          view.renderMessage("Error: No layer is in focus");
+          view.renderMessage("Error: " + e.getMessage());
         } catch (ImageSavingException e) {
           view.renderMessage("Error: Failed to save image with name " + fileName);
         }
@@ -518,22 +980,42 @@ public class VTerminalController implements VController {
     // Saves with respect to the directory the program
     // is executed from (unless the path is an absolute path)
     try {
-      // Extract the other two arguments, if they are present
+      // Extract the name of the project, which is either a single
+      // project file or a directory followed by the format of its files
       String multiLayerFileName = this.readNextString(scanner);
       String newImageName = Path.of(multiLayerFileName).getFileName().toString();
-      String internalFileExtension = this.readNextString(scanner);
-
-      // Create the appropriate path and save the image
       Path filePath = Path.of(multiLayerFileName).toAbsolutePath();
-      VLayeredImageSaver saver = new VLayeredImageDiskSaver(internalFileExtension, filePath);
+      Scanner line = this.restOfLine(scanner);
+      VLayeredImageSaver saver;
+
+      if (FileUtils.extensionOf(multiLayerFileName).equals("vido")) {
+        // A single project file, whose layers are compressed unless asked otherwise
+        boolean compressed = true;
+
+        if (line.hasNext("raw")) {
+          line.next();
+          compressed = false;
+        }
+
+        newImageName = newImageName.substring(0, newImageName.length() - ".vido".length());
+        saver = new VProjectFileManager(filePath, compressed);
+      } else {
+        saver = this.directorySaver(line, filePath);
+      }
+
+      if (line.hasNext()) {
+        return invalidInputAction();
+      }
+
+      String projectName = newImageName;
 
       return (image, view) -> {
         view.renderMessage("Saving multi-layered image " + multiLayerFileName);
-        image.setName(newImageName);
+        image.setName(projectName);
 
         try {
           saver.saveImage(image);
-        } catch (ImageSavingException e) {
+        } catch (IllegalArgumentException | ImageSavingException e) {
           view.renderMessage("Failed to save multi-layered image. " + e.getMessage());
         }
       };
@@ -542,6 +1024,31 @@ public class VTerminalController implements VController {
     }
   }
 
+  /**
+   * Reads the format of the files of a project saved as a directory, along with how ppm files
+   * are encoded if given, and creates a saver for the project.
+   *
+   * @param scanner  a scanner over the arguments of the command that follow the directory
+   * @param filePath the absolute path to the directory of the project
+   * @return a saver which saves each layer of a project as a file in the directory
+   * @throws IllegalArgumentException if any arguments are {@code null} or if the format of
+   *                                  the files is missing
+   */
+  private VLayeredImageDiskSaver directorySaver(Scanner scanner, Path filePath)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner, filePath);
+    String internalFileExtension = this.readNextString(scanner);
+
+    // Layers saved as ppm files are binary files unless asked otherwise
+    PPMEncoding encoding = PPMEncoding.BINARY;
+
+    if (scanner.hasNext("ascii|binary")) {
+      encoding = PPMEncoding.valueOf(scanner.next().toUpperCase(Locale.ROOT));
+    }
+
+    return new VLayeredImageDiskSaver(internalFileExtension, filePath, encoding);
+  }
+
   /**
    * Creates a new parse action to set a current layer as the focus layer.
    *
@@ -572,6 +1079,28 @@ public class VTerminalController implements VController {
     }
   }
 
+  /**
+   * Reads the next decimal number from the given scanner.
+   *
+   * @param scanner the scanner to read from
+   * @return the next number
+   * @throws IllegalArgumentException if the scanner is null or if the next
+   *                                  input is not a number
+   */
+  private double readNextDouble(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    if (!scanner.hasNext()) {
+      throw new IllegalArgumentException("Ran out of input");
+    }
+
+    try {
+      return scanner.nextDouble();
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Could not extract another number when"
+          + " one was expected");
+    }
+  }
+
   /**
    * Reads the next integer from the scanner if such an integer exists and throws an exception
    * otherwise.
@@ -607,4 +1136,22 @@ public class VTerminalController implements VController {
     }
     return scanner.next();
   }
+
+  /**
+   * Reads the rest of the current line of commands, so that the optional arguments at the end
+   * of a command can be read from it.
+   *
+   * <p>Looking ahead in the scanner for an optional argument would wait for the next line of
+   * input when the user is typing commands, and would read the start of the next command as
+   * the argument when a script is running. The arguments of a command must therefore be given
+   * on a single line</p>
+   *
+   * @param scanner the scanner supplying the commands
+   * @return a scanner over the rest of the current line, which is empty if there is none
+   * @throws IllegalArgumentException if the scanner is null
+   */
+  private Scanner restOfLine(Scanner scanner) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(scanner);
+    return new Scanner(scanner.hasNextLine() ? scanner.nextLine() : "");
+  }
 }
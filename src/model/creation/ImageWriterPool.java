@@ -0,0 +1,98 @@
+package model.creation;
+
+import java.awt.image.RenderedImage;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import model.misc.ObjectsExtension;
+import model.persistence.ImageSavingException;
+
+/**
+ * Keeps the {@link ImageWriter}s used to save images through ImageIO so that they can be used
+ * again by later saves.
+ *
+ * <p>{@link ImageIO#write(RenderedImage, String, java.io.File)} looks up and creates a new
+ * writer for every image it saves, which is a noticeable part of the cost of saving many small
+ * images, as when every layer of a project is saved. A writer taken from the pool must be
+ * given back once the image is written, after which it is reset and handed out to the next
+ * save of the same format. Writers are never shared by two saves at once, so saves on
+ * different threads each take their own writer.</p>
+ */
+final class ImageWriterPool {
+
+  // Writers not currently in use, by the name of the format they write
+  private static final Map<String, Queue<ImageWriter>> IDLE = new ConcurrentHashMap<>();
+
+  // The most writers kept for each format, enough for one save on each processor
+  private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+  private ImageWriterPool() {
+    // Prevent construction
+  }
+
+  /**
+   * Takes a writer which can save the given image in the given format out of the pool, or
+   * creates one if the pool holds none.
+   *
+   * @param format the name of the format, such as {@code "jpg"}
+   * @param image  the image to be written
+   * @return a writer for the format which is not used by anything else
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   * @throws ImageSavingException     if ImageIO has no writer which can save the image in the
+   *                                  format
+   */
+  static ImageWriter acquire(String format, RenderedImage image)
+      throws IllegalArgumentException, ImageSavingException {
+    ObjectsExtension.requireNonnull(format, image);
+
+    ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+    Queue<ImageWriter> idle = IDLE.get(format);
+
+    if (idle != null) {
+      ImageWriter writer = idle.poll();
+
+      if (writer != null && writer.getOriginatingProvider().canEncodeImage(type)) {
+        return writer;
+      }
+
+      if (writer != null) {
+        idle.offer(writer);
+      }
+    }
+
+    // The same writer ImageIO.write would have chosen for the image
+    Iterator<ImageWriter> writers = ImageIO.getImageWriters(type, format);
+
+    if (!writers.hasNext()) {
+      throw new ImageSavingException("No writer can save images in the format " + format);
+    }
+    return writers.next();
+  }
+
+  /**
+   * Gives a writer back to the pool once it has finished writing an image. Writers beyond
+   * the number the pool keeps are disposed of.
+   *
+   * @param format the name of the format the writer was taken for
+   * @param writer the writer
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   */
+  static void release(String format, ImageWriter writer) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(format, writer);
+
+    writer.reset();
+    Queue<ImageWriter> idle = IDLE.computeIfAbsent(format, name -> new ConcurrentLinkedQueue<>());
+
+    // The size of the queue is only a rough guide when writers are released at the same time
+    if (idle.size() < MAX_IDLE) {
+      idle.offer(writer);
+    } else {
+      writer.dispose();
+    }
+  }
+}
@@ -0,0 +1,437 @@
+package model.creation;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import model.misc.ObjectsExtension;
+import model.persistence.ImageSavingException;
+
+/**
+ * Encodes images as png files using every processor, in the manner of pigz.
+ *
+ * <p>The rows of the image are split into blocks of around {@value #BLOCK_SIZE} bytes of
+ * filtered data. Each block is filtered and compressed on its own, in parallel with the other
+ * blocks of a batch, and the blocks are then written to the file in order. Every row is
+ * filtered with whichever of the five png filters gives the smallest sum of absolute
+ * differences, as libpng does by default.
+ *
+ * <p>The compressed blocks join up into a single zlib stream: each block but the last ends
+ * with a sync flush, which pads it to a whole byte without ending the stream, and each block
+ * but the first is compressed with the last 32 KiB of the block before it as its dictionary,
+ * so matches reaching back into the previous block are still found. The result is a valid png
+ * file that is only slightly larger than one compressed as a single stream. Each block is
+ * written as its own {@code IDAT} chunk.</p>
+ */
+final class PNGParallelEncoder {
+
+  // The number of bytes of filtered rows compressed by each task
+  private static final int BLOCK_SIZE = 1 << 18;
+
+  // The size of the window of a deflate stream, which is the most a match can reach back
+  private static final int WINDOW_SIZE = 1 << 15;
+
+  // The bytes every png file begins with
+  private static final byte[] SIGNATURE = {
+      (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+  };
+
+  // Truecolor pixels with 8-bit samples, the only kind of png file written
+  private static final int BIT_DEPTH = 8;
+  private static final int COLOR_TYPE_RGB = 2;
+  private static final int BYTES_PER_PIXEL = 3;
+
+  // The png filter types, one of which begins each filtered row
+  private static final int FILTER_NONE = 0;
+  private static final int FILTER_SUB = 1;
+  private static final int FILTER_UP = 2;
+  private static final int FILTER_AVERAGE = 3;
+  private static final int FILTER_PAETH = 4;
+
+  private PNGParallelEncoder() {
+    // Prevent construction
+  }
+
+  /**
+   * Encodes an image as a png file, replacing the file if it exists.
+   *
+   * @param filepath the path to the file
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param pixels   the packed pixels of the image, row by row
+   * @param level    the compression level, from 0 (no compression) to 9 (best compression)
+   * @throws IllegalArgumentException if any arguments are {@code null}; if either width or
+   *                                  height is not positive; if there are too few pixels; or
+   *                                  if the level is not between 0 and 9
+   * @throws ImageSavingException     if the image is too wide to encode or if the file could
+   *                                  not be written
+   */
+  static void encode(Path filepath, int width, int height, int[] pixels, int level)
+      throws IllegalArgumentException, ImageSavingException {
+    ObjectsExtension.requireNonnull(filepath, pixels);
+
+    if (width <= 0 || height <= 0 || pixels.length < (long) width * height) {
+      throw new IllegalArgumentException("The pixels do not make up a " + width + "x" + height
+          + " image");
+    }
+
+    if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("The compression level of a png file must be between "
+          + Deflater.NO_COMPRESSION + " and " + Deflater.BEST_COMPRESSION);
+    }
+
+    long rowBytes = 1 + (long) BYTES_PER_PIXEL * width;
+
+    if (rowBytes > Integer.MAX_VALUE - 8) {
+      throw new ImageSavingException("The image is too wide to be saved as a png file");
+    }
+
+    int rowsPerBlock = (int) Math.max(1, Math.min(height, BLOCK_SIZE / rowBytes));
+    int blocks = (height + rowsPerBlock - 1) / rowsPerBlock;
+    int batchSize = Math.max(1, Math.min(blocks, Runtime.getRuntime().availableProcessors()));
+    Adler32 checksum = new Adler32();
+
+    try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(filepath),
+        BLOCK_SIZE)) {
+      output.write(SIGNATURE);
+      writeChunk(output, "IHDR", header(width, height));
+
+      // The end of the filtered rows of the block before the current batch
+      byte[] dictionary = null;
+
+      for (int firstBlock = 0; firstBlock < blocks; firstBlock += batchSize) {
+        int batchStart = firstBlock;
+        int numBlocks = Math.min(batchSize, blocks - firstBlock);
+        byte[][] filtered = new byte[numBlocks][];
+        byte[][] compressed = new byte[numBlocks][];
+
+        IntStream.range(0, numBlocks).parallel().forEach(slot -> {
+          int firstRow = (batchStart + slot) * rowsPerBlock;
+          int lastRow = Math.min(height, firstRow + rowsPerBlock);
+          filtered[slot] = filterRows(pixels, width, firstRow, lastRow, level);
+        });
+
+        byte[] previous = dictionary;
+
+        IntStream.range(0, numBlocks).parallel().forEach(slot -> {
+          byte[] preceding = slot == 0 ? previous : filtered[slot - 1];
+          boolean last = batchStart + slot == blocks - 1;
+          compressed[slot] = deflate(filtered[slot], preceding, level, last);
+        });
+
+        for (int slot = 0; slot < numBlocks; slot += 1) {
+          checksum.update(filtered[slot]);
+          boolean first = batchStart + slot == 0;
+          boolean last = batchStart + slot == blocks - 1;
+          writeChunk(output, "IDAT", zlibData(compressed[slot], first, last, level,
+              (int) checksum.getValue()));
+        }
+
+        dictionary = tailOf(filtered[numBlocks - 1]);
+      }
+
+      writeChunk(output, "IEND", new byte[0]);
+    }
+    catch (IOException e) {
+      throw new ImageSavingException("Could not save individual image");
+    }
+  }
+
+  /**
+   * Produces the data of the {@code IHDR} chunk of a png file.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @return the data of the chunk
+   */
+  private static byte[] header(int width, int height) {
+    byte[] data = new byte[13];
+    putInt(data, 0, width);
+    putInt(data, 4, height);
+    data[8] = BIT_DEPTH;
+    data[9] = COLOR_TYPE_RGB;
+    // Compression, filter and interlace methods are all 0
+    return data;
+  }
+
+  /**
+   * Filters the given rows of an image, each row of the result being its filter type followed
+   * by its filtered samples.
+   *
+   * <p>Each row is filtered with the filter that gives the smallest sum of the absolute values
+   * of its filtered samples, taken as signed bytes. Without compression, filtering gains
+   * nothing and every row is left unfiltered</p>
+   *
+   * @param pixels   the packed pixels of the image, row by row
+   * @param width    the width of the image
+   * @param firstRow the index of the first row to filter
+   * @param lastRow  the index after that of the last row to filter
+   * @param level    the compression level the rows will be compressed with
+   * @return the filtered rows
+   */
+  private static byte[] filterRows(int[] pixels, int width, int firstRow, int lastRow,
+      int level) {
+    int samples = BYTES_PER_PIXEL * width;
+    byte[] result = new byte[(lastRow - firstRow) * (samples + 1)];
+    byte[] current = new byte[samples];
+    byte[] prior = new byte[samples];
+    byte[][] candidates = new byte[FILTER_PAETH + 1][samples];
+
+    if (firstRow > 0) {
+      unpackRow(pixels, width, firstRow - 1, prior);
+    }
+
+    int position = 0;
+
+    for (int row = firstRow; row < lastRow; row += 1) {
+      unpackRow(pixels, width, row, current);
+      int best = FILTER_NONE;
+
+      if (level != Deflater.NO_COMPRESSION) {
+        long[] sums = filterAll(current, prior, candidates);
+
+        for (int filter = FILTER_SUB; filter <= FILTER_PAETH; filter += 1) {
+          if (sums[filter] < sums[best]) {
+            best = filter;
+          }
+        }
+      }
+
+      result[position] = (byte) best;
+      System.arraycopy(best == FILTER_NONE ? current : candidates[best], 0, result,
+          position + 1, samples);
+      position += samples + 1;
+
+      byte[] swap = prior;
+      prior = current;
+      current = swap;
+    }
+    return result;
+  }
+
+  /**
+   * Unpacks the samples of a row of an image into red, green and blue bytes.
+   *
+   * @param pixels      the packed pixels of the image, row by row
+   * @param width       the width of the image
+   * @param row         the index of the row
+   * @param destination receives the samples of the row
+   */
+  private static void unpackRow(int[] pixels, int width, int row, byte[] destination) {
+    int index = row * width;
+    int sample = 0;
+
+    for (int j = 0; j < width; j += 1) {
+      int color = pixels[index];
+      destination[sample] = (byte) (color >>> 16);
+      destination[sample + 1] = (byte) (color >>> 8);
+      destination[sample + 2] = (byte) color;
+      index += 1;
+      sample += BYTES_PER_PIXEL;
+    }
+  }
+
+  /**
+   * Filters a row of samples with each of the png filters, in a single pass over the row.
+   *
+   * @param current    the samples of the row
+   * @param prior      the samples of the row above, which are all 0 for the first row
+   * @param candidates receives the samples filtered with each filter, by filter type
+   * @return the sum of the absolute values of the samples filtered with each filter, taken as
+   *         signed bytes, by filter type
+   */
+  private static long[] filterAll(byte[] current, byte[] prior, byte[][] candidates) {
+    byte[] sub = candidates[FILTER_SUB];
+    byte[] up = candidates[FILTER_UP];
+    byte[] average = candidates[FILTER_AVERAGE];
+    byte[] paeth = candidates[FILTER_PAETH];
+    long sumNone = 0;
+    long sumSub = 0;
+    long sumUp = 0;
+    long sumAverage = 0;
+    long sumPaeth = 0;
+
+    for (int i = 0; i < current.length; i += 1) {
+      int x = current[i] & 0xFF;
+      int b = prior[i] & 0xFF;
+      int a = 0;
+      int c = 0;
+
+      if (i >= BYTES_PER_PIXEL) {
+        a = current[i - BYTES_PER_PIXEL] & 0xFF;
+        c = prior[i - BYTES_PER_PIXEL] & 0xFF;
+      }
+
+      byte none = (byte) x;
+      sub[i] = (byte) (x - a);
+      up[i] = (byte) (x - b);
+      average[i] = (byte) (x - ((a + b) >>> 1));
+      paeth[i] = (byte) (x - paeth(a, b, c));
+
+      sumNone += Math.abs(none);
+      sumSub += Math.abs(sub[i]);
+      sumUp += Math.abs(up[i]);
+      sumAverage += Math.abs(average[i]);
+      sumPaeth += Math.abs(paeth[i]);
+    }
+    return new long[] {sumNone, sumSub, sumUp, sumAverage, sumPaeth};
+  }
+
+  /**
+   * Predicts a sample from its neighbors with the Paeth predictor of the png format.
+   *
+   * @param a the sample to the left
+   * @param b the sample above
+   * @param c the sample above and to the left
+   * @return whichever neighbor is closest to {@code a + b - c}, preferring {@code a} then
+   *         {@code b} in a tie
+   */
+  private static int paeth(int a, int b, int c) {
+    int estimate = a + b - c;
+    int distanceA = Math.abs(estimate - a);
+    int distanceB = Math.abs(estimate - b);
+    int distanceC = Math.abs(estimate - c);
+
+    if (distanceA <= distanceB && distanceA <= distanceC) {
+      return a;
+    }
+    return distanceB <= distanceC ? b : c;
+  }
+
+  /**
+   * Compresses a block of filtered rows as part of a raw deflate stream.
+   *
+   * @param data       the filtered rows
+   * @param dictionary the data before the block in the stream, of which at most the last
+   *                   32 KiB are used, or {@code null} if the block begins the stream
+   * @param level      the compression level
+   * @param last       whether the block ends the stream
+   * @return the compressed block, which ends on a byte boundary
+   */
+  private static byte[] deflate(byte[] data, byte[] dictionary, int level, boolean last) {
+    Deflater deflater = new Deflater(level, true);
+
+    try {
+      if (dictionary != null) {
+        int length = Math.min(dictionary.length, WINDOW_SIZE);
+        deflater.setDictionary(dictionary, dictionary.length - length, length);
+      }
+
+      deflater.setInput(data);
+
+      if (last) {
+        deflater.finish();
+      }
+
+      // Incompressible data grows by a few bytes for every stored block of up to 64 KiB
+      byte[] output = new byte[data.length + data.length / 1024 + 64];
+      int length = 0;
+
+      while (true) {
+        if (length == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+
+        int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+        length += deflater.deflate(output, length, output.length - length, flush);
+
+        // A flush is complete once it leaves room in the output
+        if (last ? deflater.finished() : length < output.length && deflater.needsInput()) {
+          break;
+        }
+      }
+      return Arrays.copyOf(output, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Produces the last 32 KiB of a block of filtered rows, to be the dictionary of the next
+   * block.
+   *
+   * @param data the filtered rows
+   * @return at most the last 32 KiB of the rows
+   */
+  private static byte[] tailOf(byte[] data) {
+    return Arrays.copyOfRange(data, Math.max(0, data.length - WINDOW_SIZE), data.length);
+  }
+
+  /**
+   * Wraps a compressed block in the parts of a zlib stream that surround it.
+   *
+   * @param block    the compressed block
+   * @param first    whether the block begins the stream, in which case it is preceded by the
+   *                 zlib header
+   * @param last     whether the block ends the stream, in which case it is followed by the
+   *                 checksum of the uncompressed data
+   * @param level    the compression level
+   * @param checksum the Adler-32 checksum of all of the data of the stream, used if the block
+   *                 ends the stream
+   * @return the data of the {@code IDAT} chunk holding the block
+   */
+  private static byte[] zlibData(byte[] block, boolean first, boolean last, int level,
+      int checksum) {
+    int start = first ? 2 : 0;
+    byte[] data = new byte[start + block.length + (last ? 4 : 0)];
+
+    if (first) {
+      // A 32 KiB window, along with a hint of how hard the data was compressed which
+      // keeps the header a multiple of 31 as zlib requires
+      data[0] = 0x78;
+      data[1] = (byte) (level < 2 ? 0x01 : level < 6 ? 0x5E : level == 6 ? 0x9C : 0xDA);
+    }
+
+    System.arraycopy(block, 0, data, start, block.length);
+
+    if (last) {
+      putInt(data, start + block.length, checksum);
+    }
+    return data;
+  }
+
+  /**
+   * Writes a chunk of a png file: its length, type, data and checksum.
+   *
+   * @param output the file
+   * @param type   the four letter type of the chunk
+   * @param data   the data of the chunk
+   * @throws IOException if the file could not be written
+   */
+  private static void writeChunk(OutputStream output, String type, byte[] data)
+      throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    byte[] number = new byte[4];
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data);
+
+    putInt(number, 0, data.length);
+    output.write(number);
+    output.write(typeBytes);
+    output.write(data);
+    putInt(number, 0, (int) crc.getValue());
+    output.write(number);
+  }
+
+  /**
+   * Stores a number in a buffer as four bytes, most significant first.
+   *
+   * @param buffer   the buffer
+   * @param position the index in the buffer of the first byte
+   * @param value    the number
+   */
+  private static void putInt(byte[] buffer, int position, int value) {
+    buffer[position] = (byte) (value >>> 24);
+    buffer[position + 1] = (byte) (value >>> 16);
+    buffer[position + 2] = (byte) (value >>> 8);
+    buffer[position + 3] = (byte) value;
+  }
+}
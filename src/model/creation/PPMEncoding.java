@@ -0,0 +1,36 @@
+package model.creation;
+
+/**
+ * The ways in which the samples of a PPM image can be stored in a file.
+ *
+ * <p>{@link #ASCII} files (magic number {@code P3}) write each sample as decimal text and can be
+ * read and edited by hand. {@link #BINARY} files (magic number {@code P6}) write each sample as
+ * one byte, or two bytes most significant first when the maximum value of the file exceeds
+ * 255. Binary files are around a quarter of the size of their ASCII equivalents and are far
+ * faster to read and write, which makes them the better choice for files that only Vido reads,
+ * such as the layers of a saved project.</p>
+ */
+public enum PPMEncoding {
+  ASCII("P3"),
+  BINARY("P6");
+
+  private final String magicNumber;
+
+  /**
+   * Construct a new encoding identified by the given magic number.
+   *
+   * @param magicNumber the token that begins files with this encoding
+   */
+  PPMEncoding(String magicNumber) {
+    this.magicNumber = magicNumber;
+  }
+
+  /**
+   * Retrieves the token that begins files with this encoding.
+   *
+   * @return the magic number of this encoding
+   */
+  public String getMagicNumber() {
+    return this.magicNumber;
+  }
+}
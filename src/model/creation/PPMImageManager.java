@@ -1,23 +1,30 @@
 package model.creation;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.Scanner;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
 import model.image.VImage;
-import model.image.VMutableImage;
-import model.image.VMutableImageImpl;
-import model.image.pixel.VPixel;
-import model.image.pixel.VPixelCoordinate;
-import model.image.pixel.VRGBPixel;
+import model.image.VPackedImages;
+import model.image.pixel.PackedRGB;
 import model.misc.FileUtils;
 import model.misc.ObjectsExtension;
 //import model.misc.VImageFormat;
 import model.persistence.ImageSavingException;
 import model.persistence.VImageSaver;
+import model.processing.VProgress;
+import model.processing.VStreamingPipeline;
 
 /**
  * Produces image data from files on disk with the ".ppm" extension.
@@ -25,17 +32,39 @@ import model.persistence.VImageSaver;
  * <p>An image file can be stored on disk as with the ".ppm" file
  * extension. This class converts such files into {@link VImage} objects
  * understood by the application. The {@link PPMImageManager} class also
- * supports saving ppm files to disk.</p>
+ * supports saving ppm files to disk.
+ *
+ * <p>Both ASCII ({@code P3}) and binary ({@code P6}) files are read, whichever the file turns
+ * out to be, with maximum values of up to 65535. Samples are scaled from the maximum value of
+ * the file to the range [0, 255] used by Vido. Files are saved with the {@link PPMEncoding}
+ * and maximum value given when the manager is constructed. The samples of binary files are
+ * read through a memory mapping of the file, straight into the storage of the image.</p>
  */
 public class PPMImageManager implements VImageProvider, VImageSaver {
   public static final String PPM_HEADER = "P3";
+  public static final String PPM_BINARY_HEADER = "P6";
   public static final int PPM_MAX_VALUE = 255;
 
+  // The largest maximum value a ppm file may have
+  private static final int PPM_LARGEST_MAX_VALUE = 65535;
+
+  // The most bytes of a binary ppm file mapped into memory at once
+  private static final long MAPPED_CHUNK_SIZE = 1 << 28;
+
+  // The smallest size of the samples of an ASCII ppm file worth decoding in parallel
+  private static final long PARALLEL_DECODE_SIZE = 1 << 22;
+
+  // The size of the buffer binary ppm files are written through
+  private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
   private final Path filepath;
+  private final PPMEncoding encoding;
+  private final int maxValue;
 
   /**
    * Construct a new image provider which extracts image data
-   * from the given file path.
+   * from the given file path. Images are saved as ASCII files
+   * with a maximum value of 255.
    *
    * @param filepath a file path to a file with the ".ppm" extension as either a relative or
    *                 absolute path
@@ -46,7 +75,41 @@ public class PPMImageManager implements VImageProvider, VImageSaver {
    *
    */
   public PPMImageManager(Path filepath) throws IllegalArgumentException {
-    ObjectsExtension.requireNonnull(filepath);
+    this(filepath, PPMEncoding.ASCII);
+  }
+
+  /**
+   * Construct a new image provider which extracts image data from the given file path and
+   * saves images with the given encoding and a maximum value of 255.
+   *
+   * @param filepath a file path to a file with the ".ppm" extension as either a relative or
+   *                 absolute path
+   * @param encoding how the samples of saved images are written
+   * @throws IllegalArgumentException if any arguments are {@code null}; if the path refers to
+   *                                  a directory; or if the given file path does not refer to
+   *                                  a PPM image (via its extension)
+   */
+  public PPMImageManager(Path filepath, PPMEncoding encoding) throws IllegalArgumentException {
+    this(filepath, encoding, PPM_MAX_VALUE);
+  }
+
+  /**
+   * Construct a new image provider which extracts image data from the given file path and
+   * saves images with the given encoding and maximum value. A maximum value above 255 saves
+   * 16-bit samples, each channel of the image being scaled up to the maximum value.
+   *
+   * @param filepath a file path to a file with the ".ppm" extension as either a relative or
+   *                 absolute path
+   * @param encoding how the samples of saved images are written
+   * @param maxValue the maximum value of the samples of saved images
+   * @throws IllegalArgumentException if any arguments are {@code null}; if the path refers to
+   *                                  a directory; if the given file path does not refer to a
+   *                                  PPM image (via its extension); or if the maximum value is
+   *                                  not between 1 and 65535
+   */
+  public PPMImageManager(Path filepath, PPMEncoding encoding, int maxValue)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filepath, encoding);
 
     if (Files.isDirectory(filepath)) {
       throw new IllegalArgumentException("File path must not be a directory to load a ppm image");
@@ -56,26 +119,14 @@ public class PPMImageManager implements VImageProvider, VImageSaver {
       throw new IllegalArgumentException("PPMImage saver can only save to PPM extensions");
     }
 
-    this.filepath = filepath.toAbsolutePath();
-  }
-
-  /**
-   * Ensures that the scanner has another string to analyze.
-   *
-   * <p>Call this method when you expect more strings to be
-   * able to be read by the scanner</p>
-   *
-   * @param scanner the scanner to test
-   * @throws IllegalArgumentException if {@code scanner} is {@code null}
-   * @throws ImageExtractionException if the scanner runs out of values. Invoking this method
-   *                                  implies that the caller expected the scanner to have more
-   *                                  values for image extraction.
-   */
-  private void ensureHasNext(Scanner scanner)
-      throws IllegalArgumentException, ImageExtractionException {
-    if (!ObjectsExtension.asNonnull(scanner).hasNext()) {
-      throw new ImageExtractionException("Unexpectedly ran out of values");
+    if (maxValue < 1 || maxValue > PPM_LARGEST_MAX_VALUE) {
+      throw new IllegalArgumentException("The maximum value of a ppm file must be between 1 and "
+          + PPM_LARGEST_MAX_VALUE);
     }
+
+    this.filepath = filepath.toAbsolutePath();
+    this.encoding = encoding;
+    this.maxValue = maxValue;
   }
 
   /**
@@ -88,140 +139,740 @@ public class PPMImageManager implements VImageProvider, VImageSaver {
    * @param maxValue the maximum value this channel could have
    * @throws ImageExtractionException if the channel is invalid
    */
-  private void ensureChannelBetween(int channel, int maxValue) throws ImageExtractionException {
+  static void ensureChannelBetween(int channel, int maxValue) throws ImageExtractionException {
     if (channel < 0 || channel > maxValue) {
       throw new ImageExtractionException("A channel value exceeds the maximum value"
           + " specified in the ppm file header");
     }
   }
 
+  /**
+   * Ensures that the size given in the header of a ppm file describes an image that can be
+   * held in memory.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @throws ImageExtractionException if either dimension is not positive or if the image has
+   *                                  too many pixels
+   */
+  private void ensureSizeValid(int width, int height) throws ImageExtractionException {
+    if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+      throw new ImageExtractionException("The ppm file " + filepath.toString()
+          + " has an invalid size");
+    }
+  }
+
+  /**
+   * Produces a table which scales each sample value of a file, from 0 to the file's maximum
+   * value, to the range [0, 255].
+   *
+   * @param filepath the path to the file
+   * @param maxValue the maximum value of the file
+   * @return the scaled value of each sample value
+   * @throws ImageExtractionException if the maximum value is not between 1 and 65535
+   */
+  static int[] scaleTableFor(Path filepath, int maxValue) throws ImageExtractionException {
+    if (maxValue < 1 || maxValue > PPM_LARGEST_MAX_VALUE) {
+      throw new ImageExtractionException("The ppm file " + filepath.toString()
+          + " has an invalid maximum value");
+    }
+
+    int[] table = new int[maxValue + 1];
+
+    for (int value = 0; value <= maxValue; value += 1) {
+      table[value] = (value * PPM_MAX_VALUE + maxValue / 2) / maxValue;
+    }
+    return table;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>ASCII files are read as a stream of bytes and split into tokens as they are read (see
+   * {@link PPMTokenizer}), so comments may appear anywhere in the file and only a small
+   * buffer of its text is held in memory. The samples of large ASCII files are instead decoded
+   * from a memory mapping of the file, many parts of the file at once (see
+   * {@link PPMParallelDecoder}), unless comments appear among them. The samples of binary
+   * files are read from a memory mapping of the file, rows in parallel. Either way, each row
+   * of pixels is written straight into the storage of the new image</p>
+   */
   @Override
   public VImage extractImage() throws ImageExtractionException {
-    Scanner sc;
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      PPMTokenizer tokens = new PPMTokenizer(Channels.newInputStream(channel));
 
-    try {
-      sc = new Scanner(new FileInputStream(filepath.toString()));
+      if (!tokens.hasNext()) {
+        throw new ImageExtractionException("The given ppm file is empty");
+      }
+
+      String magicNumber = tokens.nextWord();
+      boolean binary = magicNumber.equals(PPM_BINARY_HEADER);
+
+      if (!binary && !magicNumber.equals(PPM_HEADER)) {
+        throw new ImageExtractionException("Incorrect file format: PPM format expected");
+      }
+
+      // PPM:
+      //
+      // Width, Height
+      // max value
+      int width = tokens.nextInt();
+      int height = tokens.nextInt();
+      int maxValue = tokens.nextInt();
+      ensureSizeValid(width, height);
+      int[] scale = scaleTableFor(filepath, maxValue);
+
+      if (binary) {
+        // A single whitespace byte separates the header from the samples
+        if (!PPMTokenizer.isWhitespace(tokens.read())) {
+          throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+              + " is improperly formatted and/or corrupt");
+        }
+        return this.readBinarySamples(channel, tokens.position(), width, height, scale);
+      }
+
+      // Decoding in parallel reads the text twice, which only pays off on several processors
+      if (channel.size() - tokens.position() >= PARALLEL_DECODE_SIZE
+          && Runtime.getRuntime().availableProcessors() > 1) {
+        Optional<int[]> decoded = new PPMParallelDecoder(channel, tokens.position(), width,
+            height, scale).decode();
+
+        if (decoded.isPresent()) {
+          return VPackedImages.wrap(width, height, decoded.get());
+        }
+      }
+
+      int[] pixels = new int[width * height];
+
+      for (int i = 0; i < height; i += 1) {
+        int index = i * width;
+
+        for (int j = 0; j < width; j += 1) {
+          int r = tokens.nextInt();
+          ensureChannelBetween(r, maxValue);
+
+          int g = tokens.nextInt();
+          ensureChannelBetween(g, maxValue);
+
+          int b = tokens.nextInt();
+          ensureChannelBetween(b, maxValue);
+
+          pixels[index] = PackedRGB.pack(scale[r], scale[g], scale[b]);
+          index += 1;
+        }
+      }
+
+      return VPackedImages.wrap(width, height, pixels);
     }
-    catch (FileNotFoundException e) {
+    catch (NoSuchFileException e) {
       throw new ImageExtractionException("File " + filepath.toString() + " not found!");
     }
-    StringBuilder builder = new StringBuilder();
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+          + " could not be read");
+    }
+  }
 
-    // Read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s).append(System.lineSeparator());
+  @Override
+  public Dimension extractSize() throws ImageExtractionException {
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      PPMTokenizer tokens = new PPMTokenizer(Channels.newInputStream(channel));
+
+      if (!tokens.hasNext()) {
+        throw new ImageExtractionException("The given ppm file is empty");
       }
-    }
 
-    // Now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
+      String magicNumber = tokens.nextWord();
+
+      if (!magicNumber.equals(PPM_BINARY_HEADER) && !magicNumber.equals(PPM_HEADER)) {
+        throw new ImageExtractionException("Incorrect file format: PPM format expected");
+      }
+
+      int width = tokens.nextInt();
+      int height = tokens.nextInt();
+      ensureSizeValid(width, height);
 
-    if (!sc.hasNext()) {
-      throw new ImageExtractionException("The given ppm file is empty");
+      return new Dimension(width, height);
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
     }
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+          + " could not be read");
+    }
+  }
 
-    if (!sc.next().equals("P3")) {
-      throw new ImageExtractionException("Incorrect file format: PPM format expected");
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Only the parts of the file holding the pixels kept are read. The samples of a binary
+   * file are read from a memory mapping which starts at the first pixel kept and ends at the
+   * last, so the rows between those kept are mapped but never read from disk. The samples of
+   * an ASCII file are read up to the last row kept, after which the rest of the file is
+   * skipped</p>
+   */
+  @Override
+  public VImage extractImage(Rectangle region, int subsampling)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(region);
+
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("The subsampling of an image must be positive");
     }
 
-    // PPM:
-    //
-    // Width, Height
-    // max value
-    ensureHasNext(sc);
-    int width = sc.nextInt();
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      PPMTokenizer tokens = new PPMTokenizer(Channels.newInputStream(channel));
+
+      if (!tokens.hasNext()) {
+        throw new ImageExtractionException("The given ppm file is empty");
+      }
 
-    ensureHasNext(sc);
-    int height = sc.nextInt();
+      String magicNumber = tokens.nextWord();
+      boolean binary = magicNumber.equals(PPM_BINARY_HEADER);
 
-    ensureHasNext(sc);
-    int maxValue = sc.nextInt();
+      if (!binary && !magicNumber.equals(PPM_HEADER)) {
+        throw new ImageExtractionException("Incorrect file format: PPM format expected");
+      }
 
-    VMutableImage destination = new VMutableImageImpl(width, height);
+      int width = tokens.nextInt();
+      int height = tokens.nextInt();
+      int maxValue = tokens.nextInt();
+      ensureSizeValid(width, height);
+      int[] scale = scaleTableFor(filepath, maxValue);
+      Rectangle clipped = VSubsampledRegions.clip(region, subsampling, width, height);
 
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        try {
-          ensureHasNext(sc);
-          int r = sc.nextInt();
+      if (binary) {
+        // A single whitespace byte separates the header from the samples
+        if (!PPMTokenizer.isWhitespace(tokens.read())) {
+          throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+              + " is improperly formatted and/or corrupt");
+        }
+        return this.readBinaryRegion(channel, tokens.position(), width, height, scale, clipped,
+            subsampling);
+      }
+
+      int sampledWidth = VSubsampledRegions.sampledLength(clipped.width, subsampling);
+      int sampledHeight = VSubsampledRegions.sampledLength(clipped.height, subsampling);
+      int lastRow = clipped.y + (sampledHeight - 1) * subsampling;
+      int[] pixels = new int[sampledWidth * sampledHeight];
+
+      for (int i = 0; i <= lastRow; i += 1) {
+        boolean rowKept = i >= clipped.y && (i - clipped.y) % subsampling == 0;
+        int index = rowKept ? (i - clipped.y) / subsampling * sampledWidth : 0;
+
+        for (int j = 0; j < width; j += 1) {
+          int r = tokens.nextInt();
           ensureChannelBetween(r, maxValue);
 
-          ensureHasNext(sc);
-          int g = sc.nextInt();
+          int g = tokens.nextInt();
           ensureChannelBetween(g, maxValue);
 
-          ensureHasNext(sc);
-          int b = sc.nextInt();
+          int b = tokens.nextInt();
           ensureChannelBetween(b, maxValue);
 
-          destination.setPixel(new VRGBPixel(r, g, b),
-              new VPixelCoordinate(i, j));
-        }
-        catch (NumberFormatException e) {
-          throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
-              + " is improperly formatted and/or corrupt");
+          int column = j - clipped.x;
+
+          if (rowKept && column >= 0 && column < clipped.width && column % subsampling == 0) {
+            pixels[index] = PackedRGB.pack(scale[r], scale[g], scale[b]);
+            index += 1;
+          }
         }
       }
+
+      return VPackedImages.wrap(sampledWidth, sampledHeight, pixels);
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  /**
+   * Reads the samples of a region of a binary ppm file into a new image, keeping only every
+   * few pixels of every few rows.
+   *
+   * <p>The file is mapped into memory in chunks of the rows kept, each mapping starting at the
+   * first pixel kept of its first row and ending at the last pixel kept of its last row. Only
+   * the pages of the file holding pixels that are kept are ever read. The rows of each chunk
+   * are packed into the storage of the image in parallel</p>
+   *
+   * @param channel     the open file
+   * @param start       the position in the file of the first sample
+   * @param width       the width of the image
+   * @param height      the height of the image
+   * @param scale       the scaled value of each sample value; its length is one more than the
+   *                    maximum value of the file
+   * @param region      the region to read, which lies within the image
+   * @param subsampling the distance between the pixels and rows kept
+   * @return a new image whose pixels are the samples kept
+   * @throws IOException              if the file could not be mapped
+   * @throws ImageExtractionException if the file holds too few samples or if any sample kept
+   *                                  exceeds the maximum value of the file
+   */
+  private VImage readBinaryRegion(FileChannel channel, long start, int width, int height,
+      int[] scale, Rectangle region, int subsampling)
+      throws IOException, ImageExtractionException {
+    int maxValue = scale.length - 1;
+    int bytesPerSample = maxValue > PPM_MAX_VALUE ? 2 : 1;
+    int pixelBytes = 3 * bytesPerSample;
+    long rowBytes = 3L * width * bytesPerSample;
+
+    if (channel.size() - start < rowBytes * height) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
     }
 
-    return destination;
+    int sampledWidth = VSubsampledRegions.sampledLength(region.width, subsampling);
+    int sampledHeight = VSubsampledRegions.sampledLength(region.height, subsampling);
+    long rowStride = rowBytes * subsampling;
+    long spanBytes = ((long) (sampledWidth - 1) * subsampling + 1) * pixelBytes;
+
+    if (spanBytes > Integer.MAX_VALUE) {
+      throw new ImageExtractionException("The ppm file " + filepath.toString()
+          + " is too wide to be read");
+    }
+
+    int[] pixels = new int[sampledWidth * sampledHeight];
+    int rowsPerChunk = (int) Math.max(1, Math.min(sampledHeight,
+        (MAPPED_CHUNK_SIZE - spanBytes) / rowStride + 1));
+    long firstPixel = start + region.y * rowBytes + (long) region.x * pixelBytes;
+
+    for (int firstRow = 0; firstRow < sampledHeight; firstRow += rowsPerChunk) {
+      int chunkStart = firstRow;
+      int numRows = Math.min(rowsPerChunk, sampledHeight - firstRow);
+      MappedByteBuffer samples = channel.map(FileChannel.MapMode.READ_ONLY,
+          firstPixel + chunkStart * rowStride, (numRows - 1) * rowStride + spanBytes);
+
+      IntStream.range(0, numRows).parallel().forEach(row -> {
+        int sample = (int) (row * rowStride);
+        int index = (chunkStart + row) * sampledWidth;
+
+        for (int column = 0; column < sampledWidth; column += 1) {
+          int r;
+          int g;
+          int b;
+
+          if (bytesPerSample == 1) {
+            r = samples.get(sample) & 0xFF;
+            g = samples.get(sample + 1) & 0xFF;
+            b = samples.get(sample + 2) & 0xFF;
+          } else {
+            r = samples.getShort(sample) & 0xFFFF;
+            g = samples.getShort(sample + 2) & 0xFFFF;
+            b = samples.getShort(sample + 4) & 0xFFFF;
+          }
+
+          ensureChannelBetween(r, maxValue);
+          ensureChannelBetween(g, maxValue);
+          ensureChannelBetween(b, maxValue);
+
+          pixels[index] = PackedRGB.pack(scale[r], scale[g], scale[b]);
+          sample += subsampling * pixelBytes;
+          index += 1;
+        }
+      });
+    }
+
+    return VPackedImages.wrap(sampledWidth, sampledHeight, pixels);
   }
 
   /**
-   * Ensures that the given channel value is valid.
+   * Reads the samples of a binary ppm file into a new image.
    *
-   * <p>A channel value is valid if it is both non-negative
-   * and is at most the maximum value specified.</p>
+   * <p>The samples are mapped into memory in chunks of whole rows, and the rows of each chunk
+   * are packed into the storage of the image in parallel</p>
    *
-   * @param channel the channel value to test
-   * @param maxValue the maximum value this channel could have
-   * @throws ImageExtractionException if the channel is invalid
+   * @param channel the open file
+   * @param start   the position in the file of the first sample
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param scale   the scaled value of each sample value; its length is one more than the
+   *                maximum value of the file
+   * @return a new image whose pixels are the samples of the file
+   * @throws IOException              if the file could not be mapped
+   * @throws ImageExtractionException if the file holds too few samples or if any sample
+   *                                  exceeds the maximum value of the file
    */
-  private void testChannel(int channel, int maxValue) throws IllegalArgumentException {
-    if (channel < 0 || channel > maxValue) {
-      throw new IllegalArgumentException("The image attempted to be saved has an invalid channel");
+  private VImage readBinarySamples(FileChannel channel, long start, int width, int height,
+      int[] scale) throws IOException, ImageExtractionException {
+    int maxValue = scale.length - 1;
+    int bytesPerSample = maxValue > PPM_MAX_VALUE ? 2 : 1;
+    long rowBytes = 3L * width * bytesPerSample;
+
+    if (rowBytes > Integer.MAX_VALUE) {
+      throw new ImageExtractionException("The ppm file " + filepath.toString()
+          + " is too wide to be read");
+    }
+
+    if (channel.size() - start < rowBytes * height) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
     }
+
+    int[] pixels = new int[width * height];
+    int rowsPerChunk = (int) Math.max(1, Math.min(height, MAPPED_CHUNK_SIZE / rowBytes));
+
+    for (int firstRow = 0; firstRow < height; firstRow += rowsPerChunk) {
+      int chunkStart = firstRow;
+      int numRows = Math.min(rowsPerChunk, height - firstRow);
+      MappedByteBuffer samples = channel.map(FileChannel.MapMode.READ_ONLY,
+          start + chunkStart * rowBytes, numRows * rowBytes);
+
+      IntStream.range(0, numRows).parallel().forEach(row -> {
+        int sample = (int) (row * rowBytes);
+        int index = (chunkStart + row) * width;
+
+        for (int column = 0; column < width; column += 1) {
+          int r;
+          int g;
+          int b;
+
+          if (bytesPerSample == 1) {
+            r = samples.get(sample) & 0xFF;
+            g = samples.get(sample + 1) & 0xFF;
+            b = samples.get(sample + 2) & 0xFF;
+          } else {
+            r = samples.getShort(sample) & 0xFFFF;
+            g = samples.getShort(sample + 2) & 0xFFFF;
+            b = samples.getShort(sample + 4) & 0xFFFF;
+          }
+
+          ensureChannelBetween(r, maxValue);
+          ensureChannelBetween(g, maxValue);
+          ensureChannelBetween(b, maxValue);
+
+          pixels[index] = PackedRGB.pack(scale[r], scale[g], scale[b]);
+          sample += 3 * bytesPerSample;
+          index += 1;
+        }
+      });
+    }
+
+    return VPackedImages.wrap(width, height, pixels);
+  }
+
+  /**
+   * Scales a channel of a color from the range [0, 255] to the range of the samples
+   * of saved files.
+   *
+   * @param channel  the channel value
+   * @param maxValue the maximum value of the samples
+   * @return the value of the sample for the channel
+   */
+  static int scaleToMaxValue(int channel, int maxValue) {
+    return (channel * maxValue + PPM_MAX_VALUE / 2) / PPM_MAX_VALUE;
+  }
+
+  /**
+   * Produces the header of a ppm file.
+   *
+   * <p>The lines of the header of an ASCII file end with the line separator of the system, as
+   * do its samples, while those of a binary file always end with a single newline</p>
+   *
+   * @param encoding the encoding of the file
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param maxValue the maximum value of the samples
+   * @return the header of the file
+   */
+  static String headerOf(PPMEncoding encoding, int width, int height, int maxValue) {
+    String newLine = encoding == PPMEncoding.BINARY ? "\n" : System.lineSeparator();
+    return encoding.getMagicNumber() + newLine + width + " " + height + newLine + maxValue
+        + newLine;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The file is written as it is encoded, a chunk of rows at a time, so the encoded image is
+   * never held in memory as a whole. Chunks of rows are encoded in parallel into reusable
+   * buffers and written to the file in order</p>
+   */
   @Override
   public void saveImage(VImage image) throws IllegalArgumentException, ImageSavingException {
     ObjectsExtension.requireNonnull(image);
 
-    // Save the image to disk
     int width = image.getWidth();
     int height = image.getHeight();
+    int[] pixels = VPackedImages.readPixels(image);
 
-    StringBuilder toWrite = new StringBuilder();
-    toWrite.append(PPM_HEADER).append(System.lineSeparator());
-    toWrite.append(width).append(" ").append(height).append(System.lineSeparator());
-    toWrite.append(PPM_MAX_VALUE).append(System.lineSeparator());
+    if (encoding == PPMEncoding.BINARY) {
+      this.saveBinary(width, height, pixels);
+    } else {
+      this.saveAscii(width, height, pixels);
+    }
+  }
 
-    for (int i = 0; i < height; i += 1) {
-      for (int j = 0; j < width; j += 1) {
-        VPixelCoordinate loc = new VPixelCoordinate(i, j);
-        VPixel pixel = image.getPixelAt(loc).orElseThrow();
-        int r = pixel.getRed();
-        int g = pixel.getGreen();
-        int b = pixel.getBlue();
+  /**
+   * Streams the image of a ppm file through a pipeline of operations and saves the result to
+   * the file of this manager, with the encoding and maximum value of this manager.
+   *
+   * <p>The image is read, operated on and written a few rows at a time (see
+   * {@link VStreamingPipeline}), so memory use depends only on the width of the image and never
+   * on its height, and images far larger than the memory available can be processed. The file
+   * saved is the same as the one saved by loading the image, applying the operations of the
+   * pipeline and saving the result. The result is written to a temporary file which only
+   * replaces the file of this manager once every row has been written, so the source may be
+   * the file of this manager itself.</p>
+   *
+   * @param source   the path to the ppm file holding the image to operate on
+   * @param pipeline the operations to apply
+   * @param progress receives the fraction of rows written and is checked for cancellation
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   * @throws ImageExtractionException if the source could not be read
+   * @throws ImageSavingException     if the result could not be saved
+   * @throws CancellationException    if the progress is cancelled, in which case the file of
+   *                                  this manager is unchanged
+   */
+  public void saveStreamed(Path source, VStreamingPipeline pipeline, VProgress progress)
+      throws IllegalArgumentException, ImageExtractionException, ImageSavingException,
+      CancellationException {
+    ObjectsExtension.requireNonnull(source, pipeline, progress);
 
-        testChannel(r, PPM_MAX_VALUE);
-        testChannel(g, PPM_MAX_VALUE);
-        testChannel(b, PPM_MAX_VALUE);
+    Path temporary = filepath.resolveSibling(filepath.getFileName() + ".tmp");
+    boolean saved = false;
 
-        toWrite.append(r).append(System.lineSeparator());
-        toWrite.append(g).append(System.lineSeparator());
-        toWrite.append(b).append(System.lineSeparator());
+    try {
+      try (PPMRowReader rows = new PPMRowReader(source.toAbsolutePath());
+          PPMRowWriter result = new PPMRowWriter(temporary, encoding, maxValue,
+              rows.getWidth(), rows.getHeight())) {
+        pipeline.run(rows, result, progress);
       }
+
+      FileUtils.moveIntoPlace(temporary, filepath);
+      saved = true;
+    }
+    catch (IOException e) {
+      throw new ImageSavingException("Image could not be saved");
     }
+    finally {
+      if (!saved) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException ignored) {
+          // The temporary file is left behind but the file of this manager is unchanged
+        }
+      }
+    }
+  }
 
-    // Write the string to the file
-    try (FileWriter writer = new FileWriter(filepath.toString())) {
-      writer.write(toWrite.toString());
+  /**
+   * Saves an image as an ASCII ppm file, one sample per line.
+   *
+   * <p>The text of the sample for each of the 256 values of a channel, line separator
+   * included, is worked out once up front; encoding a pixel is then only a matter of copying
+   * the bytes of its three samples</p>
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the packed pixels of the image, row by row
+   * @throws ImageSavingException if the file could not be written
+   */
+  private void saveAscii(int width, int height, int[] pixels) throws ImageSavingException {
+    byte[] separator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    byte[][] samples = new byte[PPM_MAX_VALUE + 1][];
+    int longestSample = 0;
+
+    for (int channel = 0; channel <= PPM_MAX_VALUE; channel += 1) {
+      samples[channel] = encodeDecimal(scaleToMaxValue(channel, maxValue), separator);
+      longestSample = Math.max(longestSample, samples[channel].length);
+    }
+
+    String header = headerOf(PPMEncoding.ASCII, width, height, maxValue);
+
+    this.writeRows(header, height, 3L * width * longestSample, (row, destination, position) -> {
+      int end = (row + 1) * width;
+
+      for (int index = row * width; index < end; index += 1) {
+        int color = pixels[index];
+        position = copySample(samples[PackedRGB.red(color)], destination, position);
+        position = copySample(samples[PackedRGB.green(color)], destination, position);
+        position = copySample(samples[PackedRGB.blue(color)], destination, position);
+      }
+      return position;
+    });
+  }
+
+  /**
+   * Saves an image as a binary ppm file, with two bytes per sample if the maximum value
+   * exceeds 255 and one otherwise.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the packed pixels of the image, row by row
+   * @throws ImageSavingException if the file could not be written
+   */
+  private void saveBinary(int width, int height, int[] pixels) throws ImageSavingException {
+    boolean wide = maxValue > PPM_MAX_VALUE;
+    int[] scaled = new int[PPM_MAX_VALUE + 1];
+
+    for (int channel = 0; channel <= PPM_MAX_VALUE; channel += 1) {
+      scaled[channel] = scaleToMaxValue(channel, maxValue);
+    }
+
+    String header = headerOf(PPMEncoding.BINARY, width, height, maxValue);
+
+    this.writeRows(header, height, 3L * width * (wide ? 2 : 1), (row, destination, position) -> {
+      int end = (row + 1) * width;
+
+      for (int index = row * width; index < end; index += 1) {
+        int color = pixels[index];
+        int r = scaled[PackedRGB.red(color)];
+        int g = scaled[PackedRGB.green(color)];
+        int b = scaled[PackedRGB.blue(color)];
+
+        if (wide) {
+          destination[position] = (byte) (r >>> 8);
+          destination[position + 1] = (byte) r;
+          destination[position + 2] = (byte) (g >>> 8);
+          destination[position + 3] = (byte) g;
+          destination[position + 4] = (byte) (b >>> 8);
+          destination[position + 5] = (byte) b;
+          position += 6;
+        } else {
+          destination[position] = (byte) r;
+          destination[position + 1] = (byte) g;
+          destination[position + 2] = (byte) b;
+          position += 3;
+        }
+      }
+      return position;
+    });
+  }
+
+  /**
+   * Encodes a single row of an image into the bytes of a ppm file.
+   */
+  @FunctionalInterface
+  private interface RowEncoder {
+
+    /**
+     * Encodes a row of an image.
+     *
+     * @param row         the index of the row
+     * @param destination the buffer to encode the row into
+     * @param position    the index in the buffer of the first byte of the row
+     * @return the index in the buffer just after the last byte of the row
+     */
+    int encode(int row, byte[] destination, int position);
+  }
+
+  /**
+   * Writes a header followed by the encoded rows of an image to the file of this manager.
+   *
+   * <p>The rows are split into chunks of around {@value #WRITE_BUFFER_SIZE} bytes. A batch of
+   * chunks, one for each processor, is encoded in parallel into buffers that are reused from
+   * batch to batch, and the chunks of the batch are then written to the file in order</p>
+   *
+   * @param header   the header of the file
+   * @param height   the number of rows to write
+   * @param rowBytes the most bytes a single encoded row may take
+   * @param encoder  encodes each row
+   * @throws ImageSavingException if a row is too large to encode or if the file could not be
+   *                              written
+   */
+  private void writeRows(String header, int height, long rowBytes, RowEncoder encoder)
+      throws ImageSavingException {
+    if (rowBytes > Integer.MAX_VALUE - 8) {
+      throw new ImageSavingException("The image is too wide to be saved as a ppm file");
+    }
+
+    int rowsPerChunk = (int) Math.max(1, Math.min(height, WRITE_BUFFER_SIZE / Math.max(1,
+        rowBytes)));
+    int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+    byte[][] buffers = new byte[Math.max(1, Math.min(chunks,
+        Runtime.getRuntime().availableProcessors()))][];
+    int[] lengths = new int[buffers.length];
+
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+
+      for (int firstChunk = 0; firstChunk < chunks; firstChunk += buffers.length) {
+        int batchStart = firstChunk;
+        int batchSize = Math.min(buffers.length, chunks - firstChunk);
+
+        IntStream.range(0, batchSize).parallel().forEach(slot -> {
+          int firstRow = (batchStart + slot) * rowsPerChunk;
+          int lastRow = Math.min(height, firstRow + rowsPerChunk);
+
+          if (buffers[slot] == null) {
+            buffers[slot] = new byte[(int) (rowsPerChunk * rowBytes)];
+          }
+
+          int position = 0;
+
+          for (int row = firstRow; row < lastRow; row += 1) {
+            position = encoder.encode(row, buffers[slot], position);
+          }
+          lengths[slot] = position;
+        });
+
+        for (int slot = 0; slot < batchSize; slot += 1) {
+          writeFully(channel, ByteBuffer.wrap(buffers[slot], 0, lengths[slot]));
+        }
+      }
     }
     catch (IOException e) {
       throw new ImageSavingException("Image could not be saved");
     }
   }
+
+  /**
+   * Produces the decimal digits of a non-negative number followed by a separator, without
+   * going through a {@link String}.
+   *
+   * @param value     the number
+   * @param separator the bytes that follow the digits
+   * @return the digits of the number and the separator as ASCII bytes
+   */
+  static byte[] encodeDecimal(int value, byte[] separator) {
+    int digits = 1;
+
+    for (int rest = value / 10; rest > 0; rest /= 10) {
+      digits += 1;
+    }
+
+    byte[] encoded = new byte[digits + separator.length];
+    int rest = value;
+
+    for (int i = digits - 1; i >= 0; i -= 1) {
+      encoded[i] = (byte) ('0' + rest % 10);
+      rest /= 10;
+    }
+
+    System.arraycopy(separator, 0, encoded, digits, separator.length);
+    return encoded;
+  }
+
+  /**
+   * Copies the bytes of an encoded sample into a buffer. Samples are only a few bytes long,
+   * which is copied faster by hand than through {@link System#arraycopy}.
+   *
+   * @param sample      the encoded sample
+   * @param destination the buffer
+   * @param position    the index in the buffer to copy the sample to
+   * @return the index in the buffer just after the sample
+   */
+  static int copySample(byte[] sample, byte[] destination, int position) {
+    for (int i = 0; i < sample.length; i += 1) {
+      destination[position + i] = sample[i];
+    }
+    return position + sample.length;
+  }
+
+  /**
+   * Writes all of the remaining bytes of a buffer to a file.
+   *
+   * @param channel the file to write to
+   * @param buffer  the bytes to write
+   * @throws IOException if the file could not be written
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
 }
@@ -0,0 +1,319 @@
+package model.creation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import model.misc.ObjectsExtension;
+
+/**
+ * Decodes the samples of a large ASCII ppm file in parallel, from a memory mapping of the file.
+ *
+ * <p>The text of the samples is split into chunks of around {@value #CHUNK_SIZE} bytes, each
+ * chunk ending just before a whitespace byte so that no sample is split between two chunks.
+ * Decoding then takes two passes over the chunks, each of which handles all of the chunks in
+ * parallel. The first pass counts the samples in each chunk, which gives the index of the first
+ * sample of every chunk. The second pass parses the samples of each chunk straight into the
+ * pixels of the image, starting from that index.
+ *
+ * <p>The three samples of a pixel may lie in different chunks. Each pixel is written by the
+ * chunk holding its first sample, and the samples a chunk holds of a pixel begun by an earlier
+ * chunk are combined into the pixel once all of the chunks are parsed.
+ *
+ * <p>A comment may hold any text, including whitespace, so a chunk beginning inside a comment
+ * could not be parsed on its own. Comments between the samples of a file are rare, and files
+ * containing them are left to be decoded in order by a {@link PPMTokenizer}.</p>
+ */
+final class PPMParallelDecoder {
+
+  // The number of bytes of text in each chunk, before it is extended to the next whitespace
+  private static final long CHUNK_SIZE = 1 << 23;
+
+  // The number of bytes read at once while looking for the end of a chunk
+  private static final int BOUNDARY_SCAN_SIZE = 256;
+
+  private final FileChannel channel;
+  private final long start;
+  private final int width;
+  private final int height;
+  private final int[] scale;
+
+  /**
+   * Construct a new decoder for the samples of an ASCII ppm file.
+   *
+   * @param channel the open file
+   * @param start   the position in the file just after the maximum value in its header
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param scale   the scaled value of each sample value; its length is one more than the
+   *                maximum value of the file
+   * @throws IllegalArgumentException if {@code channel} or {@code scale} is {@code null}
+   */
+  PPMParallelDecoder(FileChannel channel, long start, int width, int height, int[] scale)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(channel, scale);
+    this.channel = channel;
+    this.start = start;
+    this.width = width;
+    this.height = height;
+    this.scale = scale;
+  }
+
+  /**
+   * Decodes the samples of the file into packed pixels.
+   *
+   * @return the packed pixels of the image, row by row, or an empty optional if the samples of
+   *         the file contain comments and must be decoded in order instead
+   * @throws IOException              if the file could not be read or mapped
+   * @throws ImageExtractionException if the file holds too few samples, if a sample is not a
+   *                                  number or if any sample exceeds the maximum value of the
+   *                                  file
+   */
+  Optional<int[]> decode() throws IOException, ImageExtractionException {
+    long[] bounds = this.chunkBounds();
+    int chunks = bounds.length - 1;
+    MappedByteBuffer[] text = new MappedByteBuffer[chunks];
+
+    for (int chunk = 0; chunk < chunks; chunk += 1) {
+      text[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk],
+          bounds[chunk + 1] - bounds[chunk]);
+    }
+
+    // First pass: count the samples of each chunk
+    long[] counts = new long[chunks];
+    IntStream.range(0, chunks).parallel()
+        .forEach(chunk -> counts[chunk] = countSamples(bytesOf(text[chunk])));
+
+    long[] firstSamples = new long[chunks];
+    long total = 0;
+
+    for (int chunk = 0; chunk < chunks; chunk += 1) {
+      if (counts[chunk] < 0) {
+        return Optional.empty();
+      }
+      firstSamples[chunk] = total;
+      total += counts[chunk];
+    }
+
+    if (total < 3L * width * height) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
+    }
+
+    // Second pass: parse the samples of each chunk into the image
+    int[] pixels = new int[width * height];
+    int[] splitPixels = new int[chunks];
+    int[] splitChannels = new int[chunks];
+    IntStream.range(0, chunks).parallel().forEach(chunk -> {
+      splitPixels[chunk] = -1;
+      this.parseChunk(bytesOf(text[chunk]), firstSamples[chunk], pixels, chunk, splitPixels,
+          splitChannels);
+    });
+
+    for (int chunk = 0; chunk < chunks; chunk += 1) {
+      if (splitPixels[chunk] >= 0) {
+        pixels[splitPixels[chunk]] |= splitChannels[chunk];
+      }
+    }
+
+    return Optional.of(pixels);
+  }
+
+  /**
+   * Splits the text of the samples into chunks, each of which begins with a whitespace byte or
+   * with the first byte after the header.
+   *
+   * @return the position in the file at which each chunk begins, followed by the size of the
+   *         file
+   * @throws IOException if the file could not be read
+   */
+  private long[] chunkBounds() throws IOException {
+    long size = channel.size();
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(start);
+
+    for (long nominal = start + CHUNK_SIZE; nominal < size; nominal += CHUNK_SIZE) {
+      long bound = this.nextWhitespace(Math.max(nominal, bounds.get(bounds.size() - 1)), size);
+
+      if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+        bounds.add(bound);
+      }
+    }
+    bounds.add(size);
+
+    return bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Finds the first whitespace byte of the file at or after a position.
+   *
+   * @param from the position to search from
+   * @param size the size of the file
+   * @return the position of the whitespace byte, or {@code size} if there is none
+   * @throws IOException if the file could not be read
+   */
+  private long nextWhitespace(long from, long size) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+    long position = from;
+
+    while (position < size) {
+      bytes.clear();
+      int read = channel.read(bytes, position);
+
+      if (read <= 0) {
+        break;
+      }
+
+      for (int i = 0; i < read; i += 1) {
+        if (PPMTokenizer.isWhitespace(bytes.get(i) & 0xFF)) {
+          return position + i;
+        }
+      }
+      position += read;
+    }
+
+    return size;
+  }
+
+  /**
+   * Copies the bytes of a mapped chunk into an array, which is scanned much faster than the
+   * mapping itself.
+   *
+   * @param text the mapped chunk
+   * @return the bytes of the chunk
+   */
+  private static byte[] bytesOf(ByteBuffer text) {
+    byte[] bytes = new byte[text.limit()];
+    text.get(0, bytes);
+    return bytes;
+  }
+
+  /**
+   * Counts the samples in a chunk of text, i.e. the runs of bytes that are not whitespace.
+   *
+   * @param text the chunk
+   * @return the number of samples in the chunk, or -1 if the chunk contains a comment
+   */
+  private static long countSamples(byte[] text) {
+    long count = 0;
+    boolean inSample = false;
+
+    for (int i = 0; i < text.length; i += 1) {
+      int current = text[i] & 0xFF;
+
+      if (current == '#') {
+        return -1;
+      }
+
+      boolean whitespace = PPMTokenizer.isWhitespace(current);
+
+      if (!whitespace && !inSample) {
+        count += 1;
+      }
+      inSample = !whitespace;
+    }
+
+    return count;
+  }
+
+  /**
+   * Parses the samples of a chunk of text into the pixels of the image. Samples beyond those
+   * needed for the image are ignored.
+   *
+   * <p>Pixels begun by the chunk are written to the image. The samples of a pixel begun by an
+   * earlier chunk are instead recorded, as the pixel and its channels within the chunk, to be
+   * combined into the image once every chunk has been parsed</p>
+   *
+   * @param text          the chunk
+   * @param firstSample   the index of the first sample of the chunk in the file
+   * @param pixels        the pixels of the image
+   * @param chunk         the index of the chunk
+   * @param splitPixels   receives the index of the pixel begun by an earlier chunk, if any
+   * @param splitChannels receives the channels of that pixel held by the chunk
+   * @throws ImageExtractionException if a sample is not a number or if any sample exceeds the
+   *                                  maximum value of the file
+   */
+  private void parseChunk(byte[] text, long firstSample, int[] pixels, int chunk,
+      int[] splitPixels, int[] splitChannels) throws ImageExtractionException {
+    int maxValue = scale.length - 1;
+    long samples = 3L * width * height;
+    long sample = firstSample;
+    int channels = 0;
+    int limit = text.length;
+    int i = 0;
+
+    while (i < limit && sample < samples) {
+      int current = text[i] & 0xFF;
+
+      if (PPMTokenizer.isWhitespace(current)) {
+        i += 1;
+        continue;
+      }
+
+      int value = 0;
+
+      do {
+        int digit = current - '0';
+
+        if (digit < 0 || digit > 9) {
+          throw new ImageExtractionException("Expected a number but found '" + (char) current
+              + "'");
+        }
+
+        if (value > (Integer.MAX_VALUE - digit) / 10) {
+          throw new ImageExtractionException("A number is too large");
+        }
+
+        value = value * 10 + digit;
+        i += 1;
+        current = i < limit ? text[i] & 0xFF : ' ';
+      } while (!PPMTokenizer.isWhitespace(current));
+
+      if (value > maxValue) {
+        throw new ImageExtractionException("A channel value exceeds the maximum value"
+            + " specified in the ppm file header");
+      }
+
+      int channel = (int) (sample % 3);
+      channels |= scale[value] << (16 - 8 * channel);
+      sample += 1;
+
+      if (channel == 2) {
+        storePixel(sample - 1, firstSample, channels, pixels, chunk, splitPixels, splitChannels);
+        channels = 0;
+      }
+    }
+
+    // The chunk ended part of the way through a pixel
+    if (sample % 3 != 0 && sample > firstSample) {
+      storePixel(sample - 1, firstSample, channels, pixels, chunk, splitPixels, splitChannels);
+    }
+  }
+
+  /**
+   * Stores the channels of a pixel parsed by a chunk, either in the image if the chunk began
+   * the pixel or as the split pixel of the chunk otherwise.
+   *
+   * @param lastSample    the index in the file of the last sample of the pixel parsed
+   * @param firstSample   the index in the file of the first sample of the chunk
+   * @param channels      the channels of the pixel parsed by the chunk
+   * @param pixels        the pixels of the image
+   * @param chunk         the index of the chunk
+   * @param splitPixels   receives the index of the pixel begun by an earlier chunk
+   * @param splitChannels receives the channels of that pixel held by the chunk
+   */
+  private static void storePixel(long lastSample, long firstSample, int channels, int[] pixels,
+      int chunk, int[] splitPixels, int[] splitChannels) {
+    int pixel = (int) (lastSample / 3);
+
+    if (3L * pixel >= firstSample) {
+      pixels[pixel] = channels;
+    } else {
+      splitPixels[chunk] = pixel;
+      splitChannels[chunk] = channels;
+    }
+  }
+}
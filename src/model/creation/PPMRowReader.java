@@ -0,0 +1,194 @@
+package model.creation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import model.image.pixel.PackedRGB;
+import model.misc.ObjectsExtension;
+import model.processing.VRowSource;
+
+/**
+ * Reads the rows of a ppm file one at a time, without reading the rest of the file.
+ *
+ * <p>Both ASCII ({@code P3}) and binary ({@code P6}) files are read, with maximum values of up
+ * to 65535, and samples are scaled to the range [0, 255] exactly as when the whole file is read
+ * by a {@link PPMImageManager}. The file is read through a {@link PPMTokenizer}, so only a small
+ * buffer of it is held in memory at once however large the image is. Since the pixels are never
+ * stored together, an image read row by row may have more pixels than a single image can.</p>
+ */
+final class PPMRowReader implements VRowSource, Closeable {
+  private final Path filepath;
+  private final PPMTokenizer tokens;
+  private final boolean binary;
+  private final int width;
+  private final int height;
+  private final int maxValue;
+  private final int[] scale;
+  private int next;
+
+  /**
+   * Construct a new reader which reads the header of the given ppm file, leaving the file open
+   * to read its rows.
+   *
+   * @param filepath the path to the file
+   * @throws IllegalArgumentException if {@code filepath} is {@code null}
+   * @throws ImageExtractionException if the file could not be read or is not a ppm file
+   */
+  PPMRowReader(Path filepath) throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(filepath);
+    this.filepath = filepath;
+
+    try {
+      this.tokens = new PPMTokenizer(Files.newInputStream(filepath));
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+          + " could not be read");
+    }
+
+    try {
+      if (!tokens.hasNext()) {
+        throw new ImageExtractionException("The given ppm file is empty");
+      }
+
+      String magicNumber = tokens.nextWord();
+      this.binary = magicNumber.equals(PPMImageManager.PPM_BINARY_HEADER);
+
+      if (!binary && !magicNumber.equals(PPMImageManager.PPM_HEADER)) {
+        throw new ImageExtractionException("Incorrect file format: PPM format expected");
+      }
+
+      this.width = tokens.nextInt();
+      this.height = tokens.nextInt();
+      this.maxValue = tokens.nextInt();
+
+      if (width <= 0 || height <= 0) {
+        throw new ImageExtractionException("The ppm file " + filepath.toString()
+            + " has an invalid size");
+      }
+
+      this.scale = PPMImageManager.scaleTableFor(filepath, maxValue);
+
+      // A single whitespace byte separates the header from the samples
+      if (binary && !PPMTokenizer.isWhitespace(tokens.read())) {
+        throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+            + " is improperly formatted and/or corrupt");
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      this.closeQuietly();
+
+      if (e instanceof RuntimeException) {
+        throw (RuntimeException) e;
+      }
+      throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws ImageExtractionException if the file could not be read, holds too few samples or
+   *                                  holds a sample exceeding its maximum value
+   */
+  @Override
+  public void readRow(int[] row)
+      throws IllegalArgumentException, IllegalStateException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(row);
+
+    if (row.length < width) {
+      throw new IllegalArgumentException("The row must hold at least " + width + " pixels");
+    }
+
+    if (next >= height) {
+      throw new IllegalStateException("Every row has already been read");
+    }
+
+    try {
+      for (int j = 0; j < width; j += 1) {
+        int r = this.nextSample();
+        int g = this.nextSample();
+        int b = this.nextSample();
+        row[j] = PackedRGB.pack(scale[r], scale[g], scale[b]);
+      }
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied ppm file " + filepath.toString()
+          + " could not be read");
+    }
+
+    next += 1;
+  }
+
+  /**
+   * Reads the next sample of the file, which is a token of an ASCII file or one or two bytes
+   * of a binary file.
+   *
+   * @return the sample
+   * @throws IOException              if the file could not be read
+   * @throws ImageExtractionException if the file holds no more samples or if the sample
+   *                                  exceeds the maximum value of the file
+   */
+  private int nextSample() throws IOException, ImageExtractionException {
+    int sample;
+
+    if (!binary) {
+      sample = tokens.nextInt();
+    } else if (maxValue > PPMImageManager.PPM_MAX_VALUE) {
+      sample = (this.nextByte() << 8) | this.nextByte();
+    } else {
+      sample = this.nextByte();
+    }
+
+    PPMImageManager.ensureChannelBetween(sample, maxValue);
+    return sample;
+  }
+
+  /**
+   * Reads the next byte of a binary file.
+   *
+   * @return the byte, from 0 to 255
+   * @throws IOException              if the file could not be read
+   * @throws ImageExtractionException if the file has ended
+   */
+  private int nextByte() throws IOException, ImageExtractionException {
+    int value = tokens.read();
+
+    if (value < 0) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
+    }
+    return value;
+  }
+
+  /**
+   * Closes the file, ignoring any error in doing so.
+   */
+  private void closeQuietly() {
+    try {
+      tokens.close();
+    } catch (IOException e) {
+      // Nothing more can be done with the file
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    tokens.close();
+  }
+}
@@ -0,0 +1,173 @@
+package model.creation;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import model.image.pixel.PackedRGB;
+import model.misc.ObjectsExtension;
+import model.persistence.ImageSavingException;
+import model.processing.VRowSink;
+
+/**
+ * Writes the rows of an image to a ppm file one at a time, as they are produced.
+ *
+ * <p>The file is written exactly as a {@link PPMImageManager} saves a whole image with the same
+ * encoding and maximum value, byte for byte, but only a single encoded row is ever held in
+ * memory. The header is written when the writer is made, and each row is encoded into a
+ * reusable buffer and written straight to the file.</p>
+ */
+final class PPMRowWriter implements VRowSink, Closeable {
+
+  // The number of bytes written to the file at once, so that narrow rows are written together
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final OutputStream stream;
+  private final PPMEncoding encoding;
+  private final int width;
+  private final int height;
+  private final boolean wide;
+  private final int[] scaled;
+  private final byte[][] samples;
+  private final byte[] buffer;
+  private int written;
+
+  /**
+   * Construct a new writer which creates or replaces the given file and writes the header of
+   * an image of the given size to it.
+   *
+   * @param filepath the path to the file
+   * @param encoding how the samples of the file are written
+   * @param maxValue the maximum value of the samples
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @throws IllegalArgumentException if any arguments are {@code null} or if either width or
+   *                                  height is not positive
+   * @throws ImageSavingException     if the file could not be written or if a row is too large
+   *                                  to encode
+   */
+  PPMRowWriter(Path filepath, PPMEncoding encoding, int maxValue, int width, int height)
+      throws IllegalArgumentException, ImageSavingException {
+    ObjectsExtension.requireNonnull(filepath, encoding);
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("An image must have a positive width and height");
+    }
+
+    this.encoding = encoding;
+    this.width = width;
+    this.height = height;
+    this.wide = maxValue > PPMImageManager.PPM_MAX_VALUE;
+    this.scaled = new int[PPMImageManager.PPM_MAX_VALUE + 1];
+    this.samples = new byte[PPMImageManager.PPM_MAX_VALUE + 1][];
+
+    byte[] separator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    int longestSample = wide ? 2 : 1;
+
+    for (int channel = 0; channel <= PPMImageManager.PPM_MAX_VALUE; channel += 1) {
+      scaled[channel] = PPMImageManager.scaleToMaxValue(channel, maxValue);
+
+      if (encoding == PPMEncoding.ASCII) {
+        samples[channel] = PPMImageManager.encodeDecimal(scaled[channel], separator);
+        longestSample = Math.max(longestSample, samples[channel].length);
+      }
+    }
+
+    if (3L * width * longestSample > Integer.MAX_VALUE - 8) {
+      throw new ImageSavingException("The image is too wide to be saved as a ppm file");
+    }
+
+    this.buffer = new byte[3 * width * longestSample];
+
+    try {
+      this.stream = new BufferedOutputStream(Files.newOutputStream(filepath), BUFFER_SIZE);
+    }
+    catch (IOException e) {
+      throw new ImageSavingException("Image could not be saved");
+    }
+
+    try {
+      stream.write(PPMImageManager.headerOf(encoding, width, height, maxValue)
+          .getBytes(StandardCharsets.US_ASCII));
+    }
+    catch (IOException e) {
+      this.closeQuietly();
+      throw new ImageSavingException("Image could not be saved");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws ImageSavingException if the file could not be written
+   */
+  @Override
+  public void writeRow(int[] row)
+      throws IllegalArgumentException, IllegalStateException, ImageSavingException {
+    ObjectsExtension.requireNonnull(row);
+
+    if (row.length < width) {
+      throw new IllegalArgumentException("The row must hold at least " + width + " pixels");
+    }
+
+    if (written >= height) {
+      throw new IllegalStateException("Every row has already been written");
+    }
+
+    int position = 0;
+
+    for (int j = 0; j < width; j += 1) {
+      int color = row[j];
+
+      if (encoding == PPMEncoding.ASCII) {
+        position = PPMImageManager.copySample(samples[PackedRGB.red(color)], buffer, position);
+        position = PPMImageManager.copySample(samples[PackedRGB.green(color)], buffer, position);
+        position = PPMImageManager.copySample(samples[PackedRGB.blue(color)], buffer, position);
+      } else if (wide) {
+        int r = scaled[PackedRGB.red(color)];
+        int g = scaled[PackedRGB.green(color)];
+        int b = scaled[PackedRGB.blue(color)];
+        buffer[position] = (byte) (r >>> 8);
+        buffer[position + 1] = (byte) r;
+        buffer[position + 2] = (byte) (g >>> 8);
+        buffer[position + 3] = (byte) g;
+        buffer[position + 4] = (byte) (b >>> 8);
+        buffer[position + 5] = (byte) b;
+        position += 6;
+      } else {
+        buffer[position] = (byte) scaled[PackedRGB.red(color)];
+        buffer[position + 1] = (byte) scaled[PackedRGB.green(color)];
+        buffer[position + 2] = (byte) scaled[PackedRGB.blue(color)];
+        position += 3;
+      }
+    }
+
+    try {
+      stream.write(buffer, 0, position);
+    }
+    catch (IOException e) {
+      throw new ImageSavingException("Image could not be saved");
+    }
+
+    written += 1;
+  }
+
+  /**
+   * Closes the file, ignoring any error in doing so.
+   */
+  private void closeQuietly() {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      // Nothing more can be done with the file
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+}
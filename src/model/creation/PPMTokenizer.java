@@ -0,0 +1,210 @@
+package model.creation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import model.misc.ObjectsExtension;
+
+/**
+ * Splits the text of a PPM file into tokens as it is read, byte by byte.
+ *
+ * <p>Tokens are separated by whitespace. A {@code #} begins a comment that runs to the end of
+ * its line wherever it appears, including straight after a token, and comments and empty lines
+ * are skipped like any other whitespace. Numbers are parsed from their digits directly as they
+ * are read, so the text of the file is never held in memory beyond a small buffer.</p>
+ */
+final class PPMTokenizer implements Closeable {
+
+  // The number of bytes read from the stream at once
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream stream;
+  private final byte[] buffer;
+  private int length;
+  private int next;
+  private long consumed;
+
+  /**
+   * Construct a new tokenizer that reads from the given stream. The stream does not need to be
+   * buffered.
+   *
+   * @param stream the stream containing the text of a PPM file
+   * @throws IllegalArgumentException if {@code stream} is {@code null}
+   */
+  PPMTokenizer(InputStream stream) throws IllegalArgumentException {
+    this.stream = ObjectsExtension.asNonnull(stream);
+    this.buffer = new byte[BUFFER_SIZE];
+  }
+
+  /**
+   * Determines whether the stream holds another token, skipping any whitespace and comments
+   * before it.
+   *
+   * @return true if another token follows
+   * @throws IOException if the stream could not be read
+   */
+  boolean hasNext() throws IOException {
+    return this.skipSeparators() >= 0;
+  }
+
+  /**
+   * Reads the next token as text.
+   *
+   * @return the next token
+   * @throws IOException              if the stream could not be read
+   * @throws ImageExtractionException if there are no more tokens
+   */
+  String nextWord() throws IOException, ImageExtractionException {
+    int current = this.skipSeparators();
+
+    if (current < 0) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
+    }
+
+    StringBuilder word = new StringBuilder();
+
+    while (current >= 0 && !isSeparator(current)) {
+      word.append((char) current);
+      this.next += 1;
+      current = this.peek();
+    }
+
+    return word.toString();
+  }
+
+  /**
+   * Reads the next token as a non-negative whole number.
+   *
+   * @return the value of the next token
+   * @throws IOException              if the stream could not be read
+   * @throws ImageExtractionException if there are no more tokens or if the next token is not a
+   *                                  non-negative whole number that fits in an {@code int}
+   */
+  int nextInt() throws IOException, ImageExtractionException {
+    int current = this.skipSeparators();
+
+    if (current < 0) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
+    }
+
+    int value = 0;
+
+    do {
+      int digit = current - '0';
+
+      if (digit < 0 || digit > 9) {
+        throw new ImageExtractionException("Expected a number but found '" + (char) current
+            + "'");
+      }
+
+      if (value > (Integer.MAX_VALUE - digit) / 10) {
+        throw new ImageExtractionException("A number is too large");
+      }
+
+      value = value * 10 + digit;
+      this.next += 1;
+      current = this.peek();
+    } while (current >= 0 && !isSeparator(current));
+
+    return value;
+  }
+
+  /**
+   * Reads a single byte, whatever it is. This is used to consume the one whitespace byte
+   * separating the header of a binary PPM file from its samples.
+   *
+   * @return the byte, from 0 to 255, or -1 if the stream has ended
+   * @throws IOException if the stream could not be read
+   */
+  int read() throws IOException {
+    int current = this.peek();
+
+    if (current >= 0) {
+      this.next += 1;
+    }
+    return current;
+  }
+
+  /**
+   * Retrieves the number of bytes of the stream consumed so far, i.e. the position in the
+   * stream of the first byte not yet read.
+   *
+   * @return the number of bytes consumed from the start of the stream
+   */
+  long position() {
+    return this.consumed + this.next;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.stream.close();
+  }
+
+  /**
+   * Skips whitespace and comments.
+   *
+   * @return the first byte of the next token, which is not consumed, or -1 if the stream has
+   *         ended
+   * @throws IOException if the stream could not be read
+   */
+  private int skipSeparators() throws IOException {
+    int current = this.peek();
+
+    while (current >= 0) {
+      if (current == '#') {
+        // Comments run to the end of the line
+        while (current >= 0 && current != '\n' && current != '\r') {
+          this.next += 1;
+          current = this.peek();
+        }
+      } else if (isWhitespace(current)) {
+        this.next += 1;
+        current = this.peek();
+      } else {
+        return current;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Retrieves the next byte without consuming it, refilling the buffer if it is exhausted.
+   *
+   * @return the next byte, from 0 to 255, or -1 if the stream has ended
+   * @throws IOException if the stream could not be read
+   */
+  private int peek() throws IOException {
+    if (this.next == this.length) {
+      this.consumed += this.length;
+      this.next = 0;
+      this.length = Math.max(0, this.stream.read(this.buffer));
+
+      if (this.length == 0) {
+        return -1;
+      }
+    }
+    return this.buffer[this.next] & 0xFF;
+  }
+
+  /**
+   * Determines whether a byte ends a token.
+   *
+   * @param value the byte
+   * @return true if the byte is whitespace or begins a comment
+   */
+  static boolean isSeparator(int value) {
+    return value == '#' || isWhitespace(value);
+  }
+
+  /**
+   * Determines whether a byte is whitespace as understood by the PPM format.
+   *
+   * @param value the byte
+   * @return true if the byte is a space, tab, line feed, vertical tab, form feed or carriage
+   *         return
+   */
+  static boolean isWhitespace(int value) {
+    return value == ' ' || (value >= '\t' && value <= '\r');
+  }
+}
@@ -0,0 +1,247 @@
+package model.creation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import model.image.pixel.PackedRGB;
+import model.misc.ObjectsExtension;
+
+/**
+ * Encodes and decodes packed pixels as the chunks of the "Quite OK Image" format.
+ *
+ * <p>The chunks are the body of a qoi file, without its header or end marker. They are shared
+ * by {@link QOIImageManager}, which adds the header and end marker of a qoi file, and by
+ * {@link VProjectFileManager}, which stores the chunks of each layer of a project as a blob
+ * of a single project file.
+ *
+ * <p>Each pixel is encoded as the shortest of: a run of copies of the previous pixel; an index
+ * into a table of 64 recently seen colors, hashed from their channels; a small difference from
+ * the previous pixel, in one or two bytes; or its channels in full. Pixels are encoded as fully
+ * opaque. Chunks carrying an alpha channel are decoded too, though the alpha channel is
+ * dropped from the decoded pixels.</p>
+ */
+public final class QOICodec {
+
+  // The tags of the six kinds of chunk. Index, difference, luma and run chunks are
+  // identified by their first two bits and the other two by their whole first byte
+  private static final int QOI_OP_INDEX = 0x00;
+  private static final int QOI_OP_DIFF = 0x40;
+  private static final int QOI_OP_LUMA = 0x80;
+  private static final int QOI_OP_RUN = 0xC0;
+  private static final int QOI_OP_RGB = 0xFE;
+  private static final int QOI_OP_RGBA = 0xFF;
+  private static final int QOI_MASK = 0xC0;
+
+  // The longest run of pixels a single run chunk can hold
+  private static final int QOI_MAX_RUN = 62;
+
+  // The most bytes taken by a single chunk
+  private static final int QOI_MAX_CHUNK = 5;
+
+  // The alpha channel of every pixel encoded, in the position of a packed ARGB color
+  private static final int OPAQUE = 0xFF000000;
+
+  // Keeps only the color channels of a packed ARGB color
+  private static final int RGB_MASK = 0x00FFFFFF;
+
+  private QOICodec() {
+    // Prevent construction
+  }
+
+  /**
+   * Computes the position in the table of recently seen colors of a color.
+   *
+   * @param color a packed ARGB color
+   * @return the position of the color in the table, from 0 to 63
+   */
+  private static int hash(int color) {
+    return (PackedRGB.red(color) * 3 + PackedRGB.green(color) * 5 + PackedRGB.blue(color) * 7
+        + (color >>> 24) * 11) & 63;
+  }
+
+  /**
+   * Encodes packed pixels as chunks, writing them to a channel through a buffer.
+   *
+   * <p>Any bytes already in the buffer are written before the chunks. The buffer is flushed to
+   * the channel whenever it fills, and once more when every pixel is encoded, so that it is
+   * empty when this method returns</p>
+   *
+   * @param pixels  the packed pixels to encode, in order
+   * @param buffer  a buffer, ready to be written to, of at least 20 bytes
+   * @param channel the channel to write the chunks to
+   * @return the number of bytes of chunks written
+   * @throws IllegalArgumentException if any arguments are {@code null} or if the buffer is too
+   *                                  small
+   * @throws IOException              if the channel could not be written
+   */
+  public static long encode(int[] pixels, ByteBuffer buffer, WritableByteChannel channel)
+      throws IllegalArgumentException, IOException {
+    ObjectsExtension.requireNonnull(pixels, buffer, channel);
+
+    if (buffer.capacity() < 4 * QOI_MAX_CHUNK) {
+      throw new IllegalArgumentException("The buffer is too small to encode chunks");
+    }
+
+    long written = -buffer.position();
+    int[] recent = new int[64];
+    int previous = OPAQUE;
+    int run = 0;
+
+    for (int index = 0; index < pixels.length; index += 1) {
+      if (buffer.remaining() < 2 * QOI_MAX_CHUNK) {
+        written += flush(buffer, channel);
+      }
+
+      int color = pixels[index] | OPAQUE;
+
+      if (color == previous) {
+        run += 1;
+
+        if (run == QOI_MAX_RUN) {
+          buffer.put((byte) (QOI_OP_RUN | (run - 1)));
+          run = 0;
+        }
+        continue;
+      }
+
+      if (run > 0) {
+        buffer.put((byte) (QOI_OP_RUN | (run - 1)));
+        run = 0;
+      }
+
+      int position = hash(color);
+
+      if (recent[position] == color) {
+        buffer.put((byte) (QOI_OP_INDEX | position));
+      } else {
+        recent[position] = color;
+
+        // Differences wrap around, as though the channels were signed bytes
+        int red = (byte) (PackedRGB.red(color) - PackedRGB.red(previous));
+        int green = (byte) (PackedRGB.green(color) - PackedRGB.green(previous));
+        int blue = (byte) (PackedRGB.blue(color) - PackedRGB.blue(previous));
+        int redFromGreen = red - green;
+        int blueFromGreen = blue - green;
+
+        if (red >= -2 && red <= 1 && green >= -2 && green <= 1 && blue >= -2 && blue <= 1) {
+          buffer.put((byte) (QOI_OP_DIFF | (red + 2) << 4 | (green + 2) << 2 | (blue + 2)));
+        } else if (redFromGreen >= -8 && redFromGreen <= 7 && green >= -32 && green <= 31
+            && blueFromGreen >= -8 && blueFromGreen <= 7) {
+          buffer.put((byte) (QOI_OP_LUMA | (green + 32)));
+          buffer.put((byte) ((redFromGreen + 8) << 4 | (blueFromGreen + 8)));
+        } else {
+          buffer.put((byte) QOI_OP_RGB);
+          buffer.put((byte) PackedRGB.red(color));
+          buffer.put((byte) PackedRGB.green(color));
+          buffer.put((byte) PackedRGB.blue(color));
+        }
+      }
+
+      previous = color;
+    }
+
+    if (run > 0) {
+      buffer.put((byte) (QOI_OP_RUN | (run - 1)));
+    }
+
+    return written + flush(buffer, channel);
+  }
+
+  /**
+   * Decodes chunks into packed pixels, filling the given array.
+   *
+   * @param chunks the chunks, from their first byte; bytes after the last chunk needed are
+   *               ignored
+   * @param pixels receives the decoded pixels, in order
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   * @throws ImageExtractionException if the chunks end before every pixel is decoded
+   */
+  public static void decode(ByteBuffer chunks, int[] pixels)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(chunks, pixels);
+
+    int[] recent = new int[64];
+    int color = OPAQUE;
+    int run = 0;
+
+    try {
+      for (int index = 0; index < pixels.length; index += 1) {
+        if (run > 0) {
+          run -= 1;
+        } else {
+          int tag = chunks.get() & 0xFF;
+
+          if (tag == QOI_OP_RGB) {
+            int red = chunks.get() & 0xFF;
+            int green = chunks.get() & 0xFF;
+            int blue = chunks.get() & 0xFF;
+            color = (color & OPAQUE) | PackedRGB.pack(red, green, blue);
+          } else if (tag == QOI_OP_RGBA) {
+            int red = chunks.get() & 0xFF;
+            int green = chunks.get() & 0xFF;
+            int blue = chunks.get() & 0xFF;
+            color = (chunks.get() << 24) | PackedRGB.pack(red, green, blue);
+          } else if ((tag & QOI_MASK) == QOI_OP_INDEX) {
+            color = recent[tag];
+          } else if ((tag & QOI_MASK) == QOI_OP_DIFF) {
+            color = withChannels(color,
+                PackedRGB.red(color) + ((tag >> 4) & 3) - 2,
+                PackedRGB.green(color) + ((tag >> 2) & 3) - 2,
+                PackedRGB.blue(color) + (tag & 3) - 2);
+          } else if ((tag & QOI_MASK) == QOI_OP_LUMA) {
+            int second = chunks.get() & 0xFF;
+            int greenDifference = (tag & 0x3F) - 32;
+            color = withChannels(color,
+                PackedRGB.red(color) + greenDifference - 8 + ((second >> 4) & 0x0F),
+                PackedRGB.green(color) + greenDifference,
+                PackedRGB.blue(color) + greenDifference - 8 + (second & 0x0F));
+          } else {
+            run = tag & 0x3F;
+          }
+
+          recent[hash(color)] = color;
+        }
+
+        pixels[index] = color & RGB_MASK;
+      }
+    }
+    catch (BufferUnderflowException e) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
+    }
+  }
+
+  /**
+   * Replaces the color channels of a packed ARGB color, wrapping each channel around into the
+   * range [0, 255] as the format requires.
+   *
+   * @param color the color whose alpha channel is kept
+   * @param red   the new red channel
+   * @param green the new green channel
+   * @param blue  the new blue channel
+   * @return the color with the new channels
+   */
+  private static int withChannels(int color, int red, int green, int blue) {
+    return (color & OPAQUE) | ((red & 0xFF) << 16) | ((green & 0xFF) << 8) | (blue & 0xFF);
+  }
+
+  /**
+   * Writes all of the bytes in a buffer to a channel and clears the buffer.
+   *
+   * @param buffer  a buffer, ready to be written to
+   * @param channel the channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel could not be written
+   */
+  private static int flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+    buffer.flip();
+    int written = buffer.remaining();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+
+    buffer.clear();
+    return written;
+  }
+}
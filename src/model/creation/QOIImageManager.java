@@ -0,0 +1,181 @@
+package model.creation;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import model.image.VImage;
+import model.image.VPackedImages;
+import model.misc.FileUtils;
+import model.misc.ObjectsExtension;
+import model.persistence.ImageSavingException;
+import model.persistence.VImageSaver;
+
+/**
+ * Loads and saves images stored on disk in the "Quite OK Image" format, with the ".qoi" file
+ * extension.
+ *
+ * <p>QOI is a lossless format that is encoded and decoded in a single pass over the pixels of
+ * an image. Each pixel is written as the shortest of: a run of copies of the previous pixel; an
+ * index into a table of 64 recently seen colors, hashed from their channels; a small
+ * difference from the previous pixel, in one or two bytes; or its channels in full. Files are
+ * typically a little larger than PNG files of the same image but much smaller than ppm files,
+ * and are saved several times faster and loaded around twice as fast as PNG files, which makes
+ * the format a good choice for the layers of projects that are saved and loaded often.
+ *
+ * <p>Images are saved with three channels. Files with four channels are loaded as well, their
+ * alpha channel being dropped as for other formats. Files are saved through a small buffer and
+ * loaded from a memory mapping of the file, so only the pixels of the image itself are held
+ * in memory. The chunks of pixels themselves are encoded and decoded by {@link QOICodec}.</p>
+ */
+public class QOIImageManager implements VImageProvider, VImageSaver {
+
+  // The bytes that begin every qoi file
+  private static final byte[] QOI_MAGIC = {'q', 'o', 'i', 'f'};
+
+  // The number of bytes in the header of a qoi file
+  private static final int QOI_HEADER_SIZE = 14;
+
+  // The bytes that end every qoi file
+  private static final byte[] QOI_END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+
+  // The size of the buffer files are written through
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path filepath;
+
+  /**
+   * Construct a new image manager which loads and saves the qoi file at the given path.
+   *
+   * @param filepath a file path to a file with the ".qoi" extension as either a relative or
+   *                 absolute path
+   * @throws IllegalArgumentException if {@code filepath} is {@code null}; if the path refers to
+   *                                  a directory; or if the given file path does not refer to
+   *                                  a qoi image (via its extension)
+   */
+  public QOIImageManager(Path filepath) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filepath);
+
+    if (Files.isDirectory(filepath)) {
+      throw new IllegalArgumentException("File path must not be a directory to load a qoi image");
+    }
+
+    if (!FileUtils.extensionOf(filepath.toString()).equals("qoi")) {
+      throw new IllegalArgumentException("QOIImageManager can only save to QOI extensions");
+    }
+
+    this.filepath = filepath.toAbsolutePath();
+  }
+
+  @Override
+  public VImage extractImage() throws ImageExtractionException {
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      long size = channel.size();
+
+      if (size < QOI_HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new ImageExtractionException("The qoi file " + filepath.toString()
+            + " is improperly formatted and/or corrupt");
+      }
+
+      MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+      for (byte magic : QOI_MAGIC) {
+        if (contents.get() != magic) {
+          throw new ImageExtractionException("Incorrect file format: QOI format expected");
+        }
+      }
+
+      int width = contents.getInt();
+      int height = contents.getInt();
+      int channels = contents.get();
+      contents.get(); // The color space is informative only
+
+      if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE
+          || (channels != 3 && channels != 4)) {
+        throw new ImageExtractionException("The qoi file " + filepath.toString()
+            + " has an invalid header");
+      }
+
+      int[] pixels = new int[width * height];
+      QOICodec.decode(contents, pixels);
+
+      return VPackedImages.wrap(width, height, pixels);
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied qoi file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  @Override
+  public Dimension extractSize() throws ImageExtractionException {
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(QOI_HEADER_SIZE);
+
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0) {
+          throw new ImageExtractionException("The qoi file " + filepath.toString()
+              + " is improperly formatted and/or corrupt");
+        }
+      }
+      header.flip();
+
+      for (byte magic : QOI_MAGIC) {
+        if (header.get() != magic) {
+          throw new ImageExtractionException("Incorrect file format: QOI format expected");
+        }
+      }
+
+      int width = header.getInt();
+      int height = header.getInt();
+
+      if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+        throw new ImageExtractionException("The qoi file " + filepath.toString()
+            + " has an invalid header");
+      }
+
+      return new Dimension(width, height);
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The supplied qoi file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  @Override
+  public void saveImage(VImage image) throws IllegalArgumentException, ImageSavingException {
+    ObjectsExtension.requireNonnull(image);
+
+    int[] pixels = VPackedImages.readPixels(image);
+
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      buffer.put(QOI_MAGIC).putInt(image.getWidth()).putInt(image.getHeight());
+      buffer.put((byte) 3).put((byte) 0);
+
+      QOICodec.encode(pixels, buffer, channel);
+
+      buffer.put(QOI_END_MARKER);
+      buffer.flip();
+
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    catch (IOException e) {
+      throw new ImageSavingException("Image could not be saved");
+    }
+  }
+}
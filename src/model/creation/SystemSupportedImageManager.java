@@ -1,21 +1,35 @@
 package model.creation;
 
-import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import model.image.VImage;
-import model.image.VMutableImage;
-import model.image.VMutableImageImpl;
-import model.image.pixel.VPixelCoordinate;
-import model.image.pixel.VRGBPixel;
+import model.image.VPackedImages;
+import model.image.pixel.PackedRGB;
 import model.misc.FileUtils;
 import model.misc.ObjectsExtension;
-import model.misc.VImageUtils;
 import model.persistence.ImageSavingException;
 import model.persistence.VImageSaver;
 
@@ -27,11 +41,27 @@ import model.persistence.VImageSaver;
  * from and call the {@link VImageProvider#extractImage()} method to extract the image from a
  * particular location if such data exists. You can then save new image data at that location using
  * the {@link VImageSaver#saveImage(VImage)} method to overwrite data stored in a particular
- * location. The location is automatically decoded to determine the extension of the file.</p>
+ * location. The location is automatically decoded to determine the extension of the file.
+ *
+ * <p>PNG files are saved by a {@link PNGParallelEncoder}, which compresses parts of the image
+ * on every processor at once, at a compression level chosen when the manager is constructed.
+ * Other formats are saved through ImageIO with writers that are kept and used again from one
+ * save to the next (see {@link ImageWriterPool}).</p>
  */
 public class SystemSupportedImageManager implements VImageProvider, VImageSaver {
+
+  // Keeps only the color channels of a packed ARGB color
+  private static final int RGB_MASK = 0x00FFFFFF;
+
+  // The number of pixels read at once from images that cannot be read directly
+  private static final int SPAN_PIXELS = 1 << 16;
+
+  // The compression level png files are saved with unless another is given
+  private static volatile int defaultPngLevel = 6;
+
   private final Path filepath;
   private final String extension;
+  private final int pngLevel;
 
   /**
    * Create a new image provider which loads an image
@@ -44,6 +74,27 @@ public class SystemSupportedImageManager implements VImageProvider, VImageSaver
    *                                  refers to a directory instead of a path
    */
   public SystemSupportedImageManager(Path filepath) throws IllegalArgumentException {
+    this(filepath, defaultPngLevel);
+  }
+
+  /**
+   * Create a new image provider which loads an image from some file path and saves png files
+   * with the given compression level.
+   *
+   * @param filepath a path to an image resource as either an absolute or relative path
+   * @param pngLevel the compression level png files are saved with, from 0 (no compression)
+   *                 to 9 (best compression)
+   * @throws IllegalArgumentException if {@code filename} is {@code null} or if the file has an
+   *                                  unsupported file extension (one other than JPEG, PNG, or GIF);
+   *                                  or if the file name is the empty string; or if the file name
+   *                                  refers to a directory instead of a path; or if the
+   *                                  compression level is not between 0 and 9
+   */
+  public SystemSupportedImageManager(Path filepath, int pngLevel)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filepath);
+    ensureLevelValid(pngLevel);
+
     if (filepath.toString().isEmpty()) {
       throw new IllegalArgumentException("File must have a name specified");
     }
@@ -52,13 +103,57 @@ public class SystemSupportedImageManager implements VImageProvider, VImageSaver
       throw new IllegalArgumentException("Cannot load an image with a directory path");
     }
 
-    this.extension = FileUtils.extensionOf(filepath.toString());
+    // Files are saved in the same format whatever the case of their extension
+    this.extension = FileUtils.extensionOf(filepath.toString()).toLowerCase(Locale.ROOT);
     this.filepath = filepath.toAbsolutePath();
+    this.pngLevel = pngLevel;
+  }
+
+  /**
+   * Sets the compression level png files are saved with by managers constructed from then on
+   * without a compression level of their own. The level is 6 unless set otherwise.
+   *
+   * @param level the compression level, from 0 (no compression, the fastest) to 9 (best
+   *              compression, the slowest)
+   * @throws IllegalArgumentException if the level is not between 0 and 9
+   */
+  public static void setDefaultPngLevel(int level) throws IllegalArgumentException {
+    ensureLevelValid(level);
+    defaultPngLevel = level;
+  }
+
+  /**
+   * Retrieves the compression level png files are saved with by default.
+   *
+   * @return the default compression level, from 0 to 9
+   */
+  public static int getDefaultPngLevel() {
+    return defaultPngLevel;
+  }
+
+  /**
+   * Ensures that the given compression level is one png files can be saved with.
+   *
+   * @param level the compression level
+   * @throws IllegalArgumentException if the level is not between 0 and 9
+   */
+  private static void ensureLevelValid(int level) throws IllegalArgumentException {
+    if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("The compression level of a png file must be between "
+          + Deflater.NO_COMPRESSION + " and " + Deflater.BEST_COMPRESSION);
+    }
   }
 
   /**
    * Extracts a {@link VImage} from the buffered image provided.
    *
+   * <p>The decoded pixels are read in bulk rather than one at a time. Images decoded with
+   * packed integer pixels are adopted as the storage of the new image outright; images
+   * decoded with interleaved byte samples (as JPEGs and most PNGs are) are converted row by
+   * row, in parallel, straight from their data buffers. Any other kind of image is read
+   * through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} in spans of
+   * rows. The alpha channel is dropped in every case</p>
+   *
    * @param image a buffered image containing pixel data loaded from disk
    * @return a new {@link VImage} whose contents match those of the buffered image
    * @throws IllegalArgumentException if {@code image} is {@code null}
@@ -68,18 +163,86 @@ public class SystemSupportedImageManager implements VImageProvider, VImageSaver
 
     int width = image.getWidth();
     int height = image.getHeight();
+    WritableRaster raster = image.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    DataBuffer buffer = raster.getDataBuffer();
+    boolean untranslated = raster.getSampleModelTranslateX() == 0
+        && raster.getSampleModelTranslateY() == 0 && buffer.getNumBanks() == 1;
+    int[] pixels;
 
-    VMutableImage newImage = new VMutableImageImpl(width, height);
+    if (untranslated && (image.getType() == BufferedImage.TYPE_INT_RGB
+        || image.getType() == BufferedImage.TYPE_INT_ARGB)
+        && ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == width
+        && buffer.getOffset() == 0 && buffer.getSize() == width * height) {
+      // The decoded image is already laid out as packed colors
+      pixels = ((DataBufferInt) buffer).getData();
+      IntStream.range(0, height).parallel().forEach(row -> {
+        for (int index = row * width; index < (row + 1) * width; index += 1) {
+          pixels[index] &= RGB_MASK;
+        }
+      });
+    } else if (untranslated && buffer instanceof DataBufferByte
+        && sampleModel instanceof PixelInterleavedSampleModel
+        && sampleModel.getNumBands() >= 3
+        && image.getColorModel().getColorSpace().isCS_sRGB()
+        && !image.getColorModel().isAlphaPremultiplied()) {
+      pixels = this.unpackInterleaved(width, height, (PixelInterleavedSampleModel) sampleModel,
+          (DataBufferByte) buffer);
+    } else {
+      pixels = new int[width * height];
+      int rowsPerSpan = Math.max(1, SPAN_PIXELS / width);
+      int numSpans = (height + rowsPerSpan - 1) / rowsPerSpan;
 
-    for (int i = 0; i < width; i += 1) {
-      for (int j = 0; j < height; j += 1) {
-        int rgb = image.getRGB(i, j);
-        VPixelCoordinate coord = new VPixelCoordinate(j, i);
-        newImage.setPixel(new VRGBPixel(new Color(rgb)), coord);
-      }
+      IntStream.range(0, numSpans).parallel().forEach(span -> {
+        int firstRow = span * rowsPerSpan;
+        int numRows = Math.min(rowsPerSpan, height - firstRow);
+        image.getRGB(0, firstRow, width, numRows, pixels, firstRow * width, width);
+
+        for (int index = firstRow * width; index < (firstRow + numRows) * width; index += 1) {
+          pixels[index] &= RGB_MASK;
+        }
+      });
     }
 
-    return newImage;
+    return VPackedImages.wrap(width, height, pixels);
+  }
+
+  /**
+   * Packs the colors of an image whose red, green and blue samples are stored as bytes
+   * interleaved pixel by pixel, such as {@link BufferedImage#TYPE_3BYTE_BGR} and
+   * {@link BufferedImage#TYPE_4BYTE_ABGR}.
+   *
+   * @param width       the width of the image
+   * @param height      the height of the image
+   * @param sampleModel describes where each sample of the image is stored
+   * @param buffer      the samples of the image
+   * @return the row-major packed colors of the image
+   */
+  private int[] unpackInterleaved(int width, int height, PixelInterleavedSampleModel sampleModel,
+      DataBufferByte buffer) {
+    byte[] data = buffer.getData();
+    int start = buffer.getOffset();
+    int pixelStride = sampleModel.getPixelStride();
+    int scanlineStride = sampleModel.getScanlineStride();
+    int[] bandOffsets = sampleModel.getBandOffsets();
+    int redOffset = bandOffsets[0];
+    int greenOffset = bandOffsets[1];
+    int blueOffset = bandOffsets[2];
+    int[] pixels = new int[width * height];
+
+    IntStream.range(0, height).parallel().forEach(row -> {
+      int sample = start + row * scanlineStride;
+      int index = row * width;
+
+      for (int column = 0; column < width; column += 1) {
+        pixels[index] = PackedRGB.pack(data[sample + redOffset] & 0xFF,
+            data[sample + greenOffset] & 0xFF, data[sample + blueOffset] & 0xFF);
+        sample += pixelStride;
+        index += 1;
+      }
+    });
+
+    return pixels;
   }
 
   @Override
@@ -88,28 +251,142 @@ public class SystemSupportedImageManager implements VImageProvider, VImageSaver
 
     try {
       BufferedImage bufferedImage = ImageIO.read(file);
+
+      // No reader understood the contents of the file
+      if (bufferedImage == null) {
+        throw new ImageExtractionException("The file " + file.toString()
+            + " is not an image that can be read");
+      }
       return this.extractFromBufferedImage(bufferedImage);
     } catch (IOException exception) {
       throw new ImageExtractionException("Could not read from file " + file.toString());
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Only the pixels kept are stored: the image is read with an {@link ImageReadParam} whose
+   * source region and source subsampling are those given, so the reader skips the pixels
+   * outside of the region and between those kept as it decodes the file, and never allocates
+   * the full image</p>
+   */
+  @Override
+  public VImage extractImage(Rectangle region, int subsampling)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(region);
+
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("The subsampling of an image must be positive");
+    }
+
+    return this.readWith(reader -> {
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceRegion(VSubsampledRegions.clip(region, subsampling, reader.getWidth(0),
+          reader.getHeight(0)));
+      param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+      return this.extractFromBufferedImage(reader.read(0, param));
+    });
+  }
+
+  @Override
+  public Dimension extractSize() throws ImageExtractionException {
+    return this.readWith(reader -> new Dimension(reader.getWidth(0), reader.getHeight(0)));
+  }
+
+  /**
+   * Reads the file of this manager with the first reader that understands its contents.
+   *
+   * @param action reads what is needed from the file through the reader
+   * @param <T>    the type of the result of the action
+   * @return the result of the action
+   * @throws ImageExtractionException if no reader understands the file or if the file could
+   *                                  not be read
+   */
+  private <T> T readWith(ReaderAction<T> action) throws ImageExtractionException {
+    File file = filepath.toFile();
+
+    try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+
+      // No reader understood the contents of the file
+      if (readers == null || !readers.hasNext()) {
+        throw new ImageExtractionException("The file " + file.toString()
+            + " is not an image that can be read");
+      }
+
+      ImageReader reader = readers.next();
+
+      try {
+        reader.setInput(input, true, true);
+        return action.apply(reader);
+      } finally {
+        reader.dispose();
+      }
+    } catch (IOException exception) {
+      throw new ImageExtractionException("Could not read from file " + file.toString());
+    }
+  }
+
   @Override
   public void saveImage(VImage image) throws IllegalArgumentException, ImageSavingException {
     ObjectsExtension.requireNonnull(image);
+
+    if (extension.equals("png")) {
+      PNGParallelEncoder.encode(filepath, image.getWidth(), image.getHeight(),
+          VPackedImages.readPixels(image), pngLevel);
+      return;
+    }
+
     File locationToSave = filepath.toFile();
-    RenderedImage allocatedImage = VImageUtils.extractToBuffer(image);
+    // The saved image shares the pixels of the image
+    // since it is only read from while it is written
+    RenderedImage allocatedImage = VPackedImages.asBufferedImage(image);
+    ImageWriter writer = ImageWriterPool.acquire(extension, allocatedImage);
+    boolean written = false;
 
     try {
-      // Ensure that the write actually succeeded for the given extension. If it
-      // did not succeed, there was an issue
-      boolean didSucceed = ImageIO.write(allocatedImage, extension, locationToSave);
-      if (!didSucceed) {
-        throw new IOException("Could not write to file " + filepath.toString());
+      // As ImageIO.write does, since the stream would otherwise
+      // leave the end of a longer file in place
+      Files.deleteIfExists(filepath);
+
+      try (ImageOutputStream output = ImageIO.createImageOutputStream(locationToSave)) {
+        if (output == null) {
+          throw new IOException("Could not write to file " + filepath.toString());
+        }
+
+        writer.setOutput(output);
+        writer.write(allocatedImage);
       }
+      written = true;
     }
     catch (IOException e) {
       throw new ImageSavingException("Could not save individual image");
     }
+    finally {
+      // A writer that failed partway through is not trusted with another image
+      if (written) {
+        ImageWriterPool.release(extension, writer);
+      } else {
+        writer.dispose();
+      }
+    }
+  }
+
+  /**
+   * Something to read from an image file through a reader of its format.
+   *
+   * @param <T> the type of what is read
+   */
+  private interface ReaderAction<T> {
+
+    /**
+     * Reads from the file.
+     *
+     * @param reader a reader whose input is the file
+     * @return what was read
+     * @throws IOException if the file could not be read
+     */
+    T apply(ImageReader reader) throws IOException;
   }
 }
@@ -0,0 +1,379 @@
+package model.creation;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import model.image.VImage;
+import model.image.VPackedImages;
+import model.misc.ObjectsExtension;
+
+/**
+ * Keeps the images most recently decoded from files on disk, so that loading the same file
+ * again does not decode it again.
+ *
+ * <p>An image is cached under the absolute path of its file along with the size of the file
+ * and the time it was last modified. A cached image is only used while its file still has the
+ * same size and modification time, so a file that is saved over is decoded afresh the next
+ * time it is loaded. The cache holds at most a fixed number of bytes of pixel data, and the
+ * least recently used images are dropped to make room for new ones. Only images decoded in
+ * full are cached, though regions of an image (see
+ * {@link VImageProvider#extractImage(Rectangle, int)}) are taken from its cached image if it
+ * has one.
+ *
+ * <p>Images are immutable, so the same cached image is handed out on every load. The images
+ * of the cache are shared with the layers made from them (see
+ * {@link VPackedImages#wrapShared(int, int, int[])}): a file loaded into several layers, or
+ * loaded again after a layer was made from it, is held in memory once. A layer only copies
+ * the pixels once its contents are changed. When a layer sharing an image spills its pixels
+ * to disk, the image is dropped from the cache so that the memory of the pixels can be
+ * reclaimed.</p>
+ */
+public final class VDecodedImageCache {
+
+  // By default, an eighth of the maximum heap size may be held by cached images
+  private static final VDecodedImageCache GLOBAL =
+      new VDecodedImageCache(Runtime.getRuntime().maxMemory() / 8);
+
+  // Cached images by the absolute path of their file, from least to most recently used
+  private final LinkedHashMap<Path, Entry> entries;
+  private long limit;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Construct a new empty cache with the given limit.
+   *
+   * @param limit the maximum number of bytes of pixel data the cache may hold
+   * @throws IllegalArgumentException if {@code limit} is negative
+   */
+  public VDecodedImageCache(long limit) throws IllegalArgumentException {
+    if (limit < 0) {
+      throw new IllegalArgumentException("The limit of a cache must not be negative");
+    }
+
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.limit = limit;
+  }
+
+  /**
+   * Retrieves the cache shared by every image loaded from disk in the program.
+   *
+   * <p>By default, the global cache may hold an eighth of the maximum heap size of the
+   * virtual machine in pixel data</p>
+   *
+   * @return the application-wide cache of decoded images
+   */
+  public static VDecodedImageCache global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Produces an image provider which loads images through this cache, decoding the file with
+   * the given provider only when this cache does not hold the current contents of the file.
+   *
+   * @param filepath the path to the file the provider reads
+   * @param provider the provider which decodes the file
+   * @return a provider which shares images decoded from the file through this cache
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   */
+  public VImageProvider cached(Path filepath, VImageProvider provider)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filepath, provider);
+    Path file = filepath.toAbsolutePath();
+
+    return new VImageProvider() {
+      @Override
+      public VImage extractImage() throws ImageExtractionException {
+        return VDecodedImageCache.this.load(file, provider);
+      }
+
+      @Override
+      public VImage extractImage(Rectangle region, int subsampling)
+          throws IllegalArgumentException, ImageExtractionException {
+        VImage image = VDecodedImageCache.this.find(file);
+
+        // Regions are not cached, but are taken from a cached image when there is one
+        if (image != null) {
+          return VSubsampledRegions.sample(image, region, subsampling);
+        }
+        return provider.extractImage(region, subsampling);
+      }
+
+      @Override
+      public Dimension extractSize() throws ImageExtractionException {
+        VImage image = VDecodedImageCache.this.find(file);
+
+        if (image != null) {
+          return new Dimension(image.getWidth(), image.getHeight());
+        }
+        return provider.extractSize();
+      }
+    };
+  }
+
+  /**
+   * Loads the image of a file, from this cache if it holds the current contents of the file
+   * and by decoding the file otherwise.
+   *
+   * <p>The file is decoded outside of the lock of the cache, so that other files can be loaded
+   * at the same time. An image is only cached if its file did not change while it was being
+   * decoded</p>
+   *
+   * @param file     the absolute path to the file
+   * @param provider the provider which decodes the file
+   * @return the image of the file, which may be shared with other loads of the file
+   * @throws ImageExtractionException if the file could not be decoded
+   */
+  private VImage load(Path file, VImageProvider provider) throws ImageExtractionException {
+    Stamp before = Stamp.of(file);
+
+    synchronized (this) {
+      Entry entry = entries.get(file);
+
+      if (entry != null && entry.stamp.equals(before)) {
+        hits += 1;
+        return entry.image;
+      }
+
+      misses += 1;
+    }
+
+    VImage decoded = provider.extractImage();
+    VImage[] shared = new VImage[1];
+
+    // A layer spilling the pixels could not free them while this cache held on to them
+    shared[0] = VPackedImages.wrapShared(decoded.getWidth(), decoded.getHeight(),
+        VPackedImages.readPixels(decoded), () -> this.evict(file, shared[0]));
+
+    if (before != null && before.equals(Stamp.of(file))) {
+      this.put(file, new Entry(shared[0], before));
+    }
+    return shared[0];
+  }
+
+  /**
+   * Finds the image of a file in this cache without counting a hit or a miss.
+   *
+   * @param file the absolute path to the file
+   * @return the cached image of the file, or {@code null} if this cache does not hold the
+   *         current contents of the file
+   */
+  private VImage find(Path file) {
+    Stamp stamp = Stamp.of(file);
+
+    synchronized (this) {
+      Entry entry = entries.get(file);
+      return entry != null && entry.stamp.equals(stamp) ? entry.image : null;
+    }
+  }
+
+  /**
+   * Adds an image to this cache, replacing any image previously cached for its file and
+   * dropping the least recently used images until the cache is within its limit.
+   *
+   * @param file  the absolute path to the file
+   * @param entry the image and the state of its file
+   */
+  private synchronized void put(Path file, Entry entry) {
+    // An image larger than the whole cache would only push every other image out
+    if (entry.bytes() > limit) {
+      this.remove(file);
+      return;
+    }
+
+    this.remove(file);
+    entries.put(file, entry);
+    bytes += entry.bytes();
+    this.trimTo(limit);
+  }
+
+  /**
+   * Removes the image of a file from this cache, if any.
+   *
+   * @param file the absolute path to the file
+   */
+  private synchronized void remove(Path file) {
+    Entry previous = entries.remove(file);
+
+    if (previous != null) {
+      bytes -= previous.bytes();
+    }
+  }
+
+  /**
+   * Removes the image of a file from this cache if it is the given image, leaving any image
+   * cached for the file since in place.
+   *
+   * @param file  the absolute path to the file
+   * @param image the image to remove
+   */
+  private synchronized void evict(Path file, VImage image) {
+    Entry entry = entries.get(file);
+
+    if (entry != null && entry.image == image) {
+      this.remove(file);
+    }
+  }
+
+  /**
+   * Drops the least recently used images of this cache until it holds at most the given
+   * number of bytes.
+   *
+   * @param size the number of bytes the cache may hold
+   */
+  private synchronized void trimTo(long size) {
+    Iterator<Map.Entry<Path, Entry>> oldest = entries.entrySet().iterator();
+
+    while (bytes > size && oldest.hasNext()) {
+      bytes -= oldest.next().getValue().bytes();
+      oldest.remove();
+    }
+  }
+
+  /**
+   * Sets the maximum number of bytes of pixel data this cache may hold, dropping the least
+   * recently used images at once if it holds more. A limit of 0 disables the cache.
+   *
+   * @param limit the new limit in bytes
+   * @throws IllegalArgumentException if {@code limit} is negative
+   */
+  public synchronized void setLimit(long limit) throws IllegalArgumentException {
+    if (limit < 0) {
+      throw new IllegalArgumentException("The limit of a cache must not be negative");
+    }
+
+    this.limit = limit;
+    this.trimTo(limit);
+  }
+
+  /**
+   * Retrieves the maximum number of bytes of pixel data this cache may hold.
+   *
+   * @return the limit of this cache in bytes
+   */
+  public synchronized long getLimit() {
+    return this.limit;
+  }
+
+  /**
+   * Retrieves the number of bytes of pixel data this cache currently holds.
+   *
+   * @return the size of the cached images in bytes
+   */
+  public synchronized long residentBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Retrieves the number of loads that were served from this cache.
+   *
+   * @return the number of cache hits
+   */
+  public synchronized long hits() {
+    return this.hits;
+  }
+
+  /**
+   * Retrieves the number of loads that had to decode their file.
+   *
+   * @return the number of cache misses
+   */
+  public synchronized long misses() {
+    return this.misses;
+  }
+
+  /**
+   * Drops every image from this cache. The hit and miss counts are kept.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * A cached image along with the state of its file when it was decoded.
+   */
+  private static final class Entry {
+    private final VImage image;
+    private final Stamp stamp;
+
+    /**
+     * Construct a new cache entry.
+     *
+     * @param image the decoded image
+     * @param stamp the state of the file the image was decoded from
+     */
+    private Entry(VImage image, Stamp stamp) {
+      this.image = image;
+      this.stamp = stamp;
+    }
+
+    /**
+     * Computes the number of bytes of pixel data of the image.
+     *
+     * @return the size of the image in bytes
+     */
+    long bytes() {
+      return 4L * image.getWidth() * image.getHeight();
+    }
+  }
+
+  /**
+   * The size and modification time of a file, which identify its contents.
+   */
+  private static final class Stamp {
+    private final long size;
+    private final FileTime lastModified;
+
+    /**
+     * Construct a new stamp.
+     *
+     * @param size         the size of the file, in bytes
+     * @param lastModified the time the file was last modified
+     */
+    private Stamp(long size, FileTime lastModified) {
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * Reads the stamp of a file.
+     *
+     * @param file the file
+     * @return the stamp of the file, or {@code null} if the file could not be inspected
+     */
+    static Stamp of(Path file) {
+      try {
+        return new Stamp(Files.size(file), Files.getLastModifiedTime(file));
+      } catch (IOException | SecurityException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+
+      if (!(other instanceof Stamp)) {
+        return false;
+      }
+
+      Stamp that = (Stamp) other;
+      return this.size == that.size && this.lastModified.equals(that.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(size) + lastModified.hashCode();
+    }
+  }
+}
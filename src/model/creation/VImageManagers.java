@@ -1,7 +1,9 @@
 package model.creation;
 
+import java.awt.Dimension;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import model.image.VLazyImage;
 import model.misc.FileUtils;
 import model.misc.ObjectsExtension;
 import model.persistence.VImageSaver;
@@ -56,9 +58,41 @@ public class VImageManagers {
     if (extension.equals("ppm")) {
       return new PPMImageManager(filepath);
     }
+
+    if (extension.equals("qoi")) {
+      return new QOIImageManager(filepath);
+    }
     return new SystemSupportedImageManager(filepath);
   }
 
+  /**
+   * Produces a new {@link VImageSaver} that can handle saving the given file, saving
+   * ppm files with the given encoding.
+   *
+   * <p>This behaves exactly as {@link VImageManagers#diskSaverFor(Path)} except
+   * that files with the ".ppm" extension are saved as ASCII or binary files as
+   * requested, rather than always as ASCII files</p>
+   *
+   * @param filepath    the name of the file that should be saved by this provider
+   * @param ppmEncoding how the samples of ppm files are written
+   * @return a new image saver that can save the file with the given name in
+   *         the given format
+   * @throws IllegalArgumentException if any arguments are {@code null}; or if the
+   *                                  given file cannot be saved by Vido; or if the file
+   *                                  name is the empty string; or if the file refers to
+   *                                  a directory
+   */
+  public static VImageSaver diskSaverFor(Path filepath, PPMEncoding ppmEncoding)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filepath, ppmEncoding);
+
+    if (FileUtils.extensionOf(filepath.toString()).equals("ppm")
+        && !Files.isDirectory(filepath)) {
+      return new PPMImageManager(filepath, ppmEncoding);
+    }
+    return diskSaverFor(filepath);
+  }
+
   /**
    * Produces an image provider that can produce images from the given
    * file path.
@@ -67,7 +101,10 @@ public class VImageManagers {
    * require different image providers to manage their translation into Vido.
    * You use this factory method to produce the correct image provider that
    * can extract images from the given source without having to parse the
-   * file path yourself.</p>
+   * file path yourself.
+   *
+   * <p>The provider loads images through the global {@link VDecodedImageCache}, so a file
+   * that has not changed since it was last loaded is not decoded again.</p>
    *
    * @param filepath a path to a file containing image data
    * @return a new image provider that can read the file with the given name in
@@ -89,10 +126,81 @@ public class VImageManagers {
     }
 
     String extension = FileUtils.extensionOf(filepath.toString());
+    VImageProvider provider;
 
     if (extension.equals("ppm")) {
-      return new PPMImageManager(filepath);
+      provider = new PPMImageManager(filepath);
+    } else if (extension.equals("qoi")) {
+      provider = new QOIImageManager(filepath);
+    } else {
+      provider = new SystemSupportedImageManager(filepath);
     }
-    return new SystemSupportedImageManager(filepath);
+
+    // Files loaded again are served from the images decoded last time
+    return VDecodedImageCache.global().cached(filepath, provider);
+  }
+
+  /**
+   * Produces an image of the given file whose pixels are only decoded the first time they are
+   * needed.
+   *
+   * <p>Only the header of the file is read now, to find the size of the image. A layer made
+   * from the image holds on to it without decoding it (see {@link VLazyImage}), and decodes
+   * the file through the provider of {@link VImageManagers#diskProviderFor(Path)} once its
+   * pixels are needed. The file is not decoded if it has changed by then.</p>
+   *
+   * @param filepath a path to a file containing image data
+   * @return a new lazy image of the file
+   * @throws IllegalArgumentException if {@code filepath} is {@code null}; or if the file
+   *                                  cannot be read by Vido; or if the file name is the empty
+   *                                  string; or if the file refers to a directory
+   * @throws ImageExtractionException if the size of the image could not be read
+   */
+  public static VLazyImage lazyDiskImageFor(Path filepath)
+      throws IllegalArgumentException, ImageExtractionException {
+    VImageProvider provider = diskProviderFor(filepath);
+    Dimension size = provider.extractSize();
+    return VLazyImages.fromFile(filepath, size.width, size.height, provider::extractImage);
+  }
+
+  /**
+   * Produces a layered image provider that can load the project stored at the given path.
+   *
+   * <p>Projects are stored on disk either as a single project file with the ".vido"
+   * extension, loaded by a {@link VProjectFileManager}, or as a directory holding a file
+   * for each layer, loaded by a {@link VLayeredImageDiskProvider}</p>
+   *
+   * @param projectPath a path to a project file or to the directory of a project
+   * @return a new layered image provider that can load the project at the given path
+   * @throws IllegalArgumentException if {@code projectPath} is {@code null}; or if the path
+   *                                  refers to neither a project file nor a directory
+   */
+  public static VLayeredImageProvider layeredProviderFor(Path projectPath)
+      throws IllegalArgumentException {
+    return layeredProviderFor(projectPath, false);
+  }
+
+  /**
+   * Produces a layered image provider that can load the project stored at the given path,
+   * either decoding every layer up front or decoding each layer only when it is first used.
+   *
+   * <p>A lazily loaded project only reads the headers of its layers when it is loaded, which
+   * makes loading a project with many large layers almost immediate</p>
+   *
+   * @param projectPath a path to a project file or to the directory of a project
+   * @param lazy        whether each layer is only decoded when it is first used
+   * @return a new layered image provider that can load the project at the given path
+   * @throws IllegalArgumentException if {@code projectPath} is {@code null}; or if the path
+   *                                  refers to neither a project file nor a directory
+   */
+  public static VLayeredImageProvider layeredProviderFor(Path projectPath, boolean lazy)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(projectPath);
+
+    if (FileUtils.extensionOf(projectPath.toString()).equals("vido")
+        && !Files.isDirectory(projectPath)) {
+      return new VProjectFileManager(projectPath, true, lazy);
+    }
+    return new VLayeredImageDiskProvider(projectPath, lazy);
   }
 }
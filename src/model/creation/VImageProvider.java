@@ -1,6 +1,9 @@
 package model.creation;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import model.image.VImage;
+import model.misc.ObjectsExtension;
 
 /**
  * A creator of images from an arbitrary source encoding image data. A {@link VImageProvider} acts
@@ -26,4 +29,53 @@ public interface VImageProvider {
    *                                  be read properly
    */
   VImage extractImage() throws ImageExtractionException;
+
+  /**
+   * Produces a new image from a region of the image wrapped by this provider, keeping only
+   * every {@code subsampling}-th pixel of every {@code subsampling}-th row of the region.
+   *
+   * <p>This is meant for previews and crops of large images, where decoding the image in full
+   * would waste both time and memory. The region is clipped to the bounds of the image. The
+   * pixel in row {@code i} and column {@code j} of the new image is the pixel in row
+   * {@code region.y + i * subsampling} and column {@code region.x + j * subsampling} of the
+   * image, so the new image is the size of the clipped region divided by the subsampling,
+   * rounded up. A subsampling of 1 keeps every pixel of the region.
+   *
+   * <p>By default, the image is extracted in full and the pixels kept are copied out of it;
+   * providers that can skip the parts of their data source that are not kept override this
+   * method</p>
+   *
+   * @param region      the region of the image to decode
+   * @param subsampling the distance between the pixels and rows kept
+   * @return a new image holding the pixels kept
+   * @throws IllegalArgumentException if {@code region} is {@code null} or if
+   *                                  {@code subsampling} is not positive
+   * @throws ImageExtractionException if the image could not be extracted or if the region does
+   *                                  not overlap the image
+   */
+  default VImage extractImage(Rectangle region, int subsampling)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(region);
+
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("The subsampling of an image must be positive");
+    }
+    return VSubsampledRegions.sample(this.extractImage(), region, subsampling);
+  }
+
+  /**
+   * Reads the size of the image wrapped by this provider without decoding its pixels.
+   *
+   * <p>Only as much of the data source is read as is needed to find the size of the image,
+   * which for a file is usually just its header. The image itself may still turn out to be
+   * unreadable when it is later extracted. By default, the image is extracted in full and its
+   * size returned; providers that can find the size more cheaply override this method</p>
+   *
+   * @return the width and height of the image
+   * @throws ImageExtractionException if the size of the image could not be read
+   */
+  default Dimension extractSize() throws ImageExtractionException {
+    VImage image = this.extractImage();
+    return new Dimension(image.getWidth(), image.getHeight());
+  }
 }
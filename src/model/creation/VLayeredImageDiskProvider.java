@@ -21,7 +21,11 @@ import model.persistence.VLayeredImageSaver;
  * for a single {@link model.image.VLayer} instance that can be initialized at runtime.
  *
  * <p>Use a {@link VLayeredImageDiskProvider} to load multi-layered images stored on disk
- * by a {@link VLayeredImageSaver}. The corresponding image saver is responsible</p>
+ * by a {@link VLayeredImageSaver}. The corresponding image saver is responsible
+ *
+ * <p>A provider can load a project lazily, reading only the header of each file up front
+ * and decoding each layer the first time it is used (see
+ * {@link VTextFileLayeredImageProvider}).</p>
  */
 public class VLayeredImageDiskProvider implements VLayeredImageProvider {
 
@@ -31,6 +35,7 @@ public class VLayeredImageDiskProvider implements VLayeredImageProvider {
 
   // INVARIANT: Represents a path to a DIRECTORY and not a file
   private final Path path;
+  private final boolean lazy;
 
   /**
    * Construct a new {@link VLayeredImageDiskProvider} which loads layered images from the contents
@@ -45,6 +50,23 @@ public class VLayeredImageDiskProvider implements VLayeredImageProvider {
    *                                  directory or if the given path is {@code null}
    */
   public VLayeredImageDiskProvider(Path layeredImagePath) throws IllegalArgumentException {
+    this(layeredImagePath, false);
+  }
+
+  /**
+   * Construct a new {@link VLayeredImageDiskProvider} which loads layered images from the contents
+   * of the path to a directory that already exists, decoding the file of each layer either
+   * when the image is extracted or when the layer is first used.
+   *
+   * @param layeredImagePath a file path to a directory, specified as either an absolute or
+   *                        relative path
+   * @param lazy             whether the file of each layer is only decoded when the layer is
+   *                         first used
+   * @throws IllegalArgumentException if the given path does not identify a
+   *                                  directory or if the given path is {@code null}
+   */
+  public VLayeredImageDiskProvider(Path layeredImagePath, boolean lazy)
+      throws IllegalArgumentException {
     ObjectsExtension.requireNonnull(layeredImagePath);
 
     if (!Files.isDirectory(layeredImagePath.toAbsolutePath())) {
@@ -53,6 +75,7 @@ public class VLayeredImageDiskProvider implements VLayeredImageProvider {
     }
 
     this.path = layeredImagePath.toAbsolutePath();
+    this.lazy = lazy;
   }
 
   @Override
@@ -67,7 +90,8 @@ public class VLayeredImageDiskProvider implements VLayeredImageProvider {
       Readable fileReadable = new FileReader(toLayersTXT.toFile());
 
       // We want to process this text file now
-      VLayeredImageProvider textImageProvider = new VTextFileLayeredImageProvider(fileReadable);
+      VLayeredImageProvider textImageProvider = new VTextFileLayeredImageProvider(fileReadable,
+          lazy);
 
       return textImageProvider.extractLayeredImage();
     }
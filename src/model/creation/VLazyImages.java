@@ -0,0 +1,65 @@
+package model.creation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.Supplier;
+import model.image.VImage;
+import model.image.VLazyImage;
+import model.misc.ObjectsExtension;
+
+/**
+ * Creates {@link VLazyImage}s whose pixels are decoded from files on disk.
+ *
+ * <p>A lazy image may be decoded long after it is made, by which time its file may have been
+ * replaced. Each lazy image made here remembers when its file was last modified and how large
+ * it was, and refuses to decode a file that has changed since rather than quietly loading
+ * different contents.</p>
+ */
+final class VLazyImages {
+
+  private VLazyImages() {
+    // Prevent construction
+  }
+
+  /**
+   * Produces a lazy image of the given size which is decoded from the given file.
+   *
+   * @param file    the file holding the image
+   * @param width   the width of the image, as read from the header of the file
+   * @param height  the height of the image, as read from the header of the file
+   * @param decoder decodes the image from the file
+   * @return a new lazy image that decodes the file the first time it is needed
+   * @throws IllegalArgumentException if any arguments are {@code null} or if either width or
+   *                                  height is not positive
+   * @throws ImageExtractionException if the file could not be inspected
+   */
+  static VLazyImage fromFile(Path file, int width, int height, Supplier<? extends VImage> decoder)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(file, decoder);
+
+    FileTime lastModified;
+    long size;
+
+    try {
+      lastModified = Files.getLastModifiedTime(file);
+      size = Files.size(file);
+    } catch (IOException e) {
+      throw new ImageExtractionException("The file " + file.toString() + " could not be read");
+    }
+
+    return new VLazyImage(width, height, () -> {
+      try {
+        if (!Files.getLastModifiedTime(file).equals(lastModified) || Files.size(file) != size) {
+          throw new ImageExtractionException("The file " + file.toString()
+              + " has changed since it was loaded");
+        }
+      } catch (IOException e) {
+        throw new ImageExtractionException("The file " + file.toString()
+            + " could not be read");
+      }
+      return decoder.get();
+    });
+  }
+}
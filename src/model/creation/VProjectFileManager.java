@@ -0,0 +1,586 @@
+package model.creation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import model.image.VImage;
+import model.image.VLayeredImage;
+import model.image.VLayeredImageImpl;
+import model.image.VPackedImages;
+import model.image.pixel.PackedRGB;
+import model.misc.FileUtils;
+import model.misc.ObjectsExtension;
+import model.persistence.ImageSavingException;
+import model.persistence.VLayeredImageSaver;
+
+/**
+ * Loads and saves whole multi-layered images as single project files on disk, with the ".vido"
+ * file extension.
+ *
+ * <p>A project file begins with a header describing the project: its name and dimensions,
+ * and the name and visibility of each of its layers along with where in the file the pixels
+ * of the layer are stored. The pixels of every layer follow the header, one blob per layer,
+ * each either as three raw bytes per pixel or compressed as the chunks of the qoi format (see
+ * {@link QOICodec}). Numbers are stored most significant byte first and names as UTF-8.
+ *
+ * <p>Saving a project writes every layer in a single sequential pass through one file, which
+ * is written under a temporary name and moved into place once complete so that a failed save
+ * never leaves a partly written project behind. Loading a project maps the blob of each layer
+ * into memory straight from the one open file, and any single layer can be read without
+ * reading the others (see {@link #extractLayer(int)}). Compared with
+ * {@link model.persistence.VLayeredImageDiskSaver}, which writes a directory holding one image
+ * file per layer and a text file naming them, a project with many layers is saved and loaded
+ * without opening a file per layer.
+ *
+ * <p>A project may also be loaded lazily, in which case only the header is read up front and
+ * each layer is read from the file the first time it is used.
+ *
+ * <p>Since the blob of a layer is mapped into memory in one piece, no blob can be larger than
+ * {@link Integer#MAX_VALUE} bytes. Projects whose layers would be larger than that are
+ * rejected when they are saved rather than saved as files that cannot be loaded.</p>
+ */
+public class VProjectFileManager implements VLayeredImageProvider, VLayeredImageSaver {
+
+  // The bytes that begin every project file
+  private static final byte[] PROJECT_MAGIC = {'V', 'I', 'D', 'O'};
+
+  // The version of the format of the project files written
+  private static final int PROJECT_VERSION = 1;
+
+  // The number of bytes in the fixed part of the header, before the project name
+  private static final int FIXED_HEADER_SIZE = 24;
+
+  // The number of bytes in the entry of a layer, besides its name
+  private static final int FIXED_ENTRY_SIZE = 20;
+
+  // The longest name that can be stored, in bytes
+  private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+  // How the pixels of a layer are stored
+  private static final byte RAW_ENCODING = 0;
+  private static final byte QOI_ENCODING = 1;
+
+  // The size of the buffer project files are written through
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  // The most bytes the blob of a layer may take, since each blob
+  // is mapped into memory in one piece when the layer is loaded
+  private static final long MAX_BLOB_LENGTH = Integer.MAX_VALUE;
+
+  private final Path filepath;
+  private final boolean compressed;
+  private final boolean lazy;
+
+  /**
+   * Construct a new project manager which loads and saves the project file at the given path.
+   * Layers are saved compressed.
+   *
+   * @param filepath a file path to a file with the ".vido" extension as either a relative or
+   *                 absolute path
+   * @throws IllegalArgumentException if {@code filepath} is {@code null}; if the path refers to
+   *                                  a directory; or if the given file path does not refer to
+   *                                  a project file (via its extension)
+   */
+  public VProjectFileManager(Path filepath) throws IllegalArgumentException {
+    this(filepath, true);
+  }
+
+  /**
+   * Construct a new project manager which loads and saves the project file at the given path,
+   * saving layers either compressed or as raw bytes.
+   *
+   * <p>Raw layers take three bytes per pixel and are the fastest to save and load. Compressed
+   * layers are usually several times smaller and are still far faster to save and load than
+   * layers saved as PNG files</p>
+   *
+   * @param filepath   a file path to a file with the ".vido" extension as either a relative or
+   *                   absolute path
+   * @param compressed whether layers are compressed when they are saved
+   * @throws IllegalArgumentException if {@code filepath} is {@code null}; if the path refers to
+   *                                  a directory; or if the given file path does not refer to
+   *                                  a project file (via its extension)
+   */
+  public VProjectFileManager(Path filepath, boolean compressed) throws IllegalArgumentException {
+    this(filepath, compressed, false);
+  }
+
+  /**
+   * Construct a new project manager which loads and saves the project file at the given path,
+   * saving layers either compressed or as raw bytes and loading layers either when the project
+   * is extracted or when each layer is first used.
+   *
+   * @param filepath   a file path to a file with the ".vido" extension as either a relative or
+   *                   absolute path
+   * @param compressed whether layers are compressed when they are saved
+   * @param lazy       whether each layer is only read when it is first used
+   * @throws IllegalArgumentException if {@code filepath} is {@code null}; if the path refers to
+   *                                  a directory; or if the given file path does not refer to
+   *                                  a project file (via its extension)
+   */
+  public VProjectFileManager(Path filepath, boolean compressed, boolean lazy)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filepath);
+
+    if (Files.isDirectory(filepath)) {
+      throw new IllegalArgumentException("A project file cannot be a directory");
+    }
+
+    if (!FileUtils.extensionOf(filepath.toString()).equals("vido")) {
+      throw new IllegalArgumentException("Project files must have the vido extension");
+    }
+
+    this.filepath = filepath.toAbsolutePath();
+    this.compressed = compressed;
+    this.lazy = lazy;
+  }
+
+  /**
+   * Describes where and how the pixels of one layer are stored in a project file.
+   */
+  private static final class LayerEntry {
+    private final String name;
+    private final boolean visible;
+    private final byte encoding;
+    private final long offset;
+    private final long length;
+
+    /**
+     * Construct a new entry for a layer.
+     *
+     * @param name     the name of the layer
+     * @param visible  whether the layer is visible
+     * @param encoding how the pixels of the layer are stored
+     * @param offset   the position in the file of the pixels of the layer
+     * @param length   the number of bytes taken by the pixels of the layer
+     */
+    private LayerEntry(String name, boolean visible, byte encoding, long offset, long length) {
+      this.name = name;
+      this.visible = visible;
+      this.encoding = encoding;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Describes the contents of a project file as read from its header.
+   */
+  private static final class Header {
+    private final String name;
+    private final int width;
+    private final int height;
+    private final List<LayerEntry> layers;
+
+    /**
+     * Construct a new header.
+     *
+     * @param name   the name of the project
+     * @param width  the width of every layer
+     * @param height the height of every layer
+     * @param layers the entries of the layers, from the bottom layer up
+     */
+    private Header(String name, int width, int height, List<LayerEntry> layers) {
+      this.name = name;
+      this.width = width;
+      this.height = height;
+      this.layers = layers;
+    }
+  }
+
+  @Override
+  public VLayeredImage extractLayeredImage() throws ImageExtractionException {
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      Header header = this.readHeader(channel);
+      VImage[] contents = new VImage[header.layers.size()];
+
+      if (lazy) {
+        for (int i = 0; i < contents.length; i += 1) {
+          int index = i;
+          contents[i] = VLazyImages.fromFile(filepath, header.width, header.height,
+              () -> this.extractLayer(index));
+        }
+      } else {
+        IntStream.range(0, contents.length).parallel().forEach(i ->
+            contents[i] = this.decodeLayer(channel, header, header.layers.get(i)));
+      }
+
+      VLayeredImage layeredImage = new VLayeredImageImpl();
+
+      for (int i = 0; i < contents.length; i += 1) {
+        LayerEntry entry = header.layers.get(i);
+
+        try {
+          layeredImage.createNewLayer(entry.name, i, contents[i]);
+          layeredImage.setVisible(entry.visible, i);
+        } catch (IllegalArgumentException e) {
+          throw new ImageExtractionException("The project file " + filepath.toString()
+              + " is not formatted properly. Reason: " + e.getMessage());
+        }
+      }
+
+      layeredImage.setName(header.name);
+      return layeredImage;
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The project file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  /**
+   * Reads a single layer of the project, without reading any of the others.
+   *
+   * @param index the position of the layer in the project, where 0 is the bottom layer
+   * @return the contents of the layer
+   * @throws ImageExtractionException if the file could not be read, if it is not formatted
+   *                                  properly or if there is no layer at the given index
+   */
+  public VImage extractLayer(int index) throws ImageExtractionException {
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      Header header = this.readHeader(channel);
+
+      if (index < 0 || index >= header.layers.size()) {
+        throw new ImageExtractionException("The project file " + filepath.toString()
+            + " has no layer " + index);
+      }
+      return this.decodeLayer(channel, header, header.layers.get(index));
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The project file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  /**
+   * Reads the names of the layers of the project, from the bottom layer up, without reading
+   * the pixels of any layer.
+   *
+   * @return the names of the layers of the project
+   * @throws ImageExtractionException if the file could not be read or if it is not formatted
+   *                                  properly
+   */
+  public List<String> layerNames() throws ImageExtractionException {
+    try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+      List<String> names = new ArrayList<>();
+
+      for (LayerEntry entry : this.readHeader(channel).layers) {
+        names.add(entry.name);
+      }
+      return names;
+    }
+    catch (NoSuchFileException e) {
+      throw new ImageExtractionException("File " + filepath.toString() + " not found!");
+    }
+    catch (IOException e) {
+      throw new ImageExtractionException("The project file " + filepath.toString()
+          + " could not be read");
+    }
+  }
+
+  /**
+   * Reads and checks the header of the project file.
+   *
+   * @param channel the open project file
+   * @return the contents of the header
+   * @throws IOException              if the file could not be read
+   * @throws ImageExtractionException if the header is not formatted properly or describes
+   *                                  layers that lie outside of the file
+   */
+  private Header readHeader(FileChannel channel) throws IOException, ImageExtractionException {
+    long size = channel.size();
+    ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_SIZE);
+
+    while (fixed.hasRemaining() && channel.read(fixed, fixed.position()) >= 0) {
+      // Keep reading until the fixed part of the header is read or the file ends
+    }
+    fixed.flip();
+
+    if (fixed.remaining() < FIXED_HEADER_SIZE) {
+      throw this.malformed();
+    }
+
+    for (byte magic : PROJECT_MAGIC) {
+      if (fixed.get() != magic) {
+        throw new ImageExtractionException("Incorrect file format: Vido project expected");
+      }
+    }
+
+    int version = fixed.getInt();
+    int headerSize = fixed.getInt();
+    int numLayers = fixed.getInt();
+    int width = fixed.getInt();
+    int height = fixed.getInt();
+
+    if (version != PROJECT_VERSION) {
+      throw new ImageExtractionException("The project file " + filepath.toString()
+          + " was saved by an unsupported version of Vido");
+    }
+
+    if (headerSize < FIXED_HEADER_SIZE || headerSize > size || numLayers < 0 || width <= 0
+        || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+      throw this.malformed();
+    }
+
+    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+    header.position(FIXED_HEADER_SIZE);
+
+    try {
+      String name = readName(header);
+      List<LayerEntry> layers = new ArrayList<>(numLayers);
+
+      for (int i = 0; i < numLayers; i += 1) {
+        String layerName = readName(header);
+        boolean visible = header.get() != 0;
+        byte encoding = header.get();
+        long offset = header.getLong();
+        long length = header.getLong();
+
+        if ((encoding != RAW_ENCODING && encoding != QOI_ENCODING) || offset < headerSize
+            || length < 0 || length > MAX_BLOB_LENGTH || offset > size - length) {
+          throw this.malformed();
+        }
+        layers.add(new LayerEntry(layerName, visible, encoding, offset, length));
+      }
+
+      return new Header(name, width, height, layers);
+    }
+    catch (BufferUnderflowException e) {
+      throw this.malformed();
+    }
+  }
+
+  /**
+   * Reads a name stored in a header as its length in bytes followed by its UTF-8 bytes.
+   *
+   * @param header the header, positioned at the name
+   * @return the name
+   * @throws BufferUnderflowException if the header ends part of the way through the name
+   */
+  private static String readName(ByteBuffer header) throws BufferUnderflowException {
+    byte[] bytes = new byte[header.getShort() & MAX_NAME_LENGTH];
+    header.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decodes the pixels of one layer of the project from a memory mapping of its blob.
+   *
+   * <p>Raw layers are unpacked rows in parallel; compressed layers are decoded in order</p>
+   *
+   * @param channel the open project file
+   * @param header  the header of the project file
+   * @param entry   the entry of the layer
+   * @return the contents of the layer
+   * @throws ImageExtractionException if the blob of the layer could not be read or holds too
+   *                                  few pixels
+   */
+  private VImage decodeLayer(FileChannel channel, Header header, LayerEntry entry)
+      throws ImageExtractionException {
+    int width = header.width;
+    int height = header.height;
+    int[] pixels = new int[width * height];
+    MappedByteBuffer blob;
+
+    try {
+      blob = channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+    } catch (IOException e) {
+      throw new ImageExtractionException("The layer " + entry.name + " of the project file "
+          + filepath.toString() + " could not be read");
+    }
+
+    if (entry.encoding == QOI_ENCODING) {
+      QOICodec.decode(blob, pixels);
+      return VPackedImages.wrap(width, height, pixels);
+    }
+
+    if (entry.length < 3L * width * height) {
+      throw new ImageExtractionException("Unexpectedly ran out of values");
+    }
+
+    IntStream.range(0, height).parallel().forEach(row -> {
+      int sample = 3 * row * width;
+      int end = (row + 1) * width;
+
+      for (int index = row * width; index < end; index += 1) {
+        pixels[index] = PackedRGB.pack(blob.get(sample) & 0xFF, blob.get(sample + 1) & 0xFF,
+            blob.get(sample + 2) & 0xFF);
+        sample += 3;
+      }
+    });
+
+    return VPackedImages.wrap(width, height, pixels);
+  }
+
+  /**
+   * Produces the exception raised for project files that are not formatted properly.
+   *
+   * @return a new exception describing the problem
+   */
+  private ImageExtractionException malformed() {
+    return new ImageExtractionException("The project file " + filepath.toString()
+        + " is improperly formatted and/or corrupt");
+  }
+
+  @Override
+  public void saveImage(VLayeredImage image) throws IllegalArgumentException,
+      ImageSavingException {
+    ObjectsExtension.requireNonnull(image);
+
+    if (image.numLayers() == 0) {
+      throw new ImageSavingException("Cannot save a multi-layered image without any layers");
+    }
+
+    int numLayers = image.numLayers();
+    byte[] name = encodeName(image.getName());
+    byte[][] layerNames = new byte[numLayers][];
+    int headerSize = FIXED_HEADER_SIZE + name.length;
+
+    for (int i = 0; i < numLayers; i += 1) {
+      layerNames[i] = encodeName(image.getLayer(i).getName());
+      headerSize += layerNames[i].length + FIXED_ENTRY_SIZE;
+    }
+
+    if (!compressed && 3L * image.getWidth() * image.getHeight() > MAX_BLOB_LENGTH) {
+      throw new ImageSavingException("Layers of " + image.getWidth() + "x" + image.getHeight()
+          + " pixels are too large to be saved raw");
+    }
+
+    Path temporary = filepath.resolveSibling(filepath.getFileName() + ".tmp");
+    long[] offsets = new long[numLayers];
+    long[] lengths = new long[numLayers];
+
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        // The blobs of the layers are written in one pass after the space for the header,
+        // which is written last once the position of every blob is known
+        channel.position(headerSize);
+
+        for (int i = 0; i < numLayers; i += 1) {
+          int[] pixels = VPackedImages.readPixels(image.getLayer(i));
+          offsets[i] = channel.position();
+
+          if (compressed) {
+            lengths[i] = QOICodec.encode(pixels, buffer, channel);
+          } else {
+            lengths[i] = writeRaw(pixels, buffer, channel);
+          }
+
+          if (lengths[i] > MAX_BLOB_LENGTH) {
+            throw new ImageSavingException("The layer " + image.getLayer(i).getName()
+                + " is too large to be saved in a project file");
+          }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.put(PROJECT_MAGIC).putInt(PROJECT_VERSION).putInt(headerSize).putInt(numLayers);
+        header.putInt(image.getWidth()).putInt(image.getHeight()).put(name);
+
+        for (int i = 0; i < numLayers; i += 1) {
+          header.put(layerNames[i]);
+          header.put((byte) (image.getLayer(i).isVisible() ? 1 : 0));
+          header.put(compressed ? QOI_ENCODING : RAW_ENCODING);
+          header.putLong(offsets[i]).putLong(lengths[i]);
+        }
+
+        header.flip();
+
+        while (header.hasRemaining()) {
+          channel.write(header, header.position());
+        }
+      }
+
+      FileUtils.moveIntoPlace(temporary, filepath);
+    }
+    catch (IOException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (IOException ignored) {
+        // The temporary file is left behind but the project is unchanged
+      }
+
+      // Layers which could not be read, such as lazily loaded layers whose
+      // files have changed, fail the save as they are
+      if (e instanceof RuntimeException) {
+        throw (RuntimeException) e;
+      }
+      throw new ImageSavingException("The project could not be saved");
+    }
+  }
+
+  /**
+   * Encodes a name as its length in bytes followed by its UTF-8 bytes.
+   *
+   * @param name the name
+   * @return the encoded name
+   * @throws ImageSavingException if the name is too long to be stored
+   */
+  private static byte[] encodeName(String name) throws ImageSavingException {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+
+    if (bytes.length > MAX_NAME_LENGTH) {
+      throw new ImageSavingException("The name " + name + " is too long to be saved");
+    }
+
+    byte[] encoded = new byte[bytes.length + 2];
+    encoded[0] = (byte) (bytes.length >>> 8);
+    encoded[1] = (byte) bytes.length;
+    System.arraycopy(bytes, 0, encoded, 2, bytes.length);
+    return encoded;
+  }
+
+  /**
+   * Writes packed pixels as three raw bytes each to a channel through a buffer, leaving the
+   * buffer empty.
+   *
+   * @param pixels  the packed pixels to write, in order
+   * @param buffer  an empty buffer
+   * @param channel the channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel could not be written
+   */
+  private static long writeRaw(int[] pixels, ByteBuffer buffer, FileChannel channel)
+      throws IOException {
+    for (int color : pixels) {
+      if (buffer.remaining() < 3) {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        buffer.clear();
+      }
+
+      buffer.put((byte) PackedRGB.red(color));
+      buffer.put((byte) PackedRGB.green(color));
+      buffer.put((byte) PackedRGB.blue(color));
+    }
+
+    buffer.flip();
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+
+    return 3L * pixels.length;
+  }
+}
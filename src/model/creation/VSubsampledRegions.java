@@ -0,0 +1,101 @@
+package model.creation;
+
+import java.awt.Rectangle;
+import model.image.VImage;
+import model.image.VPackedImages;
+import model.misc.ObjectsExtension;
+
+/**
+ * Works out which pixels of an image are kept when only a region of it is decoded, keeping
+ * only every few pixels of every few rows (see
+ * {@link VImageProvider#extractImage(Rectangle, int)}).
+ *
+ * <p>The pixels kept are the same as those kept by an {@link javax.imageio.ImageReadParam}
+ * with the same source region and a source subsampling with no offsets: the top-left pixel of
+ * the region, and every pixel a multiple of the subsampling to the right of and below it that
+ * lies within the region.</p>
+ */
+final class VSubsampledRegions {
+
+  private VSubsampledRegions() {
+    // Prevent construction
+  }
+
+  /**
+   * Clips a region to the bounds of an image, checking that something is left of it to decode.
+   *
+   * @param region      the region of the image to decode
+   * @param subsampling the distance between the pixels and rows kept
+   * @param width       the width of the image
+   * @param height      the height of the image
+   * @return the part of the region within the bounds of the image
+   * @throws IllegalArgumentException if {@code region} is {@code null} or if
+   *                                  {@code subsampling} is not positive
+   * @throws ImageExtractionException if the region does not overlap the image
+   */
+  static Rectangle clip(Rectangle region, int subsampling, int width, int height)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(region);
+
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("The subsampling of an image must be positive");
+    }
+
+    Rectangle clipped = region.intersection(new Rectangle(0, 0, width, height));
+
+    if (clipped.isEmpty()) {
+      throw new ImageExtractionException("The region " + region.x + ", " + region.y + " ("
+          + region.width + "x" + region.height + ") lies outside of the " + width + "x" + height
+          + " image");
+    }
+    return clipped;
+  }
+
+  /**
+   * Computes how many pixels of a row or column of a region are kept.
+   *
+   * @param length      the width or height of the region
+   * @param subsampling the distance between the pixels kept
+   * @return the width or height of the decoded image, which is the length divided by the
+   *         subsampling, rounded up
+   */
+  static int sampledLength(int length, int subsampling) {
+    return (int) (((long) length + subsampling - 1) / subsampling);
+  }
+
+  /**
+   * Keeps the pixels of a region of an image that has already been decoded in full.
+   *
+   * @param image       the image
+   * @param region      the region of the image to keep
+   * @param subsampling the distance between the pixels and rows kept
+   * @return a new image holding the pixels kept
+   * @throws IllegalArgumentException if any arguments are {@code null} or if
+   *                                  {@code subsampling} is not positive
+   * @throws ImageExtractionException if the region does not overlap the image
+   */
+  static VImage sample(VImage image, Rectangle region, int subsampling)
+      throws IllegalArgumentException, ImageExtractionException {
+    ObjectsExtension.requireNonnull(image, region);
+
+    int width = image.getWidth();
+    Rectangle clipped = clip(region, subsampling, width, image.getHeight());
+    int sampledWidth = sampledLength(clipped.width, subsampling);
+    int sampledHeight = sampledLength(clipped.height, subsampling);
+    int[] source = VPackedImages.readPixels(image);
+    int[] pixels = new int[sampledWidth * sampledHeight];
+    int index = 0;
+
+    for (int i = 0; i < sampledHeight; i += 1) {
+      int sourceIndex = (clipped.y + i * subsampling) * width + clipped.x;
+
+      for (int j = 0; j < sampledWidth; j += 1) {
+        pixels[index] = source[sourceIndex];
+        sourceIndex += subsampling;
+        index += 1;
+      }
+    }
+
+    return VPackedImages.wrap(sampledWidth, sampledHeight, pixels);
+  }
+}
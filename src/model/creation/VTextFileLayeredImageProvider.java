@@ -1,12 +1,17 @@
 package model.creation;
 
+import java.awt.Dimension;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 import model.image.VImage;
 import model.image.VLayeredImage;
 import model.image.VLayeredImageImpl;
 import model.misc.ObjectsExtension;
+import model.misc.ParallelTasks;
 
 /**
  * A {@link VLayeredImageProvider} which loads its images based on input from a readable that
@@ -27,20 +32,44 @@ import model.misc.ObjectsExtension;
  *   </ul></li>
  * </ul>
  *
- * <p>The contents of the resulting image are those of the specified files</p>
+ * <p>The contents of the resulting image are those of the specified files. The whole text is
+ * read before any file, and the files are then decoded several at once, one for each processor.
+ * The layers are added to the image in the order the text lists them whichever file finishes
+ * first, and a file that cannot be read is named in the error raised.
+ *
+ * <p>A provider may instead load the files lazily. Only the header of each file is then read,
+ * to find the size of the layer, and each layer decodes its file the first time its pixels
+ * are needed (see {@link model.image.VLazyImage}). A file that cannot be decoded is then only
+ * discovered when its layer is first used.</p>
  */
 public class VTextFileLayeredImageProvider implements VLayeredImageProvider {
 
   private final Scanner scanner;
+  private final boolean lazy;
 
   /**
    * Construct a new text multi-layer provider by reading from the file at the specified path.
+   * Every file is decoded when the image is extracted.
    *
    * @param textSource a path to a text file
    * @throws IllegalArgumentException if the path is {@code null}
    */
   public VTextFileLayeredImageProvider(Readable textSource) throws IllegalArgumentException {
+    this(textSource, false);
+  }
+
+  /**
+   * Construct a new text multi-layer provider by reading from the file at the specified path,
+   * decoding the files either when the image is extracted or when each layer is first used.
+   *
+   * @param textSource a path to a text file
+   * @param lazy       whether each file is only decoded when its layer is first used
+   * @throws IllegalArgumentException if the path is {@code null}
+   */
+  public VTextFileLayeredImageProvider(Readable textSource, boolean lazy)
+      throws IllegalArgumentException {
     this.scanner = new Scanner(ObjectsExtension.asNonnull(textSource));
+    this.lazy = lazy;
   }
 
   @Override
@@ -55,32 +84,101 @@ public class VTextFileLayeredImageProvider implements VLayeredImageProvider {
       throw new ImageExtractionException("layers.txt file not properly formatted");
     }
 
-    VLayeredImage layeredImage = new VLayeredImageImpl();
+    int[] layerIndices = new int[numLayers];
+    String[] layerNames = new String[numLayers];
+    Path[] layerPaths = new Path[numLayers];
 
-    // Now, for each layer, read an integer and then a path,
-    // as this is how the file is formatted
+    // Read the whole of the text first. For each layer, read an
+    // integer and then a path, as this is how the file is formatted
     for (int i = 0; i < numLayers; i += 1) {
-      int layerIndex = readNextInt();
-      String layerName = readNextString();
-      Path absolutePath = Paths.get(readNextString()).toAbsolutePath();
+      layerIndices[i] = readNextInt();
+      layerNames[i] = readNextString();
+      layerPaths[i] = Paths.get(readNextString()).toAbsolutePath();
+    }
+
+    if (scanner.hasNext()) {
+      throw new ImageExtractionException("More layers to decode but only captured "
+          + numLayers + " layers");
+    }
 
-      // Get an image from the path, if such an image can be read
-      VImage newImage = VImageManagers.diskProviderFor(absolutePath).extractImage();
+    VImage[] contents = lazy ? this.extractLazyLayers(layerPaths)
+        : this.extractLayers(layerPaths);
+    VLayeredImage layeredImage = new VLayeredImageImpl();
 
+    // Add the layers in the order the text lists them
+    for (int i = 0; i < numLayers; i += 1) {
       try {
-        layeredImage.createNewLayer(layerName, layerIndex, newImage);
+        layeredImage.createNewLayer(layerNames[i], layerIndices[i], contents[i]);
       } catch (IllegalArgumentException e) {
         throw new ImageExtractionException(
             "layers.txt file not formatted properly. Reason: " + e.getMessage());
       }
     }
 
-    if (scanner.hasNext()) {
-      throw new ImageExtractionException("More layers to decode but only captured "
-          + numLayers + " layers");
+    return layeredImage;
+  }
+
+  /**
+   * Reads the contents of each layer from its file, decoding several files at once.
+   *
+   * <p>Decoding an image takes far longer than reading its file, so the files are handed to a
+   * pool of threads, one for each processor but never more than there are files. If any file
+   * cannot be read, the files not yet read are abandoned</p>
+   *
+   * @param layerPaths the absolute path of the file of each layer
+   * @return the contents of each layer, in the same order as the paths
+   * @throws ImageExtractionException if any file could not be read; the message names the
+   *                                  file
+   */
+  private VImage[] extractLayers(Path[] layerPaths) throws ImageExtractionException {
+    VImageProvider[] providers = new VImageProvider[layerPaths.length];
+
+    // Find a provider for every file before any are read
+    for (int i = 0; i < layerPaths.length; i += 1) {
+      try {
+        providers[i] = VImageManagers.diskProviderFor(layerPaths[i]);
+      } catch (IllegalArgumentException e) {
+        throw new ImageExtractionException("Could not load layer file " + layerPaths[i] + ". "
+            + e.getMessage());
+      }
     }
 
-    return layeredImage;
+    List<Callable<VImage>> loads = new ArrayList<>();
+    for (VImageProvider provider : providers) {
+      loads.add(provider::extractImage);
+    }
+
+    return ParallelTasks.runAll("vido-layer-loader", loads,
+        (i, cause) -> new ImageExtractionException("Could not load layer file " + layerPaths[i]
+            + ". " + cause.getMessage()),
+        () -> new ImageExtractionException("Loading was interrupted"))
+        .toArray(new VImage[0]);
+  }
+
+  /**
+   * Reads the size of each layer from the header of its file, leaving each file to be decoded
+   * when its layer is first used.
+   *
+   * @param layerPaths the absolute path of the file of each layer
+   * @return a lazy image for each layer, in the same order as the paths
+   * @throws ImageExtractionException if the header of any file could not be read; the message
+   *                                  names the file
+   */
+  private VImage[] extractLazyLayers(Path[] layerPaths) throws ImageExtractionException {
+    VImage[] contents = new VImage[layerPaths.length];
+
+    for (int i = 0; i < layerPaths.length; i += 1) {
+      try {
+        VImageProvider provider = VImageManagers.diskProviderFor(layerPaths[i]);
+        Dimension size = provider.extractSize();
+        contents[i] = VLazyImages.fromFile(layerPaths[i], size.width, size.height,
+            provider::extractImage);
+      } catch (IllegalArgumentException | ImageExtractionException e) {
+        throw new ImageExtractionException("Could not load layer file " + layerPaths[i] + ". "
+            + e.getMessage());
+      }
+    }
+    return contents;
   }
 
   /**
@@ -3,6 +3,7 @@ package model.image;
 import java.awt.Color;
 import java.util.Optional;
 import java.util.function.Function;
+import model.image.pixel.PackedRGB;
 import model.image.pixel.VPixel;
 import model.image.pixel.VPixelCoordinate;
 import model.image.pixel.VRGBPixel;
@@ -13,17 +14,30 @@ import model.misc.ObjectsExtension;
  *
  * <p>Subclasses of {@link AbstractVImage} provide efficient access to image
  * data via the inherently 2D operations by virtue of their representation</p>
+ *
+ * <p>An {@link AbstractVImage} may also be a <em>view</em> of a region of another
+ * image, in which case it shares the pixels of that image instead of owning its own.
+ * See {@link VImage#region(VPixelCoordinate, int, int)}</p>
  */
 public abstract class AbstractVImage implements VImage {
 
-  //   Each [ ... ] is `height` long
-  // [ [ ... ], ..., [ ... ] ]
-  // | ------- width ------- |
-  protected final VPixel[][] pixels;
+  // Pixels are stored row-major as colors packed 0x00RRGGBB (see PackedRGB).
+  // The pixel at (row, column) is found at index `offset + row * stride + column`.
+  // Images that own their pixels have an offset of 0 and a stride equal to
+  // their width; views share the array of the image they view.
+  //
+  // May be null for views and for subclasses whose pixel data is not always
+  // resident in memory; use `pixelData()` to access the pixels
+  protected volatile int[] pixels;
 
+  protected final int offset;
+  protected final int stride;
   protected final int width;
   protected final int height;
 
+  // The image whose pixels this image views, or null if this image owns its pixels
+  private final AbstractVImage viewed;
+
   /**
    * Construct a new image by copying the contents of the given image.
    *
@@ -33,11 +47,88 @@ public abstract class AbstractVImage implements VImage {
   public AbstractVImage(VImage other) throws IllegalArgumentException {
     // DO NOT call other#immutableCopy() or other.immutableCopy()!
     // This will lead to infinite recursion
-    this(ObjectsExtension.asNonnull(other).getWidth(),
-        ObjectsExtension.asNonnull(other).getHeight(), (coord) -> other
-            .getPixelAt(coord)
+    this(ObjectsExtension.asNonnull(other).getWidth(), other.getHeight(), packedCopyOf(other));
+  }
+
+  /**
+   * Construct a new image which adopts the given packed pixels as its own.
+   *
+   * <p>The array is not copied: the caller must not modify it after handing
+   * it to the image. Subclasses which produce their pixels lazily may pass
+   * {@code null} and override {@link AbstractVImage#pixelData()}</p>
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the row-major pixels of the image packed as {@code 0x00RRGGBB}, or
+   *               {@code null} if the pixels are provided later
+   * @throws IllegalArgumentException if either width or height are not positive or if
+   *                                  there are not exactly {@code width * height} pixels
+   */
+  protected AbstractVImage(int width, int height, int[] pixels) throws IllegalArgumentException {
+    if (width <= 0) {
+      throw new IllegalArgumentException("Width must be positive");
+    }
+
+    if (height <= 0) {
+      throw new IllegalArgumentException("Height must be positive");
+    }
+
+    if (pixels != null && pixels.length != width * height) {
+      throw new IllegalArgumentException("Expected " + width * height + " pixels");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.offset = 0;
+    this.stride = width;
+    this.viewed = null;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Copies the pixels of the given image into a new row-major array of packed colors.
+   *
+   * @param image the image whose pixels should be copied
+   * @return a new array of {@code width * height} packed pixels
+   * @throws IllegalArgumentException if {@code image} is {@code null}
+   */
+  protected static int[] packedCopyOf(VImage image) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(image);
+    int width = image.getWidth();
+    int height = image.getHeight();
+
+    if (image instanceof AbstractVImage) {
+      // Both images share the same layout, so the pixels can be copied in bulk
+      AbstractVImage source = (AbstractVImage) image;
+      int[] sourcePixels = source.pixelData();
+
+      if (source.offset == 0 && source.stride == width && sourcePixels.length == width * height) {
+        return sourcePixels.clone();
+      }
+
+      int[] copy = new int[width * height];
+      for (int i = 0; i < height; i += 1) {
+        System.arraycopy(sourcePixels, source.offset + i * source.stride,
+            copy, i * width, width);
+      }
+      return copy;
+    }
+
+    if (image instanceof VOrientedImage) {
+      return ((VOrientedImage) image).materialize();
+    }
+
+    int[] copy = new int[width * height];
+
+    for (int i = 0; i < height; i += 1) {
+      for (int j = 0; j < width; j += 1) {
+        copy[i * width + j] = PackedRGB.pack(image
+            .getPixelAt(new VPixelCoordinate(i, j))
             .orElseThrow(() -> new AssertionError("Provided image does not have a "
                 + "color at a valid coordinate within it")));
+      }
+    }
+    return copy;
   }
 
   /**
@@ -77,17 +168,88 @@ public abstract class AbstractVImage implements VImage {
 
     this.width = width;
     this.height = height;
-    this.pixels = new VPixel[width][];
+    this.offset = 0;
+    this.stride = width;
+    this.viewed = null;
+    this.pixels = new int[width * height];
 
-    for (int i = 0; i < width; i += 1) {
-      this.pixels[i] = new VPixel[height];
-
-      for (int j = 0; j < height; j += 1) {
-        this.pixels[i][j] = perPixelGenerator.apply(new VPixelCoordinate(j, i));
+    for (int i = 0; i < height; i += 1) {
+      for (int j = 0; j < width; j += 1) {
+        this.pixels[i * width + j] = PackedRGB.pack(
+            perPixelGenerator.apply(new VPixelCoordinate(i, j)));
       }
     }
   }
 
+  /**
+   * Construct a new view of a region of the given image.
+   *
+   * <p>The view shares the pixels of {@code viewed}: changes made to the pixels
+   * of either image are visible in the other</p>
+   *
+   * @param viewed  the image whose pixels are shared
+   * @param topLeft the location in {@code viewed} of the top-left pixel of the view
+   * @param width   the width of the view
+   * @param height  the height of the view
+   * @throws IllegalArgumentException if any arguments are {@code null}; if the width or height
+   *                                  are not positive; or if the region does not lie entirely
+   *                                  within {@code viewed}
+   */
+  protected AbstractVImage(AbstractVImage viewed, VPixelCoordinate topLeft, int width,
+      int height) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(viewed, topLeft);
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("A region must have a positive width and height");
+    }
+
+    int row = topLeft.getRowIndex();
+    int column = topLeft.getColumnIndex();
+
+    if (row < 0 || column < 0 || row + height > viewed.height || column + width > viewed.width) {
+      throw new IllegalArgumentException("A region must lie within the image it views");
+    }
+
+    // Views of views share the pixels of the original image directly
+    this.viewed = viewed.viewed == null ? viewed : viewed.viewed;
+    this.offset = viewed.offset + row * viewed.stride + column;
+    this.stride = viewed.stride;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Retrieves the packed pixel data of this image.
+   *
+   * <p>Subclasses whose pixel data may be moved out of memory override this
+   * method to bring the data back before returning it. All reads of pixel data
+   * should go through this method rather than the {@code pixels} field. The pixel
+   * at a given row and column is found at {@link AbstractVImage#indexOf(int, int)}</p>
+   *
+   * @return the row-major packed pixels of this image
+   */
+  protected int[] pixelData() {
+    return this.viewed == null ? this.pixels : this.viewed.pixelData();
+  }
+
+  /**
+   * Computes where in {@link AbstractVImage#pixelData()} the pixel at the given
+   * row and column is stored.
+   *
+   * @param row    the row of the pixel
+   * @param column the column of the pixel
+   * @return the index of the pixel in the pixel data
+   */
+  protected int indexOf(int row, int column) {
+    return this.offset + row * this.stride + column;
+  }
+
+  @Override
+  public VImage region(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    return new VImageImpl(this, topLeft, width, height);
+  }
+
   @Override
   public VMutableImage mutableCopy() {
     return new VMutableImageImpl(this);
@@ -123,6 +285,7 @@ public abstract class AbstractVImage implements VImage {
     if (!this.contains(location)) {
       return Optional.empty();
     }
-    return Optional.of(this.pixels[location.getColumnIndex()][location.getRowIndex()]);
+    return Optional.of(PackedRGB.unpack(
+        this.pixelData()[this.indexOf(location.getRowIndex(), location.getColumnIndex())]));
   }
 }
@@ -180,6 +180,11 @@ public class VFocusableLayerImageImpl implements VFocusableLayeredImage {
     wrappedImage.apply(operation, layerName);
   }
 
+  @Override
+  public void applyToAll(VImageContentOperation operation) throws IllegalArgumentException {
+    wrappedImage.applyToAll(operation);
+  }
+
   @Override
   public int numLayers() {
     return wrappedImage.numLayers();
@@ -190,6 +195,11 @@ public class VFocusableLayerImageImpl implements VFocusableLayeredImage {
     return wrappedImage.getLayer(index);
   }
 
+  @Override
+  public long getLayerVersion(int index) throws IllegalArgumentException {
+    return wrappedImage.getLayerVersion(index);
+  }
+
   @Override
   public VLayer getLayer(String layerName) throws IllegalArgumentException {
     return wrappedImage.getLayer(layerName);
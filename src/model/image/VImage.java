@@ -100,4 +100,22 @@ public interface VImage {
    */
   Optional<VPixel> getPixelAt(VPixelCoordinate location) throws IllegalArgumentException;
 
+  /**
+   * Produces a view of a rectangular region of this image.
+   *
+   * <p>The view shares the pixels of this image rather than copying them, so
+   * creating a region is cheap regardless of the size of the image. The pixel at
+   * (0, 0) in the view is the pixel at {@code topLeft} in this image. Operations
+   * applied to the view only ever read the pixels within the region.</p>
+   *
+   * @param topLeft the location in this image of the top-left pixel of the region
+   * @param width   the width of the region
+   * @param height  the height of the region
+   * @return an image whose contents are the pixels of this image within the region
+   * @throws IllegalArgumentException if {@code topLeft} is {@code null}; if the width or height
+   *                                  are not positive; or if the region does not lie entirely
+   *                                  within this image
+   */
+  VImage region(VPixelCoordinate topLeft, int width, int height) throws IllegalArgumentException;
+
 }
@@ -3,6 +3,7 @@ package model.image;
 import java.util.function.Function;
 import model.image.pixel.VPixel;
 import model.image.pixel.VPixelCoordinate;
+import model.misc.ObjectsExtension;
 
 /**
  * An immutable image which supports efficient 2D image access.
@@ -35,6 +36,35 @@ public class VImageImpl extends AbstractVImage {
     super(other);
   }
 
+  /**
+   * Construct a new image which adopts the given packed pixels as its own.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the row-major pixels of the image packed as {@code 0x00RRGGBB}
+   * @throws IllegalArgumentException if either width or height are not positive or if
+   *                                  there are not exactly {@code width * height} pixels
+   */
+  VImageImpl(int width, int height, int[] pixels) throws IllegalArgumentException {
+    super(width, height, ObjectsExtension.asNonnull(pixels));
+  }
+
+  /**
+   * Construct a new view of a region of the given image.
+   *
+   * @param viewed  the image whose pixels are shared
+   * @param topLeft the location in {@code viewed} of the top-left pixel of the view
+   * @param width   the width of the view
+   * @param height  the height of the view
+   * @throws IllegalArgumentException if any arguments are {@code null}; if the width or height
+   *                                  are not positive; or if the region does not lie entirely
+   *                                  within {@code viewed}
+   */
+  VImageImpl(AbstractVImage viewed, VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    super(viewed, topLeft, width, height);
+  }
+
   /**
    * Construct a new {@link VImageImpl} with the given width, height and per-pixel transformation.
    *
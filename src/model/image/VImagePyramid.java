@@ -0,0 +1,330 @@
+package model.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import model.image.pixel.PackedRGB;
+import model.image.pixel.VPixelCoordinate;
+import model.misc.ObjectsExtension;
+
+/**
+ * A sequence of successively smaller copies of an image, each half the width and height
+ * of the one before it.
+ *
+ * <p>Level 0 of a pyramid is the image itself; every further level averages each 2 x 2
+ * block of pixels of the previous level into one, down to a single pixel. Pyramids make
+ * showing an image at a fraction of its size cheap, since the closest level can be drawn
+ * instead of the whole image, and serve operations that work at several scales or that
+ * want a quick, approximate result from a smaller copy of an image.
+ *
+ * <p>Levels are only built the first time they are requested, with the rows of each level
+ * computed in parallel. Once an image has changed within a known region, a pyramid for the
+ * new image can be derived from the pyramid of the old one by recomputing only the pixels
+ * each level has within that region (see
+ * {@link VImagePyramid#withRegionChanged(VImage, VPixelCoordinate, int, int)}).</p>
+ */
+public final class VImagePyramid {
+  private final VImage base;
+  private final int numLevels;
+
+  // The packed pixels of the levels built so far; level 0 is the base image and is never
+  // stored. A list is never changed once published, so it can be read and replaced without
+  // a lock
+  private volatile List<int[]> levels;
+
+  /**
+   * Construct a new pyramid whose finest level is the given image.
+   *
+   * @param base the image at level 0
+   * @throws IllegalArgumentException if {@code base} is {@code null}
+   */
+  public VImagePyramid(VImage base) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(base);
+    this.base = base;
+    this.levels = unbuilt();
+
+    int levelCount = 1;
+    for (int size = Math.max(base.getWidth(), base.getHeight()); size > 1; size = (size + 1) / 2) {
+      levelCount += 1;
+    }
+    this.numLevels = levelCount;
+  }
+
+  /**
+   * Determines the number of levels in this pyramid, including the base image.
+   *
+   * @return the number of levels, the last of which is a single pixel
+   */
+  public int numLevels() {
+    return this.numLevels;
+  }
+
+  /**
+   * Computes the width of the given level.
+   *
+   * @param level the level of the pyramid
+   * @return the width of the image at that level
+   * @throws IllegalArgumentException if the level does not exist
+   */
+  public int widthOf(int level) throws IllegalArgumentException {
+    this.validateLevel(level);
+    return sizeAt(base.getWidth(), level);
+  }
+
+  /**
+   * Computes the height of the given level.
+   *
+   * @param level the level of the pyramid
+   * @return the height of the image at that level
+   * @throws IllegalArgumentException if the level does not exist
+   */
+  public int heightOf(int level) throws IllegalArgumentException {
+    this.validateLevel(level);
+    return sizeAt(base.getHeight(), level);
+  }
+
+  /**
+   * Finds the smallest level that still has at least as many pixels as the base image
+   * shown at the given scale.
+   *
+   * @param scale the size at which the base image is shown relative to its actual size
+   * @return the coarsest level which can be drawn at that scale without losing detail
+   * @throws IllegalArgumentException if {@code scale} is not positive
+   */
+  public int levelFor(double scale) throws IllegalArgumentException {
+    if (!(scale > 0)) {
+      throw new IllegalArgumentException("A scale must be positive");
+    }
+
+    int level = 0;
+    while (level + 1 < numLevels && scale * (1 << (level + 1)) <= 1) {
+      level += 1;
+    }
+    return level;
+  }
+
+  /**
+   * Retrieves the image at the given level, building it and any
+   * levels before it if they have not been built yet.
+   *
+   * @param level the level of the pyramid
+   * @return the image at the level, whose width and height are those of the base image
+   *         halved (rounding up) {@code level} times
+   * @throws IllegalArgumentException if the level does not exist
+   */
+  public VImage getLevel(int level) throws IllegalArgumentException {
+    this.validateLevel(level);
+
+    if (level == 0) {
+      return base;
+    }
+    return VPackedImages.wrap(widthOf(level), heightOf(level), this.pixelsOf(level));
+  }
+
+  /**
+   * Produces a pyramid for an image which differs from the base of this pyramid only
+   * within the given region.
+   *
+   * <p>Every level this pyramid has already built is carried over to the new pyramid with
+   * only the pixels that cover the region recomputed</p>
+   *
+   * @param changed the new base image, which has the same size as the base of this pyramid
+   * @param topLeft the location of the top-left pixel of the changed region
+   * @param width   the width of the changed region
+   * @param height  the height of the changed region
+   * @return a pyramid for {@code changed}
+   * @throws IllegalArgumentException if {@code changed} or {@code topLeft} are {@code null};
+   *                                  if {@code changed} differs in size from the base of this
+   *                                  pyramid; or if the region does not lie within the image
+   */
+  public VImagePyramid withRegionChanged(VImage changed, VPixelCoordinate topLeft, int width,
+      int height) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(changed, topLeft);
+
+    if (changed.getWidth() != base.getWidth() || changed.getHeight() != base.getHeight()) {
+      throw new IllegalArgumentException("The changed image must be the same size");
+    }
+
+    int firstRow = topLeft.getRowIndex();
+    int firstColumn = topLeft.getColumnIndex();
+
+    if (width <= 0 || height <= 0 || firstRow < 0 || firstColumn < 0
+        || firstRow + height > changed.getHeight() || firstColumn + width > changed.getWidth()) {
+      throw new IllegalArgumentException("The changed region must lie within the image");
+    }
+
+    VImagePyramid derived = new VImagePyramid(changed);
+    List<int[]> built = this.levels;
+
+    if (built.size() == 1) {
+      return derived;
+    }
+
+    int lastRow = firstRow + height - 1;
+    int lastColumn = firstColumn + width - 1;
+    List<int[]> carried = new ArrayList<>(built.size());
+    carried.add(null);
+
+    int[] finer = VPackedImages.readPixels(changed);
+    for (int level = 1; level < built.size(); level += 1) {
+      firstRow /= 2;
+      firstColumn /= 2;
+      lastRow /= 2;
+      lastColumn /= 2;
+
+      int[] pixels = built.get(level).clone();
+      derived.downsample(level, finer, pixels, firstRow, lastRow + 1, firstColumn,
+          lastColumn + 1);
+      carried.add(pixels);
+      finer = pixels;
+    }
+
+    derived.levels = carried;
+    return derived;
+  }
+
+  /**
+   * Releases every level this pyramid has built so that the memory they occupy can be
+   * reclaimed. Released levels are rebuilt if they are requested again.
+   *
+   * <p>Releasing never waits for a level being built, since the memory budget releases
+   * pyramids while other pyramids may be faulting their base images back in</p>
+   */
+  void release() {
+    this.levels = unbuilt();
+  }
+
+  /**
+   * Determines the number of bytes occupied by the levels this pyramid has built.
+   *
+   * @return the number of bytes of pixel data this pyramid holds, excluding the base image
+   */
+  long residentBytes() {
+    List<int[]> built = this.levels;
+    long bytes = 0;
+    for (int level = 1; level < built.size(); level += 1) {
+      bytes += (long) built.get(level).length * Integer.BYTES;
+    }
+    return bytes;
+  }
+
+  /**
+   * Retrieves the packed pixels of a level, building it and the
+   * levels before it first if necessary.
+   *
+   * <p>The pixels of the base image are read before this pyramid is locked, since reading
+   * them may fault the base back in and have the memory budget spill other layers, and so
+   * release their pyramids, while another thread is building one of those</p>
+   *
+   * @param level a level greater than 0
+   * @return the packed pixels of the level
+   */
+  private int[] pixelsOf(int level) {
+    List<int[]> built = this.levels;
+    if (built.size() > level) {
+      return built.get(level);
+    }
+
+    int[] basePixels = VPackedImages.readPixels(base);
+
+    synchronized (this) {
+      built = this.levels;
+      if (built.size() > level) {
+        return built.get(level);
+      }
+
+      List<int[]> extended = new ArrayList<>(built);
+      while (extended.size() <= level) {
+        int next = extended.size();
+        int[] finer = next == 1 ? basePixels : extended.get(next - 1);
+        int[] pixels = new int[widthOf(next) * heightOf(next)];
+        this.downsample(next, finer, pixels, 0, heightOf(next), 0, widthOf(next));
+        extended.add(pixels);
+      }
+
+      this.levels = extended;
+      return extended.get(level);
+    }
+  }
+
+  /**
+   * Computes a rectangle of a level by averaging the pixels of the level before it.
+   *
+   * @param level       the level to compute, which must be greater than 0
+   * @param finer       the packed pixels of the level before it
+   * @param pixels      the packed pixels of the level, into which the rectangle is written
+   * @param firstRow    the first row of the rectangle
+   * @param endRow      one past the last row of the rectangle
+   * @param firstColumn the first column of the rectangle
+   * @param endColumn   one past the last column of the rectangle
+   */
+  private void downsample(int level, int[] finer, int[] pixels, int firstRow, int endRow,
+      int firstColumn, int endColumn) {
+    int finerWidth = sizeAt(base.getWidth(), level - 1);
+    int finerHeight = sizeAt(base.getHeight(), level - 1);
+    int width = sizeAt(base.getWidth(), level);
+
+    IntStream.range(firstRow, endRow).parallel().forEach(row -> {
+      int top = 2 * row;
+      int bottom = Math.min(top + 1, finerHeight - 1);
+
+      for (int column = firstColumn; column < endColumn; column += 1) {
+        int left = 2 * column;
+        int right = Math.min(left + 1, finerWidth - 1);
+
+        int topLeft = finer[top * finerWidth + left];
+        int topRight = finer[top * finerWidth + right];
+        int bottomLeft = finer[bottom * finerWidth + left];
+        int bottomRight = finer[bottom * finerWidth + right];
+
+        // Odd edges repeat their last row or column, which keeps the average unbiased
+        pixels[row * width + column] = PackedRGB.pack(
+            (PackedRGB.red(topLeft) + PackedRGB.red(topRight) + PackedRGB.red(bottomLeft)
+                + PackedRGB.red(bottomRight) + 2) / 4,
+            (PackedRGB.green(topLeft) + PackedRGB.green(topRight) + PackedRGB.green(bottomLeft)
+                + PackedRGB.green(bottomRight) + 2) / 4,
+            (PackedRGB.blue(topLeft) + PackedRGB.blue(topRight) + PackedRGB.blue(bottomLeft)
+                + PackedRGB.blue(bottomRight) + 2) / 4);
+      }
+    });
+  }
+
+  /**
+   * Produces the levels of a pyramid that has not built any yet.
+   *
+   * @return a list holding only the placeholder for level 0
+   */
+  private static List<int[]> unbuilt() {
+    List<int[]> levels = new ArrayList<>();
+    levels.add(null);
+    return levels;
+  }
+
+  /**
+   * Ensures that the given level exists in this pyramid.
+   *
+   * @param level the level to check
+   * @throws IllegalArgumentException if the level does not exist
+   */
+  private void validateLevel(int level) throws IllegalArgumentException {
+    if (level < 0 || level >= numLevels) {
+      throw new IllegalArgumentException("Level " + level + " does not exist");
+    }
+  }
+
+  /**
+   * Computes the length of one side of an image after halving it
+   * (rounding up) a number of times.
+   *
+   * @param size  the original length
+   * @param level the number of times the length is halved
+   * @return the halved length, which is at least 1
+   */
+  private static int sizeAt(int size, int level) {
+    int result = size;
+    for (int i = 0; i < level; i += 1) {
+      result = (result + 1) / 2;
+    }
+    return result;
+  }
+}
@@ -48,4 +48,14 @@ public interface VLayer extends VImage {
    */
   void setVisible(boolean isVisible);
 
+  /**
+   * Gets the pyramid of successively smaller copies of this layer.
+   *
+   * <p>The pyramid is kept with the layer, so levels built once are reused by every
+   * client that later asks for them</p>
+   *
+   * @return the pyramid whose base is this layer
+   */
+  VImagePyramid getPyramid();
+
 }
@@ -1,5 +1,16 @@
 package model.image;
 
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+import java.util.Set;
 import model.image.pixel.VPixel;
 import model.image.pixel.VPixelCoordinate;
 import model.misc.ObjectsExtension;
@@ -8,12 +19,52 @@ import java.util.function.Function;
 /**
  * An implementation for a layer, which is an VImage with an additional
  * name and visibility.
+ *
+ * <p>The pixels of a layer can be spilled to a temporary file by the
+ * {@link VMemoryBudget} tracking the layer and are transparently read back
+ * the next time they are needed. Since the contents of a layer never change,
+ * a layer writes its spill file at most once.
+ *
+ * <p>A layer made from a flipped, transposed or rotated view of an immutable image
+ * (see {@link VOrientedImage}) keeps the view instead of copying its pixels. The pixels
+ * are only laid out contiguously once something needs direct access to them, such as an
+ * operation that copies the layer.
+ *
+ * <p>Likewise, a layer made from a {@link VLazyImage} keeps the lazy image and only decodes
+ * it the first time its pixels are needed. Until then the layer takes up no memory for its
+ * pixels, and copies of the layer share the lazy image.</p>
  */
 public class VLayerImpl extends AbstractVImage implements VLayer {
 
+  // Deletes spill files once the layers that wrote them are unreachable
+  private static final Cleaner SPILL_FILE_CLEANER = Cleaner.create();
+
+  // The number of bytes moved to and from a spill file at a time
+  private static final int SPILL_BUFFER_SIZE = 1 << 20;
+
   private String name;
   private Boolean visible;
 
+  // A copy of this layer's pixels on disk, or null if the
+  // layer has never been spilled
+  private Path spillFile;
+  private volatile long lastTouched;
+
+  // Smaller copies of this layer, or null if none have been requested
+  private volatile VImagePyramid pyramid;
+
+  // An oriented view whose pixels become the pixels of this layer
+  // the first time they are needed, or null once they have been
+  private volatile VOrientedImage deferred;
+
+  // An image whose decoded pixels become the pixels of this layer
+  // the first time they are needed, or null once they have been
+  private volatile VLazyImage lazy;
+
+  // The shared image whose pixels this layer holds, or null if
+  // the pixels of this layer are its own
+  private volatile VSharedImage shared;
+
   /**
    * Constructs a layer with an image.
    * @param other the image to of the layer
@@ -58,10 +109,91 @@ public class VLayerImpl extends AbstractVImage implements VLayer {
    * @param other the image of the layer
    */
   public VLayerImpl(String name, VImage other) {
-    super(other);
-    ObjectsExtension.requireNonnull(name, other);
+    super(ObjectsExtension.asNonnull(other).getWidth(), other.getHeight(),
+        isDeferrable(other) || lazySourceOf(other) != null ? null : pixelsOf(other));
+    ObjectsExtension.requireNonnull(name);
     this.name = name;
     this.visible = true;
+    this.deferred = isDeferrable(other) ? (VOrientedImage) other : null;
+    this.lazy = this.pixels == null && this.deferred == null ? lazySourceOf(other) : null;
+
+    // The image may have been decoded in the meantime
+    if (this.pixels == null && this.deferred == null && this.lazy == null) {
+      this.pixels = pixelsOf(other);
+    }
+
+    if (this.pixels != null && other instanceof VSharedImage) {
+      this.shared = (VSharedImage) other;
+    }
+  }
+
+  /**
+   * Produces the pixels of a layer made from the given image, which are those of the image
+   * itself if it is shared (see {@link VSharedImage}) and a copy of them otherwise.
+   *
+   * @param image the contents of a new layer
+   * @return the packed pixels of the new layer
+   */
+  private static int[] pixelsOf(VImage image) {
+    if (image instanceof VSharedImage) {
+      return ((VSharedImage) image).sharedPixels();
+    }
+    return packedCopyOf(image);
+  }
+
+  /**
+   * Finds the lazy image a layer made from the given image can hold on to
+   * instead of decoding it.
+   *
+   * @param image the contents of a new layer
+   * @return the image itself if it is lazy, the lazy image of a layer that has not
+   *         decoded it yet, or {@code null} if the image has its pixels already
+   */
+  private static VLazyImage lazySourceOf(VImage image) {
+    if (image instanceof VLazyImage) {
+      return (VLazyImage) image;
+    }
+
+    if (image instanceof VLayerImpl) {
+      return ((VLayerImpl) image).lazy;
+    }
+    return null;
+  }
+
+  /**
+   * Determines whether a layer can hold on to the given image
+   * instead of copying its pixels.
+   *
+   * @param image the contents of a new layer
+   * @return true if the image is an oriented view of an image whose pixels never change
+   */
+  private static boolean isDeferrable(VImage image) {
+    return image instanceof VOrientedImage
+        && !(((VOrientedImage) image).getSource() instanceof VMutableImage);
+  }
+
+  /**
+   * Retrieves the oriented view this layer has not yet copied the pixels of.
+   *
+   * @return the view whose pixels are those of this layer, or {@code null}
+   *         if this layer has its own pixels
+   */
+  VOrientedImage deferredView() {
+    return this.deferred;
+  }
+
+  @Override
+  public Optional<VPixel> getPixelAt(VPixelCoordinate location) throws IllegalArgumentException {
+    VOrientedImage view = this.deferred;
+    return view == null ? super.getPixelAt(location) : view.getPixelAt(location);
+  }
+
+  @Override
+  public VImage region(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    VOrientedImage view = this.deferred;
+    return view == null ? super.region(topLeft, width, height)
+        : view.region(topLeft, width, height);
   }
 
   /**
@@ -88,6 +220,291 @@ public class VLayerImpl extends AbstractVImage implements VLayer {
     this.visible = true;
   }
 
+  @Override
+  protected int[] pixelData() {
+    int[] data = this.pixels;
+
+    if (data == null) {
+      data = this.faultIn();
+      VMemoryBudget.global().touch(this);
+    }
+    return data;
+  }
+
+  /**
+   * Reads the pixels of this layer back into memory from its spill file, or
+   * lays out the pixels of the view this layer was made from.
+   *
+   * <p>A layer whose lazy image can no longer be decoded, such as one whose file has been
+   * truncated or changed since it was loaded, fails as an operation given a bad image
+   * would, so that commands report the failure rather than stopping</p>
+   *
+   * @return the pixels of this layer
+   * @throws IllegalArgumentException if the lazy image of this layer could not be decoded
+   * @throws IllegalStateException    if the spill file could not be read
+   */
+  private synchronized int[] faultIn() throws IllegalArgumentException, IllegalStateException {
+    int[] data = this.pixels;
+    if (data != null) {
+      return data;
+    }
+
+    if (deferred != null) {
+      data = deferred.materialize();
+      this.pixels = data;
+      this.deferred = null;
+      return data;
+    }
+
+    if (lazy != null) {
+      VImage decoded;
+
+      try {
+        decoded = lazy.decode();
+        data = VPackedImages.readPixels(decoded);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("The pixels of layer " + name
+            + " could not be loaded. " + e.getMessage());
+      }
+
+      this.pixels = data;
+      this.shared = decoded instanceof VSharedImage ? (VSharedImage) decoded : null;
+      this.lazy = null;
+      return data;
+    }
+
+    data = new int[width * height];
+
+    try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(SPILL_BUFFER_SIZE);
+      int index = 0;
+
+      while (index < data.length) {
+        int count = Math.min(SPILL_BUFFER_SIZE / Integer.BYTES, data.length - index);
+        buffer.clear().limit(count * Integer.BYTES);
+
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            throw new IOException("Spill file ended unexpectedly");
+          }
+        }
+
+        buffer.flip();
+        buffer.asIntBuffer().get(data, index, count);
+        index += count;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("The pixels of layer " + name
+          + " could not be read back into memory");
+    }
+
+    this.pixels = data;
+    return data;
+  }
+
+  /**
+   * Releases the pixels of this layer and the levels of its pyramid from memory, writing
+   * the pixels to a temporary file first if this layer has never been spilled before.
+   *
+   * <p>A layer still holding the oriented view it was made from lays out the pixels of the
+   * view first, so that the view, which keeps every pixel of the image it orients reachable,
+   * can be let go of. If the pixels cannot be written to disk, the layer
+   * simply remains in memory</p>
+   */
+  void spill() {
+    // The pyramid is released without holding this layer's lock since
+    // building a level of the pyramid may fault this layer back in
+    VImagePyramid levels = this.pyramid;
+    if (levels != null) {
+      levels.release();
+    }
+
+    this.spillPixels();
+  }
+
+  /**
+   * Writes the pixels of this layer to its spill file, if they have not been
+   * already, and releases them from memory.
+   */
+  private synchronized void spillPixels() {
+    int[] data = this.pixels;
+
+    if (data == null && deferred != null) {
+      data = deferred.materialize();
+      this.pixels = data;
+      this.deferred = null;
+    }
+
+    if (data == null) {
+      return;
+    }
+
+    if (spillFile == null) {
+      Path file = null;
+
+      try {
+        file = Files.createTempFile("vido-layer", ".spill");
+        file.toFile().deleteOnExit();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+          ByteBuffer buffer = ByteBuffer.allocate(SPILL_BUFFER_SIZE);
+
+          for (int index = 0; index < data.length; ) {
+            int count = Math.min(SPILL_BUFFER_SIZE / Integer.BYTES, data.length - index);
+            buffer.clear();
+            buffer.asIntBuffer().put(data, index, count);
+            buffer.limit(count * Integer.BYTES);
+
+            while (buffer.hasRemaining()) {
+              channel.write(buffer);
+            }
+            index += count;
+          }
+        }
+      } catch (IOException | SecurityException e) {
+        deleteQuietly(file);
+        return;
+      }
+
+      spillFile = file;
+      SPILL_FILE_CLEANER.register(this, new SpillFileDeleter(file));
+    }
+
+    this.pixels = null;
+
+    // Pixels read back from the spill file are this layer's own
+    VSharedImage source = this.shared;
+    if (source != null) {
+      this.shared = null;
+      source.spilled();
+    }
+  }
+
+  /**
+   * Determines the number of bytes of pixel data this layer has in memory.
+   *
+   * <p>The pixels of the image an oriented view orients are kept in memory by the view, so
+   * a layer still holding the view it was made from counts them as its own</p>
+   *
+   * @return the number of bytes of resident pixel data, including any levels of its
+   *         pyramid, or 0 if this layer is currently spilled to disk
+   */
+  long residentBytes() {
+    return this.residentBytes(Collections.newSetFromMap(new IdentityHashMap<>()));
+  }
+
+  /**
+   * Determines the number of bytes of pixel data this layer has in memory that have not
+   * been counted already.
+   *
+   * <p>Layers made from the same shared image (see {@link VSharedImage}) hold the same
+   * array of pixels, which only takes up memory once</p>
+   *
+   * @param counted the arrays of pixels counted so far, to which the pixels of this layer
+   *                are added
+   * @return the number of bytes of resident pixel data not in {@code counted}, including
+   *         any levels of its pyramid
+   */
+  long residentBytes(Set<int[]> counted) {
+    VImagePyramid levels = this.pyramid;
+    long pyramidBytes = levels == null ? 0 : levels.residentBytes();
+    int[] data = this.pixels;
+    boolean resident = data != null ? counted.add(data) : this.deferred != null;
+    return pyramidBytes + (resident ? (long) width * height * Integer.BYTES : 0);
+  }
+
+  /**
+   * Retrieves the tick of the memory budget at which this layer was last used.
+   *
+   * @return the last time this layer was used
+   */
+  long lastTouched() {
+    return this.lastTouched;
+  }
+
+  /**
+   * Records the tick of the memory budget at which this layer was used.
+   *
+   * @param tick the current tick of the memory budget
+   */
+  void markTouched(long tick) {
+    this.lastTouched = tick;
+  }
+
+  /**
+   * Deletes the given file if it exists, ignoring any failure.
+   *
+   * @param file the file to delete, or {@code null}
+   */
+  private static void deleteQuietly(Path file) {
+    if (file == null) {
+      return;
+    }
+
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException | SecurityException e) {
+      // The file is deleted when the program exits anyway
+    }
+  }
+
+  /**
+   * Deletes a spill file once the layer that wrote it is no longer reachable.
+   */
+  private static final class SpillFileDeleter implements Runnable {
+    private final Path file;
+
+    /**
+     * Construct a new deleter for the given spill file.
+     *
+     * @param file the spill file to delete
+     */
+    SpillFileDeleter(Path file) {
+      this.file = file;
+    }
+
+    @Override
+    public void run() {
+      deleteQuietly(file);
+    }
+  }
+
+  @Override
+  public VImagePyramid getPyramid() {
+    VImagePyramid levels = this.pyramid;
+
+    if (levels == null) {
+      synchronized (this) {
+        levels = this.pyramid;
+        if (levels == null) {
+          levels = new VImagePyramid(this);
+          this.pyramid = levels;
+        }
+      }
+    }
+    return levels;
+  }
+
+  /**
+   * Gives this layer a pyramid derived from the pyramid of a layer which differs from
+   * this layer only within the given region.
+   *
+   * <p>Nothing happens if the other layer has never built its pyramid</p>
+   *
+   * @param previous a layer of the same size whose pixels outside of the region are
+   *                 the same as this layer's
+   * @param topLeft  the location of the top-left pixel of the region
+   * @param width    the width of the region
+   * @param height   the height of the region
+   */
+  void inheritPyramid(VLayerImpl previous, VPixelCoordinate topLeft, int width, int height) {
+    VImagePyramid previousLevels = previous.pyramid;
+
+    if (previousLevels != null && this.pyramid == null) {
+      this.pyramid = previousLevels.withRegionChanged(this, topLeft, width, height);
+    }
+  }
+
   @Override
   public VLayer copy() {
 
@@ -164,6 +164,19 @@ public interface VLayeredImage {
    */
   void apply(VImageContentOperation operation, String layerName) throws IllegalArgumentException;
 
+  /**
+   * Applies a single layer operation to every layer of this image.
+   *
+   * <p>Unlike applying an operation to a single layer, the operation may change the size of
+   * the layers as long as it produces layers of the same size from every layer. Either every
+   * layer is replaced or, if the operation fails on any layer, none are</p>
+   *
+   * @param operation the operation to be applied to every layer
+   * @throws IllegalArgumentException if the operation is null; if the operation fails on any
+   *                                  layer; or if the resulting layers differ in size
+   */
+  void applyToAll(VImageContentOperation operation) throws IllegalArgumentException;
+
   /**
    * Determines the number of layers in this image.
    *
@@ -180,6 +193,20 @@ public interface VLayeredImage {
    */
   VLayer getLayer(int index) throws IllegalArgumentException;
 
+  /**
+   * Gets the version of the contents of the layer at a specified index.
+   *
+   * <p>The version of a layer changes every time its contents do, so a client that
+   * remembers the version of a layer can later tell whether the layer has changed
+   * since. Renaming a layer or changing its visibility does not change its version,
+   * and no two layers ever share a version unless one image is a copy of the other</p>
+   *
+   * @param index the index of the layer
+   * @return the version of the contents of the layer at the index
+   * @throws IllegalArgumentException if the index is out of bounds or null
+   */
+  long getLayerVersion(int index) throws IllegalArgumentException;
+
   /**
    * Gets a layer at a specified name.
    *
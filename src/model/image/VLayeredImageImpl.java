@@ -2,15 +2,32 @@ package model.image;
 
 import model.misc.ObjectsExtension;
 import model.processing.VImageContentOperation;
+import model.processing.VRegionContentOperation;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An implementation for a layered image.
+ *
+ * <p>Every layer of the image is tracked by the global {@link VMemoryBudget},
+ * which may spill layers that have not been used recently to disk.
+ *
+ * <p>Every layer is also given a version, drawn from a counter shared by all images, which
+ * is replaced whenever the contents of the layer are. Since the contents of a layer never
+ * change once it is made, layers whose contents are the same as before keep their version,
+ * which lets savers skip the layers that have not changed since they were last saved.</p>
  */
 public class VLayeredImageImpl implements VLayeredImage {
 
+  // The source of the versions of the contents of layers, shared
+  // by all images so that versions are never reused
+  private static final AtomicLong NEXT_VERSION = new AtomicLong();
+
   private final ArrayList<VLayer> layers;
+  private final ArrayList<Long> versions;
+  private final VMemoryBudget budget;
   private String name;
   private int width;
   private int height;
@@ -23,6 +40,8 @@ public class VLayeredImageImpl implements VLayeredImage {
    */
   public VLayeredImageImpl() {
     this.layers = new ArrayList<VLayer>();
+    this.versions = new ArrayList<Long>();
+    this.budget = VMemoryBudget.global();
     this.name = "untitled";
     this.width = -1;
     this.height = -1;
@@ -40,12 +59,17 @@ public class VLayeredImageImpl implements VLayeredImage {
 
     this.name = other.getName();
     this.layers = new ArrayList<VLayer>();
+    this.versions = new ArrayList<Long>();
+    this.budget = VMemoryBudget.global();
     this.width = -1;
     this.height = -1;
 
+    // The copied layers have the same contents as the originals,
+    // so they keep the versions of the originals
     for (int i = 0; i < other.numLayers(); i += 1) {
       VLayer layerInOther = other.getLayer(i);
       this.createNewLayer(layerInOther.getName(), i, layerInOther);
+      this.versions.set(i, other.getLayerVersion(i));
     }
   }
 
@@ -66,15 +90,17 @@ public class VLayeredImageImpl implements VLayeredImage {
 
     if (contents.getWidth() != width || contents.getHeight() != height) {
       if (this.numLayers() == 0) {
-        this.layers.add(index, new VLayerImpl(layerName, contents));
+        this.layers.add(index, this.track(new VLayerImpl(layerName, contents)));
         this.width = contents.getWidth();
         this.height = contents.getHeight();
       } else {
         throw new IllegalArgumentException("Layers must have matching dimensions.");
       }
     } else {
-      this.layers.add(index, new VLayerImpl(layerName, contents));
+      this.layers.add(index, this.track(new VLayerImpl(layerName, contents)));
     }
+
+    this.versions.add(index, NEXT_VERSION.incrementAndGet());
   }
 
   /**
@@ -88,8 +114,8 @@ public class VLayeredImageImpl implements VLayeredImage {
       throws IllegalArgumentException {
     ObjectsExtension.requireNonnull(layerName);
 
-    for (int i = 0; i < this.numLayers(); i += 1) {
-      if (this.getLayer(i).getName().equals(layerName)) {
+    for (VLayer layer : this.layers) {
+      if (layer.getName().equals(layerName)) {
         return true;
       }
     }
@@ -133,21 +159,24 @@ public class VLayeredImageImpl implements VLayeredImage {
   private void replaceFromIdx(int index, VImage contents)
       throws IllegalArgumentException {
     ObjectsExtension.requireNonnull(contents, index);
-    VLayer oldLayer = this.getLayer(index);
+    VLayer oldLayer = this.layers.get(index);
 
     if (contents.getWidth() != width || contents.getHeight() != height) {
       if (this.numLayers() == 1) {
-        this.layers.set(index, new VLayerImpl(oldLayer.getName(),
-            contents));
+        this.layers.set(index, this.track(new VLayerImpl(oldLayer.getName(),
+            contents)));
         this.width = contents.getWidth();
         this.height = contents.getHeight();
       } else {
         throw new IllegalArgumentException("Layers must have matching dimensions.");
       }
     } else {
-      this.layers.set(index, new VLayerImpl(oldLayer.getName(),
-          contents));
+      this.layers.set(index, this.track(new VLayerImpl(oldLayer.getName(),
+          contents)));
     }
+
+    this.versions.set(index, NEXT_VERSION.incrementAndGet());
+    this.untrack(oldLayer);
   }
 
   /**
@@ -160,7 +189,7 @@ public class VLayeredImageImpl implements VLayeredImage {
   private int getIdxFromName(String layerName) throws IllegalArgumentException {
     ObjectsExtension.requireNonnull(layerName);
     for (int i = 0; i < this.numLayers(); i += 1) {
-      if (this.getLayer(i).getName().equals(layerName)) {
+      if (this.layers.get(i).getName().equals(layerName)) {
         return i;
       }
     }
@@ -229,7 +258,8 @@ public class VLayeredImageImpl implements VLayeredImage {
     VLayer newLayer = oldLayer.copy();
     newLayer.setName(destinationLayer);
 
-    this.layers.add(destinationIndex, newLayer);
+    this.layers.add(destinationIndex, this.track(newLayer));
+    this.versions.add(destinationIndex, NEXT_VERSION.incrementAndGet());
   }
 
   @Override
@@ -264,7 +294,8 @@ public class VLayeredImageImpl implements VLayeredImage {
   private void removeLayerWithIdx(int idxFromName)
       throws IllegalArgumentException {
     ObjectsExtension.requireNonnull(idxFromName);
-    this.layers.remove(idxFromName);
+    this.untrack(this.layers.remove(idxFromName));
+    this.versions.remove(idxFromName);
   }
 
   @Override
@@ -291,7 +322,7 @@ public class VLayeredImageImpl implements VLayeredImage {
 
   private void setVisibleWithIdx(boolean isVisible, int index) {
     ObjectsExtension.requireNonnull(index, isVisible);
-    VLayer layer = this.getLayer(index);
+    VLayer layer = this.layers.get(index);
     layer.setVisible(isVisible);
   }
 
@@ -337,7 +368,7 @@ public class VLayeredImageImpl implements VLayeredImage {
    */
   private void renameWithIdx(String newName, int idxFromName) {
     ObjectsExtension.requireNonnull(newName, idxFromName);
-    VLayer layer = this.getLayer(idxFromName);
+    VLayer layer = this.layers.get(idxFromName);
     layer.setName(newName);
   }
 
@@ -365,29 +396,125 @@ public class VLayeredImageImpl implements VLayeredImage {
 
   }
 
+  @Override
+  public void applyToAll(VImageContentOperation operation) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(operation);
+
+    // Each layer is replaced as soon as its result is ready, so that the
+    // results count against the memory budget and can be spilled while
+    // the remaining layers are operated on. The replaced layers stay
+    // tracked until every layer has succeeded, so that a failure part of
+    // the way through can put them back
+    List<VLayer> previousLayers = new ArrayList<>(this.layers);
+    List<Long> previousVersions = new ArrayList<>(this.versions);
+    int previousWidth = this.width;
+    int previousHeight = this.height;
+    boolean succeeded = false;
+
+    try {
+      for (int i = 0; i < previousLayers.size(); i += 1) {
+        VImage result = this.operateOnLayer(operation, i);
+
+        if (i > 0 && (result.getWidth() != this.width || result.getHeight() != this.height)) {
+          throw new IllegalArgumentException("Layers must have matching dimensions.");
+        }
+
+        this.width = result.getWidth();
+        this.height = result.getHeight();
+        this.layers.set(i, this.track(new VLayerImpl(previousLayers.get(i).getName(), result)));
+        this.versions.set(i, NEXT_VERSION.incrementAndGet());
+      }
+      succeeded = true;
+    } finally {
+      List<VLayer> discarded = succeeded ? previousLayers : new ArrayList<>(this.layers);
+
+      if (!succeeded) {
+        this.layers.clear();
+        this.layers.addAll(previousLayers);
+        this.versions.clear();
+        this.versions.addAll(previousVersions);
+        this.width = previousWidth;
+        this.height = previousHeight;
+      }
+
+      for (int i = 0; i < discarded.size(); i += 1) {
+        if (discarded.get(i) != this.layers.get(i)) {
+          this.untrack(discarded.get(i));
+        }
+      }
+    }
+  }
+
   /**
    * Applies an operation based on an index.
    *
    * @param operation the operation to be applied
    * @param index     the index of the layer
-   * @throws IllegalArgumentException if the modified layer has an incompatible size, or if the
+   * @throws IllegalArgumentException if the modified layer has an incompatible size; or if the
    *                                  operation or index are null
    */
   private void applyWithIdx(VImageContentOperation operation, int index)
       throws IllegalArgumentException {
     ObjectsExtension.requireNonnull(operation, index);
+    VLayer oldLayer = this.layers.get(index);
+    this.replaceFromIdx(index, this.operateOnLayer(operation, index));
+
+    // Only the region changed, so the rest of any pyramid
+    // the old layer built is still valid
+    VLayer newLayer = this.layers.get(index);
+    if (operation instanceof VRegionContentOperation && oldLayer instanceof VLayerImpl
+        && newLayer instanceof VLayerImpl) {
+      VRegionContentOperation regionOperation = (VRegionContentOperation) operation;
+      ((VLayerImpl) newLayer).inheritPyramid((VLayerImpl) oldLayer,
+          regionOperation.getTopLeft(), regionOperation.getWidth(), regionOperation.getHeight());
+    }
+  }
 
+  /**
+   * Runs an operation on the layer at an index without replacing the layer.
+   *
+   * <p>Before the operation runs, layers that have not been used recently are
+   * spilled to make room for the copies the operation creates. Running out of memory
+   * regardless is an error of the virtual machine and is not recovered from here</p>
+   *
+   * @param operation the operation to run
+   * @param index     the index of the layer
+   * @return the result of the operation
+   * @throws IllegalArgumentException if the operation fails
+   */
+  private VImage operateOnLayer(VImageContentOperation operation, int index)
+      throws IllegalArgumentException {
     VLayer oldLayer = this.getLayer(index);
-    VLayer newLayer = new VLayerImpl(oldLayer.getName(), operation.operateOn(oldLayer));
 
-    if (this.numLayers() == 1) {
-      this.replace(index, newLayer);
-    } else {
-      if (newLayer.getWidth() != this.width || newLayer.getHeight() != this.height) {
-        throw new IllegalArgumentException("Layers must have matching dimensions.");
-      } else {
-        this.replace(index, newLayer);
-      }
+    // Operations typically allocate a working copy of
+    // their input in addition to their result
+    long layerBytes = (long) oldLayer.getWidth() * oldLayer.getHeight() * Integer.BYTES;
+    budget.reserve(2 * layerBytes, oldLayer);
+
+    return operation.operateOn(oldLayer);
+  }
+
+  /**
+   * Starts tracking the given layer against the memory budget of this image.
+   *
+   * @param layer the layer that was added to this image
+   * @return the given layer
+   */
+  private VLayer track(VLayer layer) {
+    if (layer instanceof VLayerImpl) {
+      budget.track((VLayerImpl) layer);
+    }
+    return layer;
+  }
+
+  /**
+   * Stops tracking the given layer against the memory budget of this image.
+   *
+   * @param layer the layer that was removed from this image
+   */
+  private void untrack(VLayer layer) {
+    if (layer instanceof VLayerImpl) {
+      budget.untrack((VLayerImpl) layer);
     }
   }
 
@@ -403,7 +530,21 @@ public class VLayeredImageImpl implements VLayeredImage {
       throw new IllegalArgumentException("Index out of bounds.");
     }
 
-    return this.layers.get(index);
+    VLayer layer = this.layers.get(index);
+    if (layer instanceof VLayerImpl) {
+      budget.touch((VLayerImpl) layer);
+    }
+    return layer;
+  }
+
+  @Override
+  public long getLayerVersion(int index) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(index);
+    if (index < 0 || index > this.numLayers() - 1) {
+      throw new IllegalArgumentException("Index out of bounds.");
+    }
+
+    return this.versions.get(index);
   }
 
   @Override
@@ -411,7 +552,7 @@ public class VLayeredImageImpl implements VLayeredImage {
     ObjectsExtension.requireNonnull(layerName);
 
     for (int i = 0; i < this.numLayers(); i += 1) {
-      if (this.getLayer(i).getName().equals(layerName)) {
+      if (this.layers.get(i).getName().equals(layerName)) {
         return this.getLayer(i);
       }
     }
@@ -0,0 +1,109 @@
+package model.image;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+import model.image.pixel.VPixel;
+import model.image.pixel.VPixelCoordinate;
+import model.misc.ObjectsExtension;
+
+/**
+ * An image whose size is known but whose pixels have not been decoded yet.
+ *
+ * <p>A {@link VLazyImage} is a stand-in for an image stored elsewhere, such as the file of a
+ * layer of a saved project. It knows the size of the image, usually read from the header of
+ * the file, along with a way to decode the image, but decodes nothing itself until asked to.
+ *
+ * <p>A lazy image is meant to become the contents of a layer. A {@link VLayerImpl} made from a
+ * lazy image holds on to it instead of copying its pixels, and only decodes it the first time
+ * the pixels of the layer are needed. Once decoded, the layer spills its pixels like any other
+ * layer when memory is tight. Reading pixels from a lazy image directly decodes the image every
+ * time, so a lazy image should only be read through a layer.</p>
+ */
+public final class VLazyImage implements VImage {
+  private final int width;
+  private final int height;
+  private final Supplier<? extends VImage> decoder;
+
+  /**
+   * Construct a new lazy image of the given size, decoded by the given function.
+   *
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param decoder decodes the image; it may throw an unchecked exception if the image
+   *                could not be decoded
+   * @throws IllegalArgumentException if {@code decoder} is {@code null} or if either width or
+   *                                  height is not positive
+   */
+  public VLazyImage(int width, int height, Supplier<? extends VImage> decoder)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(decoder);
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("An image must have a positive width and height");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.decoder = decoder;
+  }
+
+  /**
+   * Decodes the image.
+   *
+   * @return the decoded image
+   * @throws IllegalStateException if the decoded image is not the size this image was made with
+   */
+  VImage decode() throws IllegalStateException {
+    VImage image = decoder.get();
+
+    if (image.getWidth() != width || image.getHeight() != height) {
+      throw new IllegalStateException("The decoded image is " + image.getWidth() + "x"
+          + image.getHeight() + " rather than " + width + "x" + height);
+    }
+    return image;
+  }
+
+  @Override
+  public VMutableImage mutableCopy() {
+    return this.decode().mutableCopy();
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int numPixels() {
+    return this.width * this.height;
+  }
+
+  @Override
+  public boolean contains(VPixelCoordinate coordinate) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(coordinate);
+    int rowIndex = coordinate.getRowIndex();
+    int colIndex = coordinate.getColumnIndex();
+    return rowIndex >= 0 && rowIndex < this.height && colIndex >= 0 && colIndex < this.width;
+  }
+
+  @Override
+  public Optional<VPixel> getPixelAt(VPixelCoordinate location) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(location);
+
+    if (!this.contains(location)) {
+      return Optional.empty();
+    }
+    return this.decode().getPixelAt(location);
+  }
+
+  @Override
+  public VImage region(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    return this.decode().region(topLeft, width, height);
+  }
+}
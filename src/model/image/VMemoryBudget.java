@@ -0,0 +1,252 @@
+package model.image;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import model.misc.ObjectsExtension;
+
+/**
+ * Keeps the pixel data of all layers in the program within a fixed number of bytes.
+ *
+ * <p>Every layer that is part of a {@link VLayeredImage} is tracked by the
+ * budget. Whenever the pixel data resident in memory for those layers would exceed
+ * the budget's limit, the least-recently-used layers are <em>spilled</em>: their pixels
+ * are written to a temporary file and released from memory. A spilled layer is faulted
+ * back into memory the next time its pixels are read, which may in turn spill other
+ * layers.
+ *
+ * <p>Layers are marked as used whenever they are retrieved from a layered image or
+ * have an operation applied to them. The budget only holds weak references to the
+ * layers it tracks, so layers that are no longer part of any image are free to be
+ * garbage collected.</p>
+ */
+public final class VMemoryBudget {
+
+  private static final VMemoryBudget GLOBAL =
+      new VMemoryBudget(Runtime.getRuntime().maxMemory() / 2);
+
+  private final Set<VLayerImpl> tracked;
+  private final AtomicLong clock;
+  private long limit;
+
+  /**
+   * Construct a new memory budget with the given limit.
+   *
+   * @param limit the maximum number of bytes of layer pixel data that may be resident
+   * @throws IllegalArgumentException if {@code limit} is not positive
+   */
+  public VMemoryBudget(long limit) throws IllegalArgumentException {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("A memory budget must be positive");
+    }
+
+    this.tracked = Collections.newSetFromMap(new WeakHashMap<>());
+    this.clock = new AtomicLong();
+    this.limit = limit;
+  }
+
+  /**
+   * Retrieves the budget shared by every layered image in the program.
+   *
+   * <p>By default, the global budget allows half of the maximum heap size
+   * of the virtual machine to be occupied by layer pixel data</p>
+   *
+   * @return the application-wide memory budget
+   */
+  public static VMemoryBudget global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Parses a human-readable size such as {@code "512m"} or {@code "2g"} into bytes.
+   *
+   * <p>The size is a positive integer optionally followed by one of the
+   * suffixes {@code k}, {@code m} or {@code g} (case-insensitive).</p>
+   *
+   * @param size the size to parse
+   * @return the number of bytes the size describes
+   * @throws IllegalArgumentException if {@code size} is {@code null} or is not a
+   *                                  positive size
+   */
+  public static long parseSize(String size) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(size);
+    String normalized = size.trim().toLowerCase(Locale.ROOT);
+
+    if (normalized.isEmpty()) {
+      throw new IllegalArgumentException("A memory size must be nonempty");
+    }
+
+    long multiplier = 1;
+    char suffix = normalized.charAt(normalized.length() - 1);
+
+    switch (suffix) {
+      case 'k':
+        multiplier = 1L << 10;
+        break;
+      case 'm':
+        multiplier = 1L << 20;
+        break;
+      case 'g':
+        multiplier = 1L << 30;
+        break;
+      default:
+        break;
+    }
+
+    if (multiplier != 1) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+
+    try {
+      long value = Long.parseLong(normalized);
+
+      if (value <= 0) {
+        throw new IllegalArgumentException("A memory size must be positive");
+      }
+      return Math.multiplyExact(value, multiplier);
+    } catch (NumberFormatException | ArithmeticException e) {
+      throw new IllegalArgumentException("Invalid memory size " + size);
+    }
+  }
+
+  /**
+   * Sets the maximum number of bytes of pixel data that may be resident.
+   *
+   * <p>If more data is currently resident than the new limit allows,
+   * layers are spilled immediately</p>
+   *
+   * @param limit the new limit in bytes
+   * @throws IllegalArgumentException if {@code limit} is not positive
+   */
+  public void setLimit(long limit) throws IllegalArgumentException {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("A memory budget must be positive");
+    }
+
+    synchronized (this) {
+      this.limit = limit;
+    }
+    this.reserve(0, null);
+  }
+
+  /**
+   * Retrieves the maximum number of bytes of pixel data that may be resident.
+   *
+   * @return the limit of this budget in bytes
+   */
+  public synchronized long getLimit() {
+    return this.limit;
+  }
+
+  /**
+   * Computes the number of bytes of pixel data currently resident across all tracked layers.
+   *
+   * @return the resident pixel data in bytes
+   */
+  public synchronized long residentBytes() {
+    // Layers sharing the same pixels only count them once
+    Set<int[]> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    long total = 0;
+
+    for (VLayerImpl layer : tracked) {
+      total += layer.residentBytes(counted);
+    }
+    return total;
+  }
+
+  /**
+   * Spills least-recently-used layers until the given number of bytes
+   * fits within the budget alongside the data that remains resident.
+   *
+   * <p>The layer {@code keep} is never spilled. If every other layer has been spilled
+   * and there is still not enough room, the method returns without further action</p>
+   *
+   * @param bytes the number of bytes that should fit within the budget
+   * @param keep  a layer which must remain resident, or {@code null}
+   */
+  public void reserve(long bytes, VLayer keep) {
+    // Layers sharing the same pixels only free them once the last of them is spilled,
+    // so victims are chosen again for as long as any of them can be spilled
+    while (true) {
+      List<VLayerImpl> victims = new ArrayList<>();
+
+      synchronized (this) {
+        long excess = this.residentBytes() + bytes - this.limit;
+
+        if (excess <= 0) {
+          return;
+        }
+
+        List<VLayerImpl> candidates = new ArrayList<>(tracked);
+        candidates.sort(Comparator.comparingLong(VLayerImpl::lastTouched));
+
+        for (VLayerImpl candidate : candidates) {
+          if (excess <= 0) {
+            break;
+          }
+
+          long candidateBytes = candidate.residentBytes();
+          if (candidate != keep && candidateBytes > 0) {
+            victims.add(candidate);
+            excess -= candidateBytes;
+          }
+        }
+      }
+
+      // Spill outside of the lock: layers lock themselves
+      // while spilling and may call back into the budget
+      boolean spilled = false;
+      for (VLayerImpl victim : victims) {
+        long held = victim.residentBytes();
+        victim.spill();
+        spilled |= victim.residentBytes() < held;
+      }
+
+      if (!spilled) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Begins tracking the given layer against this budget.
+   *
+   * @param layer the layer to track
+   */
+  void track(VLayerImpl layer) {
+    synchronized (this) {
+      tracked.add(layer);
+    }
+    this.touch(layer);
+  }
+
+  /**
+   * Stops tracking the given layer against this budget.
+   *
+   * @param layer the layer that should no longer be tracked
+   */
+  synchronized void untrack(VLayerImpl layer) {
+    tracked.remove(layer);
+  }
+
+  /**
+   * Marks the given layer as the most recently used layer and makes room for it
+   * if it has pixel data resident in memory.
+   *
+   * @param layer the layer that was used
+   */
+  void touch(VLayerImpl layer) {
+    // Layers are only ever marked while holding the lock so
+    // that their order cannot change while candidates are sorted
+    synchronized (this) {
+      layer.markTouched(clock.incrementAndGet());
+    }
+    this.reserve(0, layer);
+  }
+}
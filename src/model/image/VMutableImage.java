@@ -40,6 +40,9 @@ public interface VMutableImage extends VImage {
   /**
    * Reassigns the pixel at a location with a new one.
    *
+   * <p>Each channel of the pixel is clamped to the range [0, 255]
+   * when it is stored in the image</p>
+   *
    * @param pixel the new pixel that will replace some specified pixel
    * @param coordinate a coordinate identifying a location in the image
    * @throws IllegalArgumentException if any arguments are {@code null} or
@@ -47,4 +50,22 @@ public interface VMutableImage extends VImage {
    *                                  outside of the bounds of the image
    */
   void setPixel(VPixel pixel, VPixelCoordinate coordinate) throws IllegalArgumentException;
+
+  /**
+   * Produces a mutable view of a rectangular region of this image.
+   *
+   * <p>The view shares the pixels of this image: setting a pixel in the view
+   * sets the corresponding pixel in this image and vice-versa</p>
+   *
+   * @param topLeft the location in this image of the top-left pixel of the region
+   * @param width   the width of the region
+   * @param height  the height of the region
+   * @return a mutable image whose contents are the pixels of this image within the region
+   * @throws IllegalArgumentException if {@code topLeft} is {@code null}; if the width or height
+   *                                  are not positive; or if the region does not lie entirely
+   *                                  within this image
+   */
+  @Override
+  VMutableImage region(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException;
 }
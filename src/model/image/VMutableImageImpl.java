@@ -1,9 +1,9 @@
 package model.image;
 
 import java.util.function.Function;
+import model.image.pixel.PackedRGB;
 import model.image.pixel.VPixel;
 import model.image.pixel.VPixelCoordinate;
-import model.image.pixel.VRGBPixel;
 import model.misc.ObjectsExtension;
 
 /**
@@ -52,6 +52,41 @@ public class VMutableImageImpl extends AbstractVImage implements VMutableImage {
     super(width, height, perPixelGenerator);
   }
 
+  /**
+   * Construct a new image which adopts the given packed pixels as its own.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the row-major pixels of the image packed as {@code 0x00RRGGBB}
+   * @throws IllegalArgumentException if either width or height are not positive or if
+   *                                  there are not exactly {@code width * height} pixels
+   */
+  VMutableImageImpl(int width, int height, int[] pixels) throws IllegalArgumentException {
+    super(width, height, ObjectsExtension.asNonnull(pixels));
+  }
+
+  /**
+   * Construct a new mutable view of a region of the given image.
+   *
+   * @param viewed  the image whose pixels are shared
+   * @param topLeft the location in {@code viewed} of the top-left pixel of the view
+   * @param width   the width of the view
+   * @param height  the height of the view
+   * @throws IllegalArgumentException if any arguments are {@code null}; if the width or height
+   *                                  are not positive; or if the region does not lie entirely
+   *                                  within {@code viewed}
+   */
+  private VMutableImageImpl(VMutableImageImpl viewed, VPixelCoordinate topLeft, int width,
+      int height) throws IllegalArgumentException {
+    super(viewed, topLeft, width, height);
+  }
+
+  @Override
+  public VMutableImage region(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    return new VMutableImageImpl(this, topLeft, width, height);
+  }
+
   @Override
   public VImage immutableCopy() {
     return this;
@@ -66,6 +101,7 @@ public class VMutableImageImpl extends AbstractVImage implements VMutableImage {
           + " refer to a pixel in this image");
     }
 
-    this.pixels[coordinate.getColumnIndex()][coordinate.getRowIndex()] = new VRGBPixel(pixel);
+    this.pixelData()[this.indexOf(coordinate.getRowIndex(), coordinate.getColumnIndex())] =
+        PackedRGB.pack(pixel);
   }
 }
@@ -0,0 +1,110 @@
+package model.image;
+
+/**
+ * Describes one of the eight ways an image can be flipped, transposed or rotated by a
+ * multiple of 90 degrees without changing any of its pixels.
+ *
+ * <p>Every orientation maps a location in the oriented image to a location in the
+ * original image. Each orientation can be described as an optional transposition
+ * (swapping rows with columns) followed by optionally flipping the rows and/or the
+ * columns of the original image. Orientations can be combined with
+ * {@link VOrientation#then(VOrientation)} to produce another orientation, which means a
+ * sequence of flips and rotations never costs more than a single one.</p>
+ */
+public enum VOrientation {
+  IDENTITY(false, false, false),
+  FLIP_HORIZONTAL(false, false, true),
+  FLIP_VERTICAL(false, true, false),
+  TRANSPOSE(true, false, false),
+  ROTATE_90(true, true, false),
+  ROTATE_180(false, true, true),
+  ROTATE_270(true, false, true),
+  TRANSVERSE(true, true, true);
+
+  private final boolean transposes;
+  private final boolean flipsRows;
+  private final boolean flipsColumns;
+
+  /**
+   * Construct a new orientation.
+   *
+   * @param transposes   whether rows and columns are swapped
+   * @param flipsRows    whether the rows of the original image are read bottom-to-top
+   * @param flipsColumns whether the columns of the original image are read right-to-left
+   */
+  VOrientation(boolean transposes, boolean flipsRows, boolean flipsColumns) {
+    this.transposes = transposes;
+    this.flipsRows = flipsRows;
+    this.flipsColumns = flipsColumns;
+  }
+
+  /**
+   * Determines whether this orientation swaps the width and height of an image.
+   *
+   * @return true if an oriented image has the width and height of the original swapped
+   */
+  public boolean swapsDimensions() {
+    return this.transposes;
+  }
+
+  /**
+   * Computes the row in the original image of a pixel in the oriented image.
+   *
+   * @param row            the row of the pixel in the oriented image
+   * @param column         the column of the pixel in the oriented image
+   * @param originalHeight the height of the original image
+   * @return the row of the pixel in the original image
+   */
+  int sourceRow(int row, int column, int originalHeight) {
+    int sourceRow = transposes ? column : row;
+    return flipsRows ? originalHeight - 1 - sourceRow : sourceRow;
+  }
+
+  /**
+   * Computes the column in the original image of a pixel in the oriented image.
+   *
+   * @param row           the row of the pixel in the oriented image
+   * @param column        the column of the pixel in the oriented image
+   * @param originalWidth the width of the original image
+   * @return the column of the pixel in the original image
+   */
+  int sourceColumn(int row, int column, int originalWidth) {
+    int sourceColumn = transposes ? row : column;
+    return flipsColumns ? originalWidth - 1 - sourceColumn : sourceColumn;
+  }
+
+  /**
+   * Produces the orientation equivalent to applying this orientation and
+   * then applying {@code next} to the result.
+   *
+   * @param next the orientation applied second
+   * @return a single orientation with the same effect as both orientations in sequence
+   */
+  public VOrientation then(VOrientation next) {
+    // The flips of `next` act on the rows and columns of the image
+    // this orientation produces, which are swapped if this orientation transposes
+    boolean nextFlipsRows = transposes ? next.flipsColumns : next.flipsRows;
+    boolean nextFlipsColumns = transposes ? next.flipsRows : next.flipsColumns;
+
+    return of(transposes ^ next.transposes, flipsRows ^ nextFlipsRows,
+        flipsColumns ^ nextFlipsColumns);
+  }
+
+  /**
+   * Finds the orientation with the given components.
+   *
+   * @param transposes   whether rows and columns are swapped
+   * @param flipsRows    whether the rows of the original image are read bottom-to-top
+   * @param flipsColumns whether the columns of the original image are read right-to-left
+   * @return the orientation with the given components
+   */
+  private static VOrientation of(boolean transposes, boolean flipsRows, boolean flipsColumns) {
+    for (VOrientation orientation : values()) {
+      if (orientation.transposes == transposes && orientation.flipsRows == flipsRows
+          && orientation.flipsColumns == flipsColumns) {
+        return orientation;
+      }
+    }
+    throw new AssertionError("Every combination of components is an orientation");
+  }
+}
@@ -0,0 +1,194 @@
+package model.image;
+
+import java.util.Optional;
+import model.image.pixel.PackedRGB;
+import model.image.pixel.VPixel;
+import model.image.pixel.VPixelCoordinate;
+import model.misc.ObjectsExtension;
+
+/**
+ * A view of an image that has been flipped, transposed or rotated by a multiple of 90 degrees.
+ *
+ * <p>A {@link VOrientedImage} does not copy any pixels; it remaps each location read from
+ * it to the corresponding location of the image it orients. Orienting an oriented image
+ * combines both orientations into one (see {@link VOrientation#then(VOrientation)}) so that
+ * reads never pass through more than a single remapping. The pixels are only copied into a
+ * contiguous layout when one is needed, such as when a {@link #mutableCopy()} is made.</p>
+ */
+public final class VOrientedImage implements VImage {
+  private final VImage source;
+  private final VOrientation orientation;
+  private final int width;
+  private final int height;
+
+  /**
+   * Construct a new view of the given image with the given orientation.
+   *
+   * @param source      the image being oriented
+   * @param orientation how the image is oriented
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   */
+  private VOrientedImage(VImage source, VOrientation orientation)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(source, orientation);
+    this.source = source;
+    this.orientation = orientation;
+    this.width = orientation.swapsDimensions() ? source.getHeight() : source.getWidth();
+    this.height = orientation.swapsDimensions() ? source.getWidth() : source.getHeight();
+  }
+
+  /**
+   * Produces a view of the given image with the given orientation.
+   *
+   * @param image       the image to orient
+   * @param orientation how the image should be oriented
+   * @return an image whose pixels are those of {@code image} as seen with the given orientation
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   */
+  public static VImage of(VImage image, VOrientation orientation)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(image, orientation);
+
+    VImage source = image;
+    VOrientation combined = orientation;
+
+    // Layers that have not yet copied the pixels of a view are oriented
+    // through that view so that the orientations can be combined
+    if (image instanceof VLayerImpl && ((VLayerImpl) image).deferredView() != null) {
+      image = ((VLayerImpl) image).deferredView();
+    }
+
+    if (image instanceof VOrientedImage) {
+      VOrientedImage oriented = (VOrientedImage) image;
+      source = oriented.source;
+      combined = oriented.orientation.then(orientation);
+    }
+
+    if (combined == VOrientation.IDENTITY) {
+      return source;
+    }
+    return new VOrientedImage(source, combined);
+  }
+
+  /**
+   * Retrieves the image this view orients.
+   *
+   * @return the image whose pixels are shown by this view
+   */
+  VImage getSource() {
+    return this.source;
+  }
+
+  /**
+   * Copies the pixels of this view into a new row-major array of packed colors.
+   *
+   * @return the pixels of this view laid out contiguously
+   */
+  int[] materialize() {
+    int sourceWidth = source.getWidth();
+    int sourceHeight = source.getHeight();
+    int[] result = new int[width * height];
+
+    if (source instanceof AbstractVImage) {
+      AbstractVImage packed = (AbstractVImage) source;
+      int[] sourcePixels = packed.pixelData();
+
+      for (int i = 0; i < height; i += 1) {
+        for (int j = 0; j < width; j += 1) {
+          result[i * width + j] = sourcePixels[packed.indexOf(
+              orientation.sourceRow(i, j, sourceHeight),
+              orientation.sourceColumn(i, j, sourceWidth))];
+        }
+      }
+    } else {
+      for (int i = 0; i < height; i += 1) {
+        for (int j = 0; j < width; j += 1) {
+          result[i * width + j] = PackedRGB.pack(this.getPixelAt(new VPixelCoordinate(i, j))
+              .orElseThrow(() -> new AssertionError("Oriented image is missing a pixel")));
+        }
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public VMutableImage mutableCopy() {
+    return new VMutableImageImpl(this);
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int numPixels() {
+    return this.width * this.height;
+  }
+
+  @Override
+  public boolean contains(VPixelCoordinate coordinate) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(coordinate);
+    int rowIndex = coordinate.getRowIndex();
+    int colIndex = coordinate.getColumnIndex();
+    return rowIndex >= 0 && rowIndex < this.height && colIndex >= 0 && colIndex < this.width;
+  }
+
+  @Override
+  public Optional<VPixel> getPixelAt(VPixelCoordinate location) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(location);
+
+    if (!this.contains(location)) {
+      return Optional.empty();
+    }
+    return source.getPixelAt(this.toSource(location.getRowIndex(), location.getColumnIndex()));
+  }
+
+  @Override
+  public VImage region(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(topLeft);
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("A region must have a positive width and height");
+    }
+
+    int row = topLeft.getRowIndex();
+    int column = topLeft.getColumnIndex();
+
+    if (row < 0 || column < 0 || row + height > this.height || column + width > this.width) {
+      throw new IllegalArgumentException("A region must lie within the image it views");
+    }
+
+    // Opposite corners of the region map to opposite corners
+    // of the same region in the source image
+    VPixelCoordinate first = this.toSource(row, column);
+    VPixelCoordinate last = this.toSource(row + height - 1, column + width - 1);
+    int sourceRow = Math.min(first.getRowIndex(), last.getRowIndex());
+    int sourceColumn = Math.min(first.getColumnIndex(), last.getColumnIndex());
+    int sourceHeight = Math.abs(first.getRowIndex() - last.getRowIndex()) + 1;
+    int sourceWidth = Math.abs(first.getColumnIndex() - last.getColumnIndex()) + 1;
+
+    return new VOrientedImage(source.region(new VPixelCoordinate(sourceRow, sourceColumn),
+        sourceWidth, sourceHeight), orientation);
+  }
+
+  /**
+   * Maps a location in this view to the corresponding location in the source image.
+   *
+   * @param row    the row of the location in this view
+   * @param column the column of the location in this view
+   * @return the location of the same pixel in the source image
+   */
+  private VPixelCoordinate toSource(int row, int column) {
+    return new VPixelCoordinate(
+        orientation.sourceRow(row, column, source.getHeight()),
+        orientation.sourceColumn(row, column, source.getWidth()));
+  }
+}
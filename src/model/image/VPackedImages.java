@@ -0,0 +1,162 @@
+package model.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import model.misc.ObjectsExtension;
+
+/**
+ * A utility class giving image processing code direct access to the packed pixels of images.
+ *
+ * <p>Images in Vido store their pixels row-major as colors packed {@code 0x00RRGGBB} (see
+ * {@link model.image.pixel.PackedRGB}). Operations that touch every pixel of an image are
+ * much faster working on those arrays directly than through
+ * {@link VImage#getPixelAt(model.image.pixel.VPixelCoordinate)}. The methods of this class
+ * hand out the arrays of existing images and build new images around arrays without copying
+ * them wherever that is possible.</p>
+ */
+public final class VPackedImages {
+
+  // The channel masks of packed colors, as used by BufferedImage.TYPE_INT_RGB
+  private static final int[] RGB_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF};
+  private static final DirectColorModel RGB_MODEL = new DirectColorModel(24,
+      RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]);
+
+  private VPackedImages() {
+    // Prevent construction
+  }
+
+  /**
+   * Retrieves the pixels of the given image as a row-major array of packed colors.
+   *
+   * <p>If the image already stores its pixels in exactly this layout, its own array is
+   * returned rather than a copy. The array must therefore be treated as read-only</p>
+   *
+   * @param image the image whose pixels to retrieve
+   * @return an array of {@code width * height} packed pixels which must not be modified
+   * @throws IllegalArgumentException if {@code image} is {@code null}
+   */
+  public static int[] readPixels(VImage image) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(image);
+
+    if (image instanceof AbstractVImage) {
+      AbstractVImage packed = (AbstractVImage) image;
+      int[] data = packed.pixelData();
+
+      if (packed.offset == 0 && packed.stride == packed.width
+          && data.length == packed.width * packed.height) {
+        return data;
+      }
+    }
+    return AbstractVImage.packedCopyOf(image);
+  }
+
+  /**
+   * Produces an immutable image whose pixels are the given packed colors.
+   *
+   * <p>The array is adopted by the image rather than copied:
+   * the caller must not modify it afterwards</p>
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the row-major pixels of the image packed as {@code 0x00RRGGBB}
+   * @return a new image which owns {@code pixels}
+   * @throws IllegalArgumentException if {@code pixels} is {@code null}; if either width or
+   *                                  height are not positive; or if there are not exactly
+   *                                  {@code width * height} pixels
+   */
+  public static VImage wrap(int width, int height, int[] pixels)
+      throws IllegalArgumentException {
+    return new VImageImpl(width, height, pixels);
+  }
+
+  /**
+   * Produces an immutable image whose pixels are the given packed colors and are shared with
+   * every layer made from the image rather than copied.
+   *
+   * <p>The array is adopted by the image rather than copied, and the layers made from the
+   * image adopt it in turn: the caller must not modify it afterwards. A layer only stops
+   * sharing the array when its contents are changed, which always produces a new layer with
+   * pixels of its own, so sharing an image with many layers costs no more memory than the
+   * image itself.
+   *
+   * <p>Spilling a layer only frees the memory of the array once nothing else holds on to it,
+   * so whatever keeps the image, such as a cache of decoded files, is told through
+   * {@code onSpill} whenever a layer sharing the array spills it</p>
+   *
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param pixels  the row-major pixels of the image packed as {@code 0x00RRGGBB}
+   * @param onSpill run whenever a layer sharing the pixels spills them to disk
+   * @return a new image which owns {@code pixels} and shares them with its layers
+   * @throws IllegalArgumentException if {@code pixels} or {@code onSpill} is {@code null}; if
+   *                                  either width or height are not positive; or if there are
+   *                                  not exactly {@code width * height} pixels
+   */
+  public static VImage wrapShared(int width, int height, int[] pixels, Runnable onSpill)
+      throws IllegalArgumentException {
+    return new VSharedImage(width, height, pixels, onSpill);
+  }
+
+  /**
+   * Produces a mutable image whose pixels are the given packed colors.
+   *
+   * <p>The array is adopted by the image rather than copied: changes made
+   * to the array are visible in the image and vice-versa</p>
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param pixels the row-major pixels of the image packed as {@code 0x00RRGGBB}
+   * @return a new mutable image which owns {@code pixels}
+   * @throws IllegalArgumentException if {@code pixels} is {@code null}; if either width or
+   *                                  height are not positive; or if there are not exactly
+   *                                  {@code width * height} pixels
+   */
+  public static VMutableImage wrapMutable(int width, int height, int[] pixels)
+      throws IllegalArgumentException {
+    return new VMutableImageImpl(width, height, pixels);
+  }
+
+  /**
+   * Produces a {@link BufferedImage} of type {@link BufferedImage#TYPE_INT_RGB} which shows
+   * the pixels of the given image.
+   *
+   * <p>The packed colors of Vido images are laid out exactly as {@code TYPE_INT_RGB} expects,
+   * so wherever the image stores its pixels in an array (including views of a region of
+   * another image) the buffered image is built around that array itself rather than a copy.
+   * The buffered image therefore shows the image's current contents and must only be read
+   * from: drawing into it or writing to its raster would change the image. Other images are
+   * copied into a new array once, in bulk</p>
+   *
+   * @param image the image to show
+   * @return a buffered image sharing the pixels of {@code image} wherever possible
+   * @throws IllegalArgumentException if {@code image} is {@code null}
+   */
+  public static BufferedImage asBufferedImage(VImage image) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(image);
+
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] data;
+    int offset;
+    int stride;
+
+    if (image instanceof AbstractVImage) {
+      AbstractVImage packed = (AbstractVImage) image;
+      data = packed.pixelData();
+      offset = packed.offset;
+      stride = packed.stride;
+    } else {
+      data = AbstractVImage.packedCopyOf(image);
+      offset = 0;
+      stride = width;
+    }
+
+    DataBufferInt buffer = new DataBufferInt(data, data.length - offset, offset);
+    WritableRaster raster = Raster.createPackedRaster(buffer, width, height, stride,
+        RGB_MASKS, null);
+    return new BufferedImage(RGB_MODEL, raster, false, null);
+  }
+}
@@ -0,0 +1,55 @@
+package model.image;
+
+import model.misc.ObjectsExtension;
+
+/**
+ * An immutable image whose pixels are shared with the layers made from it rather than copied.
+ *
+ * <p>Neither a shared image nor a {@link VLayerImpl} ever changes its pixels once it is made:
+ * changing the contents of a layer makes a new layer with pixels of its own. A layer made from
+ * a shared image can therefore hold on to the very array of the image, and the same decoded
+ * file can back any number of layers while being stored only once. The pixels are only ever
+ * copied when a change is made, which is the point at which a layer would have copied them
+ * anyway (see {@link VPackedImages#wrapShared(int, int, int[])}).</p>
+ */
+final class VSharedImage extends AbstractVImage {
+
+  // Run when a layer sharing the pixels spills them, so that whoever else
+  // holds on to this image can let go of it too
+  private final Runnable onSpill;
+
+  /**
+   * Construct a new shared image which adopts the given packed pixels as its own.
+   *
+   * @param width   the width of the image
+   * @param height  the height of the image
+   * @param pixels  the row-major pixels of the image packed as {@code 0x00RRGGBB}, which must
+   *                never be modified
+   * @param onSpill run whenever a layer sharing the pixels spills them to disk
+   * @throws IllegalArgumentException if {@code pixels} or {@code onSpill} is {@code null}; if
+   *                                  either width or height are not positive; or if there are
+   *                                  not exactly {@code width * height} pixels
+   */
+  VSharedImage(int width, int height, int[] pixels, Runnable onSpill)
+      throws IllegalArgumentException {
+    super(width, height, ObjectsExtension.asNonnull(pixels));
+    this.onSpill = ObjectsExtension.asNonnull(onSpill);
+  }
+
+  /**
+   * Retrieves the array of pixels of this image, for a layer to share.
+   *
+   * @return the pixels of this image, which must not be modified
+   */
+  int[] sharedPixels() {
+    return this.pixels;
+  }
+
+  /**
+   * Reports that a layer sharing the pixels of this image has spilled them to disk. The
+   * memory of the pixels can only be reclaimed once nothing else holds on to them.
+   */
+  void spilled() {
+    this.onSpill.run();
+  }
+}
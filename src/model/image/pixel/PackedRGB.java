@@ -0,0 +1,95 @@
+package model.image.pixel;
+
+import model.misc.ObjectsExtension;
+
+/**
+ * A utility class for converting between {@link VPixel}s and pixels packed
+ * into a single integer.
+ *
+ * <p>Images in Vido store their pixel data as packed integers of the form
+ * {@code 0x00RRGGBB}, with each channel occupying 8 bits. Packing a pixel clamps
+ * each of its channels into the range [0, 255] since channels outside of that range
+ * cannot be represented in 8 bits.</p>
+ */
+public final class PackedRGB {
+
+  private PackedRGB() {
+    // Prevent construction
+  }
+
+  /**
+   * Packs the given channel values into a single integer, clamping each channel
+   * to the range [0, 255].
+   *
+   * @param red   the red component
+   * @param green the green component
+   * @param blue  the blue component
+   * @return the channels packed as {@code 0x00RRGGBB}
+   */
+  public static int pack(int red, int green, int blue) {
+    return (clampChannel(red) << 16) | (clampChannel(green) << 8) | clampChannel(blue);
+  }
+
+  /**
+   * Packs the color of the given pixel into a single integer.
+   *
+   * @param pixel the pixel to pack
+   * @return the channels of the pixel packed as {@code 0x00RRGGBB}
+   * @throws IllegalArgumentException if {@code pixel} is {@code null}
+   */
+  public static int pack(VPixel pixel) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(pixel);
+    return pack(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
+  }
+
+  /**
+   * Produces a pixel whose color is described by the given packed integer.
+   *
+   * @param rgb a color packed as {@code 0x00RRGGBB}. Any bits above the blue, green
+   *            and red channels are ignored
+   * @return a new pixel with the color of {@code rgb}
+   */
+  public static VPixel unpack(int rgb) {
+    return new VRGBPixel(red(rgb), green(rgb), blue(rgb));
+  }
+
+  /**
+   * Extracts the red channel from a packed color.
+   *
+   * @param rgb a packed color
+   * @return the red channel of the color
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Extracts the green channel from a packed color.
+   *
+   * @param rgb a packed color
+   * @return the green channel of the color
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Extracts the blue channel from a packed color.
+   *
+   * @param rgb a packed color
+   * @return the blue channel of the color
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
+  /**
+   * Clamps a single channel value into the range [0, 255].
+   *
+   * @param channel the channel value
+   * @return the value clamped into [0, 255]
+   */
+  public static int clampChannel(int channel) {
+    return channel < 0 ? 0 : (channel > 255 ? 255 : channel);
+  }
+}
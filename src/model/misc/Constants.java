@@ -12,6 +12,7 @@ public final class Constants {
   public static String LAYER_VISIBLE_STRING = "VISIBLE";
   public static String LAYER_INVISIBLE_STRING = "INVISIBLE";
   public static String LAYER_TITLE_STRING = "Layers";
+  public static String PREVIEW_SUFFIX_STRING = " (PREVIEW)";
 
   public static int MOSAIC_RANDOM_SEED = 3250;
 }
@@ -1,5 +1,11 @@
 package model.misc;
 
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
 /**
  * A utility class for managing data relevant to files
  * such as path names.
@@ -33,4 +39,29 @@ public class FileUtils {
       return "";
     }
   }
+
+  /**
+   * Moves a file into place, replacing any file already at the destination.
+   *
+   * <p>The move is atomic where the file system supports it, so that the destination holds
+   * either its previous contents or the whole of the moved file and never anything in
+   * between. Files are usually written under a temporary name in the same directory and then
+   * moved into place with this method once they are complete</p>
+   *
+   * @param source      the file to move
+   * @param destination where the file is moved to
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   * @throws IOException              if the file could not be moved
+   */
+  public static void moveIntoPlace(Path source, Path destination)
+      throws IllegalArgumentException, IOException {
+    ObjectsExtension.requireNonnull(source, destination);
+
+    try {
+      Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
 }
@@ -0,0 +1,81 @@
+package model.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * A utility class for carrying out several independent tasks at once, such as decoding or
+ * encoding the files of every layer of an image.
+ */
+public final class ParallelTasks {
+
+  private ParallelTasks() {
+    // Prevent construction
+  }
+
+  /**
+   * Carries out each of the given tasks on a pool of threads, one for each processor but
+   * never more than there are tasks, and collects their results.
+   *
+   * <p>The threads of the pool are daemon threads, so that tasks left running never keep the
+   * program alive. If any task fails, or the calling thread is interrupted while waiting, the
+   * tasks not yet finished are abandoned and the exception produced for the failure is
+   * thrown instead</p>
+   *
+   * @param threadName the name given to the threads of the pool
+   * @param tasks      the tasks to carry out
+   * @param failure    produces the exception thrown when a task fails from the index of the
+   *                   task and the reason it failed
+   * @param interrupt  produces the exception thrown if the calling thread is interrupted
+   * @param <T>        the type of the result of each task
+   * @return the result of each task, in the same order as the tasks
+   * @throws IllegalArgumentException if any argument is {@code null}
+   */
+  public static <T> List<T> runAll(String threadName, List<? extends Callable<T>> tasks,
+      BiFunction<Integer, Throwable, ? extends RuntimeException> failure,
+      Supplier<? extends RuntimeException> interrupt) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(threadName, tasks, failure, interrupt);
+
+    if (tasks.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+      Thread thread = new Thread(runnable, threadName);
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      List<Future<T>> futures = new ArrayList<>();
+
+      for (Callable<T> task : tasks) {
+        futures.add(pool.submit(task));
+      }
+
+      List<T> results = new ArrayList<>();
+
+      for (int i = 0; i < futures.size(); i += 1) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          throw failure.apply(i, e.getCause());
+        }
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw interrupt.get();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
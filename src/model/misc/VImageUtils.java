@@ -1,11 +1,9 @@
 package model.misc;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import model.image.VImage;
+import model.image.VPackedImages;
 import model.image.VLayeredImage;
-import model.image.pixel.VPixel;
-import model.image.pixel.VPixelCoordinate;
 
 /**
  * A utility class for {@link VImage} and {@link VLayeredImage}.
@@ -21,7 +19,8 @@ public final class VImageUtils {
    * VImage} stored in-memory.
    *
    * <p>The resulting image is a copy of the image that can be written
-   * to disk.</p>
+   * to disk or drawn into without affecting the image. Where the copy is only
+   * read from, {@link VPackedImages#asBufferedImage(VImage)} avoids copying.</p>
    *
    * @param image an image whose contents should be copied
    * @return a new {@link BufferedImage} whose contents are filled with that of the given image
@@ -35,17 +34,8 @@ public final class VImageUtils {
 
     BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-    for (int i = 0; i < width; i += 1) {
-      for (int j = 0; j < height; j += 1) {
-        // Guaranteed to have pixel data at this location
-        VPixelCoordinate coord = new VPixelCoordinate(j, i);
-        VPixel pixelAtLocation = image.getPixelAt(coord).get();
-        Color color = new Color(pixelAtLocation.getRed(),
-            pixelAtLocation.getGreen(),
-            pixelAtLocation.getBlue());
-        newImage.setRGB(i, j, color.getRGB());
-      }
-    }
+    // The packed colors of the image are already in the layout of TYPE_INT_RGB
+    newImage.getRaster().setDataElements(0, 0, width, height, VPackedImages.readPixels(image));
     return newImage;
   }
 
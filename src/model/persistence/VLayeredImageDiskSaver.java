@@ -1,14 +1,28 @@
 package model.persistence;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Callable;
+import model.creation.PPMEncoding;
 import model.creation.VImageManagers;
+import model.image.VImage;
 import model.image.VLayer;
+import model.image.VLayerImpl;
 import model.image.VLayeredImage;
+import model.misc.FileUtils;
 import model.misc.ObjectsExtension;
+import model.misc.ParallelTasks;
+import model.processing.VImageContentOperation;
+import model.processing.VProgress;
 
 /**
  * A {@link VLayeredImageDiskSaver} is a {@link VLayeredImageSaver} which saves layered images as
@@ -17,13 +31,42 @@ import model.misc.ObjectsExtension;
  * layered image. Each file in the directory has an extension that is expected
  * to be of the same type. A final text file is added in the directory which identifies
  * the relationship between the separate image files as layers in the program.
+ *
+ * <p>Layers saved as ppm files are binary ({@code P6}) files unless another
+ * {@link PPMEncoding} is asked for, since the files of a project are read back
+ * by Vido far more often than by people.
+ *
+ * <p>Several layers are encoded at once, one for each processor. Layers are
+ * encoded under temporary names and only moved into place once every layer has
+ * been encoded. The text file always lists the layers in order, and it is only
+ * written once every layer has been saved, replacing any previous text file in
+ * a single step.
+ *
+ * <p>Saves are incremental. Every saver remembers, for each directory and format it
+ * has saved to, the version of each layer it saved (see
+ * {@link VLayeredImage#getLayerVersion(int)}) and the file it saved the layer to.
+ * Saving an image to the same directory in the same format again only encodes the
+ * layers whose contents have changed since; the file of a layer that was merely
+ * renamed is moved to its new name, and the files of unchanged layers are left alone.
+ * A file is only reused if it has not been modified since it was saved.</p>
  */
 public class VLayeredImageDiskSaver implements VLayeredImageSaver {
+
+  // The name of the text file describing the layers of a saved image
+  private static final String LAYERS_FILE_NAME = "layers.txt";
+
+  // The layers last saved to each directory in each format, by the version of their
+  // contents. Directories are forgotten while they are being saved to, so that a save
+  // that fails part of the way through is followed by a complete one
+  private static final Map<List<Object>, Map<Long, SavedLayer>> SAVED_LAYERS = new HashMap<>();
+
   private final String extension;
   private final Path directory;
+  private final PPMEncoding ppmEncoding;
 
   /**
-   * Construct a multi-layer image saver that saves its images in the given format.
+   * Construct a multi-layer image saver that saves its images in the given format. Layers
+   * saved as ppm files are saved as binary files.
    *
    * @param extension the file extension of the images in the layered image directory.
    * @param directory a path to a directory to save the layered image
@@ -31,7 +74,22 @@ public class VLayeredImageDiskSaver implements VLayeredImageSaver {
    *                                  extension is the empty string
    */
   public VLayeredImageDiskSaver(String extension, Path directory) throws IllegalArgumentException {
-    ObjectsExtension.requireNonnull(directory, extension);
+    this(extension, directory, PPMEncoding.BINARY);
+  }
+
+  /**
+   * Construct a multi-layer image saver that saves its images in the given format, saving
+   * layers as ppm files with the given encoding.
+   *
+   * @param extension   the file extension of the images in the layered image directory.
+   * @param directory   a path to a directory to save the layered image
+   * @param ppmEncoding how the samples of layers saved as ppm files are written
+   * @throws IllegalArgumentException if any arguments are {@code null} or if the
+   *                                  extension is the empty string
+   */
+  public VLayeredImageDiskSaver(String extension, Path directory, PPMEncoding ppmEncoding)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(directory, extension, ppmEncoding);
 
     if (extension.isEmpty()) {
       throw new IllegalArgumentException("A multi-layered image must save its files"
@@ -40,6 +98,7 @@ public class VLayeredImageDiskSaver implements VLayeredImageSaver {
 
     this.extension = extension;
     this.directory = ObjectsExtension.asNonnull(directory).toAbsolutePath();
+    this.ppmEncoding = ppmEncoding;
   }
 
   @Override
@@ -53,6 +112,176 @@ public class VLayeredImageDiskSaver implements VLayeredImageSaver {
     }
 
 
+    this.createDirectory();
+
+    List<Object> savedLayersKey = List.of(directory, extension, ppmEncoding);
+    Map<Long, SavedLayer> previouslySaved;
+
+    synchronized (SAVED_LAYERS) {
+      previouslySaved = SAVED_LAYERS.remove(savedLayersKey);
+    }
+
+    int numLayers = image.numLayers();
+    long[] versions = new long[numLayers];
+    VLayer[] layers = new VLayer[numLayers];
+    Path[] layerFilePaths = new Path[numLayers];
+
+    // Find where each layer is saved in the directory with the format specified by this
+    // disk saver. The text file lists the layers in order whatever order they are saved in
+    for (int i = 0; i < numLayers; i += 1) {
+      layers[i] = image.getLayer(i);
+      versions[i] = image.getLayerVersion(i);
+      layerFilePaths[i] = this.layerFilePathOf(layers[i].getName());
+    }
+
+    this.saveChangedLayers(layers, versions, layerFilePaths,
+        previouslySaved == null ? Map.of() : previouslySaved);
+    this.writeLayersFile(layers, layerFilePaths, image.getWidth(), image.getHeight());
+
+    Map<Long, SavedLayer> saved = new HashMap<>();
+
+    for (int i = 0; i < numLayers; i += 1) {
+      SavedLayer savedLayer = SavedLayer.of(layerFilePaths[i]);
+
+      if (savedLayer != null) {
+        saved.put(versions[i], savedLayer);
+      }
+    }
+
+    synchronized (SAVED_LAYERS) {
+      SAVED_LAYERS.put(savedLayersKey, saved);
+    }
+  }
+
+  /**
+   * Saves the given image with an operation applied to each of its layers, one layer at a time.
+   *
+   * <p>The image is saved in the same layout as {@link #saveImage(VLayeredImage)}, but each
+   * layer is read, operated on, encoded and released before the next layer is read, so only a
+   * single layer and its result are held in memory at once. This is meant for projects that
+   * were loaded lazily (see {@link model.image.VLazyImage}) and are too large to be loaded
+   * whole: layers of the image that have not been used yet are not decoded into the image, so
+   * the image holds no more pixels once it has been saved than before. The result of each
+   * layer is encoded under a temporary name, and no file in the directory is replaced until
+   * every layer has been processed, so the directory may be the one the image was loaded
+   * from. The text file describing the layers is written last, with the size of the
+   * processed layers.
+   *
+   * <p>Since every layer is written anew, the directory is saved in full the next time an
+   * image is saved to it.</p>
+   *
+   * @param image     the image whose layers should be processed and saved
+   * @param operation the operation to apply to each layer
+   * @param progress  receives the fraction of layers saved and is checked for cancellation
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   * @throws ImageSavingException     if the image has no layers, if any layer could not be
+   *                                  processed or saved, or if the processed layers are not
+   *                                  all the same size
+   * @throws CancellationException    if the progress is cancelled, in which case the
+   *                                  directory is unchanged
+   */
+  public void saveImage(VLayeredImage image, VImageContentOperation operation, VProgress progress)
+      throws IllegalArgumentException, ImageSavingException, CancellationException {
+    ObjectsExtension.requireNonnull(image, operation, progress);
+
+    if (image.numLayers() == 0) {
+      throw new ImageSavingException("Cannot save a multi-layered image without any layers");
+    }
+
+    this.createDirectory();
+
+    synchronized (SAVED_LAYERS) {
+      SAVED_LAYERS.remove(List.of(directory, extension, ppmEncoding));
+    }
+
+    int numLayers = image.numLayers();
+    VLayer[] layers = new VLayer[numLayers];
+    Path[] layerFilePaths = new Path[numLayers];
+    Path[] temporaryFilePaths = new Path[numLayers];
+    VImageSaver[] savers = new VImageSaver[numLayers];
+
+    // Find a saver for every layer before any are processed
+    for (int i = 0; i < numLayers; i += 1) {
+      layers[i] = image.getLayer(i);
+      layerFilePaths[i] = this.layerFilePathOf(layers[i].getName());
+      temporaryFilePaths[i] = this.temporaryFilePathOf(layers[i].getName());
+
+      try {
+        savers[i] = VImageManagers.diskSaverFor(temporaryFilePaths[i], ppmEncoding);
+      } catch (IllegalArgumentException e) {
+        throw new ImageSavingException("Could not save layer " + layers[i].getName() + ". "
+            + e.getMessage());
+      }
+    }
+
+    int width = -1;
+    int height = -1;
+
+    try {
+      for (int i = 0; i < numLayers; i += 1) {
+        VImage result = this.processLayer(layers[i], operation,
+            progress.slice((double) i / numLayers, (double) (i + 1) / numLayers));
+
+        if (i == 0) {
+          width = result.getWidth();
+          height = result.getHeight();
+        } else if (result.getWidth() != width || result.getHeight() != height) {
+          throw new ImageSavingException("Could not save layer " + layers[i].getName()
+              + ". The operation produced layers of different sizes");
+        }
+
+        savers[i].saveImage(result);
+      }
+    } catch (RuntimeException e) {
+      for (Path temporaryFilePath : temporaryFilePaths) {
+        deleteQuietly(temporaryFilePath);
+      }
+      throw e;
+    }
+
+    for (int i = 0; i < numLayers; i += 1) {
+      try {
+        FileUtils.moveIntoPlace(temporaryFilePaths[i], layerFilePaths[i]);
+      } catch (IOException e) {
+        throw new ImageSavingException("Could not save layer " + layers[i].getName()
+            + ". The file " + layerFilePaths[i] + " could not be replaced");
+      }
+    }
+
+    this.writeLayersFile(layers, layerFilePaths, width, height);
+    progress.report(1);
+  }
+
+  /**
+   * Applies an operation to a single layer without decoding the layer itself.
+   *
+   * <p>The operation is applied to a new layer made from the layer, which shares the file a
+   * lazily loaded layer is decoded from rather than the pixels of the layer. The pixels the new
+   * layer decodes are released along with it once the result has been saved</p>
+   *
+   * @param layer     the layer
+   * @param operation the operation to apply
+   * @param progress  receives the progress of the operation
+   * @return the result of the operation
+   * @throws ImageSavingException  if the layer could not be read or operated on
+   * @throws CancellationException if the progress is cancelled
+   */
+  private VImage processLayer(VLayer layer, VImageContentOperation operation, VProgress progress)
+      throws ImageSavingException, CancellationException {
+    try {
+      return operation.operateOn(new VLayerImpl(layer.getName(), layer), progress);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new ImageSavingException("Could not process layer " + layer.getName() + ". "
+          + e.getMessage());
+    }
+  }
+
+  /**
+   * Creates the directory of this saver if it does not already exist.
+   *
+   * @throws ImageSavingException if the directory could not be created
+   */
+  private void createDirectory() throws ImageSavingException {
     File dir = directory.toFile();
 
     // Create a directory from the file and then save the contents
@@ -71,47 +300,251 @@ public class VLayeredImageDiskSaver implements VLayeredImageSaver {
     } catch (SecurityException e) {
       throw new ImageSavingException(e.getMessage());
     }
+  }
 
+  /**
+   * Finds the file a layer with the given name is saved to in the directory of this saver.
+   *
+   * @param layerName the name of the layer
+   * @return the path to the file of the layer
+   */
+  private Path layerFilePathOf(String layerName) {
+    return Path.of(directory.toString(), layerName + "." + this.extension);
+  }
+
+  /**
+   * Finds the file a layer with the given name is encoded to before it is moved into place.
+   *
+   * <p>The name is hidden and keeps the extension of the format, so that it is never the file
+   * of another layer and is still encoded in the format of this saver</p>
+   *
+   * @param layerName the name of the layer
+   * @return the path to the temporary file of the layer
+   */
+  private Path temporaryFilePathOf(String layerName) {
+    return Path.of(directory.toString(), "." + layerName + ".tmp." + this.extension);
+  }
+
+  /**
+   * Writes the text file that Vido uses to re-create layered images, only once every layer
+   * has been saved. It is written under a temporary name and then moved into place so that
+   * the directory never holds a partly written text file.
+   *
+   * @param layers         the layers of the image, in order
+   * @param layerFilePaths the file each layer was saved to
+   * @param width          the width of the image
+   * @param height         the height of the image
+   * @throws ImageSavingException if the text file could not be written
+   */
+  private void writeLayersFile(VLayer[] layers, Path[] layerFilePaths, int width, int height)
+      throws ImageSavingException {
     StringBuilder inTextFile = new StringBuilder();
 
     // First, write the number
     // of layers in the image
-    inTextFile.append(image.numLayers()).append(System.lineSeparator());
-    inTextFile.append(image.getWidth())
+    inTextFile.append(layers.length).append(System.lineSeparator());
+    inTextFile.append(width)
         .append(" ")
-        .append(image.getHeight())
+        .append(height)
         .append(System.lineSeparator());
 
-    // Save each layer in the directory with the format specified by this disk saver
-    for (int i = 0; i < image.numLayers(); i += 1) {
-      VLayer layer = image.getLayer(i);
-      String layerFileName = layer.getName() + "."
-          + this.extension;
-      Path layerFilePath = Path.of(directory.toString(), layerFileName);
-      String fileName = layerFilePath.toString();
-
+    for (int i = 0; i < layers.length; i += 1) {
       // Add the layer index
       inTextFile.append(i).append(" ");
 
       // Add the layer name
-      inTextFile.append(layer.getName()).append(" ");
+      inTextFile.append(layers[i].getName()).append(" ");
 
       // Add the file name
-      inTextFile.append(fileName).append(System.lineSeparator());
-
-      VImageSaver saver = VImageManagers.diskSaverFor(Path.of(fileName));
-      saver.saveImage(layer);
+      inTextFile.append(layerFilePaths[i].toString()).append(System.lineSeparator());
     }
 
-    // Create a text file that Vido uses
-    // to re-create layered images
-    Path layersFilePath = Path.of(directory.toString(), "layers.txt");
-    File layersFile = layersFilePath.toFile();
+    Path layersFilePath = Path.of(directory.toString(), LAYERS_FILE_NAME);
+    Path temporaryFilePath = Path.of(directory.toString(), LAYERS_FILE_NAME + ".tmp");
 
-    try (PrintWriter writer = new PrintWriter(new FileWriter(layersFile))) {
-      writer.println(inTextFile.toString());
+    try {
+      Files.writeString(temporaryFilePath, inTextFile + System.lineSeparator(),
+          Charset.defaultCharset());
+      FileUtils.moveIntoPlace(temporaryFilePath, layersFilePath);
     } catch (IOException e) {
-      throw new IllegalArgumentException("Layers file could not be created successfully");
+      throw new ImageSavingException("Layers file could not be created successfully");
+    }
+  }
+
+  /**
+   * Saves the layers whose contents have changed since they were last saved to the directory
+   * of this saver, and moves the files of layers that have only been renamed.
+   *
+   * <p>Changed layers are saved under temporary names, and renamed files are moved to
+   * temporary names, since the name a layer had may now belong to another layer. No file of
+   * the directory is replaced until every changed layer has been saved, so layers that are
+   * still to be decoded from the files they were loaded from (see
+   * {@link model.image.VLazyImage}) are read before their files are replaced</p>
+   *
+   * @param layers          the layers to save
+   * @param versions        the version of each layer
+   * @param layerFilePaths  the file each layer is saved to
+   * @param previouslySaved the layers last saved to the directory in this format
+   * @throws ImageSavingException if any layer could not be saved or if the file of any
+   *                              layer could not be moved into place
+   */
+  private void saveChangedLayers(VLayer[] layers, long[] versions, Path[] layerFilePaths,
+      Map<Long, SavedLayer> previouslySaved) throws ImageSavingException {
+    List<VLayer> changedLayers = new ArrayList<>();
+    List<Path> changedTemporaryPaths = new ArrayList<>();
+    List<Integer> moved = new ArrayList<>();
+    List<Integer> renamed = new ArrayList<>();
+    Path[] temporaryFilePaths = new Path[layers.length];
+
+    for (int i = 0; i < layers.length; i += 1) {
+      SavedLayer savedLayer = previouslySaved.get(versions[i]);
+      temporaryFilePaths[i] = this.temporaryFilePathOf(layers[i].getName());
+
+      if (savedLayer == null || !savedLayer.isUnchangedOnDisk()) {
+        changedLayers.add(layers[i]);
+        changedTemporaryPaths.add(temporaryFilePaths[i]);
+        moved.add(i);
+      } else if (!savedLayer.file.equals(layerFilePaths[i])) {
+        renamed.add(i);
+        moved.add(i);
+      }
+    }
+
+    try {
+      this.saveLayers(changedLayers.toArray(new VLayer[0]),
+          changedTemporaryPaths.toArray(new Path[0]));
+    } catch (ImageSavingException e) {
+      for (Path temporaryFilePath : changedTemporaryPaths) {
+        deleteQuietly(temporaryFilePath);
+      }
+      throw e;
+    }
+
+    for (int layer : renamed) {
+      try {
+        FileUtils.moveIntoPlace(previouslySaved.get(versions[layer]).file,
+            temporaryFilePaths[layer]);
+      } catch (IOException e) {
+        throw new ImageSavingException("Could not rename the file of layer "
+            + layers[layer].getName());
+      }
+    }
+
+    for (int layer : moved) {
+      try {
+        FileUtils.moveIntoPlace(temporaryFilePaths[layer], layerFilePaths[layer]);
+      } catch (IOException e) {
+        throw new ImageSavingException("Could not save layer " + layers[layer].getName()
+            + ". The file " + layerFilePaths[layer] + " could not be replaced");
+      }
+    }
+  }
+
+  /**
+   * Deletes the given file if it exists, ignoring any failure.
+   *
+   * @param file the file to delete
+   */
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException | SecurityException e) {
+      // A leftover temporary file is replaced by the next save
+    }
+  }
+
+  /**
+   * Saves the contents of each layer to its file, encoding several layers at once.
+   *
+   * <p>Encoding an image (especially as a PNG or JPEG file) takes far longer than writing it,
+   * so the layers are handed to a pool of threads, one for each processor but never more than
+   * there are layers. If any layer cannot be saved, the layers not yet saved are abandoned</p>
+   *
+   * @param layers          the layers to save
+   * @param layerFilePaths  the file each layer is saved to
+   * @throws ImageSavingException if any layer could not be saved
+   */
+  private void saveLayers(VLayer[] layers, Path[] layerFilePaths) throws ImageSavingException {
+    if (layers.length == 0) {
+      return;
+    }
+
+    VImageSaver[] savers = new VImageSaver[layers.length];
+
+    // Find a saver for every layer before any are saved
+    for (int i = 0; i < layers.length; i += 1) {
+      try {
+        savers[i] = VImageManagers.diskSaverFor(layerFilePaths[i], ppmEncoding);
+      } catch (IllegalArgumentException e) {
+        throw new ImageSavingException("Could not save layer " + layers[i].getName() + ". "
+            + e.getMessage());
+      }
+    }
+
+    List<Callable<Void>> saves = new ArrayList<>();
+    for (int i = 0; i < layers.length; i += 1) {
+      VLayer layer = layers[i];
+      VImageSaver saver = savers[i];
+      saves.add(() -> {
+        saver.saveImage(layer);
+        return null;
+      });
+    }
+
+    ParallelTasks.runAll("vido-layer-saver", saves,
+        (i, cause) -> new ImageSavingException("Could not save layer " + layers[i].getName()
+            + ". " + cause.getMessage()),
+        () -> new ImageSavingException("Saving was interrupted"));
+  }
+
+  /**
+   * A file a layer was saved to, along with what the file looked like just after it was saved.
+   */
+  private static final class SavedLayer {
+    private final Path file;
+    private final FileTime lastModified;
+    private final long size;
+
+    /**
+     * Construct a new record of a saved layer.
+     *
+     * @param file         the file the layer was saved to
+     * @param lastModified the time the file was last modified
+     * @param size         the size of the file, in bytes
+     */
+    private SavedLayer(Path file, FileTime lastModified, long size) {
+      this.file = file;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    /**
+     * Records the file a layer was just saved to.
+     *
+     * @param file the file the layer was saved to
+     * @return a record of the saved layer, or {@code null} if the file could not be inspected
+     */
+    static SavedLayer of(Path file) {
+      try {
+        return new SavedLayer(file, Files.getLastModifiedTime(file), Files.size(file));
+      } catch (IOException | SecurityException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Determines whether the file still holds the layer as it was saved, i.e. whether it
+     * exists and has not been modified since.
+     *
+     * @return true if the file can be reused in place of saving the layer again
+     */
+    boolean isUnchangedOnDisk() {
+      try {
+        return Files.isRegularFile(file) && Files.getLastModifiedTime(file).equals(lastModified)
+            && Files.size(file) == size;
+      } catch (IOException | SecurityException e) {
+        return false;
+      }
     }
   }
 }
@@ -0,0 +1,190 @@
+package model.processing;
+
+/**
+ * An affine transformation of the plane: any combination of rotations, scaling,
+ * shearing and translation.
+ *
+ * <p>A transform maps a location {@code (x, y)}, where {@code x} is measured in pixels
+ * rightwards and {@code y} in pixels downwards from the top-left corner of an image, to the
+ * location {@code (a * x + b * y + c, d * x + e * y + f)}. Transforms are immutable;
+ * combine them with {@link VAffineTransform#then(VAffineTransform)}.</p>
+ */
+public final class VAffineTransform {
+  private final double a;
+  private final double b;
+  private final double c;
+  private final double d;
+  private final double e;
+  private final double f;
+
+  /**
+   * Construct a new transform from the coefficients of its matrix.
+   *
+   * @param a the contribution of x to the transformed x
+   * @param b the contribution of y to the transformed x
+   * @param c the translation of x
+   * @param d the contribution of x to the transformed y
+   * @param e the contribution of y to the transformed y
+   * @param f the translation of y
+   * @throws IllegalArgumentException if any coefficient is not finite
+   */
+  public VAffineTransform(double a, double b, double c, double d, double e, double f)
+      throws IllegalArgumentException {
+    for (double coefficient : new double[]{a, b, c, d, e, f}) {
+      if (!Double.isFinite(coefficient)) {
+        throw new IllegalArgumentException("Transform coefficients must be finite");
+      }
+    }
+
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.d = d;
+    this.e = e;
+    this.f = f;
+  }
+
+  /**
+   * Produces the transform which leaves every location where it is.
+   *
+   * @return the identity transform
+   */
+  public static VAffineTransform identity() {
+    return new VAffineTransform(1, 0, 0, 0, 1, 0);
+  }
+
+  /**
+   * Produces a transform which rotates clockwise about the origin.
+   *
+   * @param degrees the angle of the rotation in degrees
+   * @return a new rotation
+   * @throws IllegalArgumentException if {@code degrees} is not finite
+   */
+  public static VAffineTransform rotation(double degrees) throws IllegalArgumentException {
+    if (!Double.isFinite(degrees)) {
+      throw new IllegalArgumentException("An angle must be finite");
+    }
+
+    double radians = Math.toRadians(degrees);
+    double cos = Math.cos(radians);
+    double sin = Math.sin(radians);
+    return new VAffineTransform(cos, -sin, 0, sin, cos, 0);
+  }
+
+  /**
+   * Produces a transform which scales about the origin.
+   *
+   * @param scaleX the factor by which horizontal distances are multiplied
+   * @param scaleY the factor by which vertical distances are multiplied
+   * @return a new scaling transform
+   * @throws IllegalArgumentException if either factor is not finite
+   */
+  public static VAffineTransform scale(double scaleX, double scaleY)
+      throws IllegalArgumentException {
+    return new VAffineTransform(scaleX, 0, 0, 0, scaleY, 0);
+  }
+
+  /**
+   * Produces a transform which shears about the origin.
+   *
+   * @param shearX the amount every location moves rightwards for each pixel downwards
+   * @param shearY the amount every location moves downwards for each pixel rightwards
+   * @return a new shearing transform
+   * @throws IllegalArgumentException if either amount is not finite
+   */
+  public static VAffineTransform shear(double shearX, double shearY)
+      throws IllegalArgumentException {
+    return new VAffineTransform(1, shearX, 0, shearY, 1, 0);
+  }
+
+  /**
+   * Produces a transform which moves every location by the same amount.
+   *
+   * @param deltaX the distance moved rightwards
+   * @param deltaY the distance moved downwards
+   * @return a new translation
+   * @throws IllegalArgumentException if either distance is not finite
+   */
+  public static VAffineTransform translation(double deltaX, double deltaY)
+      throws IllegalArgumentException {
+    return new VAffineTransform(1, 0, deltaX, 0, 1, deltaY);
+  }
+
+  /**
+   * Produces the transform equivalent to applying this transform and then {@code next}.
+   *
+   * @param next the transform applied second
+   * @return a single transform with the same effect as both transforms in sequence
+   * @throws IllegalArgumentException if {@code next} is {@code null}
+   */
+  public VAffineTransform then(VAffineTransform next) throws IllegalArgumentException {
+    if (next == null) {
+      throw new IllegalArgumentException("Cannot combine with a null transform");
+    }
+
+    return new VAffineTransform(
+        next.a * a + next.b * d, next.a * b + next.b * e, next.a * c + next.b * f + next.c,
+        next.d * a + next.e * d, next.d * b + next.e * e, next.d * c + next.e * f + next.f);
+  }
+
+  /**
+   * Produces the transform which undoes this transform.
+   *
+   * @return the inverse of this transform
+   * @throws IllegalArgumentException if this transform collapses the plane onto a line or
+   *                                  point and so cannot be undone
+   */
+  public VAffineTransform inverse() throws IllegalArgumentException {
+    double determinant = a * e - b * d;
+
+    if (Math.abs(determinant) < 1e-12) {
+      throw new IllegalArgumentException("Transform cannot be inverted");
+    }
+
+    return new VAffineTransform(
+        e / determinant, -b / determinant, (b * f - c * e) / determinant,
+        -d / determinant, a / determinant, (c * d - a * f) / determinant);
+  }
+
+  /**
+   * Computes the horizontal position the given location is mapped to.
+   *
+   * @param x the horizontal position of the location
+   * @param y the vertical position of the location
+   * @return the transformed horizontal position
+   */
+  public double transformX(double x, double y) {
+    return a * x + b * y + c;
+  }
+
+  /**
+   * Computes the vertical position the given location is mapped to.
+   *
+   * @param x the horizontal position of the location
+   * @param y the vertical position of the location
+   * @return the transformed vertical position
+   */
+  public double transformY(double x, double y) {
+    return d * x + e * y + f;
+  }
+
+  /**
+   * Computes how far the transformed horizontal position moves
+   * for each step rightwards in the original plane.
+   *
+   * @return the change in transformed x per unit of x
+   */
+  double stepXPerColumn() {
+    return a;
+  }
+
+  /**
+   * Computes how far the transformed vertical position moves
+   * for each step rightwards in the original plane.
+   *
+   * @return the change in transformed y per unit of x
+   */
+  double stepYPerColumn() {
+    return d;
+  }
+}
@@ -0,0 +1,295 @@
+package model.processing;
+
+import java.awt.Color;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import model.image.VImage;
+import model.image.VPackedImages;
+import model.image.pixel.PackedRGB;
+import model.image.pixel.VPixel;
+import model.image.pixel.VRGBPixel;
+import model.misc.ObjectsExtension;
+
+/**
+ * An operation which rotates, scales and shears the images it operates on by an arbitrary
+ * {@link VAffineTransform}.
+ *
+ * <p>The image produced by a warp is just large enough to hold the whole transformed image;
+ * its size therefore usually differs from the size of the image operated on. Locations in
+ * the result that do not come from the original image are filled with a background color.
+ *
+ * <p>A warp works backwards: each pixel of the result is mapped through the inverse of the
+ * transform to a location in the original image, whose color is then estimated with a
+ * {@link VInterpolation}. The result is divided into square tiles that are processed in
+ * parallel. Within each row of a tile, the location in the original image is advanced by a
+ * constant step from one pixel to the next instead of being transformed from scratch.</p>
+ */
+public class VAffineWarp implements VImageContentOperation {
+
+  // The width and height of the tiles of the result processed in parallel
+  private static final int TILE_SIZE = 64;
+
+  // Guards against floating-point error growing the result by a pixel
+  private static final double SIZE_TOLERANCE = 1e-6;
+
+  private final VAffineTransform transform;
+  private final VAffineTransform inverse;
+  private final VInterpolation interpolation;
+  private final int background;
+
+  /**
+   * Construct a new warp with the given transform and interpolation
+   * whose background is {@link java.awt.Color#white}.
+   *
+   * @param transform     how locations in the images operated on are moved
+   * @param interpolation how colors are estimated between pixels
+   * @throws IllegalArgumentException if any arguments are {@code null} or if
+   *                                  {@code transform} cannot be inverted
+   */
+  public VAffineWarp(VAffineTransform transform, VInterpolation interpolation)
+      throws IllegalArgumentException {
+    this(transform, interpolation, new VRGBPixel(Color.white));
+  }
+
+  /**
+   * Construct a new warp with the given transform, interpolation and background.
+   *
+   * @param transform     how locations in the images operated on are moved
+   * @param interpolation how colors are estimated between pixels
+   * @param background    the color of locations in the result outside of the original image
+   * @throws IllegalArgumentException if any arguments are {@code null} or if
+   *                                  {@code transform} cannot be inverted
+   */
+  public VAffineWarp(VAffineTransform transform, VInterpolation interpolation,
+      VPixel background) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(transform, interpolation, background);
+    this.transform = transform;
+    this.inverse = transform.inverse();
+    this.interpolation = interpolation;
+    this.background = PackedRGB.pack(background);
+  }
+
+  @Override
+  public VImage operateOn(VImage image) throws IllegalArgumentException {
+    return this.operateOn(image, VProgress.none());
+  }
+
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
+
+    int sourceWidth = image.getWidth();
+    int sourceHeight = image.getHeight();
+    int[] source = VPackedImages.readPixels(image);
+
+    // The result covers the bounding box of the transformed corners of the image
+    double[] cornersX = {0, sourceWidth, 0, sourceWidth};
+    double[] cornersY = {0, 0, sourceHeight, sourceHeight};
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+
+    for (int k = 0; k < cornersX.length; k += 1) {
+      double x = transform.transformX(cornersX[k], cornersY[k]);
+      double y = transform.transformY(cornersX[k], cornersY[k]);
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+
+    double spanX = Math.ceil(maxX - minX - SIZE_TOLERANCE);
+    double spanY = Math.ceil(maxY - minY - SIZE_TOLERANCE);
+
+    if (spanX > Integer.MAX_VALUE || spanY > Integer.MAX_VALUE
+        || spanX * spanY > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The warped image would be too large");
+    }
+
+    int width = Math.max(1, (int) spanX);
+    int height = Math.max(1, (int) spanY);
+    int[] result = new int[width * height];
+
+    int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+    double originX = minX;
+    double originY = minY;
+    int numTiles = tilesAcross * tilesDown;
+    AtomicInteger tilesDone = new AtomicInteger();
+
+    IntStream.range(0, numTiles).parallel().forEach(tile -> {
+      progress.checkCancelled();
+
+      int firstColumn = (tile % tilesAcross) * TILE_SIZE;
+      int firstRow = (tile / tilesAcross) * TILE_SIZE;
+      int lastColumn = Math.min(firstColumn + TILE_SIZE, width);
+      int lastRow = Math.min(firstRow + TILE_SIZE, height);
+
+      for (int row = firstRow; row < lastRow; row += 1) {
+        // Sample at the centers of the pixels of the result
+        double x = firstColumn + 0.5 + originX;
+        double y = row + 0.5 + originY;
+        double sourceX = inverse.transformX(x, y);
+        double sourceY = inverse.transformY(x, y);
+        int index = row * width + firstColumn;
+
+        for (int column = firstColumn; column < lastColumn; column += 1) {
+          result[index] = this.sample(source, sourceWidth, sourceHeight, sourceX, sourceY);
+          sourceX += inverse.stepXPerColumn();
+          sourceY += inverse.stepYPerColumn();
+          index += 1;
+        }
+      }
+
+      progress.report((double) tilesDone.incrementAndGet() / numTiles);
+    });
+
+    return VPackedImages.wrap(width, height, result);
+  }
+
+  /**
+   * Estimates the color of the source image at the given location.
+   *
+   * @param source the packed pixels of the source image
+   * @param width  the width of the source image
+   * @param height the height of the source image
+   * @param x      the horizontal position of the location, where pixel centers lie
+   *               halfway between whole numbers
+   * @param y      the vertical position of the location
+   * @return the packed color at the location, or the background color if
+   *         the location lies outside of the source image
+   */
+  private int sample(int[] source, int width, int height, double x, double y) {
+    if (!(x >= 0 && x < width && y >= 0 && y < height)) {
+      return background;
+    }
+
+    switch (interpolation) {
+      case NEAREST:
+        return source[(int) y * width + (int) x];
+      case BILINEAR:
+        return sampleBilinear(source, width, height, x - 0.5, y - 0.5);
+      case BICUBIC:
+        return sampleBicubic(source, width, height, x - 0.5, y - 0.5);
+      default:
+        throw new IllegalArgumentException("Unsupported interpolation " + interpolation);
+    }
+  }
+
+  /**
+   * Blends the 2 x 2 pixels around a location linearly.
+   *
+   * @param source the packed pixels of the source image
+   * @param width  the width of the source image
+   * @param height the height of the source image
+   * @param x      the horizontal position of the location, where pixel centers lie on
+   *               whole numbers
+   * @param y      the vertical position of the location
+   * @return the packed blended color
+   */
+  private static int sampleBilinear(int[] source, int width, int height, double x, double y) {
+    int left = (int) Math.floor(x);
+    int top = (int) Math.floor(y);
+    double fractionX = x - left;
+    double fractionY = y - top;
+
+    int x0 = clamp(left, width);
+    int x1 = clamp(left + 1, width);
+    int y0 = clamp(top, height) * width;
+    int y1 = clamp(top + 1, height) * width;
+
+    int topLeft = source[y0 + x0];
+    int topRight = source[y0 + x1];
+    int bottomLeft = source[y1 + x0];
+    int bottomRight = source[y1 + x1];
+
+    double weightTopLeft = (1 - fractionX) * (1 - fractionY);
+    double weightTopRight = fractionX * (1 - fractionY);
+    double weightBottomLeft = (1 - fractionX) * fractionY;
+    double weightBottomRight = fractionX * fractionY;
+
+    double red = weightTopLeft * PackedRGB.red(topLeft) + weightTopRight * PackedRGB.red(topRight)
+        + weightBottomLeft * PackedRGB.red(bottomLeft)
+        + weightBottomRight * PackedRGB.red(bottomRight);
+    double green = weightTopLeft * PackedRGB.green(topLeft)
+        + weightTopRight * PackedRGB.green(topRight)
+        + weightBottomLeft * PackedRGB.green(bottomLeft)
+        + weightBottomRight * PackedRGB.green(bottomRight);
+    double blue = weightTopLeft * PackedRGB.blue(topLeft)
+        + weightTopRight * PackedRGB.blue(topRight)
+        + weightBottomLeft * PackedRGB.blue(bottomLeft)
+        + weightBottomRight * PackedRGB.blue(bottomRight);
+
+    return PackedRGB.pack((int) Math.round(red), (int) Math.round(green),
+        (int) Math.round(blue));
+  }
+
+  /**
+   * Blends the 4 x 4 pixels around a location with a Catmull-Rom cubic.
+   *
+   * @param source the packed pixels of the source image
+   * @param width  the width of the source image
+   * @param height the height of the source image
+   * @param x      the horizontal position of the location, where pixel centers lie on
+   *               whole numbers
+   * @param y      the vertical position of the location
+   * @return the packed blended color
+   */
+  private static int sampleBicubic(int[] source, int width, int height, double x, double y) {
+    int left = (int) Math.floor(x);
+    int top = (int) Math.floor(y);
+    double fractionX = x - left;
+    double fractionY = y - top;
+
+    double red = 0;
+    double green = 0;
+    double blue = 0;
+
+    for (int k = -1; k <= 2; k += 1) {
+      double weightY = cubicWeight(k - fractionY);
+      int rowStart = clamp(top + k, height) * width;
+
+      for (int l = -1; l <= 2; l += 1) {
+        double weight = weightY * cubicWeight(l - fractionX);
+        int color = source[rowStart + clamp(left + l, width)];
+        red += weight * PackedRGB.red(color);
+        green += weight * PackedRGB.green(color);
+        blue += weight * PackedRGB.blue(color);
+      }
+    }
+
+    return PackedRGB.pack((int) Math.round(red), (int) Math.round(green),
+        (int) Math.round(blue));
+  }
+
+  /**
+   * Computes the Catmull-Rom weight of a pixel at the given distance from a location.
+   *
+   * @param distance the signed distance between the pixel and the location
+   * @return the weight of the pixel's color
+   */
+  static double cubicWeight(double distance) {
+    double t = Math.abs(distance);
+
+    if (t < 1) {
+      return (1.5 * t - 2.5) * t * t + 1;
+    } else if (t < 2) {
+      return ((-0.5 * t + 2.5) * t - 4) * t + 2;
+    }
+    return 0;
+  }
+
+  /**
+   * Clamps an index into the range [0, size).
+   *
+   * @param index the index to clamp
+   * @param size  the number of valid indices
+   * @return the nearest valid index
+   */
+  private static int clamp(int index, int size) {
+    return index < 0 ? 0 : (index >= size ? size - 1 : index);
+  }
+}
@@ -1,5 +1,6 @@
 package model.processing;
 
+import java.util.concurrent.CancellationException;
 import model.image.VImage;
 import model.misc.ObjectsExtension;
 
@@ -32,14 +33,37 @@ public class VCompositeContentOperation implements VImageContentOperation {
 
   @Override
   public VImage operateOn(VImage image) throws IllegalArgumentException {
-    ObjectsExtension.requireNonnull(image);
+    return this.operateOn(image, VProgress.none());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Each operation in the sequence is given an equal share of the progress reported</p>
+   */
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
 
     VImage accumulatedResult = image;
+    int numOperations = this.operations.length;
 
-    for (VImageContentOperation operation : this.operations) {
-      accumulatedResult = operation.operateOn(accumulatedResult);
+    for (int i = 0; i < numOperations; i += 1) {
+      accumulatedResult = this.operations[i].operateOn(accumulatedResult,
+          progress.slice((double) i / numOperations, (double) (i + 1) / numOperations));
     }
 
+    progress.report(1);
     return accumulatedResult;
   }
+
+  /**
+   * Retrieves the operations this composite operation applies, in the order they are applied.
+   *
+   * @return the operations of this composite operation
+   */
+  VImageContentOperation[] operations() {
+    return this.operations.clone();
+  }
 }
@@ -0,0 +1,52 @@
+package model.processing;
+
+import model.image.VImage;
+import model.image.pixel.VPixelCoordinate;
+import model.misc.ObjectsExtension;
+
+/**
+ * An operation which crops the images it operates on to a rectangular region.
+ *
+ * <p>A {@link VCropOperation} does not copy any pixels itself: the image it
+ * produces is a view of the region of the image it operates on (see
+ * {@link VImage#region(VPixelCoordinate, int, int)}). Cropping an image is thus
+ * cheap regardless of the size of the original image.</p>
+ */
+public class VCropOperation implements VImageContentOperation {
+  private final VPixelCoordinate topLeft;
+  private final int width;
+  private final int height;
+
+  /**
+   * Construct a new crop operation which keeps the given region of an image.
+   *
+   * @param topLeft the location of the top-left pixel of the region to keep
+   * @param width   the width of the region to keep
+   * @param height  the height of the region to keep
+   * @throws IllegalArgumentException if {@code topLeft} is {@code null}; if either index of
+   *                                  {@code topLeft} is negative; or if the width or height
+   *                                  are not positive
+   */
+  public VCropOperation(VPixelCoordinate topLeft, int width, int height)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(topLeft);
+
+    if (topLeft.getRowIndex() < 0 || topLeft.getColumnIndex() < 0) {
+      throw new IllegalArgumentException("A crop must begin within the image");
+    }
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("A crop must have a positive width and height");
+    }
+
+    this.topLeft = topLeft;
+    this.width = width;
+    this.height = height;
+  }
+
+  @Override
+  public VImage operateOn(VImage image) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(image);
+    return image.region(topLeft, width, height);
+  }
+}
@@ -1,8 +1,10 @@
 package model.processing;
 
+import java.util.concurrent.CancellationException;
 import java.util.function.Function;
 import model.image.VImage;
 import model.image.VMutableImage;
+import model.image.pixel.PackedRGB;
 import model.image.pixel.VPixel;
 import model.image.pixel.VPixelCoordinate;
 import model.image.pixel.VRGBPixel;
@@ -11,8 +13,11 @@ import model.misc.ObjectsExtension;
 /**
  * A map that converts colors within each pixel in an image based on a function that creates a new
  * pixel from an old pixel.
+ *
+ * <p>Since each pixel is converted on its own, a color transformation can also be applied to an
+ * image one row at a time (see {@link VStreamingPipeline}).</p>
  */
-public class VImageColorTransformation implements VImageContentOperation {
+public class VImageColorTransformation implements VRowOperation {
   private final Function<VPixel, VPixel> key;
 
   /**
@@ -29,7 +34,13 @@ public class VImageColorTransformation implements VImageContentOperation {
 
   @Override
   public VImage operateOn(VImage image) throws IllegalArgumentException {
-    ObjectsExtension.requireNonnull(image);
+    return this.operateOn(image, VProgress.none());
+  }
+
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
 
     VMutableImage mutableImage = image.mutableCopy();
 
@@ -37,17 +48,43 @@ public class VImageColorTransformation implements VImageContentOperation {
     int height = image.getHeight();
 
     for (int i = 0; i < height; i += 1) {
+      progress.checkCancelled();
+
       for (int j = 0; j < width; j += 1) {
         VPixelCoordinate loc = new VPixelCoordinate(i, j);
         mutableImage.setPixel(key
             .apply(image.getPixelAt(loc).orElseThrow()), loc);
       }
+
+      progress.report((double) (i + 1) / height);
     }
 
     this.clampImage(mutableImage);
     return mutableImage;
   }
 
+  @Override
+  public int rowRadius() {
+    return 0;
+  }
+
+  @Override
+  public void operateOnRow(VRowWindow window, int row, int[] destination)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(window, destination);
+
+    int[] source = window.row(row);
+
+    if (source == null) {
+      throw new IllegalArgumentException("Row " + row + " is not part of the image");
+    }
+
+    // Packing a pixel clamps its channels, as clamping the whole image would
+    for (int j = 0; j < window.getWidth(); j += 1) {
+      destination[j] = PackedRGB.pack(key.apply(PackedRGB.unpack(source[j])));
+    }
+  }
+
   /**
    * Clamps an image, ensuring that no pixels are outside of the bounds of color channel values.
    *
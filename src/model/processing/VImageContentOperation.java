@@ -1,6 +1,8 @@
 package model.processing;
 
+import java.util.concurrent.CancellationException;
 import model.image.VImage;
+import model.misc.ObjectsExtension;
 
 /**
  * Describes a method of transforming the pixel color contents of a {@link VImage}.
@@ -33,4 +35,30 @@ public interface VImageContentOperation {
    */
   VImage operateOn(VImage image) throws IllegalArgumentException;
 
+  /**
+   * Applies this operation on the image while reporting its progress and stopping early if it
+   * is cancelled.
+   *
+   * <p>By default the operation is only checked for cancellation before it begins and reports
+   * that it is complete once it ends. Operations which take a noticeable amount of time
+   * override this method to report their progress and check for cancellation as they go</p>
+   *
+   * @param image    the image to which this transformation will be applied
+   * @param progress receives the progress of the operation and whether it should stop
+   * @return a new image whose contents are the result of operating as
+   *         described in this particular way
+   * @throws IllegalArgumentException if any arguments are {@code null}
+   * @throws CancellationException    if {@code progress} is cancelled before the operation
+   *                                  completes
+   */
+  default VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
+    progress.checkCancelled();
+
+    VImage result = this.operateOn(image);
+    progress.report(1);
+    return result;
+  }
+
 }
@@ -1,9 +1,11 @@
 package model.processing;
 
 import java.util.Arrays;
+import java.util.concurrent.CancellationException;
 import model.image.VImage;
 import model.image.VMutableImage;
 import model.image.pixel.ChannelType;
+import model.image.pixel.PackedRGB;
 import model.image.pixel.VPixel;
 import model.image.pixel.VPixelCoordinate;
 import model.image.pixel.VRGBPixel;
@@ -20,9 +22,14 @@ import model.misc.ObjectsExtension;
  * to modify an image does so by changing the value of a particular color channel for each pixel in
  * the image. For a kernel with odd dimensions, this is accomplished by conceptually centering the
  * kernel on the pixel whose contents are to modified and multiplying the values in the kernel with
- * corresponding channel values of pixels in the vicinity of the targeted pixel.</p>
+ * corresponding channel values of pixels in the vicinity of the targeted pixel.
+ *
+ * <p>A filter whose kernel has {@code 2r + 1} rows only reads the {@code r} rows above and below
+ * each row, so it can also be applied to an image one row at a time while holding only those
+ * rows in memory (see {@link VStreamingPipeline}), as long as its kernel leaves pixels outside
+ * of the image out (see {@link KernelEdgeMode#DONT_INCLUDE}).</p>
  */
-public class VImageFilter implements VImageContentOperation {
+public class VImageFilter implements VRowOperation {
 
   private final double[][] kernel;
   private final ChannelType channel;
@@ -99,6 +106,14 @@ public class VImageFilter implements VImageContentOperation {
 
   @Override
   public VImage operateOn(VImage image) throws IllegalArgumentException {
+    return this.operateOn(image, VProgress.none());
+  }
+
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
+
     VMutableImage mutImage = image.mutableCopy();
 
     int width = image.getWidth();
@@ -107,6 +122,8 @@ public class VImageFilter implements VImageContentOperation {
     int diff = (kernelSize - 1) / 2;
 
     for (int i = 0; i < height; i += 1) {
+      progress.checkCancelled();
+
       for (int j = 0; j < width; j += 1) {
 
         double total = 0;
@@ -144,11 +161,103 @@ public class VImageFilter implements VImageContentOperation {
 
         mutImage.setPixel(clampPixel(newPixel), new VPixelCoordinate(i, j));
       }
+
+      progress.report((double) (i + 1) / height);
     }
 
     return mutImage;
   }
 
+  @Override
+  public int rowRadius() {
+    return (kernel.length - 1) / 2;
+  }
+
+  /**
+   * Determines whether this filter leaves pixels outside of the image out of its kernel, which
+   * is what allows it to be applied row by row.
+   *
+   * @return true if the kernel resolution of this filter excludes pixels beyond the edges
+   */
+  boolean excludesEdges() {
+    return kernelResolution instanceof KernelResolutionExclude;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The channel is read straight from the packed rows of the window. Only filters that
+   * leave pixels outside of the image out of their kernel can be applied this way, since other
+   * kernel resolutions may read any pixel of the image</p>
+   *
+   * @throws IllegalArgumentException if this filter does not leave pixels outside of the image
+   *                                  out of its kernel
+   */
+  @Override
+  public void operateOnRow(VRowWindow window, int row, int[] destination)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(window, destination);
+
+    if (!this.excludesEdges()) {
+      throw new IllegalArgumentException("Only filters which leave pixels outside of the image "
+          + "out of their kernel can be applied row by row");
+    }
+
+    int[] source = window.row(row);
+
+    if (source == null) {
+      throw new IllegalArgumentException("Row " + row + " is not part of the image");
+    }
+
+    int shift;
+
+    switch (this.channel) {
+      case RED:
+        shift = 16;
+        break;
+      case GREEN:
+        shift = 8;
+        break;
+      case BLUE:
+        shift = 0;
+        break;
+      default:
+        throw new IllegalArgumentException("Channel selected "
+            + "is invalid.");
+    }
+
+    int width = window.getWidth();
+    int kernelSize = kernel.length;
+    int diff = (kernelSize - 1) / 2;
+    int[][] rows = new int[kernelSize][];
+
+    for (int k = 0; k < kernelSize; k += 1) {
+      rows[k] = window.row(row + k - diff);
+    }
+
+    for (int j = 0; j < width; j += 1) {
+      double total = 0;
+
+      for (int k = 0; k < kernelSize; k += 1) {
+        for (int l = 0; l < kernelSize; l += 1) {
+          int column = j + l - diff;
+          int colorVal;
+
+          if (rows[k] == null || column < 0 || column >= width) {
+            colorVal = 0;
+          } else {
+            colorVal = (rows[k][column] >> shift) & 0xFF;
+          }
+
+          total += (kernel[k][l] * colorVal);
+        }
+      }
+
+      int value = PackedRGB.clampChannel((int) Math.round(total));
+      destination[j] = (source[j] & ~(0xFF << shift)) | (value << shift);
+    }
+  }
+
   /**
    * Clamps a single pixel, ensuring that none of its channels exceed 255 or go below 0.
    *
@@ -0,0 +1,24 @@
+package model.processing;
+
+/**
+ * Describes how the color of an image is estimated between the centers of its pixels
+ * when the image is resampled.
+ */
+public enum VInterpolation {
+  /**
+   * Takes the color of the pixel closest to the sampled location.
+   * Fastest, but produces jagged edges.
+   */
+  NEAREST,
+
+  /**
+   * Blends the 2 x 2 pixels surrounding the sampled location linearly.
+   */
+  BILINEAR,
+
+  /**
+   * Blends the 4 x 4 pixels surrounding the sampled location with a cubic
+   * (Catmull-Rom) curve. Slowest, but keeps edges sharpest.
+   */
+  BICUBIC
+}
@@ -6,11 +6,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import model.image.VImage;
 import model.image.VMutableImage;
 import model.image.pixel.VPixelCoordinate;
 import model.misc.ComparableUtils;
+import model.misc.ObjectsExtension;
 
 /**
  * An image transformation which turns an image into a "mosaic" artwork.
@@ -52,11 +54,21 @@ public class VMosaicFilter implements VImageContentOperation {
 
   @Override
   public VImage operateOn(VImage image) throws IllegalArgumentException {
+    return this.operateOn(image, VProgress.none());
+  }
+
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
+
     VMutableImage imageCopy = image.mutableCopy();
     Set<VPixelCoordinate> mosaicPoints = this.generateMosaicCoordinatesFrom(image);
 
     // Traverse the entire image and find the closest coordinate
     for (int i = 0; i < image.getWidth(); i += 1) {
+      progress.checkCancelled();
+
       for (int j = 0; j < image.getHeight(); j += 1) {
         VPixelCoordinate coordinate = new VPixelCoordinate(j, i);
         VPixelCoordinate closestPoint = mosaicPoints.stream().min(
@@ -65,6 +77,8 @@ public class VMosaicFilter implements VImageContentOperation {
 
         imageCopy.setPixel(image.getPixelAt(closestPoint).get(), coordinate);
       }
+
+      progress.report((double) (i + 1) / image.getWidth());
     }
 
     return imageCopy;
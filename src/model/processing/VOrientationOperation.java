@@ -0,0 +1,36 @@
+package model.processing;
+
+import model.image.VImage;
+import model.image.VOrientation;
+import model.image.VOrientedImage;
+import model.misc.ObjectsExtension;
+
+/**
+ * An operation which flips, transposes or rotates the images it operates on
+ * by a multiple of 90 degrees.
+ *
+ * <p>A {@link VOrientationOperation} does not copy any pixels itself: the image
+ * it produces is a view which remaps locations to the image it operates on (see
+ * {@link VOrientedImage}). Orienting an already oriented image combines both
+ * orientations, so any sequence of these operations is as cheap as a single one.</p>
+ */
+public class VOrientationOperation implements VImageContentOperation {
+  private final VOrientation orientation;
+
+  /**
+   * Construct a new operation which orients images in the given way.
+   *
+   * @param orientation how images should be oriented
+   * @throws IllegalArgumentException if {@code orientation} is {@code null}
+   */
+  public VOrientationOperation(VOrientation orientation) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(orientation);
+    this.orientation = orientation;
+  }
+
+  @Override
+  public VImage operateOn(VImage image) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(image);
+    return VOrientedImage.of(image, orientation);
+  }
+}
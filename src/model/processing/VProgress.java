@@ -0,0 +1,95 @@
+package model.processing;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives reports of how far a long-running {@link VImageContentOperation} has progressed and
+ * tells the operation whether it should give up early.
+ *
+ * <p>Operations that take a noticeable amount of time report the fraction of their work that
+ * is complete as they go, from 0 when they begin to 1 when they are finished. Reports may come
+ * from any thread, including several at once for operations that do their work in parallel,
+ * and are not guaranteed to arrive in increasing order.
+ *
+ * <p>Cancellation is cooperative: an operation checks {@link #isCancelled()} (usually through
+ * {@link #checkCancelled()}) between units of work and abandons its result by throwing a
+ * {@link CancellationException} once it has been asked to stop. An operation that is never
+ * cancelled produces exactly the same result as it would without a {@link VProgress}.</p>
+ */
+public interface VProgress {
+
+  /**
+   * Reports the fraction of the operation's work that is complete.
+   *
+   * @param fraction a number between 0 and 1 inclusive
+   */
+  void report(double fraction);
+
+  /**
+   * Determines whether the operation has been asked to stop.
+   *
+   * @return true if the operation should abandon its work as soon as it can
+   */
+  boolean isCancelled();
+
+  /**
+   * Throws if the operation has been asked to stop.
+   *
+   * @throws CancellationException if {@link #isCancelled()} is true
+   */
+  default void checkCancelled() throws CancellationException {
+    if (this.isCancelled()) {
+      throw new CancellationException("The operation was cancelled");
+    }
+  }
+
+  /**
+   * Produces a {@link VProgress} for one step of a larger operation. A report of 0 to the
+   * slice is reported to this {@link VProgress} as {@code start} and a report of 1 as
+   * {@code end}; the slice is cancelled whenever this {@link VProgress} is.
+   *
+   * @param start the fraction of the larger operation complete when the step begins
+   * @param end   the fraction of the larger operation complete when the step ends
+   * @return a {@link VProgress} for the step
+   * @throws IllegalArgumentException if {@code start} and {@code end} are not within [0, 1] or
+   *                                  if {@code start} is greater than {@code end}
+   */
+  default VProgress slice(double start, double end) throws IllegalArgumentException {
+    if (start < 0 || end > 1 || start > end) {
+      throw new IllegalArgumentException("A slice must lie within [0, 1]");
+    }
+
+    VProgress whole = this;
+
+    return new VProgress() {
+      @Override
+      public void report(double fraction) {
+        whole.report(start + (end - start) * fraction);
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return whole.isCancelled();
+      }
+    };
+  }
+
+  /**
+   * Produces a {@link VProgress} which ignores every report and is never cancelled.
+   *
+   * @return a {@link VProgress} for operations whose progress nobody is watching
+   */
+  static VProgress none() {
+    return new VProgress() {
+      @Override
+      public void report(double fraction) {
+        // Nobody is watching
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return false;
+      }
+    };
+  }
+}
@@ -0,0 +1,191 @@
+package model.processing;
+
+import java.util.concurrent.CancellationException;
+import model.image.VImage;
+import model.image.VPackedImages;
+import model.image.pixel.VPixelCoordinate;
+import model.misc.ObjectsExtension;
+
+/**
+ * An operation which applies another operation to only a rectangular region of an image.
+ *
+ * <p>The wrapped operation is handed a view of the region (see
+ * {@link VImage#region(VPixelCoordinate, int, int)}) extended on each side by a
+ * <em>halo</em> of extra pixels, so the work it does is proportional to the size of the
+ * region rather than to the size of the whole image. Operations such as
+ * {@link VImageFilter} read pixels around each pixel they compute; a halo as wide as the
+ * radius of such an operation's kernel ensures that pixels at the edge of the region are
+ * computed from their true neighbors. Only the pixels within the region itself are written
+ * back into the result; the rest of the image is left untouched.
+ *
+ * <p>The halo of an operation that can be applied row by row is the number of rows it reads
+ * on either side of each row (see {@link VRowOperation#rowRadius()}), and the halo of a
+ * {@link VCompositeContentOperation} is the sum of the halos of its operations. The kernels of
+ * filters are square, so they read as many columns on either side of a pixel as rows.</p>
+ */
+public class VRegionContentOperation implements VImageContentOperation {
+  private final VImageContentOperation operation;
+  private final VPixelCoordinate topLeft;
+  private final int width;
+  private final int height;
+  private final int halo;
+
+  /**
+   * Construct a new operation which applies {@code operation} to the given region, with a halo
+   * as wide as the pixels around each pixel that the operation reads.
+   *
+   * @param operation the operation to apply within the region. The operation must produce
+   *                  images of the same size as those it operates on, and must be able to be
+   *                  applied row by row (see {@link VStreamingPipeline#canStream})
+   * @param topLeft   the location of the top-left pixel of the region
+   * @param width     the width of the region
+   * @param height    the height of the region
+   * @throws IllegalArgumentException if any arguments are {@code null}; if either index of
+   *                                  {@code topLeft} is negative; if the width or height are
+   *                                  not positive; or if the halo of the operation cannot be
+   *                                  determined
+   */
+  public VRegionContentOperation(VImageContentOperation operation, VPixelCoordinate topLeft,
+      int width, int height) throws IllegalArgumentException {
+    this(operation, topLeft, width, height, haloOf(operation));
+  }
+
+  /**
+   * Construct a new operation which applies {@code operation} to the given region.
+   *
+   * @param operation the operation to apply within the region. The operation must produce
+   *                  images of the same size as those it operates on
+   * @param topLeft   the location of the top-left pixel of the region
+   * @param width     the width of the region
+   * @param height    the height of the region
+   * @param halo      the number of pixels around the region that {@code operation} may read
+   * @throws IllegalArgumentException if any arguments are {@code null}; if either index of
+   *                                  {@code topLeft} is negative; if the width or height are
+   *                                  not positive; or if the halo is negative
+   */
+  public VRegionContentOperation(VImageContentOperation operation, VPixelCoordinate topLeft,
+      int width, int height, int halo) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(operation, topLeft);
+
+    if (topLeft.getRowIndex() < 0 || topLeft.getColumnIndex() < 0) {
+      throw new IllegalArgumentException("A region must begin within the image");
+    }
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("A region must have a positive width and height");
+    }
+
+    if (halo < 0) {
+      throw new IllegalArgumentException("A halo cannot be negative");
+    }
+
+    this.operation = operation;
+    this.topLeft = topLeft;
+    this.width = width;
+    this.height = height;
+    this.halo = halo;
+  }
+
+  /**
+   * Works out the number of pixels around each pixel that an operation reads.
+   *
+   * @param operation the operation
+   * @return the halo the operation needs
+   * @throws IllegalArgumentException if {@code operation} is {@code null} or if it cannot be
+   *                                  applied row by row
+   */
+  private static int haloOf(VImageContentOperation operation) throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(operation);
+
+    if (operation instanceof VRowOperation) {
+      return ((VRowOperation) operation).rowRadius();
+    }
+
+    if (operation instanceof VCompositeContentOperation) {
+      int halo = 0;
+
+      // Each operation reads the pixels around those the one before it produced
+      for (VImageContentOperation part : ((VCompositeContentOperation) operation).operations()) {
+        halo += haloOf(part);
+      }
+      return halo;
+    }
+    throw new IllegalArgumentException("The halo of the operation cannot be determined");
+  }
+
+  /**
+   * Retrieves the location of the top-left pixel of the region this operation changes.
+   *
+   * @return the top-left corner of the region
+   */
+  public VPixelCoordinate getTopLeft() {
+    return this.topLeft;
+  }
+
+  /**
+   * Retrieves the width of the region this operation changes.
+   *
+   * @return the width of the region
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Retrieves the height of the region this operation changes.
+   *
+   * @return the height of the region
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public VImage operateOn(VImage image) throws IllegalArgumentException {
+    return this.operateOn(image, VProgress.none());
+  }
+
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
+
+    int row = topLeft.getRowIndex();
+    int column = topLeft.getColumnIndex();
+
+    if (row + height > image.getHeight() || column + width > image.getWidth()) {
+      throw new IllegalArgumentException("The region must lie within the image");
+    }
+
+    // Extend the region by the halo without leaving the image
+    int haloRow = Math.max(0, row - halo);
+    int haloColumn = Math.max(0, column - halo);
+    int haloHeight = Math.min(image.getHeight(), row + height + halo) - haloRow;
+    int haloWidth = Math.min(image.getWidth(), column + width + halo) - haloColumn;
+
+    VImage processed = operation.operateOn(
+        image.region(new VPixelCoordinate(haloRow, haloColumn), haloWidth, haloHeight),
+        progress);
+
+    if (processed.getWidth() != haloWidth || processed.getHeight() != haloHeight) {
+      throw new IllegalArgumentException("Only operations which preserve the size of an image "
+          + "can be applied to a region");
+    }
+
+    int imageWidth = image.getWidth();
+    int processedOffset = (row - haloRow) * haloWidth + column - haloColumn;
+    int resultOffset = row * imageWidth + column;
+
+    // The pixels of the image may be its own array, which must not be modified
+    int[] result = VPackedImages.readPixels(image).clone();
+    int[] processedPixels = VPackedImages.readPixels(processed);
+
+    for (int i = 0; i < height; i += 1) {
+      System.arraycopy(processedPixels, processedOffset, result, resultOffset, width);
+      processedOffset += haloWidth;
+      resultOffset += imageWidth;
+    }
+
+    return VPackedImages.wrap(imageWidth, image.getHeight(), result);
+  }
+}
@@ -0,0 +1,83 @@
+package model.processing;
+
+/**
+ * Describes how the pixels of an image are blended together when the image is resized.
+ *
+ * <p>Each filter weighs the pixels of the original image by their distance from the location
+ * of each pixel in the resized image. When an image is made smaller, every filter is stretched
+ * so that all of the original pixels contribute to the result.</p>
+ */
+public enum VResizeFilter {
+  /**
+   * Averages the original pixels by how much of each one the resized pixel covers.
+   * Best suited for making images smaller.
+   */
+  AREA(0.5),
+
+  /**
+   * Blends the nearest original pixels linearly.
+   */
+  BILINEAR(1),
+
+  /**
+   * Blends the nearest original pixels with a Catmull-Rom cubic,
+   * which keeps edges sharper than {@link #BILINEAR}.
+   */
+  BICUBIC(2),
+
+  /**
+   * Blends the original pixels with a windowed sinc of three lobes. Keeps the most
+   * detail at the cost of the most work and some ringing around hard edges.
+   */
+  LANCZOS3(3);
+
+  private final double support;
+
+  /**
+   * Construct a new filter.
+   *
+   * @param support the distance from a location beyond which pixels have no weight
+   */
+  VResizeFilter(double support) {
+    this.support = support;
+  }
+
+  /**
+   * Determines the distance from a location beyond which pixels have no weight.
+   *
+   * @return the radius of this filter in pixels of the original image
+   */
+  double support() {
+    return this.support;
+  }
+
+  /**
+   * Computes the weight of a pixel at the given distance from a location.
+   *
+   * @param distance the signed distance between the pixel and the location
+   * @return the weight of the pixel, which may be negative
+   */
+  double weight(double distance) {
+    double t = Math.abs(distance);
+
+    switch (this) {
+      case AREA:
+        return t <= 0.5 ? 1 : 0;
+      case BILINEAR:
+        return t < 1 ? 1 - t : 0;
+      case BICUBIC:
+        return VAffineWarp.cubicWeight(t);
+      case LANCZOS3:
+        if (t < 1e-9) {
+          return 1;
+        }
+        if (t >= 3) {
+          return 0;
+        }
+        double x = Math.PI * t;
+        return 3 * Math.sin(x) * Math.sin(x / 3) / (x * x);
+      default:
+        throw new IllegalStateException("Unknown filter " + this);
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package model.processing;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import model.image.VImage;
+import model.image.VPackedImages;
+import model.image.pixel.PackedRGB;
+import model.misc.ObjectsExtension;
+
+/**
+ * An operation which resizes the images it operates on to a fixed width and height.
+ *
+ * <p>Resizing is done in two passes: first every row is resized to the new width, and then
+ * every column of the result is resized to the new height. The weights each pass gives the
+ * original pixels depend only on the sizes involved, so they are computed once per pass and
+ * then reused for every row or column. The rows of each pass are processed in parallel.</p>
+ *
+ * <p>Unless a {@link VResizeFilter} is chosen explicitly, each direction that shrinks is
+ * resized by {@link VResizeFilter#AREA} averaging and each direction that grows is resized
+ * with {@link VResizeFilter#BICUBIC} interpolation.</p>
+ */
+public class VResizeOperation implements VImageContentOperation {
+  private final int width;
+  private final int height;
+  private final VResizeFilter filter;
+
+  /**
+   * Construct a new resize operation which chooses its filter by
+   * whether images are made larger or smaller.
+   *
+   * @param width  the width of the resized images
+   * @param height the height of the resized images
+   * @throws IllegalArgumentException if the width or height are not positive
+   */
+  public VResizeOperation(int width, int height) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("A resized image must have a positive width and "
+          + "height");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.filter = null;
+  }
+
+  /**
+   * Construct a new resize operation which uses the given filter.
+   *
+   * @param width  the width of the resized images
+   * @param height the height of the resized images
+   * @param filter how pixels are blended together
+   * @throws IllegalArgumentException if the width or height are not positive or if
+   *                                  {@code filter} is {@code null}
+   */
+  public VResizeOperation(int width, int height, VResizeFilter filter)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(filter);
+
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("A resized image must have a positive width and "
+          + "height");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.filter = filter;
+  }
+
+  @Override
+  public VImage operateOn(VImage image) throws IllegalArgumentException {
+    return this.operateOn(image, VProgress.none());
+  }
+
+  @Override
+  public VImage operateOn(VImage image, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(image, progress);
+
+    int sourceWidth = image.getWidth();
+    int sourceHeight = image.getHeight();
+
+    if (sourceWidth == width && sourceHeight == height) {
+      return image;
+    }
+
+    int[] source = VPackedImages.readPixels(image);
+    WeightTable columns = new WeightTable(sourceWidth, width, this.filterFor(sourceWidth, width));
+    WeightTable rows = new WeightTable(sourceHeight, height, this.filterFor(sourceHeight, height));
+
+    // Horizontal pass: keep full precision between the passes
+    // to avoid rounding every channel twice
+    float[] red = new float[sourceHeight * width];
+    float[] green = new float[sourceHeight * width];
+    float[] blue = new float[sourceHeight * width];
+
+    // Each pass reports half of the progress, counted in rows
+    int totalRows = sourceHeight + height;
+    AtomicInteger rowsDone = new AtomicInteger();
+
+    IntStream.range(0, sourceHeight).parallel().forEach(row -> {
+      progress.checkCancelled();
+      int sourceStart = row * sourceWidth;
+      int resultStart = row * width;
+
+      for (int column = 0; column < width; column += 1) {
+        int first = columns.first[column];
+        int weightStart = column * columns.span;
+        float r = 0;
+        float g = 0;
+        float b = 0;
+
+        for (int k = 0; k < columns.count[column]; k += 1) {
+          float weight = columns.weights[weightStart + k];
+          int color = source[sourceStart + first + k];
+          r += weight * PackedRGB.red(color);
+          g += weight * PackedRGB.green(color);
+          b += weight * PackedRGB.blue(color);
+        }
+
+        red[resultStart + column] = r;
+        green[resultStart + column] = g;
+        blue[resultStart + column] = b;
+      }
+
+      progress.report((double) rowsDone.incrementAndGet() / totalRows);
+    });
+
+    // Vertical pass: each resized row blends whole rows of the horizontal pass
+    int[] result = new int[width * height];
+
+    IntStream.range(0, height).parallel().forEach(row -> {
+      progress.checkCancelled();
+
+      int first = rows.first[row];
+      int weightStart = row * rows.span;
+      float[] r = new float[width];
+      float[] g = new float[width];
+      float[] b = new float[width];
+
+      for (int k = 0; k < rows.count[row]; k += 1) {
+        float weight = rows.weights[weightStart + k];
+        int passStart = (first + k) * width;
+
+        for (int column = 0; column < width; column += 1) {
+          r[column] += weight * red[passStart + column];
+          g[column] += weight * green[passStart + column];
+          b[column] += weight * blue[passStart + column];
+        }
+      }
+
+      int resultStart = row * width;
+      for (int column = 0; column < width; column += 1) {
+        result[resultStart + column] = PackedRGB.pack(Math.round(r[column]),
+            Math.round(g[column]), Math.round(b[column]));
+      }
+
+      progress.report((double) rowsDone.incrementAndGet() / totalRows);
+    });
+
+    return VPackedImages.wrap(width, height, result);
+  }
+
+  /**
+   * Chooses the filter used to resize one direction of an image.
+   *
+   * @param sourceSize the number of pixels in that direction before resizing
+   * @param resultSize the number of pixels in that direction after resizing
+   * @return the filter given to this operation, or the default filter for the direction
+   */
+  private VResizeFilter filterFor(int sourceSize, int resultSize) {
+    if (filter != null) {
+      return filter;
+    }
+    return resultSize < sourceSize ? VResizeFilter.AREA : VResizeFilter.BICUBIC;
+  }
+
+  /**
+   * The weights with which each pixel of a resized row (or column) blends the pixels
+   * of the original row.
+   *
+   * <p>Resized pixel {@code i} blends the {@code count[i]} original pixels starting at
+   * {@code first[i]}, whose weights are stored from {@code i * span} in
+   * {@code weights}. The weights of each resized pixel add up to one.</p>
+   */
+  private static final class WeightTable {
+    private final int[] first;
+    private final int[] count;
+    private final float[] weights;
+    private final int span;
+
+    /**
+     * Computes the weights for resizing a row of the given length.
+     *
+     * @param sourceSize the number of pixels in the original row
+     * @param resultSize the number of pixels in the resized row
+     * @param filter     how the pixels are blended
+     */
+    WeightTable(int sourceSize, int resultSize, VResizeFilter filter) {
+      double scale = (double) resultSize / sourceSize;
+
+      // Stretch the filter when shrinking so that every original pixel contributes
+      double stretch = Math.max(1, 1 / scale);
+      double support = filter.support() * stretch;
+
+      this.span = Math.min(sourceSize, (int) Math.ceil(2 * support) + 2);
+      this.first = new int[resultSize];
+      this.count = new int[resultSize];
+      this.weights = new float[resultSize * span];
+
+      for (int i = 0; i < resultSize; i += 1) {
+        double center = (i + 0.5) / scale;
+        int left = Math.max(0, (int) Math.floor(center - support));
+        int right = Math.min(sourceSize, (int) Math.ceil(center + support));
+        right = Math.min(right, left + span);
+
+        double total = 0;
+        for (int j = left; j < right; j += 1) {
+          double weight = filter == VResizeFilter.AREA
+              ? overlap(j, j + 1, center - support, center + support) / stretch
+              : filter.weight((j + 0.5 - center) / stretch);
+          weights[i * span + j - left] = (float) weight;
+          total += weight;
+        }
+
+        // Pixels beyond the edges carry no weight, so renormalize
+        // for the pixels that are actually within the row
+        if (total == 0) {
+          int nearest = Math.min(sourceSize - 1, Math.max(0, (int) center));
+          left = nearest;
+          right = nearest + 1;
+          weights[i * span] = 1;
+          total = 1;
+        }
+
+        for (int j = 0; j < right - left; j += 1) {
+          weights[i * span + j] = (float) (weights[i * span + j] / total);
+        }
+
+        this.first[i] = left;
+        this.count[i] = right - left;
+      }
+    }
+
+    /**
+     * Computes the length of the overlap between two intervals.
+     *
+     * @param start      the start of the first interval
+     * @param end        the end of the first interval
+     * @param otherStart the start of the second interval
+     * @param otherEnd   the end of the second interval
+     * @return the length of the overlap, or 0 if the intervals do not overlap
+     */
+    private static double overlap(double start, double end, double otherStart, double otherEnd) {
+      return Math.max(0, Math.min(end, otherEnd) - Math.max(start, otherStart));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package model.processing;
+
+/**
+ * An operation that can work out each row of its result from a few neighboring rows of the
+ * image it operates on.
+ *
+ * <p>Point operations such as color transformations only need the row itself, while a filter
+ * with a kernel of height {@code 2r + 1} needs the {@code r} rows above and below the row as
+ * well. Operations that can be applied row by row can be applied by a
+ * {@link VStreamingPipeline} to images too large to be held in memory, keeping only a window
+ * of rows in memory at a time.</p>
+ */
+public interface VRowOperation extends VImageContentOperation {
+
+  /**
+   * Gets the number of rows above and below a row that are needed to work out that row of
+   * the result.
+   *
+   * @return the radius of the window of rows this operation reads, which is 0 for operations
+   *         that only read the row itself
+   */
+  int rowRadius();
+
+  /**
+   * Works out a single row of the result of this operation.
+   *
+   * <p>The result of this method for every row of an image is the same as the corresponding
+   * row of {@link #operateOn(model.image.VImage)} applied to the whole image</p>
+   *
+   * @param window      the rows of the image surrounding the row, at least
+   *                    {@link #rowRadius()} rows on either side of it
+   * @param row         the index of the row in the image
+   * @param destination receives the packed pixels of the row of the result; it is never one
+   *                    of the rows of the window
+   * @throws IllegalArgumentException if any arguments are {@code null} or if the row is not
+   *                                  in the window
+   */
+  void operateOnRow(VRowWindow window, int row, int[] destination)
+      throws IllegalArgumentException;
+}
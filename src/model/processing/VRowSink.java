@@ -0,0 +1,20 @@
+package model.processing;
+
+/**
+ * A destination for the rows of an image, written one at a time from the top row down.
+ *
+ * <p>A {@link VRowSink} is the counterpart of a {@link VRowSource}: it lets an image be written,
+ * typically straight to a file, without ever holding all of it in memory.</p>
+ */
+public interface VRowSink {
+
+  /**
+   * Writes the next row of the image.
+   *
+   * @param row the packed pixels of the row, from the leftmost pixel; only the first width
+   *            pixels are written
+   * @throws IllegalArgumentException if {@code row} is {@code null} or too short
+   * @throws IllegalStateException    if every row has already been written
+   */
+  void writeRow(int[] row) throws IllegalArgumentException, IllegalStateException;
+}
@@ -0,0 +1,36 @@
+package model.processing;
+
+/**
+ * A source of the rows of an image, read one at a time from the top row down.
+ *
+ * <p>A {@link VRowSource} lets an image be processed without ever holding all of it in memory,
+ * such as an image far larger than the memory available stored in a file (see
+ * {@link VStreamingPipeline}). Rows are read as packed {@code 0x00RRGGBB} colors, in order,
+ * and each row can only be read once.</p>
+ */
+public interface VRowSource {
+
+  /**
+   * Gets the width of the image, which is the number of pixels in each row.
+   *
+   * @return the width of the image
+   */
+  int getWidth();
+
+  /**
+   * Gets the height of the image, which is the number of rows.
+   *
+   * @return the height of the image
+   */
+  int getHeight();
+
+  /**
+   * Reads the next row of the image.
+   *
+   * @param row receives the packed pixels of the row, from the leftmost pixel; it holds at
+   *            least {@link #getWidth()} pixels
+   * @throws IllegalArgumentException if {@code row} is {@code null} or too short
+   * @throws IllegalStateException    if every row has already been read
+   */
+  void readRow(int[] row) throws IllegalArgumentException, IllegalStateException;
+}
@@ -0,0 +1,101 @@
+package model.processing;
+
+/**
+ * A sliding window over the rows of an image that is being streamed through a
+ * {@link VStreamingPipeline}.
+ *
+ * <p>A window holds a fixed number of consecutive rows of the image in a ring of row buffers,
+ * the oldest row being replaced each time the window slides down by a row. The rows of the
+ * window are read directly as packed colors (see {@link #row(int)}); reading a row of the image
+ * that is not currently in the window is an error.</p>
+ */
+public final class VRowWindow {
+  private final int width;
+  private final int height;
+  private final int[][] rows;
+
+  // The index of the row after the last row loaded into the window
+  private int end;
+
+  /**
+   * Construct a new empty window over an image.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param size   the number of rows the window holds
+   * @throws IllegalArgumentException if any argument is not positive
+   */
+  VRowWindow(int width, int height, int size) throws IllegalArgumentException {
+    if (width <= 0 || height <= 0 || size <= 0) {
+      throw new IllegalArgumentException("A window must have a positive size");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.rows = new int[size][width];
+    this.end = 0;
+  }
+
+  /**
+   * Gets the index of the next row to be loaded into this window.
+   *
+   * @return the index of the row after the last row loaded, or 0 if none have been
+   */
+  int end() {
+    return this.end;
+  }
+
+  /**
+   * Slides this window down by a row, making room for the next row of the image.
+   *
+   * @return the buffer the next row must be read into, which held the oldest row of the window
+   * @throws IllegalStateException if every row of the image has been loaded
+   */
+  int[] advance() throws IllegalStateException {
+    if (end >= height) {
+      throw new IllegalStateException("Every row of the image has already been loaded");
+    }
+
+    int[] buffer = rows[end % rows.length];
+    end += 1;
+    return buffer;
+  }
+
+  /**
+   * Retrieves a row of the image.
+   *
+   * @param index the index of the row in the image
+   * @return the packed pixels of the row, which must not be modified, or {@code null} if the
+   *         image has no row with the given index
+   * @throws IllegalArgumentException if the row is part of the image but not in this window
+   */
+  public int[] row(int index) throws IllegalArgumentException {
+    if (index < 0 || index >= height) {
+      return null;
+    }
+
+    if (index >= end || index < end - rows.length) {
+      throw new IllegalArgumentException("Row " + index + " is not in the window of rows "
+          + Math.max(0, end - rows.length) + " to " + (end - 1));
+    }
+    return rows[index % rows.length];
+  }
+
+  /**
+   * Gets the width of the image this window slides over.
+   *
+   * @return the number of pixels in each row
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Gets the height of the image this window slides over.
+   *
+   * @return the number of rows in the image
+   */
+  public int getHeight() {
+    return this.height;
+  }
+}
@@ -0,0 +1,180 @@
+package model.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import model.misc.ObjectsExtension;
+
+/**
+ * Applies a sequence of operations to an image row by row, streaming the image from a
+ * {@link VRowSource} to a {@link VRowSink} without ever holding all of it in memory.
+ *
+ * <p>Each operation of the pipeline is a stage with its own {@link VRowWindow}, which holds the
+ * rows of the result of the previous stage that the operation needs: a single row for a point
+ * operation, or as many rows as its kernel is tall for a filter. A row of the final result is
+ * produced by pulling rows through the stages until each window holds the rows it needs, so
+ * memory use depends only on the width of the image and the operations, never on its height.
+ * The result is the same as applying the operations to the whole image in memory.
+ *
+ * <p>Only operations that can be applied row by row (see {@link VRowOperation}) can be streamed,
+ * such as the color transformations and filters of {@link VImageFilters}, although a filter is
+ * only streamed if its kernel leaves pixels outside of the image out. A
+ * {@link VCompositeContentOperation} can be streamed if each of its operations can.</p>
+ */
+public final class VStreamingPipeline {
+  private final List<VRowOperation> stages;
+
+  /**
+   * Construct a new pipeline which applies the given operations in order.
+   *
+   * @param operations the operations to apply, each of which must be able to be streamed
+   * @throws IllegalArgumentException if any arguments are {@code null} or if any operation
+   *                                  cannot be applied row by row
+   */
+  public VStreamingPipeline(VImageContentOperation... operations)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull((Object) operations);
+    ObjectsExtension.requireNonnull((Object[]) operations);
+
+    this.stages = new ArrayList<>();
+
+    for (VImageContentOperation operation : operations) {
+      if (!addStages(operation, this.stages)) {
+        throw new IllegalArgumentException("The operation cannot be applied row by row");
+      }
+    }
+  }
+
+  /**
+   * Determines whether the given operation can be streamed by a pipeline.
+   *
+   * @param operation the operation
+   * @return true if the operation can be applied row by row
+   * @throws IllegalArgumentException if {@code operation} is {@code null}
+   */
+  public static boolean canStream(VImageContentOperation operation)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(operation);
+    return addStages(operation, new ArrayList<>());
+  }
+
+  /**
+   * Adds the stages that apply an operation to a list of stages, expanding composite
+   * operations into the stages of the operations they are made of.
+   *
+   * @param operation the operation
+   * @param stages    the list of stages to add to
+   * @return true if the operation can be applied row by row
+   */
+  private static boolean addStages(VImageContentOperation operation, List<VRowOperation> stages) {
+    if (operation instanceof VImageFilter && !((VImageFilter) operation).excludesEdges()) {
+      return false;
+    }
+
+    if (operation instanceof VRowOperation) {
+      stages.add((VRowOperation) operation);
+      return true;
+    }
+
+    if (operation instanceof VCompositeContentOperation) {
+      for (VImageContentOperation part : ((VCompositeContentOperation) operation).operations()) {
+        if (!addStages(part, stages)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Streams an image through the operations of this pipeline.
+   *
+   * <p>Every row of the source is read exactly once and every row of the result is written to
+   * the sink exactly once, in order</p>
+   *
+   * @param source   the image to operate on
+   * @param sink     receives the result of the operations
+   * @param progress receives the fraction of rows written and is checked for cancellation
+   *                 before each row
+   * @throws IllegalArgumentException if any arguments are {@code null} or if the source has no
+   *                                  rows
+   * @throws CancellationException    if the progress is cancelled
+   */
+  public void run(VRowSource source, VRowSink sink, VProgress progress)
+      throws IllegalArgumentException, CancellationException {
+    ObjectsExtension.requireNonnull(source, sink, progress);
+
+    VRowSource result = source;
+
+    for (VRowOperation stage : stages) {
+      result = new Stage(result, stage);
+    }
+
+    int height = source.getHeight();
+    int[] row = new int[source.getWidth()];
+
+    for (int i = 0; i < height; i += 1) {
+      progress.checkCancelled();
+
+      result.readRow(row);
+      sink.writeRow(row);
+
+      progress.report((double) (i + 1) / height);
+    }
+  }
+
+  /**
+   * A single operation of a pipeline, reading the rows it needs from the previous stage.
+   */
+  private static final class Stage implements VRowSource {
+    private final VRowSource input;
+    private final VRowOperation operation;
+    private final VRowWindow window;
+    private int next;
+
+    /**
+     * Construct a new stage which applies an operation to the rows of the given source.
+     *
+     * @param input     the source of the rows the operation is applied to
+     * @param operation the operation
+     */
+    Stage(VRowSource input, VRowOperation operation) {
+      this.input = input;
+      this.operation = operation;
+      this.window = new VRowWindow(input.getWidth(), input.getHeight(),
+          2 * operation.rowRadius() + 1);
+      this.next = 0;
+    }
+
+    @Override
+    public int getWidth() {
+      return input.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+      return input.getHeight();
+    }
+
+    @Override
+    public void readRow(int[] row) throws IllegalArgumentException, IllegalStateException {
+      ObjectsExtension.requireNonnull(row);
+
+      if (next >= this.getHeight()) {
+        throw new IllegalStateException("Every row has already been read");
+      }
+
+      // Load every row up to the last row the operation reads,
+      // sliding the oldest rows out of the window
+      int last = Math.min(next + operation.rowRadius(), this.getHeight() - 1);
+
+      while (window.end() <= last) {
+        input.readRow(window.advance());
+      }
+
+      operation.operateOnRow(window, next, row);
+      next += 1;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package view;
 
+import model.image.VImage;
 import model.image.VLayer;
 
 /**
@@ -22,6 +23,46 @@ public interface VIView {
    */
   void renderAsCurrentLayer(VLayer image) throws IllegalArgumentException;
 
+  /**
+   * Renders a smaller approximation of what a layer will look like in place of the
+   * current layer while the layer itself is still being computed or decoded. The layer
+   * itself is not read, so that a layer whose pixels have not been decoded yet stays so.
+   *
+   * @param layer   the current layer in the project, whose size and details are shown
+   * @param preview an image to stretch over the area of the layer
+   * @throws IllegalArgumentException if either argument is null
+   */
+  void renderPreviewAsCurrentLayer(VLayer layer, VImage preview) throws IllegalArgumentException;
+
+  /**
+   * Renders a smaller approximation of what a layer will look like in place of the
+   * top most visible layer while the layer itself is still being computed or decoded.
+   *
+   * @param layer   the top most visible layer, whose size is shown
+   * @param preview an image to stretch over the area of the layer
+   * @throws IllegalArgumentException if either argument is null
+   */
+  void renderPreviewAsTopMostVisibleLayer(VLayer layer, VImage preview)
+      throws IllegalArgumentException;
+
+  /**
+   * Shows that a task is being carried out in the background and how much of it is complete.
+   * Each call replaces whatever progress was shown before.
+   *
+   * @param task        a short description of the task
+   * @param fraction    the fraction of the task that is complete, between 0 and 1, or a
+   *                    negative number if how much is complete is not known
+   * @param cancellable whether the user may ask for the task to be cancelled
+   * @throws IllegalArgumentException if the description is null
+   */
+  void renderProgress(String task, double fraction, boolean cancellable)
+      throws IllegalArgumentException;
+
+  /**
+   * Stops showing the progress of a task in the background.
+   */
+  void clearProgress();
+
   /**
    * Renders the layer names based on a series of names.
    * @param names the names of the layers in the project
@@ -91,6 +91,12 @@ public interface VIViewListener {
    */
   void applyMosaic();
 
+  /**
+   * Cancels the operations that are still being applied to
+   * layers in the background, leaving the layers as they were.
+   */
+  void cancelOperations();
+
   /**
    * Executes a file script, prompting the user for the
    * location of the file.
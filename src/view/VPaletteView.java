@@ -1,13 +1,23 @@
 package view;
 
 import java.awt.BorderLayout;
+import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 import javax.swing.AbstractListModel;
-import javax.swing.Icon;
-import javax.swing.ImageIcon;
+import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -16,15 +26,20 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
+import javax.swing.JViewport;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 import javax.swing.event.ListSelectionListener;
 import model.image.VImage;
+import model.image.VImagePyramid;
 import model.image.VLayer;
+import model.image.VPackedImages;
 import model.misc.Constants;
 import model.misc.ObjectsExtension;
-import model.misc.VImageUtils;
 import model.processing.VImageFilters;
 
 /**
@@ -39,9 +54,16 @@ public class VPaletteView extends JFrame implements VIView {
   private final JList<String> layerNamesView;
   private final JSplitImageView imageView;
   private JCheckBoxMenuItem visibleMenuItem;
+  private final JPanel progressView;
+  private final JLabel progressLabel;
+  private final JProgressBar progressBar;
+  private final JButton cancelButton;
 
   private final List<VIViewListener> listeners;
 
+  // The number of steps in the progress bar
+  private static final int PROGRESS_STEPS = 1000;
+
   // Set default window parameters
   {
     setTitle("Vido");
@@ -69,8 +91,22 @@ public class VPaletteView extends JFrame implements VIView {
     body.setLeftComponent(layersView);
     body.setRightComponent(imageView);
 
+    // The progress of background tasks is shown beneath the
+    // images, and only while there is a task in progress
+    this.progressLabel = new JLabel();
+    this.progressBar = new JProgressBar(0, PROGRESS_STEPS);
+    this.cancelButton = new JButton("Cancel");
+    this.cancelButton.addActionListener(actionEvent ->
+        listeners.forEach(VIViewListener::cancelOperations));
+    this.progressView = new JPanel(new BorderLayout(10, 0));
+    this.progressView.add(progressLabel, BorderLayout.WEST);
+    this.progressView.add(progressBar, BorderLayout.CENTER);
+    this.progressView.add(cancelButton, BorderLayout.EAST);
+    this.progressView.setVisible(false);
+
     this.setJMenuBar(menuBar);
     this.add(body, BorderLayout.CENTER);
+    this.add(progressView, BorderLayout.SOUTH);
 
     // Initialize listeners to relay to the
     // view listeners
@@ -101,6 +137,41 @@ public class VPaletteView extends JFrame implements VIView {
     visibleMenuItem.setSelected(layer.isVisible());
   }
 
+  @Override
+  public void renderPreviewAsCurrentLayer(VLayer layer, VImage preview)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(layer, preview);
+    this.imageView.setLeftPreview(layer, preview);
+    visibleMenuItem.setSelected(layer.isVisible());
+  }
+
+  @Override
+  public void renderPreviewAsTopMostVisibleLayer(VLayer layer, VImage preview)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(layer, preview);
+    this.imageView.setRightPreview(layer, preview);
+  }
+
+  @Override
+  public void renderProgress(String task, double fraction, boolean cancellable)
+      throws IllegalArgumentException {
+    ObjectsExtension.requireNonnull(task);
+
+    this.progressLabel.setText(task);
+    this.progressBar.setIndeterminate(fraction < 0);
+    this.progressBar.setValue((int) Math.round(Math.min(1, Math.max(0, fraction))
+        * PROGRESS_STEPS));
+    this.cancelButton.setEnabled(cancellable);
+    this.progressView.setVisible(true);
+  }
+
+  @Override
+  public void clearProgress() {
+    this.progressView.setVisible(false);
+    this.progressBar.setIndeterminate(false);
+    this.progressBar.setValue(0);
+  }
+
   /**
    * Renders the names of the layers using the names provided.
    *
@@ -332,6 +403,33 @@ public class VPaletteView extends JFrame implements VIView {
       toolMenuBar.add(editMenu);
     }
 
+    // Create the "View" menu
+    {
+      JMenu viewMenu = new JMenu("View");
+
+      JMenuItem zoomIn = new JMenuItem("Zoom In");
+      JMenuItem zoomOut = new JMenuItem("Zoom Out");
+      JMenuItem actualSize = new JMenuItem("Actual Size");
+      JMenuItem fitToWindow = new JMenuItem("Fit to Window");
+
+      int shortcut = InputEvent.CTRL_DOWN_MASK;
+      zoomIn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, shortcut));
+      zoomOut.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, shortcut));
+      actualSize.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, shortcut));
+
+      zoomIn.addActionListener(e -> imageView.zoomBy(ZoomableImageView.ZOOM_STEP));
+      zoomOut.addActionListener(e -> imageView.zoomBy(1 / ZoomableImageView.ZOOM_STEP));
+      actualSize.addActionListener(e -> imageView.setZoom(1));
+      fitToWindow.addActionListener(e -> imageView.fitToWindow());
+
+      viewMenu.add(zoomIn);
+      viewMenu.add(zoomOut);
+      viewMenu.add(actualSize);
+      viewMenu.add(fitToWindow);
+
+      toolMenuBar.add(viewMenu);
+    }
+
     return toolMenuBar;
   }
 
@@ -347,8 +445,8 @@ public class VPaletteView extends JFrame implements VIView {
    */
   private static final class JSplitImageView extends JPanel {
     private final JLabel isVisibleLabel;
-    private final JLabel leftImageView;
-    private final JLabel rightImageView;
+    private final ZoomableImageView leftImageView;
+    private final ZoomableImageView rightImageView;
 
     /**
      * Construct a new split image that defaults to
@@ -360,8 +458,8 @@ public class VPaletteView extends JFrame implements VIView {
 
       JSplitPane imageSplitView = new JSplitPane();
       this.isVisibleLabel = new JLabel("", JLabel.CENTER);
-      this.leftImageView = new JLabel();
-      this.rightImageView = new JLabel();
+      this.leftImageView = new ZoomableImageView();
+      this.rightImageView = new ZoomableImageView();
 
       JPanel leftWithTitle = new JPanel();
       leftWithTitle.setLayout(new BorderLayout());
@@ -381,20 +479,31 @@ public class VPaletteView extends JFrame implements VIView {
     }
 
     /**
-     * Sets the given image as the icon of the given label.
+     * Multiplies the zoom of both images by the given factor.
      *
-     * @param image the image whose contents will become the
-     *              label's icon
-     * @param label the label whose icon needs to be set
-     * @throws IllegalArgumentException if either argument is null
+     * @param factor the factor by which both images are enlarged
      */
-    private void setImage(VImage image, JLabel label) throws IllegalArgumentException {
-      ObjectsExtension.requireNonnull(image, label);
-      BufferedImage bufferredImage = VImageUtils.extractToBuffer(image);
-      Icon icon = new ImageIcon(bufferredImage);
-      label.setIcon(icon);
-      label.setVerticalAlignment(JLabel.CENTER);
-      label.setHorizontalAlignment(JLabel.CENTER);
+    public void zoomBy(double factor) {
+      this.leftImageView.setZoom(this.leftImageView.getZoom() * factor);
+      this.rightImageView.setZoom(this.rightImageView.getZoom() * factor);
+    }
+
+    /**
+     * Shows both images at the given zoom.
+     *
+     * @param zoom the size at which the images are shown relative to their actual size
+     */
+    public void setZoom(double zoom) {
+      this.leftImageView.setZoom(zoom);
+      this.rightImageView.setZoom(zoom);
+    }
+
+    /**
+     * Zooms each image so that it fits entirely within its pane.
+     */
+    public void fitToWindow() {
+      this.leftImageView.fitToWindow();
+      this.rightImageView.fitToWindow();
     }
 
     /**
@@ -417,7 +526,7 @@ public class VPaletteView extends JFrame implements VIView {
      * @throws IllegalArgumentException if the image is {@code null}
      */
     public void setLeftImage(VLayer image) throws IllegalArgumentException {
-      this.setImage(image, this.leftImageView);
+      this.leftImageView.setLayer(image);
 
       // Update the visible label accordingly
       this.isVisibleLabel.setText(visibleTextForVisibility(image.isVisible()));
@@ -430,7 +539,264 @@ public class VPaletteView extends JFrame implements VIView {
      * @throws IllegalArgumentException if the image is {@code null}
      */
     public void setRightImage(VLayer image) throws IllegalArgumentException {
-      this.setImage(image, this.rightImageView);
+      this.rightImageView.setLayer(image);
+    }
+
+    /**
+     * Show a preview of the left image while the image itself is being computed.
+     *
+     * @param image   the image whose size and visibility are shown
+     * @param preview an approximation of the image to stretch over its area
+     * @throws IllegalArgumentException if either argument is {@code null}
+     */
+    public void setLeftPreview(VLayer image, VImage preview) throws IllegalArgumentException {
+      this.leftImageView.setPreview(image, preview);
+      this.isVisibleLabel.setText(visibleTextForVisibility(image.isVisible())
+          + Constants.PREVIEW_SUFFIX_STRING);
+    }
+
+    /**
+     * Show a preview of the right image while the image itself is being computed.
+     *
+     * @param image   the image whose size is shown
+     * @param preview an approximation of the image to stretch over its area
+     * @throws IllegalArgumentException if either argument is {@code null}
+     */
+    public void setRightPreview(VLayer image, VImage preview) throws IllegalArgumentException {
+      this.rightImageView.setPreview(image, preview);
+    }
+  }
+
+  /**
+   * A panel which shows a layer at any zoom, drawing from the level of the layer's
+   * {@link VImagePyramid} closest to the zoom instead of from the whole layer.
+   *
+   * <p>When placed in a {@link JScrollPane}, the image can be panned by dragging it
+   * with the mouse and zoomed by scrolling with the control key held down</p>
+   */
+  private static final class ZoomableImageView extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    // The factor by which each step of zooming enlarges or shrinks the image
+    static final double ZOOM_STEP = 1.25;
+
+    private static final double MIN_ZOOM = 1.0 / 64;
+    private static final double MAX_ZOOM = 32;
+
+    private VLayer layer;
+    private double zoom;
+
+    // An approximation drawn in place of the layer, or null to draw the layer itself
+    private VImage preview;
+
+    // The level of the layer's pyramid being drawn
+    private int level;
+    private BufferedImage levelImage;
+
+    private Point dragStart;
+
+    /**
+     * Construct a new view which shows no image at its actual size.
+     */
+    public ZoomableImageView() {
+      super();
+      this.zoom = 1;
+
+      MouseAdapter mouseHandler = new MouseAdapter() {
+        @Override
+        public void mousePressed(MouseEvent e) {
+          dragStart = SwingUtilities.convertPoint(ZoomableImageView.this, e.getPoint(),
+              getParent());
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+          if (dragStart == null || !(getParent() instanceof JViewport)) {
+            return;
+          }
+
+          JViewport viewport = (JViewport) getParent();
+          Point current = SwingUtilities.convertPoint(ZoomableImageView.this, e.getPoint(),
+              viewport);
+          Point position = viewport.getViewPosition();
+          position.translate(dragStart.x - current.x, dragStart.y - current.y);
+          scrollTo(viewport, position);
+          dragStart = current;
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+          dragStart = null;
+        }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+          if (e.isControlDown()) {
+            setZoom(zoom * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+          } else {
+            // Let the scroll pane scroll as usual
+            Container scrollPane = SwingUtilities.getAncestorOfClass(
+                JScrollPane.class, ZoomableImageView.this);
+            if (scrollPane != null) {
+              scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(
+                  ZoomableImageView.this, e, scrollPane));
+            }
+          }
+        }
+      };
+
+      addMouseListener(mouseHandler);
+      addMouseMotionListener(mouseHandler);
+      addMouseWheelListener(mouseHandler);
+    }
+
+    /**
+     * Shows the given layer in this view at the current zoom.
+     *
+     * @param layer the layer to show
+     * @throws IllegalArgumentException if the layer is {@code null}
+     */
+    public void setLayer(VLayer layer) throws IllegalArgumentException {
+      ObjectsExtension.requireNonnull(layer);
+      this.layer = layer;
+      this.preview = null;
+      this.levelImage = null;
+      this.updateLevel();
+      revalidate();
+      repaint();
+    }
+
+    /**
+     * Shows an approximation of the given layer, stretched over the
+     * area of the layer, in place of the layer itself.
+     *
+     * @param layer   the layer whose size determines the area of the preview
+     * @param preview the image to show
+     * @throws IllegalArgumentException if either argument is {@code null}
+     */
+    public void setPreview(VLayer layer, VImage preview) throws IllegalArgumentException {
+      ObjectsExtension.requireNonnull(layer, preview);
+      this.layer = layer;
+      this.preview = preview;
+      this.levelImage = VPackedImages.asBufferedImage(preview);
+      revalidate();
+      repaint();
+    }
+
+    /**
+     * Retrieves the size at which the image is shown relative to its actual size.
+     *
+     * @return the zoom of this view
+     */
+    public double getZoom() {
+      return this.zoom;
+    }
+
+    /**
+     * Shows the image at the given size relative to its actual size, keeping the
+     * location at the center of the visible area in place.
+     *
+     * @param zoom the new zoom, which is clamped to a sensible range
+     */
+    public void setZoom(double zoom) {
+      double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+      JViewport viewport = getParent() instanceof JViewport ? (JViewport) getParent() : null;
+      Rectangle visible = viewport == null ? null : viewport.getViewRect();
+
+      double ratio = newZoom / this.zoom;
+      this.zoom = newZoom;
+      this.updateLevel();
+      revalidate();
+
+      if (visible != null) {
+        Point position = new Point(
+            (int) Math.round(visible.getCenterX() * ratio - visible.width / 2.0),
+            (int) Math.round(visible.getCenterY() * ratio - visible.height / 2.0));
+        viewport.validate();
+        scrollTo(viewport, position);
+      }
+      repaint();
+    }
+
+    /**
+     * Zooms so that the whole image fits within the area this view is shown in.
+     */
+    public void fitToWindow() {
+      if (layer == null) {
+        return;
+      }
+
+      Dimension area = getParent() instanceof JViewport
+          ? ((JViewport) getParent()).getExtentSize() : getSize();
+      if (area.width > 0 && area.height > 0) {
+        this.setZoom(Math.min((double) area.width / layer.getWidth(),
+            (double) area.height / layer.getHeight()));
+      }
+    }
+
+    /**
+     * Chooses the pyramid level to draw from for the current zoom,
+     * converting it for drawing if it changed.
+     */
+    private void updateLevel() {
+      if (layer == null || preview != null) {
+        return;
+      }
+
+      VImagePyramid pyramid = layer.getPyramid();
+      int newLevel = pyramid.levelFor(zoom);
+
+      if (levelImage == null || newLevel != level) {
+        this.level = newLevel;
+        this.levelImage = VPackedImages.asBufferedImage(pyramid.getLevel(newLevel));
+      }
+    }
+
+    /**
+     * Moves the visible area of the viewport without scrolling past the image.
+     *
+     * @param viewport the viewport this view is shown in
+     * @param position the desired top-left corner of the visible area
+     */
+    private void scrollTo(JViewport viewport, Point position) {
+      Dimension extent = viewport.getExtentSize();
+      Dimension size = viewport.getViewSize();
+      position.x = Math.max(0, Math.min(position.x, size.width - extent.width));
+      position.y = Math.max(0, Math.min(position.y, size.height - extent.height));
+      viewport.setViewPosition(position);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+      if (layer == null) {
+        return super.getPreferredSize();
+      }
+
+      return new Dimension((int) Math.ceil(layer.getWidth() * zoom),
+          (int) Math.ceil(layer.getHeight() * zoom));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+      super.paintComponent(g);
+
+      if (levelImage == null) {
+        return;
+      }
+
+      Dimension size = this.getPreferredSize();
+      int x = Math.max(0, (getWidth() - size.width) / 2);
+      int y = Math.max(0, (getHeight() - size.height) / 2);
+
+      Graphics2D graphics = (Graphics2D) g.create();
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, zoom >= 1
+          ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+          : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+      // Only the part of the image within the visible area is drawn
+      graphics.clipRect(x, y, size.width, size.height);
+      graphics.drawImage(levelImage, x, y, size.width, size.height, null);
+      graphics.dispose();
     }
   }
 